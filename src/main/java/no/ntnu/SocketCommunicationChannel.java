@@ -1,14 +1,21 @@
 package no.ntnu;
 
 import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
 import no.ntnu.constants.Endpoints;
 import no.ntnu.intermediaryserver.clienthandler.ClientIdentification;
+import no.ntnu.intermediaryserver.server.ServerConfig;
 import no.ntnu.messages.Message;
 import no.ntnu.messages.MessageBody;
 import no.ntnu.messages.MessageHeader;
-import no.ntnu.messages.Transmission;
 import no.ntnu.messages.commands.common.ClientIdentificationTransmission;
+import no.ntnu.messages.framing.WireProtocol;
 import no.ntnu.tools.Logger;
+import no.ntnu.tools.encryption.IntegrityMode;
+import no.ntnu.tools.encryption.KeyPairStore;
+import no.ntnu.tools.encryption.MessageIntegrity;
+import no.ntnu.tools.encryption.SessionEncryptor;
 
 /**
  * The SocketCommunicationChannel class provides a communication channel for sending and receiving
@@ -17,15 +24,24 @@ import no.ntnu.tools.Logger;
  */
 public abstract class SocketCommunicationChannel extends TcpConnection {
   protected ClientIdentification clientIdentification;
+  private WireProtocol preferredWireProtocol = WireProtocol.BINARY;
+  private IntegrityMode preferredIntegrityMode = IntegrityMode.CRC32C;
+  private boolean sessionEncryption = false;
+  // Null to read it from the file in the server config at every identification
+  private PublicKey serverPublicKey = null;
 
   /**
-   * Creates a new socket communication channel.
+   * Creates a new socket communication channel. Messages from the server are
+   * listened for on the kind of thread chosen in {@link ServerConfig}, and
+   * encrypted if chosen there.
    *
    * @param host The host to connect to.
    * @param port The port to connect to.
    */
   protected SocketCommunicationChannel(String host, int port) {
     super();
+    this.setListenerThreadMode(ServerConfig.getClientThreadMode());
+    this.setSessionEncryption(ServerConfig.isSessionEncryption());
     try {
       this.initializeStreams(host, port);
     } catch (IOException e) {
@@ -34,8 +50,84 @@ public abstract class SocketCommunicationChannel extends TcpConnection {
     }
   }
 
+  /**
+   * Sets the wire protocol offered to the server when identifying.
+   * Takes effect the next time the client identifies itself.
+   *
+   * @param preferredWireProtocol The wire protocol to offer.
+   */
+  public void setPreferredWireProtocol(WireProtocol preferredWireProtocol) {
+    if (preferredWireProtocol == null) {
+      throw new IllegalArgumentException("Preferred wire protocol cannot be null");
+    }
+    this.preferredWireProtocol = preferredWireProtocol;
+  }
+
+  /**
+   * Sets the integrity mode offered to the server when identifying. A keyed mode
+   * is derived from a session key sent along with the identification, whether
+   * the messages are encrypted or not, and a checksum is offered instead if no
+   * session key could be created. Takes effect the next time the client
+   * identifies itself.
+   *
+   * @param preferredIntegrityMode The integrity mode to offer.
+   */
+  public void setPreferredIntegrityMode(IntegrityMode preferredIntegrityMode) {
+    if (preferredIntegrityMode == null) {
+      throw new IllegalArgumentException("Preferred integrity mode cannot be null");
+    }
+    this.preferredIntegrityMode = preferredIntegrityMode;
+  }
+
+  /**
+   * Sets whether the messages to and from the server are encrypted. If so, a new
+   * session key is sent to the server every time the client identifies itself,
+   * wrapped with the server's public key, see {@link #setServerPublicKey}. If no
+   * session key can be sent, or the server does not agree to encrypt, the
+   * connection fails rather than carrying on unencrypted. Takes effect the next
+   * time the client identifies itself.
+   *
+   * @param sessionEncryption true to encrypt the messages.
+   */
+  public void setSessionEncryption(boolean sessionEncryption) {
+    this.sessionEncryption = sessionEncryption;
+  }
+
+  /**
+   * Sets the server's public key, which session keys are wrapped with. If it is
+   * not set, it is read from {@link ServerConfig#getServerPublicKeyFile()} every
+   * time the client identifies itself.
+   *
+   * @param serverPublicKey The server's public key, or null to read it from the
+   *                        file.
+   */
+  public void setServerPublicKey(PublicKey serverPublicKey) {
+    this.serverPublicKey = serverPublicKey;
+  }
+
+  /**
+   * Gets the server's public key, set or read from the file in the server
+   * config. The client never uses a key pair of its own for this, since only
+   * the server can unwrap what is wrapped with its key.
+   *
+   * @return The server's public key.
+   * @throws IOException              If the key file cannot be read.
+   * @throws GeneralSecurityException If the key file does not hold a public key.
+   */
+  private PublicKey getServerPublicKey() throws IOException, GeneralSecurityException {
+    if (this.serverPublicKey != null) {
+      return this.serverPublicKey;
+    }
+    return KeyPairStore.readPublicKey(ServerConfig.getServerPublicKeyFile());
+  }
+
   /**
    * Establishes a connection with the server by sending an identification message.
+   * If the messages are encrypted, or checked with a keyed integrity mode, a
+   * session key is sent along with it. The messages sent after the
+   * identification are held until the server has answered, and then encrypted
+   * and checked the way it agreed on. If the messages should be encrypted but no
+   * session key can be created, the connection fails instead.
    *
    * @param clientIdentification The client identification to send.
    */
@@ -46,19 +138,43 @@ public abstract class SocketCommunicationChannel extends TcpConnection {
     }
 
     this.clientIdentification = clientIdentification;
-    Message identificationMessage = this.createIdentificationMessage(clientIdentification);
-    this.sendMessage(identificationMessage);
+    SessionEncryptor session = null;
+    String sessionKey = null;
+    if (this.sessionEncryption || this.preferredIntegrityMode.isKeyed()) {
+      try {
+        session = SessionEncryptor.generate();
+        sessionKey = session.wrapKey(this.getServerPublicKey());
+      } catch (Exception e) {
+        Logger.error("Could not create a session key: " + e.getMessage());
+        session = null;
+      }
+    }
+    if (this.sessionEncryption && session == null) {
+      this.failConnection("Messages should be encrypted, but no session key could be sent");
+      return;
+    }
+    MessageIntegrity integrity = this.createIntegrity(this.preferredIntegrityMode, session);
+    if (integrity == null) {
+      integrity = MessageIntegrity.CRC32C;
+    }
+    Message identificationMessage = this.createIdentificationMessage(
+        clientIdentification, integrity.getMode(), session == null ? null : sessionKey,
+        session != null && this.sessionEncryption);
+    this.sendIdentification(identificationMessage, session, integrity,
+        this.sessionEncryption);
   }
 
   /**
    * Overrides the super classes reconnection actions.
-   * Since the client identification is not done in the super class, we do it here
-   * and then call the super class reconnection actions.
-   * 
+   * The server forgets a client when it disconnects, so the client identifies
+   * itself again before the messages buffered while disconnected are sent. A
+   * client that has not identified itself yet is left to do so.
    */
   @Override
   protected void doReconnectedActions() {
-    this.establishConnectionWithServer(this.clientIdentification);
+    if (this.clientIdentification != null) {
+      this.establishConnectionWithServer(this.clientIdentification);
+    }
     super.doReconnectedActions();
   }
 
@@ -66,10 +182,21 @@ public abstract class SocketCommunicationChannel extends TcpConnection {
    * Creates a client identification message based on the provided client information.
    *
    * @param clientIdentification The client identification information.
+   * @param integrityMode        The integrity mode to offer.
+   * @param sessionKey           The wrapped session key, or null to not send one.
+   * @param encrypted            Whether to encrypt with the session key.
    * @return The identification message.
    */
-  private Message createIdentificationMessage(ClientIdentification clientIdentification) {
-    Transmission identificationCommand = new ClientIdentificationTransmission(clientIdentification);
+  private Message createIdentificationMessage(ClientIdentification clientIdentification,
+                                              IntegrityMode integrityMode,
+                                              String sessionKey,
+                                              boolean encrypted) {
+    ClientIdentificationTransmission identificationCommand =
+        new ClientIdentificationTransmission(clientIdentification);
+    identificationCommand.setWireProtocol(this.preferredWireProtocol);
+    identificationCommand.setIntegrityMode(integrityMode);
+    identificationCommand.setSessionKey(sessionKey);
+    identificationCommand.setEncrypted(encrypted);
     MessageBody body = new MessageBody(identificationCommand);
     MessageHeader header = new MessageHeader(Endpoints.SERVER, Endpoints.NONE.getValue());
     return new Message(header, body);
@@ -1,17 +1,33 @@
 package no.ntnu;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
+import java.security.GeneralSecurityException;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import no.ntnu.messages.Delimiters;
 import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageParser;
 import no.ntnu.messages.Transmission;
 import no.ntnu.messages.commands.common.ClientIdentificationTransmission;
+import no.ntnu.messages.framing.EncodedFrame;
+import no.ntnu.messages.framing.Frame;
+import no.ntnu.messages.framing.FrameCodec;
+import no.ntnu.messages.framing.FrameReader;
+import no.ntnu.messages.framing.FrameType;
+import no.ntnu.messages.framing.FrameWriter;
+import no.ntnu.messages.framing.OverflowPolicy;
+import no.ntnu.messages.framing.WireProtocol;
+import no.ntnu.messages.responses.Response;
 import no.ntnu.messages.responses.SuccessResponse;
 import no.ntnu.tools.Logger;
+import no.ntnu.tools.encryption.IntegrityMode;
+import no.ntnu.tools.encryption.MessageIntegrity;
+import no.ntnu.tools.encryption.SessionEncryptor;
+import no.ntnu.tools.threading.ThreadMode;
 
 
 /**
@@ -20,20 +36,71 @@ import no.ntnu.tools.Logger;
  * socket, sending and receiving messages, and handling connection errors.
  * Subclasses can extend this class to implement specific message handling
  * logic.
+ *
+ * <p>Sending, reconnecting and closing are guarded by a {@link ReentrantLock}
+ * rather than {@code synchronized}, so a virtual thread blocking on the socket
+ * while holding the lock does not pin its carrier thread.
+ *
+ * <p>Messages are sent with the connection's {@link WireProtocol}, which starts
+ * as text and may be switched to binary frames during client identification.
+ * Received text lines and binary frames are both understood at any time.
+ *
+ * <p>Sent messages are encoded on the sending thread and queued on the
+ * connection's {@link FrameWriter}, which writes them from its own thread and
+ * flushes messages that queue up together at once. The writer's queue is
+ * bounded, see {@link OverflowPolicy}. So is the buffer of messages sent while
+ * disconnected, which drops the oldest message when full.
+ *
+ * <p>Once a connection has a {@link SessionEncryptor}, every message is sent as
+ * an encrypted binary frame, whatever the wire protocol, and received encrypted
+ * frames are decrypted before they are decoded.
+ *
+ * <p>The hash in the header of every received message is checked against its
+ * body with the connection's {@link MessageIntegrity}, agreed on during client
+ * identification, and messages that do not match are dropped.
+ *
+ * <p>A client holds the messages it sends after its identification until the
+ * server has answered, and only then switches to what the server agreed on, so
+ * none of them are sent in a way the server does not read them.
  */
 public abstract class TcpConnection {
 
   private static final int MAX_RETRIES = 5;
   private static final int RETRY_DELAY_MS = 1000; // Time between retries
+  private static final int DEFAULT_MAX_WRITE_BATCH_SIZE = 64;
+  // Messages kept while disconnected, to be sent after reconnecting
+  private static final int MAX_BUFFERED_MESSAGES = 1024;
+  // An idle writer only waits for messages, so writers always run on virtual threads
+  private static final ThreadMode WRITER_THREAD_MODE = ThreadMode.VIRTUAL;
+  private static final String INTEGRITY_KEY_PURPOSE = "integrity";
   private Socket socket;
-  private BufferedReader socketReader;
-  private PrintWriter socketWriter;
-  private boolean isConnected;
+  private FrameReader socketReader;
+  private volatile FrameWriter socketWriter;
+  private int maxWriteBatchSize = DEFAULT_MAX_WRITE_BATCH_SIZE;
+  private long maxWriteLatencyMs = 0;
+  private int outboundQueueCapacity = FrameWriter.DEFAULT_CAPACITY;
+  private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+  // Dropped from the offline buffer, and by writers that have been replaced
+  private final AtomicLong droppedMessages = new AtomicLong();
+  private volatile WireProtocol wireProtocol = WireProtocol.TEXT;
+  private volatile SessionEncryptor sessionEncryptor;
+  // How the messages sent and received are checked, changed during identification
+  private volatile MessageIntegrity sendIntegrity = MessageIntegrity.NONE;
+  private volatile MessageIntegrity receiveIntegrity = MessageIntegrity.NONE;
+  private final AtomicLong integrityErrors = new AtomicLong();
+  // What a client offered in its identification, until the server answers
+  private boolean awaitingIdentification = false;
+  private SessionEncryptor offeredSession;
+  private MessageIntegrity offeredIntegrity;
+  private boolean encryptionOffered;
+  private volatile boolean isConnected;
   private final Queue<Message> messageQueue;
   private String host;
   private int port;
   private boolean autoReconnect = true;
-  private boolean isReconnecting = false;
+  private volatile boolean isReconnecting = false;
+  private final ReentrantLock connectionLock = new ReentrantLock();
+  private ThreadMode listenerThreadMode = ThreadMode.PLATFORM;
 
   /**
    * Creates a new TCP connection.
@@ -106,6 +173,214 @@ public abstract class TcpConnection {
     this.autoReconnect = autoReconnect;
   }
 
+  /**
+   * Gets the wire protocol messages are sent with.
+   *
+   * @return the wire protocol of the connection.
+   */
+  public WireProtocol getWireProtocol() {
+    return this.wireProtocol;
+  }
+
+  /**
+   * Sets the wire protocol messages are sent with. Should only be changed once
+   * both sides of the connection have agreed on the protocol.
+   *
+   * @param wireProtocol the wire protocol of the connection.
+   */
+  protected void setWireProtocol(WireProtocol wireProtocol) {
+    if (wireProtocol == null) {
+      throw new IllegalArgumentException("Wire protocol cannot be null");
+    }
+    this.wireProtocol = wireProtocol;
+  }
+
+  /**
+   * Gets the session encryptor messages are encrypted with.
+   *
+   * @return the session encryptor, or null if messages are not encrypted.
+   */
+  public SessionEncryptor getSessionEncryptor() {
+    return this.sessionEncryptor;
+  }
+
+  /**
+   * Sets the session encryptor messages are encrypted with. Should only be set
+   * once both sides of the connection share the session key.
+   *
+   * @param sessionEncryptor the session encryptor, or null to stop encrypting.
+   */
+  protected void setSessionEncryptor(SessionEncryptor sessionEncryptor) {
+    this.sessionEncryptor = sessionEncryptor;
+  }
+
+  /**
+   * Sets how the messages sent are checked for integrity. Should only be changed
+   * once the other side of the connection checks them the same way.
+   *
+   * @param sendIntegrity the integrity check of sent messages.
+   */
+  protected void setSendIntegrity(MessageIntegrity sendIntegrity) {
+    if (sendIntegrity == null) {
+      throw new IllegalArgumentException("Integrity cannot be null");
+    }
+    this.sendIntegrity = sendIntegrity;
+  }
+
+  /**
+   * Sets how the messages received are checked for integrity. Messages whose
+   * body does not match their hash are dropped.
+   *
+   * @param receiveIntegrity the integrity check of received messages.
+   */
+  protected void setReceiveIntegrity(MessageIntegrity receiveIntegrity) {
+    if (receiveIntegrity == null) {
+      throw new IllegalArgumentException("Integrity cannot be null");
+    }
+    this.receiveIntegrity = receiveIntegrity;
+  }
+
+  /**
+   * Gets how the messages received are checked for integrity.
+   *
+   * @return the integrity mode of received messages.
+   */
+  public IntegrityMode getIntegrityMode() {
+    return this.receiveIntegrity.getMode();
+  }
+
+  /**
+   * Returns the number of received messages that were dropped because their body
+   * did not match their hash.
+   *
+   * @return the number of integrity errors.
+   */
+  public long getIntegrityErrorCount() {
+    return this.integrityErrors.get();
+  }
+
+  /**
+   * Creates the integrity check for a mode, deriving a keyed mode from a session
+   * key the connection may not use yet, such as one offered during client
+   * identification.
+   *
+   * @param mode    the integrity mode.
+   * @param session the session to derive a key from, or null if there is none.
+   * @return the integrity check, or null if the mode needs a key and there is no
+   *         session.
+   */
+  protected MessageIntegrity createIntegrity(IntegrityMode mode, SessionEncryptor session) {
+    if (!mode.isKeyed()) {
+      return MessageIntegrity.of(mode);
+    }
+    if (session == null) {
+      return null;
+    }
+    try {
+      return MessageIntegrity.hmac(session.deriveKey(INTEGRITY_KEY_PURPOSE, "HmacSHA256"));
+    } catch (GeneralSecurityException e) {
+      Logger.error("Could not derive integrity key: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Sets the kind of thread the message listener is started on.
+   *
+   * @param listenerThreadMode the thread mode for the message listener.
+   */
+  public void setListenerThreadMode(ThreadMode listenerThreadMode) {
+    if (listenerThreadMode == null) {
+      throw new IllegalArgumentException("Listener thread mode cannot be null");
+    }
+    this.listenerThreadMode = listenerThreadMode;
+  }
+
+  /**
+   * Sets the maximum number of queued messages written with one flush.
+   *
+   * @param maxWriteBatchSize the maximum batch size, must be positive.
+   */
+  public void setMaxWriteBatchSize(int maxWriteBatchSize) {
+    if (maxWriteBatchSize < 1) {
+      throw new IllegalArgumentException("Max write batch size must be positive");
+    }
+    this.maxWriteBatchSize = maxWriteBatchSize;
+    FrameWriter writer = this.socketWriter;
+    if (writer != null) {
+      writer.setMaxBatchSize(maxWriteBatchSize);
+    }
+  }
+
+  /**
+   * Sets the longest time a sent message may wait for more messages to be
+   * flushed together with. With 0, a message is written as soon as the writer is
+   * free, batching only the messages that queued up in the meantime.
+   *
+   * @param maxWriteLatencyMs the maximum latency in milliseconds, must not be negative.
+   */
+  public void setMaxWriteLatency(long maxWriteLatencyMs) {
+    if (maxWriteLatencyMs < 0) {
+      throw new IllegalArgumentException("Max write latency cannot be negative");
+    }
+    this.maxWriteLatencyMs = maxWriteLatencyMs;
+    FrameWriter writer = this.socketWriter;
+    if (writer != null) {
+      writer.setMaxLatencyMs(maxWriteLatencyMs);
+    }
+  }
+
+  /**
+   * Sets the maximum number of sent messages waiting to be written to the socket.
+   * Takes effect the next time the connection is opened.
+   *
+   * @param outboundQueueCapacity the capacity of the outbound queue, must be positive.
+   */
+  public void setOutboundQueueCapacity(int outboundQueueCapacity) {
+    if (outboundQueueCapacity < 1) {
+      throw new IllegalArgumentException("Outbound queue capacity must be positive");
+    }
+    this.outboundQueueCapacity = outboundQueueCapacity;
+  }
+
+  /**
+   * Sets what to do when a message is sent while the outbound queue is full.
+   * Takes effect the next time the connection is opened.
+   *
+   * @param overflowPolicy the overflow policy of the outbound queue.
+   */
+  public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+    if (overflowPolicy == null) {
+      throw new IllegalArgumentException("Overflow policy cannot be null");
+    }
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  /**
+   * Returns the number of sent messages that were dropped, either by the overflow
+   * policy or because the buffer of messages sent while disconnected was full.
+   *
+   * @return the number of dropped messages.
+   */
+  public long getDroppedMessageCount() {
+    long dropped = this.droppedMessages.get();
+    FrameWriter writer = this.socketWriter;
+    if (writer != null) {
+      dropped += writer.getDroppedFrames();
+    }
+    return dropped;
+  }
+
+  /**
+   * Returns the number of sent messages waiting to be written to the socket.
+   *
+   * @return the outbound queue depth.
+   */
+  public int getOutboundQueueDepth() {
+    FrameWriter writer = this.socketWriter;
+    return writer == null ? 0 : writer.getQueueDepth();
+  }
+
   /**
    * Connects to the given socket.
    *
@@ -142,10 +417,7 @@ public abstract class TcpConnection {
    */
   private void initializeSocket(Socket socket) throws IOException {
     this.socket = socket;
-    this.socket.setKeepAlive(true);
-    this.socketReader = new BufferedReader(new InputStreamReader(this.socket.getInputStream()));
-    this.socketWriter = new PrintWriter(this.socket.getOutputStream(), true);
-    this.setConnected(true);
+    this.openStreams();
     this.host = socket.getInetAddress().getHostAddress();
     this.port = socket.getPort();
     Logger.info("Socket connection established with " + this.host + ":" + this.port);
@@ -169,7 +441,22 @@ public abstract class TcpConnection {
    * @param host the host to connect to.
    * @param port the port to connect to.
    */
-  protected synchronized void reconnect(String host, int port) {
+  protected void reconnect(String host, int port) {
+    this.connectionLock.lock();
+    try {
+      this.reconnectWithLock(host, port);
+    } finally {
+      this.connectionLock.unlock();
+    }
+  }
+
+  /**
+   * Reconnects to the given host and port. The connection lock must be held.
+   *
+   * @param host the host to connect to.
+   * @param port the port to connect to.
+   */
+  private void reconnectWithLock(String host, int port) {
 
     if (!this.shouldReconnect()) {
       return;
@@ -178,11 +465,13 @@ public abstract class TcpConnection {
     this.setIsReconnecting(true);
 
     int attempts = 0;
-    while (!this.isConnected() && attempts < MAX_RETRIES) {
+    // Stops early if the connection failed for good while reconnecting
+    while (!this.isConnected() && this.isAutoReconnect() && attempts < MAX_RETRIES) {
       try {
         this.sleepForReconnection(attempts);
         this.doReconnectionActions(host, port);
         Logger.info("Reconnection successful.");
+        this.doReconnectedActions();
       } catch (IOException e) {
         attempts++;
         Logger.error("Reconnection attempt " + attempts + " failed: " + e.getMessage());
@@ -233,7 +522,8 @@ public abstract class TcpConnection {
   }
 
   /**
-   * Performs the actions needed after a successful reconnection.
+   * Performs the actions needed after a successful reconnection, sending the
+   * messages buffered while disconnected. The connection lock is held.
    * subclasses can override this method to perform additional actions if needed.
    */
   protected void doReconnectedActions() {
@@ -267,105 +557,226 @@ public abstract class TcpConnection {
   public void initializeStreams(String host, int port) throws IOException {
     Logger.info("Trying to establish connection to " + host + ":" + port);
     this.socket = new Socket(host, port);
-    this.socket.setKeepAlive(true);
-    this.socketReader = new BufferedReader(new InputStreamReader(this.socket.getInputStream()));
-    this.socketWriter = new PrintWriter(this.socket.getOutputStream(), true);
-    this.setConnected(true);
+    this.openStreams();
     this.host = host;
     this.port = port;
     Logger.info("Socket connection established with " + host + ":" + port);
     this.startListenerThread();
   }
 
+  /**
+   * Opens the frame reader and starts the frame writer on the socket. A new
+   * connection always starts out with the text protocol, unencrypted and
+   * unchecked.
+   *
+   * @throws IOException if an I/O error occurs when opening the streams.
+   */
+  private void openStreams() throws IOException {
+    this.socket.setKeepAlive(true);
+    this.socketReader = new FrameReader(this.socket.getInputStream());
+    FrameWriter previousWriter = this.socketWriter;
+    this.socketWriter = new FrameWriter(this.socket.getOutputStream(),
+        this.outboundQueueCapacity, this.overflowPolicy, this.maxWriteBatchSize,
+        this.maxWriteLatencyMs, this::handleWriteFailure);
+    this.socketWriter.start(WRITER_THREAD_MODE, "message-writer");
+    if (previousWriter != null) {
+      this.droppedMessages.addAndGet(previousWriter.getDroppedFrames());
+      previousWriter.close();
+    }
+    this.wireProtocol = WireProtocol.TEXT;
+    this.sessionEncryptor = null;
+    this.sendIntegrity = MessageIntegrity.NONE;
+    this.receiveIntegrity = MessageIntegrity.NONE;
+    this.awaitingIdentification = false;
+    this.offeredSession = null;
+    this.offeredIntegrity = null;
+    this.encryptionOffered = false;
+    this.setConnected(true);
+  }
+
   /**
    * Starts the listener thread for the socket connection.
    */
   protected void startListenerThread() {
-    Thread messageListener = new Thread(() -> {
-      listenForMessages();
-    });
-    messageListener.setDaemon(true); // Ensure the thread doesn't block app shutdown
-    messageListener.start();
+    // Daemon, so the thread doesn't block app shutdown
+    this.listenerThreadMode.start("message-listener", true, this::listenForMessages);
   }
 
   /**
-   * Continually listens for messages from the connected socket.
+   * Continually listens for messages from the connected socket. The listener
+   * stops once the socket is closed, or replaced by reconnecting, which starts a
+   * new listener.
    */
   protected void listenForMessages() {
+    FrameReader reader = this.socketReader;
     try {
-      while (this.isConnected()) {
-        this.readMessage();
+      while (this.isConnected() && reader == this.socketReader) {
+        this.readMessage(reader);
       }
       Logger.info("Server message listener stopped.");
     } catch (IOException e) {
+      this.handleConnectionLost(reader, e);
+    }
+  }
+
+  /**
+   * Handles a lost connection by reconnecting, unless the connection has already
+   * been re-established with another socket.
+   *
+   * @param reader the reader of the lost socket.
+   * @param e      the cause of the loss.
+   */
+  private void handleConnectionLost(FrameReader reader, IOException e) {
+    this.connectionLock.lock();
+    try {
+      if (reader != this.socketReader) {
+        return;
+      }
       Logger.error("Connection lost: " + e.getMessage());
       this.setConnected(false);
-      this.reconnect(this.host, this.port);
+      this.reconnectWithLock(this.host, this.port);
+    } finally {
+      this.connectionLock.unlock();
     }
   }
 
   /**
-   * Reads a line from the connected socket.
+   * Reads a frame from the connected socket.
+   *
+   * @return the frame read from the socket, or null if none could be read.
+   */
+  protected Frame readFrame() {
+    return this.readFrame(this.socketReader);
+  }
+
+  /**
+   * Reads a frame with the given reader.
    *
-   * @return the line read from the socket.
+   * @param reader the reader to read with, may be null.
+   * @return the frame read, or null if none could be read.
    */
-  protected String readLine() {
-    String clientRequest = null;
+  private Frame readFrame(FrameReader reader) {
+    Frame frame = null;
     try {
-      if (this.socketReader != null) {
-        clientRequest = this.socketReader.readLine();
+      if (reader != null) {
+        frame = reader.readFrame();
       } else {
         Logger.error("Socket reader is null");
       }
     } catch (IOException e) {
       Logger.error("Could not receive client request: " + e.getMessage());
     }
-    return clientRequest;
+    return frame;
   }
 
   /**
-   * Reads and handles a message from the connected socket.
+   * Reads and handles a message from the connected socket. If the other end
+   * closed the connection, it is re-established if auto-reconnect is enabled,
+   * and closed otherwise.
    *
-   * @throws IOException if an I/O error occurs when reading the message.
+   * @param reader the reader of the connected socket.
+   * @throws IOException if the connection was lost and should be re-established.
    */
-  protected void readMessage() throws IOException {
-    String serverMessage = this.readLine();
-    if (serverMessage != null) {
-      Message message = this.parseMessage(serverMessage);
-
-      // Extract hash from created header
-      String hashedContentFromHeader = message.getHeader().getHashedContent();
-
-      // Extract hash from received header
-      String receivedMessageHash = message.getHeader().getHashedContent();
+  private void readMessage(FrameReader reader) throws IOException {
+    Frame frame = this.readFrame(reader);
+    if (frame != null) {
+      this.handleReceivedFrame(frame);
+    } else if (!this.isConnected() || reader != this.socketReader) {
+      // Closed or replaced meanwhile, so the listener just stops
+      return;
+    } else if (this.isAutoReconnect()) {
+      throw new IOException("Connection closed by the other end");
+    } else {
+      Logger.warn("Server message is null, closing connection");
+      this.close();
+    }
+  }
 
-      // Match the two hashes
-      if (hashedContentFromHeader.equals(receivedMessageHash)) {
-        // No integrity loss.
-      } else {
-        // Integrity loss
-        // Send message again.
-        this.handleIntegrityError(message);
+  /**
+   * Parses and handles a single frame received from the connected socket.
+   * Connections that do their own reading (for example non-blocking channels) hand
+   * every complete frame to this method.
+   *
+   * @param frame the received frame.
+   */
+  protected void handleReceivedFrame(Frame frame) {
+    try {
+      frame = this.decryptFrame(frame);
+      if (!FrameCodec.verify(frame, this.receiveIntegrity)) {
+        this.handleIntegrityError(frame);
         return;
       }
+    } catch (IllegalArgumentException | NullPointerException e) {
+      Logger.error("Invalid frame: " + e.getMessage());
+      return;
+    }
 
-      this.handleMessage(message);
-    } else {
-      Logger.warn("Server message is null, closing connection");
-      this.close();
+    if (frame.isText()) {
+      this.handleReceivedLine(frame.getText());
+      return;
+    }
+
+    Message message = null;
+    try {
+      message = FrameCodec.decode(frame);
+    } catch (IllegalArgumentException | NullPointerException e) {
+      Logger.error("Invalid binary frame: " + e.getMessage());
+    }
+    this.handleReceivedMessage(message);
+  }
+
+  /**
+   * Decrypts a received frame if it is encrypted.
+   *
+   * @param frame the received frame.
+   * @return the decrypted frame, or the frame itself if it is not encrypted.
+   * @throws IllegalArgumentException if the frame could not be decrypted, or the
+   *                                  connection has no session key.
+   */
+  protected Frame decryptFrame(Frame frame) {
+    if (frame.isText() || frame.getType() != FrameType.ENCRYPTED) {
+      return frame;
     }
+    SessionEncryptor session = this.sessionEncryptor;
+    if (session == null) {
+      throw new IllegalArgumentException("Encrypted frame received without a session key");
+    }
+    return FrameCodec.decrypt(frame, session);
+  }
+
+  /**
+   * Parses and handles a single protocol line received from the connected socket.
+   *
+   * @param serverMessage the received line, without the line terminator.
+   */
+  protected void handleReceivedLine(String serverMessage) {
+    this.handleReceivedMessage(this.parseMessage(serverMessage));
   }
 
   /**
-   * Handles integrity error by resending the message.
+   * Handles a received message, whose integrity has already been checked.
    *
-   * @param message the message to resend.
+   * @param message the received message, or null if it could not be parsed.
    */
-  private void handleIntegrityError(Message message) {
-    Logger.error("Integrity error detected");
-    // Resend the message
-    this.sendMessage(message);
+  private void handleReceivedMessage(Message message) {
+    if (message == null || message.getHeader() == null || message.getBody() == null) {
+      return;
+    }
 
+    this.handleMessage(message);
+  }
+
+  /**
+   * Handles a received frame whose body does not match the hash in its header,
+   * by dropping it. The frame cannot be trusted, so it is not answered either.
+   *
+   * @param frame the dropped frame.
+   */
+  private void handleIntegrityError(Frame frame) {
+    long dropped = this.integrityErrors.incrementAndGet();
+    String kind = frame.isText() ? "text line" : frame.getType() + " frame";
+    Logger.error("Integrity error detected in " + kind + ", dropped " + dropped
+        + " messages so far");
   }
 
   /**
@@ -379,7 +790,7 @@ public abstract class TcpConnection {
 
     // Attempt to parse the server message
     try {
-      message = Message.fromString(messageToParse);
+      message = MessageParser.parseMessage(messageToParse);
     } catch (IllegalArgumentException | NullPointerException e) {
       Logger.error("Invalid server message format: " + messageToParse + ". Error: "
               + e.getMessage());
@@ -398,26 +809,179 @@ public abstract class TcpConnection {
    *
    * @param message the message to send.
    */
-  public synchronized void sendMessage(Message message) {
+  public void sendMessage(Message message) {
+    this.sendFrame(EncodedFrame.of(message));
+  }
 
-    if (isConnected && socketWriter != null) {
-      socketWriter.println(message);
+  /**
+   * Sends a client identification, and holds the messages sent after it until
+   * the server has answered, see {@link #handleClientIdentification(Response)}.
+   * Until then, messages keep being sent and received the way they were. If the
+   * connection is down, it is re-established, which identifies the client again.
+   *
+   * @param identification the identification message.
+   * @param session        the session offered, or null if no key was sent.
+   * @param integrity      the integrity check offered.
+   * @param encrypted      whether encrypting with the session was asked for.
+   */
+  protected void sendIdentification(Message identification, SessionEncryptor session,
+                                    MessageIntegrity integrity, boolean encrypted) {
+    this.connectionLock.lock();
+    try {
+      if (!this.isConnected || this.socketWriter == null) {
+        this.reconnect(this.host, this.port);
+        return;
+      }
+      this.writeFrame(EncodedFrame.of(identification));
+      this.offeredSession = session;
+      this.offeredIntegrity = integrity;
+      this.encryptionOffered = encrypted;
+      this.awaitingIdentification = true;
+    } finally {
+      this.connectionLock.unlock();
+    }
+  }
+
+  /**
+   * Sends an encoded message to the connected socket. The same frame may be sent
+   * to many connections, and is only encoded once per wire protocol.
+   *
+   * @param frame the encoded message to send.
+   */
+  public void sendFrame(EncodedFrame frame) {
+    this.connectionLock.lock();
+    try {
+      if (isConnected && socketWriter != null && this.awaitingIdentification) {
+        // Sent once the server has agreed on how, in order with the buffered ones
+        this.bufferMessage(frame.getMessage());
+
+      } else if (isConnected && socketWriter != null) {
+        this.writeFrame(frame);
 
+      } else if (!this.isAutoReconnect()) {
+        // Closed for good, for example evicted by the overflow policy
+        this.droppedMessages.incrementAndGet();
+      } else {
+        Logger.error("Unable to send message, socket is not connected.");
+        this.bufferMessage(frame.getMessage());
+        reconnect(this.host, this.port);
+      }
+    } finally {
+      this.connectionLock.unlock();
+    }
+  }
+
+  /**
+   * Queues a message, encoded with the connection's wire protocol, on the writer.
+   * If the writer has stopped, the connection is marked as disconnected and the
+   * message is kept for reconnecting, see {@link #keepUnsentMessage(Message)}.
+   * The connection lock must be held.
+   *
+   * @param frame the encoded message to write.
+   */
+  private void writeFrame(EncodedFrame frame) {
+    if (!socketWriter.enqueue(frame.getMessage(), this.getFrameBytes(frame))) {
+      this.setConnected(false);
+      this.keepUnsentMessage(frame.getMessage());
+    }
+  }
+
+  /**
+   * Gets the bytes to write for an encoded message, hashed with the connection's
+   * integrity check. Without a session key these are shared with other
+   * connections using the same wire protocol and a keyless check. With one, the
+   * binary frame is encrypted for this connection alone.
+   *
+   * @param frame the encoded message.
+   * @return the bytes to write, not to be modified.
+   */
+  protected byte[] getFrameBytes(EncodedFrame frame) {
+    SessionEncryptor session = this.sessionEncryptor;
+    if (session == null) {
+      return frame.getBytes(this.wireProtocol, this.sendIntegrity);
+    }
+    return FrameCodec.encrypt(frame.getBytes(WireProtocol.BINARY, this.sendIntegrity), session);
+  }
+
+  /**
+   * Buffers a message to be sent once the connection is re-established. If the
+   * buffer is full, the oldest buffered message is dropped. The connection lock
+   * must be held.
+   *
+   * @param message the message to buffer.
+   */
+  private void bufferMessage(Message message) {
+    if (messageQueue.size() >= MAX_BUFFERED_MESSAGES) {
+      messageQueue.poll();
+      this.droppedMessages.incrementAndGet();
+    }
+    messageQueue.offer(message);
+  }
+
+  /**
+   * Keeps a message that could not be sent, to be sent once the connection is
+   * re-established. Without auto-reconnect the connection is not coming back, so
+   * the message is dropped instead. The connection lock must be held.
+   *
+   * @param message the message that could not be sent.
+   */
+  private void keepUnsentMessage(Message message) {
+    if (this.isAutoReconnect()) {
+      this.bufferMessage(message);
     } else {
-      Logger.error("Unable to send message, socket is not connected.");
-      messageQueue.offer(message); // Buffer the message
-      reconnect(this.host, this.port);
+      this.droppedMessages.incrementAndGet();
+    }
+  }
+
+  /**
+   * Handles a failed write. The messages that may not have been written are
+   * buffered and the connection is re-established if auto-reconnect is enabled.
+   * Failures of a writer that has already been replaced or closed are ignored.
+   *
+   * @param writer the writer that failed.
+   * @param e      the cause of the failure.
+   * @param unsent the messages that may not have been written.
+   */
+  private void handleWriteFailure(FrameWriter writer, IOException e, List<Message> unsent) {
+    this.connectionLock.lock();
+    try {
+      if (writer != this.socketWriter) {
+        return;
+      }
+      Logger.error("Unable to send message: " + e.getMessage());
+      this.setConnected(false);
+      for (Message message : unsent) {
+        this.keepUnsentMessage(message);
+      }
+      this.reconnectWithLock(this.host, this.port);
+    } finally {
+      this.connectionLock.unlock();
     }
   }
 
   /**
    * Flushes the buffered messages to the connected socket.
    */
-  protected synchronized void flushBufferedMessages() {
+  protected void flushBufferedMessages() {
+    this.connectionLock.lock();
+    try {
+      this.flushBufferedMessagesWithLock();
+    } finally {
+      this.connectionLock.unlock();
+    }
+  }
+
+  /**
+   * Flushes the buffered messages. The connection lock must be held.
+   */
+  private void flushBufferedMessagesWithLock() {
 
     boolean tryingToSend = true;
+    // Only the messages buffered so far, a message may be buffered again while sending
+    int remaining = messageQueue.size();
 
-    while (!messageQueue.isEmpty() && tryingToSend) {
+    while (remaining > 0 && !messageQueue.isEmpty() && tryingToSend) {
+      remaining--;
       Message message = messageQueue.poll();
       try {
         // Check if the socket is still open
@@ -429,34 +993,69 @@ public abstract class TcpConnection {
         }
       } catch (IOException e) {
         Logger.error("Failed to resend buffered message: " + e.getMessage());
-        messageQueue.offer(message); // Put it back in the queue for retry later
+        this.bufferMessage(message); // Put it back in the queue for retry later
         tryingToSend = false; // Stop trying to send
       }
     }
   }
 
   /**
-   * Closes the socket connection.
+   * Closes the socket connection. Messages already queued on the writer are
+   * written before the socket is closed, if the client keeps up. The connection
+   * lock is only held while the connection is marked as closed, so threads sending
+   * to it meanwhile are not held up while the writer finishes.
    */
-  public synchronized void close() {
+  public void close() {
+    FrameWriter writer;
+    Socket closedSocket;
+    FrameReader reader;
+    this.connectionLock.lock();
+    try {
+      isConnected = false;
+      writer = this.socketWriter;
+      closedSocket = this.socket;
+      reader = this.socketReader;
+    } finally {
+      this.connectionLock.unlock();
+    }
 
     try {
-      if (socket != null) {
-        socket.close();
+      if (writer != null) {
+        writer.close();
       }
-      if (socketReader != null) {
-        socketReader.close();
+      if (closedSocket != null) {
+        closedSocket.close();
       }
-      if (socketWriter != null) {
-        socketWriter.close();
+      if (reader != null) {
+        reader.close();
       }
-      isConnected = false;
       Logger.info("Socket connection closed.");
     } catch (IOException e) {
       Logger.error("Failed to close socket connection: " + e.getMessage());
     }
   }
 
+  /**
+   * Closes the connection for good, without reconnecting, because it cannot be
+   * used the way it was asked for, such as encrypted. The messages waiting to be
+   * sent after reconnecting are dropped, so none of them are sent some other
+   * way.
+   *
+   * @param reason why the connection failed.
+   */
+  protected void failConnection(String reason) {
+    Logger.error("Connection failed: " + reason);
+    this.setAutoReconnect(false);
+    this.connectionLock.lock();
+    try {
+      this.droppedMessages.addAndGet(this.messageQueue.size());
+      this.messageQueue.clear();
+    } finally {
+      this.connectionLock.unlock();
+    }
+    this.close();
+  }
+
   /**
    * Handles a message received from the client. This method is final to
    * ensure consistent handling logic across all subclasses.
@@ -464,15 +1063,14 @@ public abstract class TcpConnection {
    */
   protected final void handleMessage(Message message) {
     // Common handling logic
-    if (message.getBody().getTransmission() instanceof SuccessResponse response) {
+    if (message.getBody().getTransmission() instanceof Response response) {
 
       Transmission transmission = response.getTransmission();
 
-      if (transmission
-              instanceof ClientIdentificationTransmission clientIdentificationTransmission) {
+      if (transmission instanceof ClientIdentificationTransmission) {
 
         // Common logic for handling client identification
-        handleClientIdentification(clientIdentificationTransmission);
+        handleClientIdentification(response);
       }
     }
 
@@ -481,11 +1079,84 @@ public abstract class TcpConnection {
   }
 
   /**
-   * Processes the client identification transmission. This is shared logic
+   * Processes the response to a client identification. This is shared logic
    * that applies to all subclasses.
+   * If the server agreed on a wire protocol, messages are sent with it from now on,
+   * and if it agreed on an integrity mode, messages are checked with it. If the
+   * client asked to encrypt and the server agreed, messages are encrypted with the
+   * offered session key from now on, and if it did not, or could not identify the
+   * client, the connection fails rather than carrying on unencrypted. The
+   * messages held while waiting for the answer are sent once it is handled.
+   *
+   * @param response the response to the client identification.
+   */
+  private void handleClientIdentification(Response response) {
+    boolean failed = false;
+    this.connectionLock.lock();
+    try {
+      if (!this.awaitingIdentification) {
+        return;
+      }
+      this.awaitingIdentification = false;
+      failed = this.applyAgreedModes(response);
+    } finally {
+      this.offeredSession = null;
+      this.offeredIntegrity = null;
+      this.encryptionOffered = false;
+      this.connectionLock.unlock();
+    }
+    if (failed) {
+      this.failConnection("Server did not agree on encrypting the messages");
+    } else {
+      this.flushBufferedMessages();
+    }
+  }
+
+  /**
+   * Switches to the wire protocol, integrity mode and encryption the server
+   * agreed on in its response to the client identification. The connection lock
+   * must be held.
+   *
+   * @param response the response to the client identification.
+   * @return true if encrypting was asked for and the server did not agree.
    */
-  private void handleClientIdentification(ClientIdentificationTransmission transmission) {
-    // Perform common handling logic for client identification
+  private boolean applyAgreedModes(Response response) {
+    String responseData =
+        response instanceof SuccessResponse ? response.getResponseData() : null;
+    if (responseData == null) {
+      Logger.error("Server did not identify the client: " + response);
+      return this.encryptionOffered;
+    }
+    String[] agreed = responseData.split(Delimiters.BODY_FIELD_PARAMETERS.getValue());
+    boolean encrypted = agreed.length > 2
+        && ClientIdentificationTransmission.ENCRYPTED.equals(agreed[2]);
+    if (this.encryptionOffered && !(encrypted && this.offeredSession != null)) {
+      return true;
+    }
+    WireProtocol agreedProtocol = WireProtocol.fromString(agreed[0]);
+    if (agreedProtocol != null) {
+      Logger.info("Server agreed on wire protocol " + agreedProtocol.getValue());
+      this.setWireProtocol(agreedProtocol);
+    }
+    if (this.encryptionOffered) {
+      Logger.info("Server agreed on encrypting with the session key");
+      this.setSessionEncryptor(this.offeredSession);
+    }
+    IntegrityMode agreedMode = agreed.length > 1 ? IntegrityMode.fromString(agreed[1]) : null;
+    MessageIntegrity integrity = null;
+    if (agreedMode != null && this.offeredIntegrity != null
+        && agreedMode == this.offeredIntegrity.getMode()) {
+      // As offered, which may be keyed with a session key that is not kept
+      integrity = this.offeredIntegrity;
+    } else if (agreedMode != null) {
+      integrity = this.createIntegrity(agreedMode, this.offeredSession);
+    }
+    if (integrity != null) {
+      Logger.info("Server agreed on integrity mode " + agreedMode.getValue());
+      this.setSendIntegrity(integrity);
+      this.setReceiveIntegrity(integrity);
+    }
+    return false;
   }
 
   /**
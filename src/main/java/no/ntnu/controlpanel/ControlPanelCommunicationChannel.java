@@ -1,16 +1,28 @@
 package no.ntnu.controlpanel;
 
+import java.util.List;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArraySet;
 import no.ntnu.SocketCommunicationChannel;
 import no.ntnu.constants.Endpoints;
 import no.ntnu.intermediaryserver.clienthandler.ClientIdentification;
 import no.ntnu.messages.Message;
 import no.ntnu.messages.MessageBody;
 import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.commands.common.SensorDataAckTransmission;
+import no.ntnu.messages.commands.common.StreamIntervalTransmission;
+import no.ntnu.messages.commands.common.StreamModeTransmission;
+import no.ntnu.messages.commands.common.SubscribeTransmission;
+import no.ntnu.messages.commands.common.UnsubscribeTransmission;
 import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
+import no.ntnu.messages.commands.greenhouse.GetBlobCommand;
 import no.ntnu.messages.commands.greenhouse.GetNodeCommand;
 import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
+import no.ntnu.messages.subscriptions.StreamMode;
+import no.ntnu.messages.subscriptions.Topic;
 import no.ntnu.tools.Logger;
 
 /**
@@ -27,6 +39,10 @@ public class ControlPanelCommunicationChannel extends SocketCommunicationChannel
   private String targetId = Endpoints.BROADCAST.getValue();
   // Used to target a greenhouse node for sensor data requests
 
+  // Sent again after reconnecting, since the server forgets them on disconnect
+  private final Set<Topic> subscriptions = new CopyOnWriteArraySet<>();
+  private volatile long sensorDataIntervalMs = 0;
+  private volatile StreamMode streamMode = StreamMode.FULL;
 
   /**
    * Create a communication channel for the control panel.
@@ -102,9 +118,107 @@ public class ControlPanelCommunicationChannel extends SocketCommunicationChannel
     return this.targetId;
   }
 
+  /**
+   * Subscribe to topics. The server then delivers the sensor data and actuator
+   * changes the greenhouse nodes publish about these topics, so the panel does
+   * not have to poll for them. A panel without subscriptions receives everything
+   * the nodes publish.
+   *
+   * @param topics The topics to subscribe to
+   */
+  public void subscribe(Topic... topics) {
+    this.subscriptions.addAll(List.of(topics));
+    this.sendServerMessage(new MessageBody(new SubscribeTransmission(List.of(topics))));
+  }
+
+  /**
+   * Unsubscribe from topics.
+   *
+   * @param topics The topics to unsubscribe from
+   */
+  public void unsubscribe(Topic... topics) {
+    this.subscriptions.removeAll(List.of(topics));
+    this.sendServerMessage(new MessageBody(new UnsubscribeTransmission(List.of(topics))));
+  }
+
+  /**
+   * Limit how often the server delivers the sensor data each node streams. Useful
+   * for panels that do not need every reading, for example on a slow link.
+   *
+   * @param intervalMs The minimum time between two updates from the same node, in
+   *                   milliseconds. 0 delivers every update.
+   */
+  public void setSensorDataInterval(long intervalMs) {
+    StreamIntervalTransmission transmission = new StreamIntervalTransmission(intervalMs);
+    this.sensorDataIntervalMs = intervalMs;
+    this.sendServerMessage(new MessageBody(transmission));
+  }
+
+  /**
+   * Choose how the server delivers the sensor data the nodes stream. In
+   * {@link StreamMode#DELTA} mode only the readings that changed since the last
+   * acknowledged update are sent, with a full keyframe now and then.
+   *
+   * @param streamMode The stream mode
+   */
+  public void setStreamMode(StreamMode streamMode) {
+    StreamModeTransmission transmission = new StreamModeTransmission(streamMode);
+    this.streamMode = streamMode;
+    this.sendServerMessage(new MessageBody(transmission));
+  }
+
+  /**
+   * Acknowledge that a sensor data delta has been applied, so the server sends
+   * the next deltas of the node against it.
+   *
+   * @param nodeId   The ID of the node
+   * @param sequence The sequence number of the applied delta
+   */
+  public void acknowledgeSensorData(String nodeId, long sequence) {
+    this.sendServerMessage(new MessageBody(new SensorDataAckTransmission(nodeId, sequence)));
+  }
+
+  /**
+   * Send a message addressed to the server itself.
+   *
+   * @param body The body of the message
+   */
+  private void sendServerMessage(MessageBody body) {
+    try {
+      MessageHeader header = new MessageHeader(Endpoints.SERVER, Endpoints.NONE.getValue());
+      this.sendMessage(new Message(header, body));
+    } catch (Exception e) {
+      Logger.error("Failed to send message to server: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Identifies with the server again after reconnecting, and renews the
+   * subscriptions, sensor data interval and stream mode.
+   */
+  @Override
+  protected void doReconnectedActions() {
+    super.doReconnectedActions();
+    if (this.clientIdentification == null) {
+      // Connected while the channel is still being created, nothing to renew yet
+      return;
+    }
+    if (!this.subscriptions.isEmpty()) {
+      this.sendServerMessage(new MessageBody(new SubscribeTransmission(this.subscriptions)));
+    }
+    if (this.sensorDataIntervalMs > 0) {
+      this.sendServerMessage(
+          new MessageBody(new StreamIntervalTransmission(this.sensorDataIntervalMs)));
+    }
+    if (this.streamMode != StreamMode.FULL) {
+      this.sendServerMessage(new MessageBody(new StreamModeTransmission(this.streamMode)));
+    }
+  }
+
   /**
    * Request sensor data periodically.
-   * Schedules periodic requests for sensor data from the server.
+   * Schedules periodic requests for sensor data from the server. Only needed for
+   * nodes that do not stream their sensor data, see {@link #subscribe(Topic...)}.
    *
    * @param period The period in seconds between requests
    */
@@ -161,6 +275,36 @@ public class ControlPanelCommunicationChannel extends SocketCommunicationChannel
     }
   }
 
+  /**
+   * Fetch the payload of an image or audio reading from the node that sent it,
+   * such as the full image of a reading that only has its thumbnail.
+   *
+   * @param nodeId The ID of the node
+   * @param hash   The hash of the payload
+   * @return The payload, completed when it has been fetched
+   */
+  public CompletableFuture<byte[]> fetchBlob(String nodeId, String hash) {
+    return this.responseHandler.fetchBlob(nodeId, hash);
+  }
+
+  /**
+   * Fetch a chunk of the payload of an image or audio reading from the node that
+   * sent it.
+   *
+   * @param nodeId     The ID of the node
+   * @param hash       The hash of the payload
+   * @param chunkIndex The index of the chunk
+   */
+  public void askForBlob(String nodeId, String hash, int chunkIndex) {
+    try {
+      MessageHeader header = new MessageHeader(Endpoints.GREENHOUSE, nodeId);
+      GetBlobCommand command = new GetBlobCommand(hash, chunkIndex);
+      this.sendMessage(new Message(header, new MessageBody(command)));
+    } catch (Exception e) {
+      Logger.error("Failed to request blob: " + e.getMessage());
+    }
+  }
+
   /**
    * Close the communication channel.
    * Closes the communication channel and notifies the logic that the channel is closed.
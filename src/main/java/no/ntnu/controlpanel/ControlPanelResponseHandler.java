@@ -3,7 +3,15 @@ package no.ntnu.controlpanel;
 import static no.ntnu.tools.parsing.Parser.parseBooleanOrError;
 import static no.ntnu.tools.parsing.Parser.parseIntegerOrError;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import no.ntnu.constants.Endpoints;
 import no.ntnu.greenhouse.sensor.SensorReading;
 import no.ntnu.intermediaryserver.clienthandler.ClientIdentification;
@@ -11,15 +19,22 @@ import no.ntnu.messages.Delimiters;
 import no.ntnu.messages.MessageBody;
 import no.ntnu.messages.Transmission;
 import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
+import no.ntnu.messages.commands.greenhouse.GetBlobCommand;
 import no.ntnu.messages.commands.greenhouse.GetNodeCommand;
 import no.ntnu.messages.commands.greenhouse.GetNodeIdCommand;
 import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataDeltaCommand;
 import no.ntnu.messages.commands.greenhouse.GreenhouseCommand;
 import no.ntnu.messages.responses.FailureReason;
 import no.ntnu.messages.responses.FailureResponse;
 import no.ntnu.messages.responses.Response;
 import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.messages.subscriptions.SensorDataDelta;
 import no.ntnu.tools.Logger;
+import no.ntnu.tools.caching.BlobAssembler;
+import no.ntnu.tools.caching.BlobCache;
+import no.ntnu.tools.caching.BlobChunk;
+import no.ntnu.tools.caching.MissingBlobException;
 import no.ntnu.tools.parsing.SensorActuatorNodeInfoParser;
 import no.ntnu.tools.parsing.SensorReadingsParser;
 
@@ -29,8 +44,31 @@ import no.ntnu.tools.parsing.SensorReadingsParser;
  */
 public class ControlPanelResponseHandler {
 
+  // The total size of the image and audio payloads kept, in bytes
+  private static final long BLOB_CACHE_SIZE = 32L * 1024 * 1024;
+  // How long to wait for the next chunk of a payload before requesting it again
+  private static final long BLOB_REQUEST_TIMEOUT_MS = 5000;
+  // How many times in a row the next chunk is requested again before the fetch
+  // is given up
+  private static final int BLOB_MAX_RETRIES = 5;
+  // How many chunks of a payload are requested ahead of the ones received
+  private static final int BLOB_REQUEST_WINDOW = 4;
+  // How long a caller waits for a payload before the fetch is given up
+  private static final long BLOB_FETCH_TIMEOUT_MS = 30000;
+  // How many payloads the nodes no longer have are remembered
+  private static final int MAX_UNAVAILABLE_BLOBS = 1024;
+
   private final ControlPanelCommunicationChannel communicationChannel;
   private final ControlPanelLogic logic;
+  private final BlobCache blobs = new BlobCache(BLOB_CACHE_SIZE);
+  private final SensorReadingCache sensorReadings = new SensorReadingCache(this.blobs);
+  // The payloads being fetched, by hash
+  private final Map<String, BlobTransfer> blobTransfers = new ConcurrentHashMap<>();
+  // The callers waiting for a payload, by hash
+  private final Map<String, List<CompletableFuture<byte[]>>> blobWaiters =
+      new ConcurrentHashMap<>();
+  // The payloads the nodes no longer have, which are not requested again
+  private final Set<String> unavailableBlobs = ConcurrentHashMap.newKeySet();
 
   public ControlPanelResponseHandler(ControlPanelCommunicationChannel communicationChannel,
                                      ControlPanelLogic logic) {
@@ -71,6 +109,12 @@ public class ControlPanelResponseHandler {
    */
   private void handleGreenhouseResponse(Response response) {
 
+    if (response instanceof FailureResponse failureResponse
+        && failureResponse.getTransmission() instanceof GetBlobCommand) {
+      this.handleGetBlobFailure(failureResponse);
+      return;
+    }
+
     if (!(response instanceof SuccessResponse)) {
       Logger.info("Received non-success response, no action taken: " + response);
       return;
@@ -93,6 +137,10 @@ public class ControlPanelResponseHandler {
       this.handleGetNodeCommand(responseData);
     } else if (command instanceof GetSensorDataCommand) {
       this.handleGetSensorDataResponse(responseData);
+    } else if (command instanceof GetSensorDataDeltaCommand) {
+      this.handleGetSensorDataDeltaResponse(responseData);
+    } else if (command instanceof GetBlobCommand) {
+      this.handleGetBlobResponse(responseData);
     } else if (command instanceof ActuatorChangeCommand) {
       this.handleActuatorChangeResponse(responseData);
     } else {
@@ -133,9 +181,291 @@ public class ControlPanelResponseHandler {
     }
 
     int nodeId = parseIntegerOrError(parts[0], "Invalid node ID:" + parts[0]);
-    List<SensorReading> sensors = SensorReadingsParser.parseSensors(parts[1]);
+    Set<String> missingBlobs = new HashSet<>();
+    List<SensorReading> sensors =
+        SensorReadingsParser.parseSensors(parts[1], this.blobs, missingBlobs);
+
+    this.logic.advertiseSensorData(sensors, nodeId, 1);
+    this.requestBlobs(parts[0], missingBlobs);
+  }
+
+  /**
+   * Handles a sensor data delta streamed by the server. The delta is applied to
+   * the last known readings of the node, and acknowledged so the next delta only
+   * contains what changed after it. A delta with payloads that are not cached yet
+   * is not acknowledged, so the readings are sent again until the payloads have
+   * been fetched, or the node has answered that it no longer has them.
+   *
+   * @param responseData the response data.
+   */
+  private void handleGetSensorDataDeltaResponse(String responseData) {
+    SensorDataDelta delta = SensorDataDelta.fromString(responseData);
+    int nodeId = parseIntegerOrError(delta.getNodeId(), "Invalid node ID:" + delta.getNodeId());
+    Set<String> missingBlobs = new HashSet<>();
+    List<SensorReading> sensors = this.sensorReadings.apply(nodeId, delta, missingBlobs);
+    if (sensors == null) {
+      Logger.info("Ignoring sensor data delta without a known base: " + delta.getSequence());
+      return;
+    }
 
     this.logic.advertiseSensorData(sensors, nodeId, 1);
+    missingBlobs.removeAll(this.unavailableBlobs);
+    if (missingBlobs.isEmpty()) {
+      this.communicationChannel.acknowledgeSensorData(delta.getNodeId(), delta.getSequence());
+    } else {
+      this.requestBlobs(delta.getNodeId(), missingBlobs);
+    }
+  }
+
+  /**
+   * Requests the image and audio payloads that are not cached from the node that
+   * referred to them, unless they are already being fetched or the node no
+   * longer has them.
+   *
+   * @param nodeId       the ID of the node.
+   * @param missingBlobs the hashes of the payloads.
+   */
+  private void requestBlobs(String nodeId, Set<String> missingBlobs) {
+    for (String hash : missingBlobs) {
+      if (this.unavailableBlobs.contains(hash)) {
+        continue;
+      }
+      BlobTransfer transfer = new BlobTransfer(nodeId, hash, System.currentTimeMillis());
+      if (this.blobTransfers.putIfAbsent(hash, transfer) == null) {
+        this.communicationChannel.askForBlob(nodeId, hash, 0);
+        this.scheduleChunkCheck(transfer, BLOB_REQUEST_TIMEOUT_MS);
+      }
+    }
+  }
+
+  /**
+   * Requests the chunks of a payload that fit in the window after the next
+   * chunk expected, and have not been requested yet.
+   *
+   * @param transfer the fetch, locked by the caller.
+   */
+  private void requestChunkWindow(BlobTransfer transfer) {
+    BlobAssembler assembler = transfer.assembler;
+    // Until the first chunk tells the count, only it is requested
+    int last = assembler.getCount() == -1 ? assembler.getNextIndex()
+        : Math.min(assembler.getCount() - 1,
+            assembler.getNextIndex() + BLOB_REQUEST_WINDOW - 1);
+    for (int index = transfer.requestedUpTo + 1; index <= last; index++) {
+      this.communicationChannel.askForBlob(transfer.nodeId, assembler.getHash(), index);
+    }
+    transfer.requestedUpTo = Math.max(transfer.requestedUpTo, last);
+  }
+
+  /**
+   * Requests the window of chunks again, starting at the next chunk expected,
+   * since it or a chunk after it was lost.
+   *
+   * @param transfer the fetch, locked by the caller.
+   */
+  private void requestChunksAgain(BlobTransfer transfer) {
+    transfer.resentFrom = transfer.assembler.getNextIndex();
+    transfer.requestedUpTo = transfer.resentFrom - 1;
+    this.requestChunkWindow(transfer);
+  }
+
+  /**
+   * Checks a fetch for a lost chunk after a delay.
+   *
+   * @param transfer the fetch.
+   * @param delayMs  the delay, in milliseconds.
+   */
+  private void scheduleChunkCheck(BlobTransfer transfer, long delayMs) {
+    CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS)
+        .execute(() -> this.checkChunkTimeout(transfer));
+  }
+
+  /**
+   * Requests the next chunk of a payload again if none has arrived for a while,
+   * and gives the fetch up after a few tries. Stops checking once the fetch is
+   * done.
+   *
+   * @param transfer the fetch.
+   */
+  private void checkChunkTimeout(BlobTransfer transfer) {
+    String hash = transfer.assembler.getHash();
+    if (this.blobTransfers.get(hash) != transfer) {
+      return;
+    }
+    synchronized (transfer) {
+      long waited = System.currentTimeMillis() - transfer.lastActivity;
+      if (waited < BLOB_REQUEST_TIMEOUT_MS) {
+        this.scheduleChunkCheck(transfer, BLOB_REQUEST_TIMEOUT_MS - waited);
+        return;
+      }
+      if (transfer.retries < BLOB_MAX_RETRIES) {
+        Logger.warn("Timed out waiting for blob chunk " + transfer.assembler.getNextIndex()
+            + ", requesting it again: " + hash);
+        transfer.retries++;
+        transfer.lastActivity = System.currentTimeMillis();
+        this.requestChunksAgain(transfer);
+        this.scheduleChunkCheck(transfer, BLOB_REQUEST_TIMEOUT_MS);
+        return;
+      }
+    }
+    Logger.warn("Gave up fetching blob: " + hash);
+    this.blobTransfers.remove(hash, transfer);
+    this.completeBlobWaiters(hash, null, new TimeoutException("Timed out fetching blob: "
+        + hash));
+  }
+
+  /**
+   * Fetches an image or audio payload from a node, such as a full image of which
+   * only the thumbnail has been fetched.
+   *
+   * @param nodeId the ID of the node.
+   * @param hash   the hash of the payload.
+   * @return the payload, completed when it has been fetched, or exceptionally
+   *         if it did not match its hash, the node does not have it, or it was
+   *         not fetched in time.
+   */
+  public CompletableFuture<byte[]> fetchBlob(String nodeId, String hash) {
+    byte[] blob = this.blobs.get(hash);
+    if (blob != null) {
+      return CompletableFuture.completedFuture(blob);
+    }
+    if (this.unavailableBlobs.contains(hash)) {
+      return CompletableFuture.failedFuture(new MissingBlobException(hash));
+    }
+    CompletableFuture<byte[]> future = new CompletableFuture<>();
+    future.orTimeout(BLOB_FETCH_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+        .whenComplete((result, failure) -> {
+          if (failure instanceof TimeoutException) {
+            this.abandonBlobWaiter(hash, future);
+          }
+        });
+    this.blobWaiters.computeIfAbsent(hash, key -> new CopyOnWriteArrayList<>()).add(future);
+    // Checked again, the payload may have arrived before the caller was added
+    blob = this.blobs.get(hash);
+    if (blob != null) {
+      this.completeBlobWaiters(hash, blob, null);
+    } else {
+      this.requestBlobs(nodeId, Set.of(hash));
+    }
+    return future;
+  }
+
+  /**
+   * Removes a caller that gave up waiting for a payload. The fetch is stopped
+   * once no one is waiting for it, so it is started over on the next request.
+   *
+   * @param hash   the hash of the payload.
+   * @param waiter the caller that gave up.
+   */
+  private void abandonBlobWaiter(String hash, CompletableFuture<byte[]> waiter) {
+    Logger.warn("Timed out fetching blob: " + hash);
+    this.blobWaiters.computeIfPresent(hash, (key, waiters) -> {
+      waiters.remove(waiter);
+      return waiters.isEmpty() ? null : waiters;
+    });
+    if (!this.blobWaiters.containsKey(hash)) {
+      this.blobTransfers.remove(hash);
+    }
+  }
+
+  /**
+   * Handles a node answering that it does not have a payload, because it has
+   * been evicted from its cache since the reading referring to it was sent. The
+   * fetch is stopped, the callers waiting for it fail, and the payload is not
+   * requested again.
+   *
+   * @param response the failure response.
+   */
+  private void handleGetBlobFailure(FailureResponse response) {
+    String hash = response.getDetail();
+    if (response.getFailureReason() != FailureReason.BLOB_NOT_FOUND || hash == null) {
+      Logger.error("Failed to fetch blob: " + response);
+      return;
+    }
+    Logger.warn("Blob is no longer available: " + hash);
+    if (this.unavailableBlobs.size() >= MAX_UNAVAILABLE_BLOBS) {
+      this.unavailableBlobs.clear();
+    }
+    this.unavailableBlobs.add(hash);
+    this.blobTransfers.remove(hash);
+    this.completeBlobWaiters(hash, null, new MissingBlobException(hash));
+  }
+
+  /**
+   * Completes the callers waiting for a payload.
+   *
+   * @param hash    the hash of the payload.
+   * @param blob    the payload, or null if it could not be fetched.
+   * @param failure why the payload could not be fetched, or null if it was.
+   */
+  private void completeBlobWaiters(String hash, byte[] blob, Exception failure) {
+    List<CompletableFuture<byte[]>> waiters = this.blobWaiters.remove(hash);
+    if (waiters == null) {
+      return;
+    }
+    for (CompletableFuture<byte[]> waiter : waiters) {
+      if (failure == null) {
+        waiter.complete(blob);
+      } else {
+        waiter.completeExceptionally(failure);
+      }
+    }
+  }
+
+  /**
+   * Handles a chunk of a payload, fetched with a get blob command. The chunks
+   * are requested a few at a time, so messages to and from the node can pass
+   * between them, and the next chunk is requested as each one arrives. A chunk
+   * arriving ahead of the next one expected means that one was lost, so the
+   * window is requested again from it. The payload is cached once it is
+   * complete and matches its hash, and the readings referring to it are shown
+   * with the next update.
+   *
+   * @param responseData the response data.
+   */
+  private void handleGetBlobResponse(String responseData) {
+    BlobChunk chunk;
+    try {
+      chunk = BlobChunk.fromString(responseData);
+    } catch (IllegalArgumentException e) {
+      Logger.error(e.getMessage());
+      return;
+    }
+    BlobTransfer transfer = this.blobTransfers.get(chunk.getHash());
+    if (transfer == null) {
+      return;
+    }
+
+    try {
+      synchronized (transfer) {
+        int nextIndex = transfer.assembler.getNextIndex();
+        if (!transfer.assembler.append(chunk)) {
+          // Asked again once per lost chunk, not for every chunk after it
+          if (chunk.getIndex() > nextIndex && transfer.resentFrom != nextIndex) {
+            Logger.warn("Blob chunk " + nextIndex + " was lost, requesting it again: "
+                + chunk.getHash());
+            this.requestChunksAgain(transfer);
+          }
+          return;
+        }
+        transfer.lastActivity = System.currentTimeMillis();
+        transfer.retries = 0;
+        if (!transfer.assembler.isComplete()) {
+          this.requestChunkWindow(transfer);
+          return;
+        }
+      }
+
+      this.blobTransfers.remove(chunk.getHash(), transfer);
+      byte[] blob = transfer.assembler.getBlob();
+      if (!this.blobs.put(chunk.getHash(), blob)) {
+        Logger.warn("Blob is too large to cache: " + chunk.getHash());
+      }
+      this.completeBlobWaiters(chunk.getHash(), blob, null);
+    } catch (IllegalArgumentException e) {
+      this.blobTransfers.remove(chunk.getHash(), transfer);
+      Logger.error("Failed to fetch blob: " + e.getMessage());
+      this.completeBlobWaiters(chunk.getHash(), null, e);
+    }
   }
 
   /**
@@ -237,4 +567,26 @@ public class ControlPanelResponseHandler {
 
     return (GreenhouseCommand) command;
   }
+
+  /**
+   * A payload being fetched from a node, chunk by chunk.
+   */
+  private static final class BlobTransfer {
+    private final String nodeId;
+    private final BlobAssembler assembler;
+    // When a chunk last arrived, or the chunks were last requested again
+    private long lastActivity;
+    // The highest chunk index requested, chunk 0 when the fetch starts
+    private int requestedUpTo = 0;
+    // The chunk the window was last requested again from
+    private int resentFrom = -1;
+    // How many times in a row the chunks were requested again after a timeout
+    private int retries = 0;
+
+    private BlobTransfer(String nodeId, String hash, long started) {
+      this.nodeId = nodeId;
+      this.assembler = new BlobAssembler(hash);
+      this.lastActivity = started;
+    }
+  }
 }
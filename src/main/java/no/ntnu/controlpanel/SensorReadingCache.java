@@ -0,0 +1,93 @@
+package no.ntnu.controlpanel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import no.ntnu.greenhouse.sensor.SensorReading;
+import no.ntnu.messages.subscriptions.SensorDataDelta;
+import no.ntnu.tools.Logger;
+import no.ntnu.tools.caching.BlobCache;
+import no.ntnu.tools.caching.MissingBlobException;
+import no.ntnu.tools.parsing.SensorReadingsParser;
+
+/**
+ * The last known sensor readings of each node, kept up to date from the sensor
+ * data deltas the server streams. Only the changed readings of a delta are
+ * parsed, and image and audio payloads are resolved from a blob cache.
+ */
+public class SensorReadingCache {
+
+  private final Map<Integer, NodeReadings> nodes = new HashMap<>();
+  private final BlobCache blobs;
+
+  /**
+   * Creates an empty reading cache.
+   *
+   * @param blobs The cached image and audio payloads
+   */
+  public SensorReadingCache(BlobCache blobs) {
+    this.blobs = blobs;
+  }
+
+  /**
+   * Applies a delta to the readings of a node. A reading whose payload is not
+   * cached keeps its previous value, and the hash of the payload is added to the
+   * missing blobs.
+   *
+   * @param nodeId       The ID of the node
+   * @param delta        The delta or keyframe
+   * @param missingBlobs The set the hashes of payloads that are not cached are
+   *                     added to
+   * @return All readings of the node after applying the delta, or null if the
+   *         delta could not be applied, because no keyframe of the node has been
+   *         received yet or the delta is older than the readings
+   */
+  public synchronized List<SensorReading> apply(int nodeId, SensorDataDelta delta,
+                                                Set<String> missingBlobs) {
+    NodeReadings current = this.nodes.get(nodeId);
+    if (!delta.isKeyframe()
+        && (current == null || delta.getSequence() <= current.sequence)) {
+      return null;
+    }
+
+    SensorReading[] readings = new SensorReading[delta.getReadingCount()];
+    if (current != null) {
+      readings = Arrays.copyOf(current.readings, delta.getReadingCount());
+    }
+    for (Map.Entry<Integer, String> reading : delta.getReadings().entrySet()) {
+      try {
+        readings[reading.getKey()] =
+            SensorReadingsParser.parseReading(reading.getValue(), this.blobs);
+      } catch (MissingBlobException e) {
+        missingBlobs.add(e.getHash());
+      } catch (IllegalArgumentException e) {
+        Logger.error("Failed to parse sensor reading: " + e.getMessage());
+      }
+    }
+    this.nodes.put(nodeId, new NodeReadings(delta.getSequence(), readings));
+
+    List<SensorReading> result = new ArrayList<>(readings.length);
+    for (SensorReading reading : readings) {
+      if (reading != null) {
+        result.add(reading);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The readings of a node, and the snapshot they are from.
+   */
+  private static final class NodeReadings {
+    private final long sequence;
+    private final SensorReading[] readings;
+
+    private NodeReadings(long sequence, SensorReading[] readings) {
+      this.sequence = sequence;
+      this.readings = readings;
+    }
+  }
+}
@@ -1,15 +1,19 @@
 package no.ntnu.greenhouse;
 
+import java.util.List;
 import no.ntnu.SocketCommunicationChannel;
 import no.ntnu.constants.Endpoints;
 import no.ntnu.greenhouse.actuator.Actuator;
+import no.ntnu.greenhouse.sensor.Sensor;
 import no.ntnu.intermediaryserver.clienthandler.ClientIdentification;
 import no.ntnu.listeners.common.ActuatorListener;
+import no.ntnu.listeners.greenhouse.SensorListener;
 import no.ntnu.messages.Message;
 import no.ntnu.messages.MessageBody;
 import no.ntnu.messages.MessageHeader;
 import no.ntnu.messages.Transmission;
 import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
 import no.ntnu.messages.commands.greenhouse.GreenhouseCommand;
 import no.ntnu.messages.responses.FailureResponse;
 import no.ntnu.messages.responses.SuccessResponse;
@@ -17,10 +21,13 @@ import no.ntnu.tools.Logger;
 
 /**
  * Handles the connection to the server for a node.
+ * New sensor readings and actuator changes are pushed to the control panels as
+ * they happen, and the server delivers them to the panels subscribed to them.
  */
 public class NodeConnectionHandler extends SocketCommunicationChannel
-    implements Runnable, ActuatorListener {
+    implements Runnable, ActuatorListener, SensorListener {
   private final NodeLogic nodeLogic;
+  private volatile boolean streamingSensorData = true;
 
   /**
    * Create a new connection handler for a node.
@@ -33,6 +40,7 @@ public class NodeConnectionHandler extends SocketCommunicationChannel
     super(host, port);
     this.nodeLogic = new NodeLogic(node);
     this.nodeLogic.addActuatorListener(this);
+    node.addSensorListener(this);
   }
 
   /**
@@ -65,6 +73,43 @@ public class NodeConnectionHandler extends SocketCommunicationChannel
     this.sendMessage(message);
   }
 
+  /**
+   * Set whether new sensor readings are streamed to the control panels as soon as
+   * they are generated. When off, the panels have to ask for sensor data with
+   * {@code GET_SENSOR_DATA}, which the node answers either way.
+   *
+   * @param streamingSensorData true to stream sensor data, false to only answer
+   *                            requests
+   */
+  public void setStreamingSensorData(boolean streamingSensorData) {
+    this.streamingSensorData = streamingSensorData;
+  }
+
+  /**
+   * Returns whether new sensor readings are streamed to the control panels.
+   *
+   * @return true if sensor data is streamed, false otherwise
+   */
+  public boolean isStreamingSensorData() {
+    return this.streamingSensorData;
+  }
+
+  /**
+   * Publish the current sensor readings of the node to the control panels.
+   * Readings are only published while connected, since they are stale by the
+   * time a reconnection succeeds.
+   */
+  public void publishSensorData() {
+    if (!this.isConnected() || this.isReconnecting()) {
+      return;
+    }
+    MessageHeader header =
+        new MessageHeader(Endpoints.CONTROL_PANEL, Endpoints.BROADCAST.getValue());
+    SuccessResponse response =
+        new SuccessResponse(new GetSensorDataCommand(), this.nodeLogic.getSensorData());
+    this.sendMessage(new Message(header, new MessageBody(response)));
+  }
+
   /**
    * Handle a message received from the server.
    *
@@ -142,4 +187,16 @@ public class NodeConnectionHandler extends SocketCommunicationChannel
   public void actuatorUpdated(int nodeId, Actuator actuator) {
     sendActuatorChange(actuator.getId(), actuator.isOn());
   }
+
+  /**
+   * Publish the new sensor readings, if streaming is on and the node has sensors.
+   *
+   * @param sensors The sensors having new readings.
+   */
+  @Override
+  public void sensorsUpdated(List<Sensor> sensors) {
+    if (this.streamingSensorData && !sensors.isEmpty()) {
+      this.publishSensorData();
+    }
+  }
 }
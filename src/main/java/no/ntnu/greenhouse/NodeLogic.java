@@ -2,18 +2,26 @@ package no.ntnu.greenhouse;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 import no.ntnu.greenhouse.actuator.Actuator;
+import no.ntnu.greenhouse.sensor.BlobSensorReading;
 import no.ntnu.greenhouse.sensor.Sensor;
 import no.ntnu.greenhouse.sensor.SensorReading;
 import no.ntnu.listeners.common.ActuatorListener;
 import no.ntnu.messages.Delimiters;
+import no.ntnu.tools.caching.BlobCache;
+import no.ntnu.tools.caching.BlobReferences;
 
 /**
  * The logic of a node in the greenhouse.
  */
 public class NodeLogic implements ActuatorListener {
+  // The total size of the image and audio payloads kept for fetching, in bytes
+  private static final long BLOB_CACHE_SIZE = 16L * 1024 * 1024;
+
   private final SensorActuatorNode node;
   private final List<ActuatorListener> actuatorListeners;
+  private final BlobCache blobs = new BlobCache(BLOB_CACHE_SIZE);
 
   /**
    * Create new node logic and adds listener to the node.
@@ -58,7 +66,7 @@ public class NodeLogic implements ActuatorListener {
       try {
         SensorReading reading = sensor.getReading();
         String sensorType = sensor.getDataFormat();
-        String formattedSensorReading = reading.getFormatted();
+        String formattedSensorReading = this.formatReading(reading);
         sensorData +=
             sensorType + ":" + formattedSensorReading + Delimiters.BODY_SENSOR_SEPARATOR.getValue();
       } catch (IllegalStateException e) {
@@ -71,6 +79,63 @@ public class NodeLogic implements ActuatorListener {
     return sensorData;
   }
 
+  /**
+   * Formats a sensor reading. Image and audio readings refer to their payload by
+   * hash, and the payload is kept so it can be fetched with {@link #getBlob(String)}.
+   * Images also refer to their thumbnail, which receivers fetch first. A payload
+   * that cannot be kept, for example because it is larger than the cache, is sent
+   * inline instead.
+   *
+   * @param reading The sensor reading.
+   * @return The formatted reading.
+   */
+  private String formatReading(SensorReading reading) {
+    if (!(reading instanceof BlobSensorReading blobReading)) {
+      return reading.getFormatted();
+    }
+    String hash = blobReading.getPayloadHash();
+    if (!this.keepBlob(hash, blobReading::getPayloadBytes)) {
+      return reading.getFormatted();
+    }
+    String reference = BlobReferences.toReference(hash);
+    String previewHash = blobReading.getPreviewHash();
+    if (previewHash != null && this.keepBlob(previewHash, blobReading::getPreviewBytes)) {
+      reference = BlobReferences.toReference(previewHash, hash);
+    }
+    return reading.getType().getType() + Delimiters.BODY_FIELD_PARAMETERS.getValue()
+        + reference + Delimiters.BODY_FIELD_PARAMETERS.getValue()
+        + blobReading.getFileExtension();
+  }
+
+  /**
+   * Keeps a payload so it can be fetched, unless it is kept already.
+   *
+   * @param hash    The hash of the payload.
+   * @param payload Reads the payload, which returns null if it could not be read.
+   * @return true if the payload is kept, false if it could not be read or is
+   *         too large to keep.
+   */
+  private boolean keepBlob(String hash, Supplier<byte[]> payload) {
+    // Looked up rather than checked, so the blobs still in use stay recently used
+    if (this.blobs.get(hash) != null) {
+      return true;
+    }
+    byte[] bytes = payload.get();
+    // A payload that is not kept could not be fetched, so it is sent inline
+    return bytes != null && this.blobs.put(hash, bytes);
+  }
+
+  /**
+   * Returns the payload of an image or audio reading the node has sent.
+   *
+   * @param hash The hash of the payload.
+   * @return The payload, shared and not to be modified, or null if the node no
+   *         longer has it.
+   */
+  public byte[] getBlob(String hash) {
+    return this.blobs.get(hash);
+  }
+
   /**
    * Add an actuator listener.
    *
@@ -2,19 +2,38 @@ package no.ntnu.greenhouse.sensor;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Random;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
 import no.ntnu.messages.Delimiters;
 import no.ntnu.tools.Logger;
+import no.ntnu.tools.caching.BlobReferences;
+import no.ntnu.tools.caching.SpillCache;
 import no.ntnu.tools.stringification.Base64AudioEncoder;
 
 /**
  * An audio sensor reading which represents the current state of an audio
  * sensor.
+ *
+ * <p>The audio is either a file, as on the nodes, or kept in memory, as on the
+ * control panels receiving it. Audio received as Base64 is only decoded when it
+ * is first used. Audio kept in memory is only written to a file if a file is
+ * asked for and a spill cache has been set with {@link #setSpillCache(SpillCache)}.
  */
-public class AudioSensorReading extends SensorReading {
+public class AudioSensorReading extends SensorReading implements BlobSensorReading {
 
-  private File audioFile;
+  // Where audio kept in memory is written when a file is needed, if anywhere
+  private static volatile SpillCache spillCache;
+
+  private volatile File audioFile;
   private String fileExtension;
+  // The catalog file the audio file was picked from, which keeps its encoding
+  private volatile MediaCatalog.MediaFile media;
+  // The audio kept in memory, decoded from the Base64 encoding on first use
+  private volatile byte[] audioBytes;
+  private volatile String encodedAudio;
+  private volatile String payloadHash;
 
   /**
    * Create an audio sensor reading.
@@ -38,43 +57,161 @@ public class AudioSensorReading extends SensorReading {
   }
 
   /**
-   * Get the audio file.
+   * Create an audio sensor reading kept in memory.
+   *
+   * @param type       The type of the sensor.
+   * @param audioBytes The contents of the audio file, which must not be modified
+   *                   after this
+   * @param hash       The hash of the Base64 encoded audio, or null if unknown
+   */
+  public AudioSensorReading(SensorType type, byte[] audioBytes, String hash) {
+    super(type);
+    if (audioBytes == null) {
+      throw new IllegalArgumentException("Audio cannot be null");
+    }
+    this.audioBytes = audioBytes;
+    this.payloadHash = hash;
+  }
+
+  /**
+   * Create an audio sensor reading kept in memory, from Base64 encoded audio. The
+   * audio is decoded when it is first used.
+   *
+   * @param type         The type of the sensor.
+   * @param base64String The Base64 encoded contents of the audio file
+   * @return The audio sensor reading
+   */
+  public static AudioSensorReading fromBase64(SensorType type, String base64String) {
+    if (base64String == null) {
+      throw new IllegalArgumentException("Audio cannot be null");
+    }
+    AudioSensorReading reading = new AudioSensorReading(type);
+    reading.encodedAudio = base64String;
+    return reading;
+  }
+
+  /**
+   * Sets where audio kept in memory is written when a file is asked for, see
+   * {@link #getAudioFile()}.
    *
-   * @return The audio file
+   * @param cache The spill cache, or null to never write audio kept in memory
+   */
+  public static void setSpillCache(SpillCache cache) {
+    spillCache = cache;
+  }
+
+  /**
+   * Get the audio file. Audio kept in memory is written to the spill cache, if
+   * one is set.
+   *
+   * @return The audio file, or null if there is none
    */
   public File getAudioFile() {
-    return audioFile;
+    File file = this.audioFile;
+    SpillCache cache = spillCache;
+    if (file != null || cache == null) {
+      return file;
+    }
+    byte[] bytes = this.getAudioBytes();
+    if (bytes == null) {
+      return null;
+    }
+    try {
+      return cache.getFile(this.getPayloadHash(), bytes);
+    } catch (IOException e) {
+      Logger.error("Failed to write audio to a file: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Get the contents of the audio file, decoding audio kept in memory on first
+   * use.
+   *
+   * @return The contents of the audio file, which must not be modified, or null
+   *         if there is no audio or it could not be read
+   */
+  public byte[] getAudioBytes() {
+    // Read in this order, the encoding is only cleared after the bytes are set
+    String encoded = this.encodedAudio;
+    byte[] bytes = this.audioBytes;
+    if (bytes != null) {
+      return bytes;
+    }
+    if (encoded != null) {
+      try {
+        bytes = Base64.getDecoder().decode(encoded);
+      } catch (IllegalArgumentException e) {
+        Logger.error("Failed to decode audio: " + e.getMessage());
+        return null;
+      }
+      this.audioBytes = bytes;
+      this.encodedAudio = null;
+      return bytes;
+    }
+    File file = this.audioFile;
+    if (file == null) {
+      return null;
+    }
+    try {
+      return Files.readAllBytes(file.toPath());
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if the reading has audio, either as a file or in memory.
+   *
+   * @return true if there is audio to play
+   */
+  public boolean hasAudio() {
+    File file = this.audioFile;
+    return file != null ? file.exists() : this.encodedAudio != null || this.audioBytes != null;
+  }
+
+  /**
+   * Get the file extension of the audio file.
+   *
+   * @return The file extension of the audio file
+   */
+  @Override
+  public String getFileExtension() {
+    return fileExtension;
   }
 
   /**
    * Generate a random audio file from the given file path.
-   * File format must be .wav
+   * File format must be .wav. The files of the path are listed and read once, and
+   * shared by all readings, see {@link MediaCatalog}.
    *
    * @param audioFilePath The file path to search for audio files
    */
   public void generateRandomAudio(String audioFilePath) {
-    File chosenFile = null;
-
-    try {
-      File dir = new File(audioFilePath);
-      File[] files = dir.listFiles((d, name) -> name.endsWith(".wav"));
-      if (files != null && files.length > 0) {
-        int randomIndex = new Random().nextInt(files.length);
-        chosenFile = files[randomIndex];
-
-        // Extract file extension for the chosen file
-        this.fileExtension =
-            chosenFile.getName().substring(chosenFile.getName().lastIndexOf(".") + 1);
-      } else {
-        Logger.info("No audio files found in the specified directory.");
-      }
-    } catch (Exception e) {
-      Logger.error("An error occurred while loading the audio file.");
-      e.printStackTrace();
+    MediaCatalog.MediaFile chosenFile = MediaCatalog.forDirectory(audioFilePath, ".wav")
+        .pickRandom();
+    if (chosenFile != null) {
+      // Extract file extension for the chosen file
+      this.fileExtension =
+          chosenFile.getName().substring(chosenFile.getName().lastIndexOf(".") + 1);
+      this.media = chosenFile;
+      this.audioFile = chosenFile.getFile();
+      this.clearAudioInMemory();
+    } else {
+      Logger.info("No audio files found in the specified directory.");
+      this.media = null;
+      this.audioFile = null;
+      this.clearAudioInMemory();
     }
+  }
 
-    // Update current audio file if an audio file was successfully loaded
-    this.audioFile = chosenFile;
+  /**
+   * Forgets the audio kept in memory, when the reading switches to a file.
+   */
+  private void clearAudioInMemory() {
+    this.audioBytes = null;
+    this.encodedAudio = null;
+    this.payloadHash = null;
   }
 
   /**
@@ -95,8 +232,16 @@ public class AudioSensorReading extends SensorReading {
    * @return A Base64 encoded string representing the audio file
    */
   public String getAudioFormatted() {
+    MediaCatalog.MediaFile picked = this.media;
+    File file = this.audioFile;
     try {
-      return Base64AudioEncoder.audioToString(this.audioFile);
+      if (file == null) {
+        return this.getAudioInMemoryFormatted();
+      }
+      if (picked != null && picked.getFile().equals(file)) {
+        return picked.getBase64();
+      }
+      return Base64AudioEncoder.audioToString(file);
     } catch (IOException e) {
       return "Error encoding audio";
     } catch (IllegalArgumentException e) {
@@ -104,6 +249,71 @@ public class AudioSensorReading extends SensorReading {
     }
   }
 
+  /**
+   * Get the audio kept in memory as a Base64 encoded string.
+   *
+   * @return A Base64 encoded string representing the audio
+   * @throws IllegalArgumentException If no audio is kept in memory
+   */
+  private String getAudioInMemoryFormatted() {
+    String encoded = this.encodedAudio;
+    if (encoded != null) {
+      return encoded;
+    }
+    byte[] bytes = this.audioBytes;
+    if (bytes == null) {
+      throw new IllegalArgumentException("No audio");
+    }
+    return Base64.getEncoder().encodeToString(bytes);
+  }
+
+  /**
+   * Get the audio file as a Base64 encoded string.
+   *
+   * @return A Base64 encoded string representing the audio file
+   */
+  @Override
+  public String getPayload() {
+    return this.getAudioFormatted();
+  }
+
+  /**
+   * Get the contents of the audio file.
+   *
+   * @return The contents of the audio file, or null if it could not be read
+   */
+  @Override
+  public byte[] getPayloadBytes() {
+    return this.getAudioBytes();
+  }
+
+  /**
+   * Get the hash of the Base64 encoded audio file.
+   *
+   * @return The hash of the payload
+   */
+  @Override
+  public String getPayloadHash() {
+    String hash = this.payloadHash;
+    if (hash != null) {
+      return hash;
+    }
+    MediaCatalog.MediaFile picked = this.media;
+    if (picked != null && picked.getFile().equals(this.audioFile)) {
+      try {
+        return picked.getBase64Hash();
+      } catch (IOException e) {
+        // Hashed below, like the payload that is sent instead
+      }
+    }
+    hash = BlobReferences.hashOf(this.getPayload());
+    if (this.audioFile == null) {
+      // Audio kept in memory never changes, so its hash is kept with it
+      this.payloadHash = hash;
+    }
+    return hash;
+  }
+
   /**
    * Indicates whether some other object is "equal to" this one.
    *
@@ -120,6 +330,9 @@ public class AudioSensorReading extends SensorReading {
       return false;
     }
     AudioSensorReading that = (AudioSensorReading) o;
-    return audioFile.equals(that.audioFile);
+    if (this.audioFile != null || that.audioFile != null) {
+      return Objects.equals(this.audioFile, that.audioFile);
+    }
+    return Arrays.equals(this.getAudioBytes(), that.getAudioBytes());
   }
 }
\ No newline at end of file
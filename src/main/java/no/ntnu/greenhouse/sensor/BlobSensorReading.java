@@ -0,0 +1,59 @@
+package no.ntnu.greenhouse.sensor;
+
+import no.ntnu.tools.caching.BlobReferences;
+
+/**
+ * A sensor reading whose value is a binary payload, such as an image or audio
+ * clip. Nodes send a reference to the payload instead of the payload itself, and
+ * receivers fetch the payload only if they do not already have it.
+ */
+public interface BlobSensorReading {
+
+  /**
+   * Gets the payload of the reading.
+   *
+   * @return The Base64 encoded payload
+   */
+  String getPayload();
+
+  /**
+   * Gets the payload of the reading, decoded.
+   *
+   * @return The payload, which must not be modified, or null if it could not be
+   *         read
+   */
+  byte[] getPayloadBytes();
+
+  /**
+   * Gets the hash of the payload, see {@link BlobReferences#hashOf(String)}.
+   *
+   * @return The hash of the payload
+   */
+  String getPayloadHash();
+
+  /**
+   * Gets a smaller version of the payload, such as a thumbnail of an image, which
+   * receivers fetch in place of the payload until they need the full one.
+   *
+   * @return The preview, which must not be modified, or null if there is none
+   */
+  default byte[] getPreviewBytes() {
+    return null;
+  }
+
+  /**
+   * Gets the hash of the Base64 encoded preview, see {@link #getPreviewBytes()}.
+   *
+   * @return The hash of the preview, or null if there is none
+   */
+  default String getPreviewHash() {
+    return null;
+  }
+
+  /**
+   * Gets the file extension of the payload.
+   *
+   * @return The file extension
+   */
+  String getFileExtension();
+}
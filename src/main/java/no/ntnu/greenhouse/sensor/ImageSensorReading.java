@@ -1,21 +1,63 @@
 package no.ntnu.greenhouse.sensor;
 
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
-import java.util.Random;
-import javax.imageio.ImageIO;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
 import no.ntnu.messages.Delimiters;
 import no.ntnu.tools.Logger;
+import no.ntnu.tools.caching.BlobReferences;
 import no.ntnu.tools.stringification.Base64ImageEncoder;
 
 /**
  * Represents a sensor reading that contains an image.
+ *
+ * <p>The image is either decoded, as on the nodes, or kept compressed, as on the
+ * control panels receiving it. A compressed image is only decoded when it is
+ * first shown, and the decoded images of the last {@value #DECODED_CACHE_SIZE}
+ * payloads are shared by all readings, so readings that are never shown cost no
+ * decoding, and a repeated image is decoded once.
  */
-public class ImageSensorReading extends SensorReading {
+public class ImageSensorReading extends SensorReading implements BlobSensorReading {
 
-  private BufferedImage currentImage;
+  /**
+   * The width of the thumbnails sent in place of larger images.
+   */
+  public static final int PREVIEW_WIDTH = 100;
+
+  // The number of decoded images kept for compressed readings
+  private static final int DECODED_CACHE_SIZE = 32;
+
+  // The encodings of the images in use, by image instance, which BufferedImage compares by
+  private static final Map<BufferedImage, EncodedImage> ENCODINGS =
+      Collections.synchronizedMap(new WeakHashMap<>());
+  // The decoded images of compressed readings, by payload hash, the least recently used first
+  private static final Map<String, BufferedImage> DECODED = Collections.synchronizedMap(
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+          return this.size() > DECODED_CACHE_SIZE;
+        }
+      });
+
+  private volatile BufferedImage currentImage;
   private String fileExtension;
+  // The encoding of the current image, only valid while it is still the current one
+  private volatile EncodedImage encodedImage;
+  // The compressed image, decoded from the Base64 encoding on first use
+  private volatile byte[] compressedImage;
+  private volatile String base64Image;
+  private volatile String payloadHash;
+  // The hash of the full image, if the compressed image is only its thumbnail
+  private volatile String fullImageHash;
 
   /**
    * Create an image sensor reading with no initial image.
@@ -41,7 +83,43 @@ public class ImageSensorReading extends SensorReading {
   }
 
   /**
-   * Generate a random image from the given file path.
+   * Create an image sensor reading with a compressed image, which is decoded
+   * when it is first used.
+   *
+   * @param type       The type of sensor being read
+   * @param imageBytes The compressed image, such as a PNG file, which must not be
+   *                   modified after this
+   * @param hash       The hash of the Base64 encoded image, or null if unknown
+   */
+  public ImageSensorReading(SensorType type, byte[] imageBytes, String hash) {
+    super(type);
+    if (imageBytes == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    this.compressedImage = imageBytes;
+    this.payloadHash = hash;
+  }
+
+  /**
+   * Create an image sensor reading with a Base64 encoded compressed image. The
+   * image is decoded when it is first used.
+   *
+   * @param type         The type of sensor being read
+   * @param base64String The Base64 encoded image
+   * @return The image sensor reading
+   */
+  public static ImageSensorReading fromBase64(SensorType type, String base64String) {
+    if (base64String == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    ImageSensorReading reading = new ImageSensorReading(type);
+    reading.base64Image = base64String;
+    return reading;
+  }
+
+  /**
+   * Generate a random image from the given file path. The images of the path are
+   * listed and decoded once, and shared by all readings, see {@link MediaCatalog}.
    *
    * @param imagesFilePath The file path to search for images
    */
@@ -51,16 +129,10 @@ public class ImageSensorReading extends SensorReading {
     BufferedImage gottenImage = null;
 
     try {
-      File dir = new File(imagesFilePath);
-      // Logger.info("Looking for image files in: " + dir.getAbsolutePath());
-      // Logger.info("Files in directory: " + dir.listFiles().length);
-      File[] files = dir
-          .listFiles((d, name) -> name.endsWith(".jpg") || name.endsWith(".png")
-              || name.endsWith(".jpeg"));
-      if (files != null && files.length > 0) {
-        int randomIndex = new Random().nextInt(files.length);
-        File chosenFile = files[randomIndex];
-        gottenImage = ImageIO.read(chosenFile);
+      MediaCatalog.MediaFile chosenFile =
+          MediaCatalog.forDirectory(imagesFilePath, ".jpg", ".png", ".jpeg").pickRandom();
+      if (chosenFile != null) {
+        gottenImage = chosenFile.getImage();
 
         // Extract file extension for the chosen file
         this.fileExtension = chosenFile.getName().substring(chosenFile.getName().lastIndexOf("."));
@@ -69,20 +141,97 @@ public class ImageSensorReading extends SensorReading {
       }
     } catch (IOException e) {
       Logger.error("An error occurred while loading the image.");
-      // e.printStackTrace();
     }
 
     // Update current image if an image was successfully loaded
     this.currentImage = gottenImage;
+    this.compressedImage = null;
+    this.base64Image = null;
+    this.payloadHash = null;
+    this.fullImageHash = null;
   }
 
   /**
-   * Get the current image.
+   * Get the current image, decoding a compressed image on first use. Decoding
+   * can be slow, so it should not be done on a user interface thread, see
+   * {@link #getDecodedImage()}.
    *
-   * @return The current image
+   * @return The current image, or null if there is none or it could not be
+   *         decoded
    */
   public BufferedImage getImage() {
-    return currentImage;
+    BufferedImage image = this.getDecodedImage();
+    if (image != null || !this.isCompressed()) {
+      return image;
+    }
+    byte[] bytes = this.getCompressedImage();
+    if (bytes == null) {
+      return null;
+    }
+    try {
+      image = Base64ImageEncoder.bytesToImage(bytes);
+    } catch (IOException e) {
+      Logger.error("Failed to decode image: " + e.getMessage());
+      return null;
+    }
+    if (image != null) {
+      DECODED.put(this.getPayloadHash(), image);
+    }
+    return image;
+  }
+
+  /**
+   * Get the current image if it does not have to be decoded first.
+   *
+   * @return The current image, or null if there is none or it is not decoded yet
+   */
+  public BufferedImage getDecodedImage() {
+    BufferedImage image = this.currentImage;
+    if (image != null || !this.isCompressed()) {
+      return image;
+    }
+    return DECODED.get(this.getPayloadHash());
+  }
+
+  /**
+   * Returns true if the reading has an image, decoded or not.
+   *
+   * @return true if there is an image to show
+   */
+  public boolean hasImage() {
+    return this.currentImage != null || this.isCompressed();
+  }
+
+  /**
+   * Returns true if the image is kept compressed rather than decoded.
+   *
+   * @return true if the image is compressed
+   */
+  private boolean isCompressed() {
+    return this.base64Image != null || this.compressedImage != null;
+  }
+
+  /**
+   * Get the compressed image, decoding it from Base64 on first use.
+   *
+   * @return The compressed image, or null if it is not valid Base64
+   */
+  private byte[] getCompressedImage() {
+    // Read in this order, the encoding is only cleared after the bytes are set
+    String encoded = this.base64Image;
+    byte[] bytes = this.compressedImage;
+    if (bytes != null || encoded == null) {
+      return bytes;
+    }
+    try {
+      bytes = Base64.getDecoder().decode(encoded);
+    } catch (IllegalArgumentException e) {
+      Logger.error("Failed to decode image: " + e.getMessage());
+      return null;
+    }
+    this.compressedImage = bytes;
+    this.base64Image = null;
+    return bytes;
   }
 
   /**
@@ -90,6 +239,7 @@ public class ImageSensorReading extends SensorReading {
    *
    * @return The file extension of the current image
    */
+  @Override
   public String getFileExtension() {
     return fileExtension;
   }
@@ -103,6 +253,26 @@ public class ImageSensorReading extends SensorReading {
     this.fileExtension = fileExtension;
   }
 
+  /**
+   * Get the hash of the full image, if this reading only has its thumbnail.
+   *
+   * @return The hash of the Base64 encoded full image, or null if this reading
+   *         has the full image
+   */
+  public String getFullImageHash() {
+    return this.fullImageHash;
+  }
+
+  /**
+   * Marks the image of this reading as the thumbnail of a full image, which can
+   * be fetched by its hash.
+   *
+   * @param fullImageHash The hash of the Base64 encoded full image
+   */
+  public void setFullImageHash(String fullImageHash) {
+    this.fullImageHash = fullImageHash;
+  }
+
   /**
    * Indicates whether some other object is "equal to" this one.
    *
@@ -119,7 +289,10 @@ public class ImageSensorReading extends SensorReading {
       return false;
     }
     ImageSensorReading that = (ImageSensorReading) o;
-    return currentImage.equals(that.currentImage);
+    if (this.isCompressed() && that.isCompressed()) {
+      return Arrays.equals(this.getCompressedImage(), that.getCompressedImage());
+    }
+    return Objects.equals(this.currentImage, that.currentImage);
   }
 
   /**
@@ -130,24 +303,183 @@ public class ImageSensorReading extends SensorReading {
   @Override
   public String getFormatted() {
     return this.type.getType() + Delimiters.BODY_FIELD_PARAMETERS.getValue()
-        + this.getImageFormatted(this.currentImage) + Delimiters.BODY_FIELD_PARAMETERS.getValue()
+        + this.getPayload() + Delimiters.BODY_FIELD_PARAMETERS.getValue()
         + this.fileExtension;
   }
 
   /**
-   * Get a Base64 encoded string representation of the image.
+   * Get the current image as a Base64 encoded string.
    *
    * @return A Base64 encoded string representing the image
    */
-  private String getImageFormatted(BufferedImage image) {
+  @Override
+  public String getPayload() {
+    // Read in this order, the encoding is only cleared after the bytes are set
+    String base64 = this.base64Image;
+    byte[] bytes = this.compressedImage;
+    if (base64 != null) {
+      return base64;
+    }
+    if (bytes != null) {
+      return Base64.getEncoder().encodeToString(bytes);
+    }
+    EncodedImage encoded = this.getEncodedImage();
+    return encoded == null ? "Error encoding image" : encoded.base64;
+  }
+
+  /**
+   * Get the hash of the Base64 encoded current image.
+   *
+   * @return The hash of the payload
+   */
+  @Override
+  public String getPayloadHash() {
+    String hash = this.payloadHash;
+    if (hash != null) {
+      return hash;
+    }
+    if (this.isCompressed()) {
+      // A compressed image never changes, so its hash is kept with it
+      hash = BlobReferences.hashOf(this.getPayload());
+      this.payloadHash = hash;
+      return hash;
+    }
+    EncodedImage encoded = this.getEncodedImage();
+    return encoded == null ? BlobReferences.hashOf(this.getPayload()) : encoded.hash;
+  }
+
+  /**
+   * Get the compressed image, or the current image encoded as PNG, shared with
+   * every reading showing the same image.
+   *
+   * @return The compressed image, or null if it could not be encoded
+   */
+  @Override
+  public byte[] getPayloadBytes() {
+    if (this.isCompressed()) {
+      return this.getCompressedImage();
+    }
+    EncodedImage encoded = this.getEncodedImage();
+    return encoded == null ? null : encoded.bytes;
+  }
+
+  /**
+   * Get a thumbnail of the current image, {@value #PREVIEW_WIDTH} pixels wide,
+   * encoded as PNG. Compressed images have no thumbnail, as they are only shown.
+   *
+   * @return The thumbnail, or null if the image is no wider than a thumbnail
+   */
+  @Override
+  public byte[] getPreviewBytes() {
+    if (this.isCompressed()) {
+      return null;
+    }
+    EncodedImage encoded = this.getEncodedImage();
+    return encoded == null ? null : encoded.previewBytes;
+  }
+
+  /**
+   * Get the hash of the Base64 encoded thumbnail of the current image.
+   *
+   * @return The hash of the thumbnail, or null if there is none
+   */
+  @Override
+  public String getPreviewHash() {
+    if (this.isCompressed()) {
+      return null;
+    }
+    EncodedImage encoded = this.getEncodedImage();
+    return encoded == null ? null : encoded.previewHash;
+  }
+
+  /**
+   * Get the compressed image, or the current image encoded as PNG.
+   *
+   * @return A copy of the compressed image, or null if it could not be encoded
+   */
+  public byte[] getImageBytes() {
+    byte[] bytes = this.getPayloadBytes();
+    return bytes == null ? null : bytes.clone();
+  }
+
+  /**
+   * Get the encoding of the current image, encoding it on first use. The encoding
+   * is reused until the image changes, and shared with every reading showing the
+   * same image instance, such as the images of a {@link MediaCatalog}.
+   *
+   * @return The encoded image, or null if it could not be encoded
+   */
+  private EncodedImage getEncodedImage() {
+    BufferedImage image = this.currentImage;
     if (image == null) {
       throw new IllegalArgumentException("BufferedImage is null.");
     }
 
+    EncodedImage encoded = this.encodedImage;
+    if (encoded != null && encoded.source.get() == image) {
+      return encoded;
+    }
+    encoded = ENCODINGS.get(image);
+    if (encoded == null) {
+      try {
+        byte[] preview = null;
+        if (image.getWidth() > PREVIEW_WIDTH) {
+          preview = Base64ImageEncoder.imageToBytes(createThumbnail(image));
+        }
+        encoded = new EncodedImage(image, Base64ImageEncoder.imageToBytes(image), preview);
+      } catch (IOException e) {
+        return null;
+      }
+      ENCODINGS.put(image, encoded);
+    }
+    // A race only encodes the same image twice, or caches an image that was just replaced
+    this.encodedImage = encoded;
+    return encoded;
+  }
+
+  /**
+   * Scales an image down to the width of a thumbnail, keeping its aspect ratio.
+   *
+   * @param image The image
+   * @return The thumbnail
+   */
+  private static BufferedImage createThumbnail(BufferedImage image) {
+    int height = Math.max(1, image.getHeight() * PREVIEW_WIDTH / image.getWidth());
+    int type = image.getColorModel().hasAlpha()
+        ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    BufferedImage thumbnail = new BufferedImage(PREVIEW_WIDTH, height, type);
+    Graphics2D graphics = thumbnail.createGraphics();
     try {
-      return Base64ImageEncoder.imageToString(this.currentImage, this.fileExtension);
-    } catch (IOException e) {
-      return "Error encoding image";
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.drawImage(image, 0, 0, PREVIEW_WIDTH, height, null);
+    } finally {
+      graphics.dispose();
+    }
+    return thumbnail;
+  }
+
+  /**
+   * An image encoded as PNG and Base64, and its thumbnail encoded as PNG, along
+   * with the image it was encoded from. The image is only weakly referenced, so
+   * the shared encodings do not keep it alive.
+   */
+  private static final class EncodedImage {
+    private final WeakReference<BufferedImage> source;
+    private final byte[] bytes;
+    private final String base64;
+    private final String hash;
+    private final byte[] previewBytes;
+    private final String previewHash;
+
+    private EncodedImage(BufferedImage source, byte[] bytes, byte[] previewBytes) {
+      this.source = new WeakReference<>(source);
+      this.bytes = bytes;
+      this.base64 = Base64.getEncoder().encodeToString(bytes);
+      this.hash = BlobReferences.hashOf(this.base64);
+      this.previewBytes = previewBytes;
+      this.previewHash = previewBytes == null ? null
+          : BlobReferences.hashOf(Base64.getEncoder().encodeToString(previewBytes));
     }
   }
 }
@@ -0,0 +1,247 @@
+package no.ntnu.greenhouse.sensor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.imageio.ImageIO;
+import no.ntnu.tools.caching.BlobReferences;
+
+/**
+ * The media files of a directory, shared by all sensors reading from it.
+ *
+ * <p>The directory is listed once, and listed again only when its modification
+ * time changes, so picking a random file does not touch the disk. Each file is
+ * read at most once: images are kept decoded, and other files as their Base64
+ * encoding along with its hash. Files that are unchanged when the directory is
+ * listed again keep what was loaded for them. Since every sensor of the same
+ * directory gets the same catalog, including cloned sensors, each file is only
+ * loaded once for the whole greenhouse.
+ */
+public final class MediaCatalog {
+
+  private static final Map<String, MediaCatalog> CATALOGS = new ConcurrentHashMap<>();
+
+  private final File directory;
+  private final List<String> extensions;
+  private volatile Listing listing = new Listing(Long.MIN_VALUE, Collections.emptyList());
+
+  private MediaCatalog(File directory, List<String> extensions) {
+    this.directory = directory;
+    this.extensions = extensions;
+  }
+
+  /**
+   * Gets the catalog of the files in a directory with one of the given extensions.
+   *
+   * @param directoryPath The path of the directory
+   * @param extensions    The file extensions to include, such as {@code ".png"}
+   * @return The shared catalog
+   */
+  public static MediaCatalog forDirectory(String directoryPath, String... extensions) {
+    if (directoryPath == null || extensions.length == 0) {
+      throw new IllegalArgumentException("Directory and extensions must be specified");
+    }
+    List<String> lowerCase = new ArrayList<>();
+    for (String extension : extensions) {
+      lowerCase.add(extension.toLowerCase(Locale.ROOT));
+    }
+    File directory = new File(directoryPath).getAbsoluteFile();
+    String key = directory.getPath() + lowerCase;
+    return CATALOGS.computeIfAbsent(key, k -> new MediaCatalog(directory, List.copyOf(lowerCase)));
+  }
+
+  /**
+   * Gets the files of the catalog, listing the directory again if it has changed.
+   *
+   * @return An immutable list of the files, empty if the directory does not exist
+   */
+  public List<MediaFile> getFiles() {
+    Listing current = this.listing;
+    long modified = this.directory.lastModified();
+    if (current.modified != modified) {
+      synchronized (this) {
+        current = this.listing;
+        if (current.modified != modified) {
+          current = new Listing(modified, this.list(current.files));
+          this.listing = current;
+        }
+      }
+    }
+    return current.files;
+  }
+
+  /**
+   * Picks a random file of the catalog.
+   *
+   * @return A random file, or null if the catalog has no files
+   */
+  public MediaFile pickRandom() {
+    List<MediaFile> files = this.getFiles();
+    if (files.isEmpty()) {
+      return null;
+    }
+    return files.get(ThreadLocalRandom.current().nextInt(files.size()));
+  }
+
+  /**
+   * Lists the directory, keeping the loaded files that have not changed.
+   *
+   * @param previous The files of the previous listing
+   * @return The files of the directory
+   */
+  private List<MediaFile> list(List<MediaFile> previous) {
+    File[] found = this.directory.listFiles((dir, name) -> this.isIncluded(name));
+    if (found == null) {
+      return Collections.emptyList();
+    }
+    Map<File, MediaFile> loaded = new HashMap<>();
+    for (MediaFile file : previous) {
+      loaded.put(file.file, file);
+    }
+    List<MediaFile> files = new ArrayList<>();
+    for (File file : found) {
+      MediaFile existing = loaded.get(file);
+      if (existing != null && !existing.isStale()) {
+        files.add(existing);
+      } else {
+        files.add(new MediaFile(file));
+      }
+    }
+    return List.copyOf(files);
+  }
+
+  /**
+   * Returns true if a file name has one of the extensions of the catalog.
+   *
+   * @param name The file name
+   * @return true if the file belongs in the catalog
+   */
+  private boolean isIncluded(String name) {
+    String lowerCase = name.toLowerCase(Locale.ROOT);
+    for (String extension : this.extensions) {
+      if (lowerCase.endsWith(extension)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The files of the directory at a modification time.
+   */
+  private static final class Listing {
+    private final long modified;
+    private final List<MediaFile> files;
+
+    private Listing(long modified, List<MediaFile> files) {
+      this.modified = modified;
+      this.files = files;
+    }
+  }
+
+  /**
+   * A media file of a catalog, loaded on first use.
+   */
+  public static final class MediaFile {
+    private final File file;
+    private final long modified;
+    private final long length;
+    // Written at most once each, a race only loads the same file twice
+    private volatile BufferedImage image;
+    private volatile String base64;
+    private volatile String hash;
+
+    private MediaFile(File file) {
+      this.file = file;
+      this.modified = file.lastModified();
+      this.length = file.length();
+    }
+
+    /**
+     * Gets the file.
+     *
+     * @return The file
+     */
+    public File getFile() {
+      return this.file;
+    }
+
+    /**
+     * Gets the name of the file.
+     *
+     * @return The file name
+     */
+    public String getName() {
+      return this.file.getName();
+    }
+
+    /**
+     * Gets the file decoded as an image. The image is shared and must not be
+     * modified.
+     *
+     * @return The decoded image
+     * @throws IOException If the file could not be read as an image
+     */
+    public BufferedImage getImage() throws IOException {
+      BufferedImage decoded = this.image;
+      if (decoded == null) {
+        decoded = ImageIO.read(this.file);
+        if (decoded == null) {
+          throw new IOException("Not a supported image: " + this.file.getName());
+        }
+        this.image = decoded;
+      }
+      return decoded;
+    }
+
+    /**
+     * Gets the contents of the file encoded as Base64.
+     *
+     * @return The Base64 encoded contents
+     * @throws IOException If the file could not be read
+     */
+    public String getBase64() throws IOException {
+      String encoded = this.base64;
+      if (encoded == null) {
+        encoded = Base64.getEncoder().encodeToString(Files.readAllBytes(this.file.toPath()));
+        this.base64 = encoded;
+      }
+      return encoded;
+    }
+
+    /**
+     * Gets the hash of the Base64 encoded contents, see
+     * {@link BlobReferences#hashOf(String)}.
+     *
+     * @return The hash of the contents
+     * @throws IOException If the file could not be read
+     */
+    public String getBase64Hash() throws IOException {
+      String contentHash = this.hash;
+      if (contentHash == null) {
+        contentHash = BlobReferences.hashOf(this.getBase64());
+        this.hash = contentHash;
+      }
+      return contentHash;
+    }
+
+    /**
+     * Returns true if the file has changed since it was listed.
+     *
+     * @return true if the file is stale
+     */
+    private boolean isStale() {
+      return this.file.lastModified() != this.modified || this.file.length() != this.length;
+    }
+  }
+}
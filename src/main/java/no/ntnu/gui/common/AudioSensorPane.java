@@ -1,6 +1,6 @@
 package no.ntnu.gui.common;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -22,7 +22,8 @@ import no.ntnu.gui.common.popupwindows.InformationWindow;
  * and plays audio from an AudioSensorReading.
  * It provides functionality to create a user interface
  * component that includes a play button for the audio file.
- * If the audio file is not found, it displays a label indicating the file is not found.
+ * The audio is played from memory, so received audio never has to be written to
+ * a file. If there is no audio, it displays a label indicating the file is not found.
  *
  * <p>Note: This class requires the JavaFX library for the user
  *    interface components and the javax.sound.sampled library for audio playback.</p>
@@ -48,16 +49,15 @@ public class AudioSensorPane {
 
   /**
    * Creates the content for the AudioSensorPane.
-   * This method checks if the audio file exists and creates a play button to play the audio.
-   * If the audio file is not found, it returns a label indicating the file is not found.
+   * This method checks if the reading has audio and creates a play button to play it.
+   * If there is no audio, it returns a label indicating the file is not found.
    *
-   * @return a Node containing the play button or a label if the audio file is not found
+   * @return a Node containing the play button or a label if there is no audio
    */
   public Node createContent() {
     AudioSensorReading audioSensor = this.sensorReading;
-    File audioFile = audioSensor.getAudioFile();
 
-    if (audioFile == null || !audioFile.exists()) {
+    if (!audioSensor.hasAudio()) {
       informationWindow.showAlert("Audio file", "Audio file not found!");
       return new Label("Audio file not found");
     }
@@ -68,7 +68,7 @@ public class AudioSensorPane {
 
     playButton.setOnAction(e -> {
       try {
-        playAudio(audioFile);
+        playAudio(audioSensor.getAudioBytes());
       } catch (Exception ex) {
         errorWindow.showAlert("Audio error", "Could not play audio!");
         ex.printStackTrace();
@@ -81,16 +81,20 @@ public class AudioSensorPane {
   }
 
   /**
-   * Plays an audio file.
+   * Plays audio from the contents of an audio file, without writing it to disk.
    *
-   * @param audioFile the audio file to be played
-   * @throws UnsupportedAudioFileException if the audio file format is not supported
-   * @throws IOException                   if an I/O error occurs
+   * @param audioBytes the contents of the audio file to be played
+   * @throws UnsupportedAudioFileException if the audio format is not supported
+   * @throws IOException                   if there is no audio or an I/O error occurs
    * @throws LineUnavailableException      if a line cannot be opened because it is unavailable
    */
-  private void playAudio(File audioFile)
+  private void playAudio(byte[] audioBytes)
       throws UnsupportedAudioFileException, IOException, LineUnavailableException {
-    try (AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(audioFile)) {
+    if (audioBytes == null) {
+      throw new IOException("The audio could not be read");
+    }
+    try (AudioInputStream audioInputStream =
+             AudioSystem.getAudioInputStream(new ByteArrayInputStream(audioBytes))) {
       AudioFormat format = audioInputStream.getFormat();
       DataLine.Info info = new DataLine.Info(Clip.class, format);
       Clip audioClip = (Clip) AudioSystem.getLine(info);
@@ -1,6 +1,11 @@
 package no.ntnu.gui.common;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.Node;
 import javafx.scene.Scene;
@@ -35,8 +40,17 @@ import no.ntnu.tools.Logger;
  */
 public class ImageSensorPane extends Pane {
 
+  // Decodes received images off the JavaFX application thread
+  private static final ExecutorService DECODER = Executors.newFixedThreadPool(2, task -> {
+    Thread thread = new Thread(task, "image-decoder");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   private ImageSensorReading sensorReading;
   private ImageView thumbnail;
+  // Fetches a full image by its hash, for readings that only have its thumbnail
+  private final Function<String, CompletableFuture<byte[]>> fullImageLoader;
 
   // Error window
   ErrorWindow errorWindow = new ErrorWindow();
@@ -50,7 +64,22 @@ public class ImageSensorPane extends Pane {
    * @param sensorReading the ImageSensorReading to be used by this pane
    */
   public ImageSensorPane(ImageSensorReading sensorReading) {
+    this(sensorReading, null);
+  }
+
+  /**
+   * Constructs an ImageSensorPane with the specified ImageSensorReading, which
+   * fetches the full image when it is opened if the reading only has its
+   * thumbnail.
+   *
+   * @param sensorReading   the ImageSensorReading to be used by this pane
+   * @param fullImageLoader fetches a full image by its hash, or null to only show
+   *                        the image of the reading
+   */
+  public ImageSensorPane(ImageSensorReading sensorReading,
+                         Function<String, CompletableFuture<byte[]>> fullImageLoader) {
     this.sensorReading = sensorReading;
+    this.fullImageLoader = fullImageLoader;
   }
 
   /**
@@ -75,14 +104,15 @@ public class ImageSensorPane extends Pane {
    * Creates the content for the ImageSensorPane.
    * This method converts the image to a JavaFX Image and creates a thumbnail
    * ImageView with a click listener to open the full image in a new window.
+   * An image that is not decoded yet is decoded in the background, and shown in
+   * place of a placeholder when it is ready.
    *
    * @param sensorReading the ImageSensorReading to be displayed
    * @return a Node containing the image thumbnail and a label
    */
   public Node createContent(ImageSensorReading sensorReading) {
 
-    BufferedImage bufferedImage = sensorReading.getImage();
-    if (bufferedImage == null) {
+    if (!sensorReading.hasImage()) {
       Logger.error("Buffered image is null");
 
       informationWindow.showAlert("Image file", "No image found!");
@@ -90,9 +120,46 @@ public class ImageSensorPane extends Pane {
       return new Label("No image found");
     }
 
-    // Convert to JavaFX Image
-    Image image = SwingFXUtils.toFXImage(bufferedImage, null);
+    Label imageLabel = new Label("Image: ");
+    VBox imageNode = new VBox(5); // Add spacing between items
+    imageNode.getChildren().add(imageLabel);
 
+    BufferedImage bufferedImage = sensorReading.getDecodedImage();
+    if (bufferedImage != null) {
+      Image image = SwingFXUtils.toFXImage(bufferedImage, null);
+      imageNode.getChildren().add(this.createThumbnail(image));
+      return imageNode;
+    }
+
+    // Decoded in the background, the thumbnail replaces the placeholder when ready
+    Label placeholder = new Label("Loading image...");
+    imageNode.getChildren().add(placeholder);
+    DECODER.execute(() -> {
+      BufferedImage decoded = sensorReading.getImage();
+      Image image = decoded == null ? null : SwingFXUtils.toFXImage(decoded, null);
+      Platform.runLater(() -> {
+        if (image == null) {
+          placeholder.setText("No image found");
+          return;
+        }
+        int index = imageNode.getChildren().indexOf(placeholder);
+        if (index >= 0) {
+          imageNode.getChildren().set(index, this.createThumbnail(image));
+        }
+      });
+    });
+
+    return imageNode;
+  }
+
+  /**
+   * Creates a thumbnail of an image, which opens the full image in a new window
+   * when clicked.
+   *
+   * @param image the image
+   * @return the thumbnail
+   */
+  private ImageView createThumbnail(Image image) {
     // Create a small thumbnail
     this.thumbnail = new ImageView(image);
     thumbnail.setFitWidth(100); // Set desired thumbnail width
@@ -101,16 +168,13 @@ public class ImageSensorPane extends Pane {
 
     // Add click listener to open a new window
     thumbnail.setOnMouseClicked(event -> showFullImage(image));
-
-    Label imageLabel = new Label("Image: ");
-    VBox imageNode = new VBox(5); // Add spacing between items
-    imageNode.getChildren().addAll(imageLabel, thumbnail);
-
-    return imageNode;
+    return thumbnail;
   }
 
   /**
    * Displays the provided image in a new window (Stage) with a specified size.
+   * If the reading only has the thumbnail of the image, the thumbnail is shown
+   * until the full image has been fetched.
    *
    * @param image The Image object to be displayed in full size.
    */
@@ -131,5 +195,33 @@ public class ImageSensorPane extends Pane {
 
     // Show the stage
     fullImageStage.show();
+
+    String fullImageHash = this.sensorReading.getFullImageHash();
+    if (fullImageHash != null && this.fullImageLoader != null) {
+      fullImageStage.setTitle("Full Image (loading...)");
+      this.fullImageLoader.apply(fullImageHash)
+          .thenApplyAsync(bytes -> this.decodeFullImage(bytes, fullImageHash), DECODER)
+          .whenComplete((fullImage, e) -> Platform.runLater(() -> {
+            fullImageStage.setTitle("Full Image");
+            if (fullImage != null) {
+              fullImageView.setImage(fullImage);
+            } else {
+              Logger.error("Failed to load full image: " + fullImageHash);
+            }
+          }));
+    }
+  }
+
+  /**
+   * Decodes a fetched full image.
+   *
+   * @param bytes the compressed full image
+   * @param hash  the hash of the full image
+   * @return the decoded image, or null if it could not be decoded
+   */
+  private Image decodeFullImage(byte[] bytes, String hash) {
+    BufferedImage decoded =
+        new ImageSensorReading(this.sensorReading.getType(), bytes, hash).getImage();
+    return decoded == null ? null : SwingFXUtils.toFXImage(decoded, null);
   }
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package no.ntnu.gui.common;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
 import no.ntnu.greenhouse.sensor.AudioSensorReading;
@@ -28,10 +30,25 @@ public class SensorComponentFactory {
    *           a Label indicating the unsupported type is returned.
    */
   public static Node createComponent(SensorReading sensor) {
+    return createComponent(sensor, null);
+  }
+
+  /**
+   * Creates a Node component based on the type of the given sensor reading. Image
+   * components fetch the full image with the loader when it is opened, if the
+   * reading only has its thumbnail.
+   *
+   * @param sensor          the sensor reading for which to create a UI component
+   * @param fullImageLoader fetches a full image by its hash, or null to only show
+   *                        the images of the readings
+   * @return a Node representing the Node component for the given sensor reading
+   */
+  public static Node createComponent(SensorReading sensor,
+                                     Function<String, CompletableFuture<byte[]>> fullImageLoader) {
     if (sensor instanceof NumericSensorReading numericSensor) {
       return createNumericComponent(numericSensor);
     } else if (sensor instanceof ImageSensorReading imageSensor) {
-      return createImageComponent(imageSensor);
+      return createImageComponent(imageSensor, fullImageLoader);
     } else if (sensor instanceof AudioSensorReading audioSensor) {
       return createAudioComponent(audioSensor);
     } else {
@@ -53,11 +70,13 @@ public class SensorComponentFactory {
   /**
    * Creates a Node component for displaying an image sensor reading.
    *
-   * @param sensor the ImageSensorReading object containing the sensor data
+   * @param sensor          the ImageSensorReading object containing the sensor data
+   * @param fullImageLoader fetches a full image by its hash, or null
    * @return a Node containing the content for the image sensor
    */
-  private static Node createImageComponent(ImageSensorReading sensor) {
-    ImageSensorPane imagePane = new ImageSensorPane(sensor);
+  private static Node createImageComponent(ImageSensorReading sensor,
+      Function<String, CompletableFuture<byte[]>> fullImageLoader) {
+    ImageSensorPane imagePane = new ImageSensorPane(sensor, fullImageLoader);
     return imagePane.createContent(sensor);
   }
 
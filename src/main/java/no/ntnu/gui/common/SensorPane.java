@@ -1,5 +1,7 @@
 package no.ntnu.gui.common;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import javafx.scene.Node;
 import no.ntnu.greenhouse.sensor.SensorReading;
 
@@ -28,6 +30,9 @@ import no.ntnu.greenhouse.sensor.SensorReading;
  */
 public class SensorPane extends BasePane {
 
+  // Fetches full images for readings that only have their thumbnail, if set
+  private Function<String, CompletableFuture<byte[]>> fullImageLoader;
+
   /**
    * Constructs a new SensorPane with the title "Sensors".
    * For each sensor in the collection, a corresponding UI
@@ -45,6 +50,17 @@ public class SensorPane extends BasePane {
     super("Sensors");
   }
 
+  /**
+   * Sets how the image components fetch the full image of readings that only have
+   * its thumbnail. Applies from the next update.
+   *
+   * @param fullImageLoader fetches a full image by its hash, or null to only show
+   *                        the images of the readings
+   */
+  public void setFullImageLoader(Function<String, CompletableFuture<byte[]>> fullImageLoader) {
+    this.fullImageLoader = fullImageLoader;
+  }
+
   /**
    * Initializes the SensorPane.
    * For each sensor in the collection, a corresponding
@@ -54,7 +70,7 @@ public class SensorPane extends BasePane {
    */
   private void initialize(Iterable<SensorReading> sensors) {
     for (SensorReading sensor : sensors) {
-      Node component = SensorComponentFactory.createComponent(sensor);
+      Node component = SensorComponentFactory.createComponent(sensor, this.fullImageLoader);
       addComponent(component);
     }
   }
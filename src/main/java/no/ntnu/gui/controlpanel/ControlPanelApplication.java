@@ -21,6 +21,9 @@ import no.ntnu.intermediaryserver.clienthandler.ClientIdentification;
 import no.ntnu.intermediaryserver.server.ServerConfig;
 import no.ntnu.listeners.common.CommunicationChannelListener;
 import no.ntnu.listeners.controlpanel.GreenhouseEventListener;
+import no.ntnu.messages.subscriptions.StreamMode;
+import no.ntnu.messages.subscriptions.Topic;
+import no.ntnu.messages.subscriptions.TopicType;
 import no.ntnu.tools.Logger;
 
 /**
@@ -253,7 +256,8 @@ public class ControlPanelApplication extends Application
         Endpoints.NOT_PREDEFINED.getValue());
     this.channel.establishConnectionWithServer(clientIdentification);
     this.channel.askForNodes();
-    this.channel.askForSensorDataPeriodically(4);
+    this.channel.subscribe(Topic.all(TopicType.NODE));
+    this.channel.setStreamMode(StreamMode.DELTA);
   }
 
   /**
@@ -29,6 +29,8 @@ public class NodeManager {
   private final Map<Integer, ActuatorPane> actuatorPanes = new HashMap<>();
   private final Map<Integer, SensorActuatorNodeInfo> nodeInfos = new HashMap<>();
   private final Map<Integer, Tab> nodeTabs = new HashMap<>();
+  // The latest readings of nodes whose tab is not selected, shown when it is
+  private final Map<Integer, List<SensorReading>> pendingSensorData = new HashMap<>();
 
   /**
    * Constructor for NodeManager.
@@ -80,6 +82,7 @@ public class NodeManager {
         nodeTabPane.getTabs().remove(tab);
         sensorPanes.remove(nodeId);
         actuatorPanes.remove(nodeId);
+        pendingSensorData.remove(nodeId);
         nodeInfos.remove(nodeId);
         Logger.info("Node " + nodeId + " removed");
 
@@ -91,7 +94,8 @@ public class NodeManager {
   }
 
   /**
-   * Updates the sensor data for a node.
+   * Updates the sensor data for a node. The readings of a node whose tab is not
+   * selected are kept until it is, so images are not decoded for hidden tabs.
    *
    * @param nodeId  The ID of the node.
    * @param sensors The sensor readings to update.
@@ -99,7 +103,10 @@ public class NodeManager {
   public void updateSensorData(int nodeId, List<SensorReading> sensors) {
     Platform.runLater(() -> {
       SensorPane sensorPane = sensorPanes.get(nodeId);
-      if (sensorPane != null) {
+      Tab tab = nodeTabs.get(nodeId);
+      if (sensorPane != null && tab != null && !tab.isSelected()) {
+        pendingSensorData.put(nodeId, sensors);
+      } else if (sensorPane != null) {
         sensorPane.update(sensors);
         Logger.info("Updated sensor data for node " + nodeId);
       } else {
@@ -138,6 +145,8 @@ public class NodeManager {
    */
   private Tab createNodeTab(SensorActuatorNodeInfo nodeInfo) {
     SensorPane sensorPane = new SensorPane();
+    String nodeId = Integer.toString(nodeInfo.getId());
+    sensorPane.setFullImageLoader(hash -> channel.fetchBlob(nodeId, hash));
     ActuatorPane actuatorPane = new ActuatorPane(nodeInfo.getActuators());
     sensorPanes.put(nodeInfo.getId(), sensorPane);
     actuatorPanes.put(nodeInfo.getId(), actuatorPane);
@@ -146,6 +155,10 @@ public class NodeManager {
     tab.setOnSelectionChanged(event -> {
       if (tab.isSelected()) {
         Logger.info("Selected node " + nodeInfo.getId());
+        List<SensorReading> sensors = pendingSensorData.remove(nodeInfo.getId());
+        if (sensors != null) {
+          sensorPane.update(sensors);
+        }
       }
     });
 
@@ -1,20 +1,40 @@
 package no.ntnu.intermediaryserver.clienthandler;
 
 import java.net.Socket;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import no.ntnu.TcpConnection;
 import no.ntnu.constants.Endpoints;
 import no.ntnu.intermediaryserver.server.IntermediaryServer;
+import no.ntnu.intermediaryserver.server.SensorSnapshotHistory;
+import no.ntnu.intermediaryserver.server.ServerConfig;
+import no.ntnu.messages.Delimiters;
 import no.ntnu.messages.Message;
 import no.ntnu.messages.MessageBody;
 import no.ntnu.messages.MessageHeader;
 import no.ntnu.messages.Transmission;
 import no.ntnu.messages.commands.common.ClientIdentificationTransmission;
+import no.ntnu.messages.commands.common.SensorDataAckTransmission;
+import no.ntnu.messages.commands.common.StreamIntervalTransmission;
+import no.ntnu.messages.commands.common.StreamModeTransmission;
+import no.ntnu.messages.commands.common.TopicTransmission;
+import no.ntnu.messages.commands.common.UnsubscribeTransmission;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataDeltaCommand;
+import no.ntnu.messages.framing.EncodedFrame;
+import no.ntnu.messages.framing.Frame;
+import no.ntnu.messages.framing.FrameCodec;
+import no.ntnu.messages.framing.WireProtocol;
 import no.ntnu.messages.responses.FailureReason;
 import no.ntnu.messages.responses.FailureResponse;
 import no.ntnu.messages.responses.Response;
 import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.messages.subscriptions.SensorDataDelta;
+import no.ntnu.messages.subscriptions.StreamMode;
 import no.ntnu.tools.Logger;
+import no.ntnu.tools.encryption.MessageIntegrity;
+import no.ntnu.tools.encryption.PublicKeyHolder;
+import no.ntnu.tools.encryption.SessionEncryptor;
 
 /**
  * Handles communication with a client connected to the IntermediaryServer.
@@ -23,7 +43,19 @@ import no.ntnu.tools.Logger;
  */
 public class ClientHandler extends TcpConnection implements Runnable {
 
+  protected static final int MAX_IDENTIFICATION_ATTEMPTS = 3;
+
   private final ClientHandlerLogic logic;
+  // Limits how often this client receives the sensor data streamed by each node
+  private final StreamRateLimiter sensorDataLimiter = new StreamRateLimiter();
+  // Whether this client receives streamed sensor data as deltas, and what it has applied
+  private final SensorStreamState sensorStreamState = new SensorStreamState();
+  // The wire protocol agreed on during identification, used once the response is sent
+  private WireProtocol agreedWireProtocol;
+  // The integrity check agreed on during identification, used once the response is sent
+  private MessageIntegrity agreedIntegrity;
+  // The session key agreed on during identification, encrypted with once the response is sent
+  private SessionEncryptor agreedSession;
 
   /**
    * Constructs a ClientHandler for a given client socket and server.
@@ -34,10 +66,27 @@ public class ClientHandler extends TcpConnection implements Runnable {
   public ClientHandler(Socket socket, IntermediaryServer server) {
     super();
     this.setAutoReconnect(false);
+    this.setMaxWriteBatchSize(ServerConfig.getWriteBatchSize());
+    this.setMaxWriteLatency(ServerConfig.getWriteMaxLatencyMs());
+    this.setOutboundQueueCapacity(ServerConfig.getOutboundQueueCapacity());
+    this.setOverflowPolicy(ServerConfig.getOverflowPolicy());
     this.connect(socket);
     this.logic = new ClientHandlerLogic(this, server);
   }
 
+  /**
+   * Constructs a ClientHandler that is not bound to a blocking socket.
+   * Used by subclasses that do their own reading and writing, for example
+   * handlers driven by a non-blocking selector.
+   *
+   * @param server The server managing the connections
+   */
+  protected ClientHandler(IntermediaryServer server) {
+    super();
+    this.setAutoReconnect(false);
+    this.logic = new ClientHandlerLogic(this, server);
+  }
+
   /**
    * Runs the client handler thread, identifying the client type,
    * and listening for and handling client requests.
@@ -52,17 +101,60 @@ public class ClientHandler extends TcpConnection implements Runnable {
       e.printStackTrace();
     } finally {
       this.close();
+      this.logic.removeSelfFromServer();
     }
   }
 
   /**
    * Handes a message received from the client.
    * handles the message by sending it to the client specified in the header of
-   * the message.
+   * the message, unless it is a subscription change for the server itself.
    */
   @Override
   protected void handleSpecificMessage(Message message) {
-    this.sendToClient(message);
+    Transmission transmission = message.getBody().getTransmission();
+    if (message.getHeader().getReceiver() == Endpoints.SERVER
+        && (transmission instanceof TopicTransmission
+        || transmission instanceof StreamIntervalTransmission
+        || transmission instanceof StreamModeTransmission
+        || transmission instanceof SensorDataAckTransmission)) {
+      this.handleSubscription(transmission);
+    } else {
+      this.sendToClient(message);
+    }
+  }
+
+  /**
+   * Changes the subscriptions of the client, either the topics it is subscribed
+   * to or how it receives streamed sensor data, and answers with the resulting
+   * number of topics, interval or mode. Sensor data acknowledgements are not
+   * answered, since they are sent for every update.
+   *
+   * @param transmission The subscription transmission
+   */
+  private void handleSubscription(Transmission transmission) {
+    Response response;
+    if (!this.logic.canSubscribe()) {
+      Logger.error("Only control panels can subscribe to topics: " + transmission);
+      response = new FailureResponse(transmission, FailureReason.INVALID_SUBSCRIPTION);
+    } else if (transmission instanceof SensorDataAckTransmission ack) {
+      this.sensorStreamState.acknowledge(ack.getNodeId(), ack.getSequence());
+      return;
+    } else if (transmission instanceof StreamModeTransmission streamMode) {
+      this.sensorStreamState.setMode(streamMode.getMode());
+      response = new SuccessResponse(transmission, streamMode.getMode().getValue());
+    } else if (transmission instanceof StreamIntervalTransmission interval) {
+      this.sensorDataLimiter.setMinIntervalMs(interval.getIntervalMs());
+      response = new SuccessResponse(transmission, Long.toString(interval.getIntervalMs()));
+    } else if (transmission instanceof UnsubscribeTransmission unsubscribe) {
+      int subscribed = this.logic.unsubscribe(unsubscribe.getTopics());
+      response = new SuccessResponse(transmission, Integer.toString(subscribed));
+    } else {
+      int subscribed = this.logic.subscribe(((TopicTransmission) transmission).getTopics());
+      response = new SuccessResponse(transmission, Integer.toString(subscribed));
+    }
+    MessageHeader header = new MessageHeader(Endpoints.SERVER, Endpoints.NONE.getValue());
+    this.sendMessage(new Message(header, new MessageBody(response)));
   }
 
   /**
@@ -82,20 +174,75 @@ public class ClientHandler extends TcpConnection implements Runnable {
 
   /**
    * Broadcasts a message to all clients of a given type.
-   * The client type is found in the message header.
+   * The client type is found in the message header. Control panels that have
+   * subscribed to topics only receive the messages about those topics, and
+   * streamed sensor data is skipped for clients that asked to receive it less
+   * often. Clients in delta mode receive streamed sensor data as a
+   * {@link SensorDataDelta} against the last snapshot they acknowledged, and
+   * nothing if no reading changed.
+   * The message is encoded once and the same frame is queued for every client,
+   * whose writers then send it concurrently. Deltas are encoded once per
+   * acknowledged snapshot.
    *
    * @param message The message to broadcast
    */
   private void broadcastMessage(Message message) {
+    long start = System.nanoTime();
     // Gets the client handlers for the client type specified in the message header.
-    ArrayList<ClientHandler> clientHandlers = (ArrayList<ClientHandler>) this.logic
-        .getAllClientHandlers(message.getHeader().getReceiver());
-    message.setHeader(this.logic.generateSenderHeader());
+    List<ClientHandler> clientHandlers = this.logic.getBroadcastRecipients(message);
+    String sensorStreamId = this.logic.getSensorStreamId(message);
+    MessageHeader senderHeader = this.logic.generateSenderHeader();
+    EncodedFrame frame = EncodedFrame.of(new Message(senderHeader, message.getBody()));
+    SensorSnapshotHistory.Snapshot snapshot = null;
+    if (sensorStreamId != null) {
+      snapshot = this.logic.recordSensorSnapshot(message);
+    }
+    // By acknowledged snapshot, null if no reading changed since it
+    Map<Long, EncodedFrame> deltaFrames = new HashMap<>();
 
-    Logger.info("Sending message to all clients: " + message);
+    int recipients = 0;
     for (ClientHandler clientHandler : clientHandlers) {
-      clientHandler.sendMessage(message);
+      if (sensorStreamId != null
+          && !clientHandler.sensorDataLimiter.tryAcquire(sensorStreamId, start)) {
+        continue;
+      }
+      EncodedFrame recipientFrame = frame;
+      SensorStreamState streamState = clientHandler.sensorStreamState;
+      if (snapshot != null && streamState.getMode() == StreamMode.DELTA) {
+        long base = streamState.getAcknowledged(sensorStreamId);
+        if (!deltaFrames.containsKey(base)) {
+          deltaFrames.put(base, this.createDeltaFrame(senderHeader, snapshot, base));
+        }
+        recipientFrame = deltaFrames.get(base);
+      }
+      if (recipientFrame != null) {
+        clientHandler.sendFrame(recipientFrame);
+        recipients++;
+      }
     }
+
+    // Logged as part of the broadcast statistics, not for every broadcast
+    this.logic.recordBroadcast(recipients, System.nanoTime() - start);
+  }
+
+  /**
+   * Encodes the sensor data delta from an acknowledged snapshot to a recorded one.
+   *
+   * @param senderHeader The header identifying the sending node
+   * @param snapshot     The recorded snapshot
+   * @param baseSequence The acknowledged snapshot, or 0 if none
+   * @return The encoded delta, or null if no reading changed
+   */
+  private EncodedFrame createDeltaFrame(MessageHeader senderHeader,
+                                        SensorSnapshotHistory.Snapshot snapshot,
+                                        long baseSequence) {
+    SensorDataDelta delta = this.logic.createSensorDataDelta(snapshot, baseSequence);
+    if (delta.isEmpty()) {
+      return null;
+    }
+    SuccessResponse response = new SuccessResponse(new GetSensorDataDeltaCommand(),
+        delta.toString());
+    return EncodedFrame.of(new Message(senderHeader, new MessageBody(response)));
   }
 
   /**
@@ -110,8 +257,7 @@ public class ClientHandler extends TcpConnection implements Runnable {
     }
 
     try {
-      message.setHeader(this.logic.generateSenderHeader());
-      receiver.sendMessage(message);
+      receiver.sendMessage(new Message(this.logic.generateSenderHeader(), message.getBody()));
     } catch (Exception e) {
       Logger.error("Could not send message to client: " + e.getMessage());
     }
@@ -142,23 +288,65 @@ public class ClientHandler extends TcpConnection implements Runnable {
    */
   private void identifyClientType(int attempts) {
 
-    if (attempts > 3) {
+    if (attempts > MAX_IDENTIFICATION_ATTEMPTS) {
       Logger.error("Failed to identify client type after 3 attempts, closing connection");
       this.close();
       return;
     }
 
-    String identification = this.readLine();
+    Frame identification = this.readFrame();
+    if (!this.handleIdentification(identification)) {
+      this.identifyClientType(attempts + 1);
+    }
+  }
+
+  /**
+   * Handles one identification message from the client, sends the response and
+   * registers the client with the server if the identification succeeded.
+   *
+   * @param identification The identification frame, or null if none was received
+   * @return true if the client was identified, false otherwise
+   */
+  protected boolean handleIdentification(Frame identification) {
     Response response = this.processIdentification(identification);
     Message responseMessage = this.generateIdentificationResponseMessage(response);
 
     this.sendMessage(responseMessage);
+    boolean identified = false;
     if (response == null || response instanceof FailureResponse) {
       Logger.error("Could not identify client type, sending failure response: " + responseMessage);
-      this.identifyClientType(attempts + 1);
     } else if (response instanceof SuccessResponse) {
+      if (this.agreedWireProtocol != null) {
+        this.setWireProtocol(this.agreedWireProtocol);
+      }
+      if (this.agreedIntegrity != null) {
+        this.setSendIntegrity(this.agreedIntegrity);
+      }
+      if (this.agreedSession != null) {
+        this.setSessionEncryptor(this.agreedSession);
+      }
       this.logic.addSelfToServer();
+      identified = true;
     }
+    return identified;
+  }
+
+  /**
+   * Gets the logic of this client handler.
+   *
+   * @return The client handler logic
+   */
+  protected ClientHandlerLogic getLogic() {
+    return this.logic;
+  }
+
+  /**
+   * Gets the remote address of the connected client.
+   *
+   * @return The remote address as a string
+   */
+  protected String getRemoteAddress() {
+    return this.getSocket().getRemoteSocketAddress().toString();
   }
 
   /**
@@ -179,7 +367,7 @@ public class ClientHandler extends TcpConnection implements Runnable {
    * @param identification The identification message
    * @return true if identification was successful, false otherwise
    */
-  private Response processIdentification(String identification) {
+  private Response processIdentification(Frame identification) {
 
     if (identification == null) {
       Logger.error("Invalid identification message: null");
@@ -187,7 +375,7 @@ public class ClientHandler extends TcpConnection implements Runnable {
           FailureReason.FAILED_TO_IDENTIFY_CLIENT);
     }
 
-    Message message = Message.fromString(identification);
+    Message message = FrameCodec.decode(this.decryptFrame(identification));
     Transmission command = message.getBody().getTransmission();
 
     Response response;
@@ -206,6 +394,14 @@ public class ClientHandler extends TcpConnection implements Runnable {
 
   /**
    * Handles the client identification response.
+   * If the client offered a wire protocol, the server agrees to it, and answers
+   * with the agreed protocol as the response data. If the client also offered an
+   * integrity mode, the server agrees to it too if it can, and to a checksum if
+   * the mode needs a session key the client did not send. The agreed mode
+   * follows the protocol in the response data, and messages received from now
+   * on are checked with it. If the client sent a session key and asked to
+   * encrypt with it, the server agrees to that too if it can unwrap the key, and
+   * says so after the mode.
    *
    * @param command The client identification command
    * @return The response to the client identification
@@ -215,10 +411,59 @@ public class ClientHandler extends TcpConnection implements Runnable {
     String clientId = command.getId();
 
     if (clientId.equals(Endpoints.NOT_PREDEFINED.getValue())) {
-      clientId = this.getSocket().getRemoteSocketAddress().toString();
+      clientId = this.getRemoteAddress();
     }
 
     this.logic.setClientIdentification(new ClientIdentification(clientType, clientId));
+
+    // Both wire protocols are supported, so whatever the client offers is agreed on
+    this.agreedWireProtocol = command.getWireProtocol();
+    this.agreedIntegrity = null;
+    SessionEncryptor session = this.unwrapSessionKey(command.getSessionKey());
+    this.agreedSession = command.isEncrypted() ? session : null;
+    if (command.getIntegrityMode() != null) {
+      this.agreedIntegrity = this.createIntegrity(command.getIntegrityMode(), session);
+      if (this.agreedIntegrity == null) {
+        this.agreedIntegrity = MessageIntegrity.CRC32C;
+      }
+      // The client sends nothing more until it has the response, and then
+      // checks its messages the agreed way
+      this.setReceiveIntegrity(this.agreedIntegrity);
+    }
+
+    if (this.agreedIntegrity != null) {
+      WireProtocol protocol = this.agreedWireProtocol == null
+          ? WireProtocol.TEXT : this.agreedWireProtocol;
+      String agreed = protocol.getValue()
+          + Delimiters.BODY_FIELD_PARAMETERS.getValue()
+          + this.agreedIntegrity.getMode().getValue();
+      if (this.agreedSession != null) {
+        agreed += Delimiters.BODY_FIELD_PARAMETERS.getValue()
+            + ClientIdentificationTransmission.ENCRYPTED;
+      }
+      return new SuccessResponse(command, agreed);
+    }
+    if (this.agreedWireProtocol != null) {
+      return new SuccessResponse(command, this.agreedWireProtocol.getValue());
+    }
     return new SuccessResponse(command, "Identification successful");
   }
-}
\ No newline at end of file
+
+  /**
+   * Unwraps a session key sent by the client with the server's private key.
+   *
+   * @param sessionKey The wrapped session key, or null if none was sent
+   * @return The session, or null if no key was sent or it could not be unwrapped
+   */
+  private SessionEncryptor unwrapSessionKey(String sessionKey) {
+    if (sessionKey == null) {
+      return null;
+    }
+    try {
+      return SessionEncryptor.fromWrappedKey(sessionKey, PublicKeyHolder.getPrivateKey());
+    } catch (Exception e) {
+      Logger.error("Could not unwrap session key: " + e.getMessage());
+      return null;
+    }
+  }
+}
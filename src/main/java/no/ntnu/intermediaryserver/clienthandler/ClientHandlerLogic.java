@@ -1,9 +1,18 @@
 package no.ntnu.intermediaryserver.clienthandler;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import no.ntnu.constants.Endpoints;
 import no.ntnu.intermediaryserver.server.IntermediaryServer;
+import no.ntnu.intermediaryserver.server.SensorSnapshotHistory;
+import no.ntnu.messages.Message;
 import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
+import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.messages.subscriptions.SensorDataDelta;
+import no.ntnu.messages.subscriptions.Topic;
+import no.ntnu.messages.subscriptions.TopicResolver;
 import no.ntnu.tools.Logger;
 
 /**
@@ -63,6 +72,110 @@ public class ClientHandlerLogic {
     return server.getClientHandlers(clientType);
   }
 
+  /**
+   * Gets the client handlers a broadcast from this client is delivered to.
+   * Messages a greenhouse node publishes to the control panels only reach the
+   * panels subscribed to one of its topics, and the panels without subscriptions.
+   * Other broadcasts reach every client of the receiving type.
+   *
+   * @param message The message to broadcast
+   * @return The client handlers to deliver the message to
+   */
+  public List<ClientHandler> getBroadcastRecipients(Message message) {
+    Endpoints receiver = message.getHeader().getReceiver();
+    if (receiver != Endpoints.CONTROL_PANEL || this.clientIdentification == null
+        || this.getClientType() != Endpoints.GREENHOUSE) {
+      return server.getClientHandlers(receiver);
+    }
+    Set<Topic> topics = TopicResolver.resolve(this.getClientId(),
+        message.getBody().getTransmission());
+    return server.getSubscribedClientHandlers(receiver, topics);
+  }
+
+  /**
+   * Gets the stream a message belongs to, if it is sensor data streamed by a
+   * greenhouse node.
+   *
+   * @param message The message sent by the client
+   * @return The ID of the node streaming the sensor data, or null if the message
+   *         is not streamed sensor data
+   */
+  public String getSensorStreamId(Message message) {
+    if (this.clientIdentification == null || this.getClientType() != Endpoints.GREENHOUSE) {
+      return null;
+    }
+    if (message.getBody().getTransmission() instanceof SuccessResponse response
+        && response.getTransmission() instanceof GetSensorDataCommand) {
+      return this.getClientId();
+    }
+    return null;
+  }
+
+  /**
+   * Records streamed sensor data as the next snapshot of the sending node.
+   *
+   * @param message The streamed sensor data, see {@link #getSensorStreamId(Message)}
+   * @return The recorded snapshot
+   */
+  public SensorSnapshotHistory.Snapshot recordSensorSnapshot(Message message) {
+    SuccessResponse response = (SuccessResponse) message.getBody().getTransmission();
+    return this.server.getSensorHistory(this.getClientId()).record(response.getResponseData());
+  }
+
+  /**
+   * Creates the sensor data delta that brings a panel from an acknowledged
+   * snapshot of the client's sensor data to a recorded one.
+   *
+   * @param snapshot     The recorded snapshot
+   * @param baseSequence The acknowledged snapshot, or 0 if none
+   * @return The delta
+   */
+  public SensorDataDelta createSensorDataDelta(SensorSnapshotHistory.Snapshot snapshot,
+                                               long baseSequence) {
+    return this.server.getSensorHistory(this.getClientId()).createDelta(snapshot, baseSequence);
+  }
+
+  /**
+   * Returns true if the client may subscribe to topics, which only control
+   * panels may.
+   *
+   * @return true if the client is an identified control panel, false otherwise
+   */
+  public boolean canSubscribe() {
+    return this.clientIdentification != null
+        && this.getClientType() == Endpoints.CONTROL_PANEL;
+  }
+
+  /**
+   * Subscribes the client to topics.
+   *
+   * @param topics The topics to subscribe to
+   * @return The number of topics the client is subscribed to afterwards
+   */
+  public int subscribe(Collection<Topic> topics) {
+    return server.subscribe(this.clientHandler, topics);
+  }
+
+  /**
+   * Unsubscribes the client from topics.
+   *
+   * @param topics The topics to unsubscribe from
+   * @return The number of topics the client is subscribed to afterwards
+   */
+  public int unsubscribe(Collection<Topic> topics) {
+    return server.unsubscribe(this.clientHandler, topics);
+  }
+
+  /**
+   * Records a broadcast sent by the client handler in the server's statistics.
+   *
+   * @param recipients  The number of recipients of the broadcast
+   * @param fanOutNanos The time taken to queue the broadcast for all recipients
+   */
+  public void recordBroadcast(int recipients, long fanOutNanos) {
+    server.getBroadcastStatistics().record(recipients, fanOutNanos);
+  }
+
   /**
    * Sets client identification.
    *
@@ -100,4 +213,18 @@ public class ClientHandlerLogic {
       Logger.error("Unknown client type: " + this.getClientType());
     }
   }
+
+  /**
+   * Removes the client from the server's list of clients, along with its
+   * subscriptions.
+   * Does nothing if the client was never identified, or if another handler has
+   * since been registered under the same identification.
+   */
+  public void removeSelfFromServer() {
+    if (this.clientIdentification == null) {
+      return;
+    }
+    server.unsubscribeAll(this.clientHandler);
+    server.removeClientHandler(this.getClientType(), this.getClientId(), this.clientHandler);
+  }
 }
@@ -0,0 +1,63 @@
+package no.ntnu.intermediaryserver.clienthandler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import no.ntnu.messages.subscriptions.StreamMode;
+
+/**
+ * How a control panel receives the sensor data streamed by the nodes, and the
+ * last snapshot of each node it has acknowledged in delta mode.
+ */
+public class SensorStreamState {
+
+  private volatile StreamMode mode = StreamMode.FULL;
+  private final ConcurrentHashMap<String, Long> acknowledged = new ConcurrentHashMap<>();
+
+  /**
+   * Sets the stream mode. Changing the mode forgets the acknowledged snapshots,
+   * so the next delta of each node is a keyframe.
+   *
+   * @param mode The stream mode
+   * @throws IllegalArgumentException If the mode is null
+   */
+  public void setMode(StreamMode mode) {
+    if (mode == null) {
+      throw new IllegalArgumentException("Stream mode cannot be null");
+    }
+    if (mode != this.mode) {
+      this.acknowledged.clear();
+    }
+    this.mode = mode;
+  }
+
+  /**
+   * Gets the stream mode.
+   *
+   * @return The stream mode
+   */
+  public StreamMode getMode() {
+    return this.mode;
+  }
+
+  /**
+   * Records that the panel has applied a snapshot of a node. Acknowledgements of
+   * older snapshots than the last one are ignored.
+   *
+   * @param nodeId   The ID of the node
+   * @param sequence The sequence number of the applied snapshot
+   */
+  public void acknowledge(String nodeId, long sequence) {
+    if (nodeId != null && sequence > 0) {
+      this.acknowledged.merge(nodeId, sequence, Math::max);
+    }
+  }
+
+  /**
+   * Gets the last snapshot of a node the panel has acknowledged.
+   *
+   * @param nodeId The ID of the node
+   * @return The sequence number of the snapshot, or 0 if none
+   */
+  public long getAcknowledged(String nodeId) {
+    return this.acknowledged.getOrDefault(nodeId, 0L);
+  }
+}
@@ -0,0 +1,66 @@
+package no.ntnu.intermediaryserver.clienthandler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often a client receives updates from each stream, for example the
+ * sensor data pushed by each greenhouse node.
+ *
+ * <p>Every update is a complete snapshot, so an update arriving sooner than the
+ * minimum interval after the last delivered one from the same stream can be
+ * skipped without the client missing any state for long. With an interval of 0,
+ * the default, every update is delivered.
+ */
+public class StreamRateLimiter {
+
+  private final ConcurrentHashMap<String, Long> lastDelivered = new ConcurrentHashMap<>();
+  private volatile long minIntervalNanos = 0;
+
+  /**
+   * Sets the shortest time between two delivered updates from the same stream.
+   *
+   * @param minIntervalMs the minimum interval in milliseconds, 0 to deliver every
+   *                      update
+   */
+  public void setMinIntervalMs(long minIntervalMs) {
+    if (minIntervalMs < 0) {
+      throw new IllegalArgumentException("Minimum interval cannot be negative");
+    }
+    this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMs);
+    this.lastDelivered.clear();
+  }
+
+  /**
+   * Gets the shortest time between two delivered updates from the same stream.
+   *
+   * @return the minimum interval in milliseconds
+   */
+  public long getMinIntervalMs() {
+    return TimeUnit.NANOSECONDS.toMillis(this.minIntervalNanos);
+  }
+
+  /**
+   * Decides whether an update from a stream should be delivered, and records the
+   * delivery if so.
+   *
+   * @param streamId  the stream the update belongs to, for example a node ID
+   * @param nowNanos  the current time, from {@link System#nanoTime()}
+   * @return true if the update should be delivered, false if it should be skipped
+   */
+  public boolean tryAcquire(String streamId, long nowNanos) {
+    long interval = this.minIntervalNanos;
+    if (interval == 0) {
+      return true;
+    }
+    boolean[] acquired = {false};
+    this.lastDelivered.compute(streamId, (id, last) -> {
+      if (last == null || nowNanos - last >= interval) {
+        acquired[0] = true;
+        return nowNanos;
+      }
+      return last;
+    });
+    return acquired[0];
+  }
+}
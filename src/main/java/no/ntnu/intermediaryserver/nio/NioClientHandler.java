@@ -0,0 +1,339 @@
+package no.ntnu.intermediaryserver.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import no.ntnu.intermediaryserver.clienthandler.ClientHandler;
+import no.ntnu.intermediaryserver.server.IntermediaryServer;
+import no.ntnu.intermediaryserver.server.ServerConfig;
+import no.ntnu.messages.framing.EncodedFrame;
+import no.ntnu.messages.framing.Frame;
+import no.ntnu.messages.framing.FrameDecoder;
+import no.ntnu.messages.framing.OverflowPolicy;
+import no.ntnu.tools.Logger;
+
+/**
+ * Handles a client connected through a non-blocking socket channel.
+ *
+ * <p>The handler does not own a thread. The {@link NioWorker} it is registered
+ * with reads from the channel and hands every complete frame to the handler, and
+ * writes the queued outbound messages when the channel is ready for writing.
+ * Queued messages are written together with one gathering write, up to
+ * {@link ServerConfig#getWriteBatchSize()} at a time. The outbound queue is
+ * bounded by {@link ServerConfig#getOutboundQueueCapacity()}, and a full queue is
+ * handled by the configured {@link OverflowPolicy}. Routing of the received
+ * messages is inherited from {@link ClientHandler}.
+ */
+public class NioClientHandler extends ClientHandler {
+
+  private final SocketChannel channel;
+  private final NioWorker worker;
+  private final FrameDecoder decoder = new FrameDecoder();
+  // Guarded by the outbound lock, which senders and the worker thread share
+  private final Deque<ByteBuffer> outboundBuffers = new ArrayDeque<>();
+  private final ReentrantLock outboundLock = new ReentrantLock();
+  private final ByteBuffer[] writeBatch = new ByteBuffer[ServerConfig.getWriteBatchSize()];
+  private final int outboundCapacity = ServerConfig.getOutboundQueueCapacity();
+  private final OverflowPolicy overflowPolicy = ServerConfig.getOverflowPolicy();
+  private final AtomicLong droppedMessages = new AtomicLong();
+  private final String remoteAddress;
+
+  private SelectionKey selectionKey;
+  private boolean identified = false;
+  private int identificationAttempts = 0;
+
+  /**
+   * Creates a handler for an accepted, non-blocking socket channel.
+   *
+   * @param channel The accepted socket channel
+   * @param server  The server managing the connections
+   * @param worker  The I/O worker serving the channel
+   * @throws IOException If the remote address of the channel could not be read
+   */
+  public NioClientHandler(SocketChannel channel, IntermediaryServer server, NioWorker worker)
+      throws IOException {
+    super(server);
+    this.channel = channel;
+    this.worker = worker;
+    this.remoteAddress = channel.getRemoteAddress().toString();
+    this.setConnected(true);
+  }
+
+  /**
+   * Sets the key the channel is registered with on the worker's selector.
+   *
+   * @param selectionKey The selection key
+   */
+  void setSelectionKey(SelectionKey selectionKey) {
+    this.selectionKey = selectionKey;
+  }
+
+  /**
+   * Gets the remote address of the connected client.
+   *
+   * @return The remote address as a string
+   */
+  @Override
+  protected String getRemoteAddress() {
+    return this.remoteAddress;
+  }
+
+  /**
+   * Returns true while the channel is open.
+   *
+   * @return true if the channel is open, false otherwise.
+   */
+  @Override
+  public boolean isConnected() {
+    return this.channel.isOpen();
+  }
+
+  /**
+   * Reads the available bytes from the channel and handles all completed frames.
+   * Called by the worker when the channel is readable.
+   *
+   * @param readBuffer A buffer owned by the worker, used for reading
+   * @throws IOException If reading fails or the client has closed the connection
+   */
+  void onReadable(ByteBuffer readBuffer) throws IOException {
+    readBuffer.clear();
+    int read = this.channel.read(readBuffer);
+    if (read < 0) {
+      throw new IOException("Connection closed by client " + this.remoteAddress);
+    }
+    readBuffer.flip();
+    this.decoder.decode(readBuffer, this::handleFrame);
+  }
+
+  /**
+   * Handles a complete frame, either as an identification or as a message to route.
+   *
+   * @param frame The received frame
+   */
+  private void handleFrame(Frame frame) {
+    if (this.identified) {
+      this.handleReceivedFrame(frame);
+      return;
+    }
+
+    this.identificationAttempts++;
+    this.identified = this.handleIdentification(frame);
+    if (!this.identified && this.identificationAttempts > MAX_IDENTIFICATION_ATTEMPTS) {
+      Logger.error("Failed to identify client type after 3 attempts, closing connection");
+      this.close();
+    }
+  }
+
+  /**
+   * Writes as much of the queued outbound data as the channel accepts.
+   * Called by the worker when the channel is writable.
+   *
+   * @throws IOException If writing fails
+   */
+  void onWritable() throws IOException {
+    this.outboundLock.lock();
+    try {
+      int batchSize = this.fillWriteBatch();
+      while (batchSize > 0) {
+        this.channel.write(this.writeBatch, 0, batchSize);
+        int written = this.removeWrittenBuffers(batchSize);
+        if (written < batchSize) {
+          // The socket send buffer is full, continue when the channel is writable again
+          return;
+        }
+        batchSize = this.fillWriteBatch();
+      }
+      this.setWriteInterest(false);
+    } finally {
+      this.outboundLock.unlock();
+    }
+  }
+
+  /**
+   * Fills the write batch with the first queued outbound buffers, without
+   * removing them from the queue. The outbound lock must be held.
+   *
+   * @return The number of buffers in the batch
+   */
+  private int fillWriteBatch() {
+    int batchSize = 0;
+    for (ByteBuffer buffer : this.outboundBuffers) {
+      if (batchSize == this.writeBatch.length) {
+        break;
+      }
+      this.writeBatch[batchSize] = buffer;
+      batchSize++;
+    }
+    return batchSize;
+  }
+
+  /**
+   * Removes the completely written buffers of the write batch from the queue.
+   * The outbound lock must be held.
+   *
+   * @param batchSize The number of buffers in the batch
+   * @return The number of completely written buffers
+   */
+  private int removeWrittenBuffers(int batchSize) {
+    int written = 0;
+    while (written < batchSize && !this.writeBatch[written].hasRemaining()) {
+      this.outboundBuffers.pollFirst();
+      this.writeBatch[written] = null;
+      written++;
+    }
+    for (int i = written; i < batchSize; i++) {
+      this.writeBatch[i] = null;
+    }
+    return written;
+  }
+
+  /**
+   * Returns the number of messages waiting to be written to the channel.
+   *
+   * @return the outbound queue depth.
+   */
+  @Override
+  public int getOutboundQueueDepth() {
+    this.outboundLock.lock();
+    try {
+      return this.outboundBuffers.size();
+    } finally {
+      this.outboundLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of messages dropped by the overflow policy.
+   *
+   * @return the number of dropped messages.
+   */
+  @Override
+  public long getDroppedMessageCount() {
+    return this.droppedMessages.get();
+  }
+
+  /**
+   * Enables write interest if there is queued outbound data.
+   * Must be called on the worker thread.
+   */
+  void onWriteRequested() {
+    this.outboundLock.lock();
+    try {
+      if (!this.outboundBuffers.isEmpty()) {
+        this.setWriteInterest(true);
+      }
+    } finally {
+      this.outboundLock.unlock();
+    }
+  }
+
+  /**
+   * Sets whether the selector should report the channel as writable.
+   *
+   * @param interested true to be notified when the channel is writable
+   */
+  private void setWriteInterest(boolean interested) {
+    if (this.selectionKey == null || !this.selectionKey.isValid()) {
+      return;
+    }
+    int ops = SelectionKey.OP_READ;
+    if (interested) {
+      ops |= SelectionKey.OP_WRITE;
+    }
+    this.selectionKey.interestOps(ops);
+  }
+
+  /**
+   * Queues a message for the client. The message is written by the worker thread,
+   * so this method never blocks on a slow client. If the outbound queue is full,
+   * the overflow policy decides what happens.
+   *
+   * @param frame the encoded message to send.
+   */
+  @Override
+  public void sendFrame(EncodedFrame frame) {
+    if (!this.isConnected()) {
+      Logger.error("Unable to send message, channel is closed: " + this.remoteAddress);
+      return;
+    }
+    // The bytes may be shared with other connections, the buffer only adds a position
+    ByteBuffer buffer = ByteBuffer.wrap(this.getFrameBytes(frame));
+
+    boolean queued = false;
+    this.outboundLock.lock();
+    try {
+      if (this.outboundBuffers.size() < this.outboundCapacity) {
+        this.outboundBuffers.addLast(buffer);
+        queued = true;
+      } else if (this.overflowPolicy == OverflowPolicy.DROP_OLDEST
+          && this.dropOldestUnwritten()) {
+        this.outboundBuffers.addLast(buffer);
+        queued = true;
+      }
+    } finally {
+      this.outboundLock.unlock();
+    }
+
+    if (queued) {
+      this.worker.requestWrite(this);
+      return;
+    }
+    this.droppedMessages.incrementAndGet();
+    if (this.overflowPolicy == OverflowPolicy.DISCONNECT) {
+      Logger.warn("Outbound queue full, disconnecting slow client " + this.remoteAddress);
+      this.close();
+    }
+  }
+
+  /**
+   * Drops the oldest queued buffer that has not started being written. The
+   * outbound lock must be held.
+   *
+   * @return true if a buffer was dropped, false if none could be
+   */
+  private boolean dropOldestUnwritten() {
+    ByteBuffer first = this.outboundBuffers.pollFirst();
+    if (first == null) {
+      return false;
+    }
+    if (first.position() == 0) {
+      this.droppedMessages.incrementAndGet();
+      return true;
+    }
+    // Partly written, so it must be completed for the stream to stay intact
+    ByteBuffer second = this.outboundBuffers.pollFirst();
+    this.outboundBuffers.addFirst(first);
+    if (second != null) {
+      this.droppedMessages.incrementAndGet();
+    }
+    return second != null;
+  }
+
+  /**
+   * Closes the channel and removes the client from the server.
+   */
+  @Override
+  public void close() {
+    if (this.selectionKey != null) {
+      this.selectionKey.cancel();
+    }
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      Logger.error("Failed to close channel: " + e.getMessage());
+    }
+    this.outboundLock.lock();
+    try {
+      this.outboundBuffers.clear();
+    } finally {
+      this.outboundLock.unlock();
+    }
+    this.setConnected(false);
+    this.getLogic().removeSelfFromServer();
+  }
+}
@@ -0,0 +1,209 @@
+package no.ntnu.intermediaryserver.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import no.ntnu.intermediaryserver.server.AcceptBackoff;
+import no.ntnu.intermediaryserver.server.IntermediaryServer;
+import no.ntnu.intermediaryserver.server.ServerConfig;
+import no.ntnu.intermediaryserver.server.ServerSocketCreator;
+import no.ntnu.tools.Logger;
+
+/**
+ * Serves the clients of the intermediary server with non-blocking channels.
+ *
+ * <p>One acceptor thread accepts new connections, and hands them round-robin to
+ * a fixed pool of {@link NioWorker} threads. Each worker multiplexes many
+ * connections through its own selector, so the number of threads does not grow
+ * with the number of connected clients.
+ *
+ * <p>Pending connections are accepted in batches of up to
+ * {@link ServerConfig#getAcceptBatchSize()}, and each worker is woken up once per
+ * batch rather than once per connection.
+ */
+public class NioServer implements Runnable {
+
+  private final IntermediaryServer server;
+  private final int workerCount;
+  private final List<NioWorker> workers = new ArrayList<>();
+  private Selector acceptSelector;
+  private ServerSocketChannel listeningChannel;
+  private int nextWorker = 0;
+  private volatile boolean stopped = false;
+
+  /**
+   * Creates a NIO server with one I/O thread per two available processors.
+   *
+   * @param server The server managing the connections
+   */
+  public NioServer(IntermediaryServer server) {
+    this(server, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+  }
+
+  /**
+   * Creates a NIO server with the given number of I/O threads.
+   *
+   * @param server      The server managing the connections
+   * @param workerCount The number of I/O threads
+   */
+  public NioServer(IntermediaryServer server, int workerCount) {
+    if (server == null) {
+      throw new IllegalArgumentException("Server cannot be null");
+    }
+    if (workerCount < 1) {
+      throw new IllegalArgumentException("Worker count must be at least 1");
+    }
+    this.server = server;
+    this.workerCount = workerCount;
+  }
+
+  /**
+   * Opens the listening channel, starts the workers and accepts connections
+   * until the server is stopped. Pauses after accepting a connection fails, see
+   * {@link AcceptBackoff}.
+   */
+  @Override
+  public void run() {
+    if (!this.open()) {
+      Logger.error("Could not open server socket channel.");
+      this.closeAll();
+      return;
+    }
+
+    AcceptBackoff backoff = new AcceptBackoff();
+    while (!this.stopped) {
+      try {
+        this.acceptSelector.select();
+        this.acceptReadyConnections();
+        backoff.reset();
+      } catch (IOException e) {
+        Logger.error("Error in NIO accept loop: " + e.getMessage());
+        // The listening channel stays ready while accepting fails, so select returns at once
+        backoff.pause();
+      }
+    }
+    this.closeAll();
+  }
+
+  /**
+   * Opens the listening channel and the accept selector, and starts the workers.
+   *
+   * @return true if the server is ready to accept connections, false otherwise
+   */
+  private synchronized boolean open() {
+    try {
+      this.listeningChannel = ServerSocketCreator.getAvailableServerSocketChannel();
+      if (this.listeningChannel == null) {
+        return false;
+      }
+      this.listeningChannel.configureBlocking(false);
+      this.acceptSelector = Selector.open();
+      this.listeningChannel.register(this.acceptSelector, SelectionKey.OP_ACCEPT);
+
+      for (int i = 0; i < this.workerCount; i++) {
+        NioWorker worker = new NioWorker(this.server);
+        this.workers.add(worker);
+        Thread thread = new Thread(worker, "nio-worker-" + i);
+        thread.setDaemon(true);
+        thread.start();
+      }
+      Logger.info("NIO server started with " + this.workerCount + " I/O threads");
+      return true;
+    } catch (IOException e) {
+      Logger.error("Could not start NIO server: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Accepts all pending connections and hands them to the workers, one batch
+   * at a time.
+   *
+   * @throws IOException If accepting a connection fails
+   */
+  private void acceptReadyConnections() throws IOException {
+    Iterator<SelectionKey> keys = this.acceptSelector.selectedKeys().iterator();
+    while (keys.hasNext()) {
+      keys.next();
+      keys.remove();
+      boolean acceptedFullBatch = true;
+      while (acceptedFullBatch) {
+        acceptedFullBatch = this.acceptBatch(ServerConfig.getAcceptBatchSize());
+      }
+    }
+  }
+
+  /**
+   * Accepts up to a batch of pending connections, and hands them to the workers
+   * in round-robin order.
+   *
+   * @param batchSize The maximum number of connections to accept
+   * @return true if a full batch was accepted, so more connections may be pending
+   * @throws IOException If accepting a connection fails
+   */
+  private boolean acceptBatch(int batchSize) throws IOException {
+    List<List<SocketChannel>> batches = new ArrayList<>();
+    for (int i = 0; i < this.workers.size(); i++) {
+      batches.add(new ArrayList<>());
+    }
+
+    int accepted = 0;
+    SocketChannel channel = this.listeningChannel.accept();
+    while (channel != null) {
+      Logger.info("New client connected from " + channel.getRemoteAddress());
+      batches.get(this.nextWorker()).add(channel);
+      accepted++;
+      channel = accepted < batchSize ? this.listeningChannel.accept() : null;
+    }
+
+    for (int i = 0; i < this.workers.size(); i++) {
+      if (!batches.get(i).isEmpty()) {
+        this.workers.get(i).registerAll(batches.get(i));
+      }
+    }
+    return accepted == batchSize;
+  }
+
+  /**
+   * Picks the worker to serve the next connection.
+   *
+   * @return the index of the next worker, in round-robin order
+   */
+  private int nextWorker() {
+    int worker = this.nextWorker;
+    this.nextWorker = (this.nextWorker + 1) % this.workers.size();
+    return worker;
+  }
+
+  /**
+   * Stops accepting connections and stops the workers.
+   */
+  public synchronized void stop() {
+    this.stopped = true;
+    if (this.acceptSelector != null) {
+      this.acceptSelector.wakeup();
+    }
+  }
+
+  /**
+   * Stops the workers and closes the listening channel and the accept selector.
+   */
+  private synchronized void closeAll() {
+    this.workers.forEach(NioWorker::stop);
+    try {
+      if (this.listeningChannel != null) {
+        this.listeningChannel.close();
+      }
+      if (this.acceptSelector != null) {
+        this.acceptSelector.close();
+      }
+    } catch (IOException e) {
+      Logger.error("Error closing server socket channel: " + e.getMessage());
+    }
+  }
+}
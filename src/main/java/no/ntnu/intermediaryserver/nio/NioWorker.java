@@ -0,0 +1,170 @@
+package no.ntnu.intermediaryserver.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import no.ntnu.intermediaryserver.server.IntermediaryServer;
+import no.ntnu.tools.Logger;
+
+/**
+ * An I/O thread serving many client channels through a single selector.
+ *
+ * <p>All reads, writes and interest changes of a channel happen on the worker
+ * thread. Other threads hand work to the worker through a task queue, and wake
+ * the selector so the task is run promptly.
+ */
+public class NioWorker implements Runnable {
+
+  private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+  private final IntermediaryServer server;
+  private final Selector selector;
+  private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+  private volatile boolean running = true;
+
+  /**
+   * Creates a worker with its own selector.
+   *
+   * @param server The server managing the connections
+   * @throws IOException If the selector could not be opened
+   */
+  public NioWorker(IntermediaryServer server) throws IOException {
+    this.server = server;
+    this.selector = Selector.open();
+  }
+
+  /**
+   * Hands a batch of accepted channels to the worker, waking it up only once.
+   * May be called from any thread.
+   *
+   * @param channels The accepted socket channels
+   */
+  public void registerAll(List<SocketChannel> channels) {
+    this.submit(() -> channels.forEach(this::registerOnWorkerThread));
+  }
+
+  /**
+   * Asks the worker to write the queued outbound data of a client.
+   * May be called from any thread.
+   *
+   * @param clientHandler The client with queued outbound data
+   */
+  void requestWrite(NioClientHandler clientHandler) {
+    this.submit(clientHandler::onWriteRequested);
+  }
+
+  /**
+   * Queues a task for the worker thread and wakes up the selector.
+   *
+   * @param task The task to run on the worker thread
+   */
+  private void submit(Runnable task) {
+    this.pendingTasks.add(task);
+    this.selector.wakeup();
+  }
+
+  /**
+   * Stops the worker and closes all its channels.
+   */
+  public void stop() {
+    this.running = false;
+    this.selector.wakeup();
+  }
+
+  /**
+   * Selects and serves ready channels until the worker is stopped.
+   */
+  @Override
+  public void run() {
+    while (this.running) {
+      try {
+        this.selector.select();
+        this.runPendingTasks();
+        this.handleSelectedKeys();
+      } catch (IOException e) {
+        Logger.error("Error in NIO worker loop: " + e.getMessage());
+      }
+    }
+    this.closeAll();
+  }
+
+  /**
+   * Runs the tasks handed over by other threads.
+   */
+  private void runPendingTasks() {
+    Runnable task = this.pendingTasks.poll();
+    while (task != null) {
+      task.run();
+      task = this.pendingTasks.poll();
+    }
+  }
+
+  /**
+   * Reads from and writes to all channels that are ready.
+   */
+  private void handleSelectedKeys() {
+    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+    while (keys.hasNext()) {
+      SelectionKey key = keys.next();
+      keys.remove();
+      NioClientHandler clientHandler = (NioClientHandler) key.attachment();
+      try {
+        if (key.isValid() && key.isReadable()) {
+          clientHandler.onReadable(this.readBuffer);
+        }
+        if (key.isValid() && key.isWritable()) {
+          clientHandler.onWritable();
+        }
+      } catch (IOException | RuntimeException e) {
+        Logger.info("Closing connection to " + clientHandler.getRemoteAddress()
+            + ": " + e.getMessage());
+        clientHandler.close();
+      }
+    }
+  }
+
+  /**
+   * Registers an accepted channel with the selector.
+   * Must be called on the worker thread.
+   *
+   * @param channel The accepted socket channel
+   */
+  private void registerOnWorkerThread(SocketChannel channel) {
+    try {
+      channel.configureBlocking(false);
+      NioClientHandler clientHandler = new NioClientHandler(channel, this.server, this);
+      SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ, clientHandler);
+      clientHandler.setSelectionKey(key);
+    } catch (IOException e) {
+      Logger.error("Could not register client channel: " + e.getMessage());
+      try {
+        channel.close();
+      } catch (IOException closeException) {
+        Logger.error("Failed to close channel: " + closeException.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Closes all channels served by the worker, and its selector.
+   */
+  private void closeAll() {
+    for (SelectionKey key : this.selector.keys()) {
+      if (key.attachment() instanceof NioClientHandler clientHandler) {
+        clientHandler.close();
+      }
+    }
+    try {
+      this.selector.close();
+    } catch (IOException e) {
+      Logger.error("Failed to close selector: " + e.getMessage());
+    }
+  }
+}
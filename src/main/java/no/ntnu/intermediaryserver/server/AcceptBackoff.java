@@ -0,0 +1,47 @@
+package no.ntnu.intermediaryserver.server;
+
+/**
+ * Slows an accept loop down while accepting connections keeps failing, for
+ * example because the process has run out of file descriptors. Without it the
+ * loop would retry at once, spinning and flooding the log.
+ *
+ * <p>The pause starts at {@value #MIN_DELAY_MS} ms and doubles with every
+ * failure in a row, up to {@value #MAX_DELAY_MS} ms. It starts over once a
+ * connection has been accepted.
+ */
+public class AcceptBackoff {
+
+  private static final long MIN_DELAY_MS = 10;
+  private static final long MAX_DELAY_MS = 1000;
+
+  private long delayMs = MIN_DELAY_MS;
+
+  /**
+   * Pauses the calling thread after a failed accept, for longer the more
+   * accepts have failed in a row.
+   */
+  public void pause() {
+    try {
+      Thread.sleep(this.delayMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.delayMs = Math.min(this.delayMs * 2, MAX_DELAY_MS);
+  }
+
+  /**
+   * Starts the pause over, after a connection has been accepted.
+   */
+  public void reset() {
+    this.delayMs = MIN_DELAY_MS;
+  }
+
+  /**
+   * Gets how long the next pause is.
+   *
+   * @return the next pause, in milliseconds
+   */
+  public long getDelayMs() {
+    return this.delayMs;
+  }
+}
@@ -0,0 +1,130 @@
+package no.ntnu.intermediaryserver.server;
+
+import java.util.concurrent.TimeUnit;
+import no.ntnu.tools.Logger;
+
+/**
+ * Collects how long the server takes to fan a broadcast out to its recipients.
+ *
+ * <p>The fan-out latency of a broadcast is the time from the server starting to
+ * handle it until the message has been encoded and queued for every recipient.
+ * Writing to the recipients then happens concurrently, on each connection's writer.
+ *
+ * <p>Broadcasts are not logged one by one. Instead a summary of the broadcasts
+ * recorded since the previous one is logged at most every
+ * {@value #SUMMARY_INTERVAL_SECONDS} seconds.
+ */
+public class BroadcastStatistics {
+
+  private static final long SUMMARY_INTERVAL_SECONDS = 30;
+  private static final long SUMMARY_INTERVAL_NANOS =
+      TimeUnit.SECONDS.toNanos(SUMMARY_INTERVAL_SECONDS);
+
+  private long broadcastCount = 0;
+  private long recipientCount = 0;
+  private long totalFanOutNanos = 0;
+  private long lastFanOutNanos = 0;
+  private long maxFanOutNanos = 0;
+  // Since the last summary was logged
+  private long summaryStartNanos = System.nanoTime();
+  private long summaryBroadcastCount = 0;
+  private long summaryRecipientCount = 0;
+  private long summaryFanOutNanos = 0;
+  private long summaryMaxFanOutNanos = 0;
+
+  /**
+   * Records a broadcast, and logs a summary if one is due.
+   *
+   * @param recipients  The number of recipients of the broadcast
+   * @param fanOutNanos The fan-out latency of the broadcast, in nanoseconds
+   */
+  public void record(int recipients, long fanOutNanos) {
+    String summary;
+    synchronized (this) {
+      this.broadcastCount++;
+      this.recipientCount += recipients;
+      this.totalFanOutNanos += fanOutNanos;
+      this.lastFanOutNanos = fanOutNanos;
+      this.maxFanOutNanos = Math.max(this.maxFanOutNanos, fanOutNanos);
+      this.summaryBroadcastCount++;
+      this.summaryRecipientCount += recipients;
+      this.summaryFanOutNanos += fanOutNanos;
+      this.summaryMaxFanOutNanos = Math.max(this.summaryMaxFanOutNanos, fanOutNanos);
+      summary = this.takeSummary(System.nanoTime());
+    }
+    // Logged outside the lock, so other broadcasts are not held up by the log
+    if (summary != null) {
+      Logger.info(summary);
+    }
+  }
+
+  /**
+   * Describes the broadcasts recorded since the previous summary, if the summary
+   * interval has passed, and starts a new interval. Must be called while holding
+   * the lock.
+   *
+   * @param now The current time, from {@link System#nanoTime()}
+   * @return The summary, or null if none is due
+   */
+  private String takeSummary(long now) {
+    if (now - this.summaryStartNanos < SUMMARY_INTERVAL_NANOS) {
+      return null;
+    }
+    String summary = "Broadcast " + this.summaryBroadcastCount + " messages to "
+        + this.summaryRecipientCount + " clients in the last "
+        + TimeUnit.NANOSECONDS.toSeconds(now - this.summaryStartNanos) + " s, average fan-out "
+        + (this.summaryFanOutNanos / this.summaryBroadcastCount / 1000) + " us, max "
+        + (this.summaryMaxFanOutNanos / 1000) + " us";
+    this.summaryStartNanos = now;
+    this.summaryBroadcastCount = 0;
+    this.summaryRecipientCount = 0;
+    this.summaryFanOutNanos = 0;
+    this.summaryMaxFanOutNanos = 0;
+    return summary;
+  }
+
+  /**
+   * Gets the number of recorded broadcasts.
+   *
+   * @return The number of broadcasts
+   */
+  public synchronized long getBroadcastCount() {
+    return this.broadcastCount;
+  }
+
+  /**
+   * Gets the total number of recipients of all recorded broadcasts.
+   *
+   * @return The number of recipients
+   */
+  public synchronized long getRecipientCount() {
+    return this.recipientCount;
+  }
+
+  /**
+   * Gets the fan-out latency of the latest broadcast.
+   *
+   * @return The latency in nanoseconds, or 0 if there has been no broadcast
+   */
+  public synchronized long getLastFanOutNanos() {
+    return this.lastFanOutNanos;
+  }
+
+  /**
+   * Gets the highest fan-out latency of all recorded broadcasts.
+   *
+   * @return The latency in nanoseconds, or 0 if there has been no broadcast
+   */
+  public synchronized long getMaxFanOutNanos() {
+    return this.maxFanOutNanos;
+  }
+
+  /**
+   * Gets the average fan-out latency of all recorded broadcasts.
+   *
+   * @return The latency in nanoseconds, or 0 if there has been no broadcast
+   */
+  public synchronized long getAverageFanOutNanos() {
+    return this.broadcastCount == 0 ? 0 : this.totalFanOutNanos / this.broadcastCount;
+  }
+}
@@ -0,0 +1,182 @@
+package no.ntnu.intermediaryserver.server;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import no.ntnu.constants.Endpoints;
+
+/**
+ * The connected clients of a server, indexed by client type and ID.
+ *
+ * <p>Each client type has its own concurrent map from ID to client, so looking
+ * up a client or all clients of a type never touches the clients of other
+ * types. The clients of a type are also kept as an immutable snapshot for
+ * broadcasts. A change only makes the snapshot stale, and the next lookup of the
+ * type copies the clients again, so clients connecting in a burst are not copied
+ * once each, while repeated broadcasts share the same list.
+ *
+ * @param <T> The type of the registered clients
+ */
+public class ClientRegistry<T> {
+
+  private final Map<Endpoints, TypeIndex<T>> indexes = new EnumMap<>(Endpoints.class);
+
+  /**
+   * Creates an empty registry.
+   */
+  public ClientRegistry() {
+    for (Endpoints clientType : Endpoints.values()) {
+      this.indexes.put(clientType, new TypeIndex<>());
+    }
+  }
+
+  /**
+   * Registers a client, replacing any client registered with the same type and ID.
+   *
+   * @param clientType the type of the client
+   * @param clientId   the unique identifier for the client
+   * @param client     the client to register
+   * @return the client that was replaced, or null if there was none
+   */
+  public T put(Endpoints clientType, String clientId, T client) {
+    if (clientType == null || clientId == null || client == null) {
+      throw new IllegalArgumentException("Client type, ID and client cannot be null");
+    }
+    TypeIndex<T> index = this.indexes.get(clientType);
+    T previous = index.clients.put(clientId, client);
+    index.modifications.incrementAndGet();
+    return previous;
+  }
+
+  /**
+   * Removes the client registered with a type and ID.
+   *
+   * @param clientType the type of the client
+   * @param clientId   the unique identifier for the client
+   * @return the removed client, or null if there was none
+   */
+  public T remove(Endpoints clientType, String clientId) {
+    if (clientType == null || clientId == null) {
+      return null;
+    }
+    TypeIndex<T> index = this.indexes.get(clientType);
+    T removed = index.clients.remove(clientId);
+    if (removed != null) {
+      index.modifications.incrementAndGet();
+    }
+    return removed;
+  }
+
+  /**
+   * Removes a client, but only if it is still the one registered with the type
+   * and ID.
+   *
+   * @param clientType the type of the client
+   * @param clientId   the unique identifier for the client
+   * @param client     the client to remove
+   * @return true if the client was removed, false otherwise
+   */
+  public boolean remove(Endpoints clientType, String clientId, T client) {
+    if (clientType == null || clientId == null || client == null) {
+      return false;
+    }
+    TypeIndex<T> index = this.indexes.get(clientType);
+    boolean removed = index.clients.remove(clientId, client);
+    if (removed) {
+      index.modifications.incrementAndGet();
+    }
+    return removed;
+  }
+
+  /**
+   * Gets the client registered with a type and ID.
+   *
+   * @param clientType the type of the client
+   * @param clientId   the unique identifier for the client
+   * @return the client, or null if not found
+   */
+  public T get(Endpoints clientType, String clientId) {
+    if (clientType == null || clientId == null) {
+      return null;
+    }
+    return this.indexes.get(clientType).clients.get(clientId);
+  }
+
+  /**
+   * Gets all clients of a type. The returned list is an immutable snapshot, which
+   * is safe to iterate while clients connect and disconnect.
+   *
+   * @param clientType the type of the clients
+   * @return the clients of the type
+   */
+  public List<T> getAll(Endpoints clientType) {
+    if (clientType == null) {
+      return Collections.emptyList();
+    }
+    return this.indexes.get(clientType).getSnapshot();
+  }
+
+  /**
+   * Gets the number of clients of a type.
+   *
+   * @param clientType the type of the clients
+   * @return the number of clients
+   */
+  public int size(Endpoints clientType) {
+    if (clientType == null) {
+      return 0;
+    }
+    return this.indexes.get(clientType).clients.size();
+  }
+
+  /**
+   * The clients of a single type.
+   *
+   * @param <T> The type of the registered clients
+   */
+  private static final class TypeIndex<T> {
+    private final ConcurrentHashMap<String, T> clients = new ConcurrentHashMap<>();
+    // Counted after every change to the clients, so a snapshot knows when it is stale
+    private final AtomicLong modifications = new AtomicLong();
+    private volatile Snapshot<T> snapshot = new Snapshot<>(0, Collections.emptyList());
+
+    /**
+     * Gets the snapshot of the clients, copying them if the snapshot is stale.
+     *
+     * @return an immutable list of the clients
+     */
+    private List<T> getSnapshot() {
+      Snapshot<T> current = this.snapshot;
+      if (current.modification != this.modifications.get()) {
+        synchronized (this) {
+          current = this.snapshot;
+          // Read before copying, a change made while copying leaves the copy stale
+          long modification = this.modifications.get();
+          if (current.modification != modification) {
+            current = new Snapshot<>(modification, List.copyOf(this.clients.values()));
+            this.snapshot = current;
+          }
+        }
+      }
+      return current.clients;
+    }
+  }
+
+  /**
+   * An immutable copy of the clients of a type.
+   *
+   * @param <T> The type of the registered clients
+   */
+  private static final class Snapshot<T> {
+    private final long modification;
+    private final List<T> clients;
+
+    private Snapshot(long modification, List<T> clients) {
+      this.modification = modification;
+      this.clients = clients;
+    }
+  }
+}
@@ -3,31 +3,92 @@ package no.ntnu.intermediaryserver.server;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import no.ntnu.constants.Endpoints;
 import no.ntnu.intermediaryserver.clienthandler.ClientHandler;
+import no.ntnu.intermediaryserver.nio.NioServer;
+import no.ntnu.messages.subscriptions.Topic;
 import no.ntnu.tools.Logger;
+import no.ntnu.tools.encryption.PublicKeyHolder;
+import no.ntnu.tools.threading.ThreadMode;
 
 /**
  * The IntermediaryServer class is responsible for managing the connections
  * between greenhouse nodes and control panels. It listens for incoming client
  * connections, then assigns each client to a handler thread for processing.
+ * In {@link ServerMode#VIRTUAL_THREADS} mode the handler threads are virtual threads.
+ * In {@link ServerMode#NIO} mode the connections are instead served by a small,
+ * fixed pool of selector threads.
  */
 public class IntermediaryServer implements Runnable {
   private boolean serverIsRunning;
 
-  // Thread-safe collections for managing client sockets
-  private final ConcurrentHashMap<String, ClientHandler> clientHandlers = new ConcurrentHashMap<>();
+  // Thread-safe index of the connected clients, by type and ID
+  private final ClientRegistry<ClientHandler> clientHandlers = new ClientRegistry<>();
+  private final SubscriptionRegistry<ClientHandler> subscriptions = new SubscriptionRegistry<>();
+  // Kept across reconnects of a node, so its sequence numbers keep increasing
+  private final Map<String, SensorSnapshotHistory> sensorHistories = new ConcurrentHashMap<>();
   private ServerSocket listeningSocket;
 
+  private final ServerMode serverMode;
+  private NioServer nioServer;
+  private final BroadcastStatistics broadcastStatistics = new BroadcastStatistics();
+
+  /**
+   * Creates a server that serves each client on its own thread.
+   */
+  public IntermediaryServer() {
+    this(ServerMode.BLOCKING);
+  }
+
+  /**
+   * Creates a server that serves its clients in the given mode.
+   *
+   * @param serverMode the way client connections are served
+   */
+  public IntermediaryServer(ServerMode serverMode) {
+    if (serverMode == null) {
+      throw new IllegalArgumentException("Server mode cannot be null");
+    }
+    this.serverMode = serverMode;
+  }
+
+  /**
+   * Gets the mode the server serves its clients in.
+   *
+   * @return the server mode
+   */
+  public ServerMode getServerMode() {
+    return this.serverMode;
+  }
+
+  /**
+   * Gets the statistics of the broadcasts sent through the server.
+   *
+   * @return the broadcast statistics
+   */
+  public BroadcastStatistics getBroadcastStatistics() {
+    return this.broadcastStatistics;
+  }
+
   /**
    * Starts the server and listens for incoming client connections on the
    * specified port.
-   * Creates a new thread to handle each client connection.
+   * Creates a new thread to handle each client connection, unless the server
+   * runs in NIO mode. Pauses after accepting a connection fails, see
+   * {@link AcceptBackoff}.
    */
   public void startServer() {
+    // Clients that encrypt send their session key wrapped with the server's public key
+    PublicKeyHolder.preload();
+    if (this.serverMode == ServerMode.NIO) {
+      this.startNioServer();
+      return;
+    }
+
     this.listeningSocket = this.openListeningSocket();
 
     if (this.listeningSocket == null) {
@@ -36,6 +97,7 @@ public class IntermediaryServer implements Runnable {
     }
 
     this.serverIsRunning = true;
+    AcceptBackoff backoff = new AcceptBackoff();
 
     // Runs the whole time while application is up
     while (this.serverIsRunning) {
@@ -43,28 +105,40 @@ public class IntermediaryServer implements Runnable {
         // Accepts the next client connection
         ClientHandler clientHandler = acceptNextClientConnection();
         if (clientHandler != null) {
-          new Thread(clientHandler).start();
+          backoff.reset();
+          this.getHandlerThreadMode().start("client-handler", false, clientHandler);
+        } else if (this.serverIsRunning) {
+          backoff.pause();
         }
       } catch (Exception e) {
         Logger.error("Error in server loop: " + e.getMessage());
       }
-      this.delay(10);
     }
   }
 
   /**
-   * Adds a small delay to the server thread to prevent excessive CPU usage.
+   * Gets the kind of thread each client handler runs on.
    *
-   * @param delay the delay in milliseconds
+   * @return the thread mode for client handlers
    */
-  private void delay(int delay) {
-    // Add a small delay to prevent excessive CPU usage
-    try {
-      Thread.sleep(delay);
-    } catch (InterruptedException e) {
-      Logger.error("Error sleeping server thread: " + e.getMessage());
-      Thread.currentThread().interrupt();
+  private ThreadMode getHandlerThreadMode() {
+    ThreadMode threadMode = ThreadMode.PLATFORM;
+    if (this.serverMode == ServerMode.VIRTUAL_THREADS) {
+      threadMode = ThreadMode.VIRTUAL;
     }
+    return threadMode;
+  }
+
+  /**
+   * Starts serving clients with non-blocking channels.
+   * Blocks until the server is stopped.
+   */
+  private void startNioServer() {
+    synchronized (this) {
+      this.nioServer = new NioServer(this);
+      this.serverIsRunning = true;
+    }
+    this.nioServer.run();
   }
 
   /**
@@ -76,6 +150,9 @@ public class IntermediaryServer implements Runnable {
       return;
     }
     this.serverIsRunning = false;
+    if (this.nioServer != null) {
+      this.nioServer.stop();
+    }
     try {
       if (this.listeningSocket != null && !this.listeningSocket.isClosed()) {
         this.listeningSocket.close();
@@ -95,7 +172,7 @@ public class IntermediaryServer implements Runnable {
    */
   public synchronized void addClientHandler(Endpoints clientType, String clientId,
                                             ClientHandler clientHandler) {
-    this.clientHandlers.put(clientType + clientId, clientHandler);
+    this.clientHandlers.put(clientType, clientId, clientHandler);
     Logger.info("Connected " + clientType + " with ID: " + clientId);
   }
 
@@ -105,13 +182,28 @@ public class IntermediaryServer implements Runnable {
    * @param clientId the unique identifier for the client
    */
   public synchronized void removeClientHandler(Endpoints clientType, String clientId) {
-    if (this.clientHandlers.remove(clientType + clientId) == null) {
+    if (this.clientHandlers.remove(clientType, clientId) == null) {
       Logger.error("Could not remove client, does not exist: " + clientType + clientId);
     } else {
       Logger.info("Disconnected " + clientType + " with ID: " + clientId);
     }
   }
 
+  /**
+   * Removes a client from the collection, but only if it is still registered
+   * with the given client handler.
+   *
+   * @param clientType    the type of client (CONTROL_PANEL or GREENHOUSE)
+   * @param clientId      the unique identifier for the client
+   * @param clientHandler the client handler that is being removed
+   */
+  public void removeClientHandler(Endpoints clientType, String clientId,
+                                  ClientHandler clientHandler) {
+    if (this.clientHandlers.remove(clientType, clientId, clientHandler)) {
+      Logger.info("Disconnected " + clientType + " with ID: " + clientId);
+    }
+  }
+
   /**
    * Retrieves a specific client socket based on client type and ID.
    *
@@ -120,25 +212,73 @@ public class IntermediaryServer implements Runnable {
    * @return the client handler for the client, or null if not found
    */
   public ClientHandler getClientHandler(Endpoints clientType, String clientId) {
-    return this.clientHandlers.get(clientType + clientId);
+    return this.clientHandlers.get(clientType, clientId);
   }
 
   /**
    * Retrieves all client sockets of a specific type.
    *
    * @param clientType the type of client (CONTROL_PANEL or GREENHOUSE)
-   * @return a list of client handlers for the specified client type
+   * @return an immutable snapshot of the client handlers for the specified client type
    */
   public List<ClientHandler> getClientHandlers(Endpoints clientType) {
-    ArrayList<ClientHandler> sockets = new ArrayList<>();
+    return this.clientHandlers.getAll(clientType);
+  }
 
-    this.clientHandlers.forEach((key, value) -> {
-      if (key.startsWith(clientType.getValue())) {
-        sockets.add(value);
-      }
-    });
+  /**
+   * Retrieves the client sockets of a specific type that should receive a
+   * message about the given topics: the clients subscribed to any of the topics,
+   * and the clients without subscriptions.
+   *
+   * @param clientType the type of client (CONTROL_PANEL or GREENHOUSE)
+   * @param topics     the topics of the message
+   * @return a list of the client handlers to deliver the message to
+   */
+  public List<ClientHandler> getSubscribedClientHandlers(Endpoints clientType,
+                                                         Collection<Topic> topics) {
+    return this.subscriptions.selectRecipients(this.clientHandlers.getAll(clientType), topics);
+  }
+
+  /**
+   * Subscribes a client to topics.
+   *
+   * @param clientHandler the client handler of the subscribing client
+   * @param topics        the topics to subscribe to
+   * @return the number of topics the client is subscribed to afterwards
+   */
+  public int subscribe(ClientHandler clientHandler, Collection<Topic> topics) {
+    return this.subscriptions.subscribe(clientHandler, topics);
+  }
+
+  /**
+   * Unsubscribes a client from topics.
+   *
+   * @param clientHandler the client handler of the subscribed client
+   * @param topics        the topics to unsubscribe from
+   * @return the number of topics the client is subscribed to afterwards
+   */
+  public int unsubscribe(ClientHandler clientHandler, Collection<Topic> topics) {
+    return this.subscriptions.unsubscribe(clientHandler, topics);
+  }
 
-    return sockets;
+  /**
+   * Removes all subscriptions of a client.
+   *
+   * @param clientHandler the client handler of the subscribed client
+   */
+  public void unsubscribeAll(ClientHandler clientHandler) {
+    this.subscriptions.unsubscribeAll(clientHandler);
+  }
+
+  /**
+   * Gets the history of the sensor data a node has streamed, creating it on
+   * first use.
+   *
+   * @param nodeId the ID of the node
+   * @return the sensor data history of the node
+   */
+  public SensorSnapshotHistory getSensorHistory(String nodeId) {
+    return this.sensorHistories.computeIfAbsent(nodeId, SensorSnapshotHistory::new);
   }
 
   /**
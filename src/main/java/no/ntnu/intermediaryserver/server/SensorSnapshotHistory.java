@@ -0,0 +1,153 @@
+package no.ntnu.intermediaryserver.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.subscriptions.SensorDataDelta;
+
+/**
+ * The recent snapshots of the sensor data a node has streamed, used to send
+ * control panels only the readings that changed.
+ *
+ * <p>Every snapshot gets the next sequence number, and only a hash of each reading
+ * is kept, for the last {@link #HISTORY_SIZE} snapshots. A delta against an
+ * acknowledged snapshot contains every reading that changed in any snapshot
+ * since then, so it is also correct for a panel that has already applied some
+ * of the later snapshots without the server having seen the acknowledgement.
+ * When the acknowledged snapshot is no longer in the history, and for every
+ * {@link #KEYFRAME_INTERVAL}th snapshot, a keyframe with all readings is sent
+ * instead, so panels recover from lost updates.
+ */
+public class SensorSnapshotHistory {
+
+  /**
+   * Every snapshot with a sequence number divisible by this is sent as a keyframe.
+   */
+  public static final int KEYFRAME_INTERVAL = 10;
+
+  /**
+   * The number of snapshots deltas can be computed against.
+   */
+  public static final int HISTORY_SIZE = 16;
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final String nodeId;
+  // Reading hashes by sequence number, the oldest snapshot first
+  private final Map<Long, long[]> history = new LinkedHashMap<>() {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+      return this.size() > HISTORY_SIZE;
+    }
+  };
+  private long lastSequence = 0;
+
+  /**
+   * Creates an empty history.
+   *
+   * @param nodeId The ID of the node streaming the sensor data
+   */
+  public SensorSnapshotHistory(String nodeId) {
+    if (nodeId == null) {
+      throw new IllegalArgumentException("Node ID cannot be null");
+    }
+    this.nodeId = nodeId;
+  }
+
+  /**
+   * Records the sensor data of the node as the next snapshot.
+   *
+   * @param sensorData The sensor data, formatted as {@code nodeId;reading¤reading}
+   * @return The recorded snapshot
+   */
+  public synchronized Snapshot record(String sensorData) {
+    String[] readings = new String[0];
+    String[] parts = sensorData.split(Delimiters.BODY_FIELD.getValue(), 2);
+    if (parts.length == 2 && !parts[1].isEmpty()) {
+      readings = parts[1].split(Delimiters.BODY_SENSOR_SEPARATOR.getValue());
+    }
+    long[] hashes = new long[readings.length];
+    for (int i = 0; i < readings.length; i++) {
+      hashes[i] = hash(readings[i]);
+    }
+    this.lastSequence++;
+    this.history.put(this.lastSequence, hashes);
+    return new Snapshot(this.lastSequence, readings);
+  }
+
+  /**
+   * Creates the delta that brings a panel from an acknowledged snapshot to a
+   * recorded one.
+   *
+   * @param snapshot     The recorded snapshot
+   * @param baseSequence The sequence number of the acknowledged snapshot, or 0 if
+   *                     the panel has none
+   * @return The delta, or a keyframe if the acknowledged snapshot is unknown
+   */
+  public synchronized SensorDataDelta createDelta(Snapshot snapshot, long baseSequence) {
+    String[] readings = snapshot.readings;
+    Map<Integer, String> changed = new TreeMap<>();
+    boolean keyframe = snapshot.sequence % KEYFRAME_INTERVAL == 0
+        || baseSequence >= snapshot.sequence
+        || !this.history.containsKey(baseSequence)
+        || !this.history.containsKey(snapshot.sequence);
+
+    if (keyframe) {
+      for (int i = 0; i < readings.length; i++) {
+        changed.put(i, readings[i]);
+      }
+    } else {
+      long[] previous = this.history.get(baseSequence);
+      for (long sequence = baseSequence + 1; sequence <= snapshot.sequence; sequence++) {
+        long[] current = this.history.get(sequence);
+        for (int i = 0; i < readings.length; i++) {
+          if (i >= previous.length || i >= current.length || previous[i] != current[i]) {
+            changed.put(i, readings[i]);
+          }
+        }
+        previous = current;
+      }
+    }
+    return new SensorDataDelta(this.nodeId, snapshot.sequence, keyframe, readings.length,
+        changed);
+  }
+
+  /**
+   * Hashes a reading with 64-bit FNV-1a.
+   *
+   * @param reading The reading
+   * @return The hash of the reading
+   */
+  private static long hash(String reading) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < reading.length(); i++) {
+      hash ^= reading.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * A recorded snapshot of the sensor data of a node.
+   */
+  public static final class Snapshot {
+    private final long sequence;
+    private final String[] readings;
+
+    private Snapshot(long sequence, String[] readings) {
+      this.sequence = sequence;
+      this.readings = readings;
+    }
+
+    /**
+     * Gets the sequence number of the snapshot.
+     *
+     * @return The sequence number
+     */
+    public long getSequence() {
+      return this.sequence;
+    }
+  }
+}
@@ -5,8 +5,12 @@ import static no.ntnu.tools.parsing.Parser.parseIntegerOrError;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import no.ntnu.messages.framing.OverflowPolicy;
 import no.ntnu.tools.Logger;
+import no.ntnu.tools.encryption.PublicKeyHolder;
+import no.ntnu.tools.threading.ThreadMode;
 
 /**
  * ServerConfig is a singleton class that manages the port number and host for
@@ -30,7 +34,28 @@ public class ServerConfig {
 
   private static final String HOST = "localhost";
 
+  // Pending connections the operating system queues before they are accepted
+  private static final int DEFAULT_ACCEPT_BACKLOG = 1024;
+  // Connections accepted per wakeup of the NIO acceptor before handing them to the workers
+  private static final int DEFAULT_ACCEPT_BATCH_SIZE = 64;
+  // Queued messages written to a client with one flush
+  private static final int DEFAULT_WRITE_BATCH_SIZE = 64;
+  // Time a message to a client may wait for more messages to be flushed with
+  private static final long DEFAULT_WRITE_MAX_LATENCY_MS = 0;
+  // Messages queued for a client before the overflow policy applies
+  private static final int DEFAULT_OUTBOUND_QUEUE_CAPACITY = 1024;
+
   private static int currentPort = DEFAULT_PORT_NUMBER; // Default port number
+  private static int acceptBacklog = DEFAULT_ACCEPT_BACKLOG;
+  private static int acceptBatchSize = DEFAULT_ACCEPT_BATCH_SIZE;
+  private static int writeBatchSize = DEFAULT_WRITE_BATCH_SIZE;
+  private static long writeMaxLatencyMs = DEFAULT_WRITE_MAX_LATENCY_MS;
+  private static int outboundQueueCapacity = DEFAULT_OUTBOUND_QUEUE_CAPACITY;
+  private static OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+  private static ThreadMode clientThreadMode = ThreadMode.PLATFORM;
+  private static boolean sessionEncryption = false;
+  // Null for the file the server stores its own key in
+  private static Path serverPublicKeyFile = null;
 
 
   static {
@@ -80,6 +105,217 @@ public class ServerConfig {
     writePortToFile(portNumber);
   }
 
+  /**
+   * Get the maximum number of pending connections the listening socket queues
+   * before they are accepted.
+   *
+   * @return The accept backlog
+   */
+  public static int getAcceptBacklog() {
+    return ServerConfig.acceptBacklog;
+  }
+
+  /**
+   * Set the maximum number of pending connections the listening socket queues
+   * before they are accepted. Takes effect the next time a listening socket is opened.
+   *
+   * @param acceptBacklog The accept backlog, must be positive
+   */
+  public static void setAcceptBacklog(int acceptBacklog) {
+    if (acceptBacklog < 1) {
+      throw new IllegalArgumentException("Accept backlog must be positive");
+    }
+    ServerConfig.acceptBacklog = acceptBacklog;
+  }
+
+  /**
+   * Get the maximum number of connections accepted in one batch, before they are
+   * handed to the I/O threads.
+   *
+   * @return The accept batch size
+   */
+  public static int getAcceptBatchSize() {
+    return ServerConfig.acceptBatchSize;
+  }
+
+  /**
+   * Set the maximum number of connections accepted in one batch, before they are
+   * handed to the I/O threads. A batch size of 1 disables batching.
+   *
+   * @param acceptBatchSize The accept batch size, must be positive
+   */
+  public static void setAcceptBatchSize(int acceptBatchSize) {
+    if (acceptBatchSize < 1) {
+      throw new IllegalArgumentException("Accept batch size must be positive");
+    }
+    ServerConfig.acceptBatchSize = acceptBatchSize;
+  }
+
+  /**
+   * Get the maximum number of queued messages written to a client with one flush.
+   *
+   * @return The write batch size
+   */
+  public static int getWriteBatchSize() {
+    return ServerConfig.writeBatchSize;
+  }
+
+  /**
+   * Set the maximum number of queued messages written to a client with one flush.
+   * Takes effect for clients connecting afterwards.
+   *
+   * @param writeBatchSize The write batch size, must be positive
+   */
+  public static void setWriteBatchSize(int writeBatchSize) {
+    if (writeBatchSize < 1) {
+      throw new IllegalArgumentException("Write batch size must be positive");
+    }
+    ServerConfig.writeBatchSize = writeBatchSize;
+  }
+
+  /**
+   * Get the longest time a message to a client may wait for more messages to be
+   * flushed together with.
+   *
+   * @return The maximum write latency in milliseconds
+   */
+  public static long getWriteMaxLatencyMs() {
+    return ServerConfig.writeMaxLatencyMs;
+  }
+
+  /**
+   * Set the longest time a message to a client may wait for more messages to be
+   * flushed together with. With 0, messages are only batched when they queue up
+   * while the previous batch is written. Takes effect for clients connecting afterwards.
+   *
+   * @param writeMaxLatencyMs The maximum write latency in milliseconds, must not be negative
+   */
+  public static void setWriteMaxLatencyMs(long writeMaxLatencyMs) {
+    if (writeMaxLatencyMs < 0) {
+      throw new IllegalArgumentException("Write max latency cannot be negative");
+    }
+    ServerConfig.writeMaxLatencyMs = writeMaxLatencyMs;
+  }
+
+  /**
+   * Get the maximum number of messages queued for a client before the overflow
+   * policy applies.
+   *
+   * @return The outbound queue capacity
+   */
+  public static int getOutboundQueueCapacity() {
+    return ServerConfig.outboundQueueCapacity;
+  }
+
+  /**
+   * Set the maximum number of messages queued for a client before the overflow
+   * policy applies. Takes effect for clients connecting afterwards.
+   *
+   * @param outboundQueueCapacity The outbound queue capacity, must be positive
+   */
+  public static void setOutboundQueueCapacity(int outboundQueueCapacity) {
+    if (outboundQueueCapacity < 1) {
+      throw new IllegalArgumentException("Outbound queue capacity must be positive");
+    }
+    ServerConfig.outboundQueueCapacity = outboundQueueCapacity;
+  }
+
+  /**
+   * Get what the server does when a message is sent to a client whose outbound
+   * queue is full.
+   *
+   * @return The overflow policy
+   */
+  public static OverflowPolicy getOverflowPolicy() {
+    return ServerConfig.overflowPolicy;
+  }
+
+  /**
+   * Set what the server does when a message is sent to a client whose outbound
+   * queue is full. Takes effect for clients connecting afterwards.
+   *
+   * @param overflowPolicy The overflow policy
+   */
+  public static void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+    if (overflowPolicy == null) {
+      throw new IllegalArgumentException("Overflow policy cannot be null");
+    }
+    ServerConfig.overflowPolicy = overflowPolicy;
+  }
+
+  /**
+   * Get the kind of thread the nodes and control panels listen for messages
+   * from the server on.
+   *
+   * @return The client thread mode
+   */
+  public static ThreadMode getClientThreadMode() {
+    return ServerConfig.clientThreadMode;
+  }
+
+  /**
+   * Set the kind of thread the nodes and control panels listen for messages
+   * from the server on. Takes effect for connections opened afterwards.
+   *
+   * @param clientThreadMode The client thread mode
+   */
+  public static void setClientThreadMode(ThreadMode clientThreadMode) {
+    if (clientThreadMode == null) {
+      throw new IllegalArgumentException("Client thread mode cannot be null");
+    }
+    ServerConfig.clientThreadMode = clientThreadMode;
+  }
+
+  /**
+   * Check if the nodes and control panels encrypt their messages to and from
+   * the server with a session key.
+   *
+   * @return true if the messages are encrypted
+   */
+  public static boolean isSessionEncryption() {
+    return ServerConfig.sessionEncryption;
+  }
+
+  /**
+   * Set whether the nodes and control panels encrypt their messages to and from
+   * the server with a session key. Takes effect for connections opened
+   * afterwards.
+   *
+   * @param sessionEncryption true to encrypt the messages
+   */
+  public static void setSessionEncryption(boolean sessionEncryption) {
+    ServerConfig.sessionEncryption = sessionEncryption;
+  }
+
+  /**
+   * Get the file the nodes and control panels read the server's public key
+   * from, to wrap their session keys with. By default this is the file the
+   * server stores its key in, see {@link PublicKeyHolder}, which clients started
+   * from the same directory as the server find.
+   *
+   * @return The server's public key file
+   */
+  public static Path getServerPublicKeyFile() {
+    if (ServerConfig.serverPublicKeyFile != null) {
+      return ServerConfig.serverPublicKeyFile;
+    }
+    return PublicKeyHolder.getStore().getPublicKeyFile();
+  }
+
+  /**
+   * Set the file the nodes and control panels read the server's public key
+   * from, such as a copy of the server's {@code node.pub} on another machine.
+   * Takes effect the next time they identify themselves.
+   *
+   * @param serverPublicKeyFile The server's public key file
+   */
+  public static void setServerPublicKeyFile(Path serverPublicKeyFile) {
+    if (serverPublicKeyFile == null) {
+      throw new IllegalArgumentException("Server public key file cannot be null");
+    }
+    ServerConfig.serverPublicKeyFile = serverPublicKeyFile;
+  }
+
   /**
    * Write the port number to file.
    *
@@ -0,0 +1,62 @@
+package no.ntnu.intermediaryserver.server;
+
+/**
+ * The ways the intermediary server can serve its client connections.
+ */
+public enum ServerMode {
+
+  /**
+   * One thread per client, each blocking while reading from its socket.
+   */
+  BLOCKING("blocking"),
+
+  /**
+   * One virtual thread per client, each blocking while reading from its socket.
+   * Blocked virtual threads do not occupy an operating system thread, so the
+   * number of clients is not limited by the number of platform threads.
+   */
+  VIRTUAL_THREADS("virtual"),
+
+  /**
+   * Non-blocking channels multiplexed by selectors on a small, fixed pool of I/O threads.
+   */
+  NIO("nio");
+
+  private final String value;
+
+  /**
+   * Constructs a server mode with the specified string value.
+   *
+   * @param value The string representation of the server mode.
+   */
+  ServerMode(String value) {
+    this.value = value;
+  }
+
+  /**
+   * Gets the string value of the server mode.
+   *
+   * @return The string value of the server mode.
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Retrieves a {@link ServerMode} based on its string value.
+   *
+   * @param target The string value to match.
+   * @return The matching server mode, or {@code null} if no match is found.
+   */
+  public static ServerMode fromString(String target) {
+    if (target == null) {
+      return null;
+    }
+    for (ServerMode mode : ServerMode.values()) {
+      if (mode.getValue().equalsIgnoreCase(target)) {
+        return mode;
+      }
+    }
+    return null;
+  }
+}
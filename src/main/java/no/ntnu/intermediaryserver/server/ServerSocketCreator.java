@@ -1,7 +1,9 @@
 package no.ntnu.intermediaryserver.server;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 import no.ntnu.tools.Logger;
 
 /**
@@ -17,6 +19,22 @@ public class ServerSocketCreator {
 
   private static final int MAX_ATTEMPTS = 5;
 
+  /**
+   * Binds a listening socket of some kind to a port number.
+   *
+   * @param <T> The type of listening socket
+   */
+  private interface PortBinder<T> {
+    /**
+     * Binds a new listening socket to the port.
+     *
+     * @param port The port number to bind to
+     * @return The bound listening socket
+     * @throws IOException If the port could not be bound
+     */
+    T bind(int port) throws IOException;
+  }
+
   /**
    * Get a server socket that is available to use.
    *
@@ -24,7 +42,37 @@ public class ServerSocketCreator {
    */
   public static ServerSocket getAvailableServerSocket() {
     ServerConfig.ensureDefaultPort();
-    return createServerSocket(0);
+    return createServerSocket(0,
+        port -> new ServerSocket(port, ServerConfig.getAcceptBacklog()));
+  }
+
+  /**
+   * Get a server socket channel that is available to use.
+   * The channel is bound, but still in blocking mode.
+   *
+   * @return The server socket channel, or null if it could not be created
+   */
+  public static ServerSocketChannel getAvailableServerSocketChannel() {
+    ServerConfig.ensureDefaultPort();
+    return createServerSocket(0, ServerSocketCreator::bindServerSocketChannel);
+  }
+
+  /**
+   * Opens a server socket channel and binds it to a port number.
+   *
+   * @param port The port number to bind to
+   * @return The bound server socket channel
+   * @throws IOException If the port could not be bound
+   */
+  private static ServerSocketChannel bindServerSocketChannel(int port) throws IOException {
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    try {
+      channel.bind(new InetSocketAddress(port), ServerConfig.getAcceptBacklog());
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return channel;
   }
 
   /**
@@ -33,9 +81,10 @@ public class ServerSocketCreator {
    * If this fails after MAX_ATTEMPTS, return null.
    *
    * @param attempt The number of attempts to create the server socket
+   * @param binder  Binds the server socket to a port
    * @return The server socket, or null if it could not be created
    */
-  private static ServerSocket createServerSocket(int attempt) {
+  private static <T> T createServerSocket(int attempt, PortBinder<T> binder) {
 
     if (attempt > MAX_ATTEMPTS) {
       Logger.error("Could not open server socket on port after " + MAX_ATTEMPTS + " attempts");
@@ -44,7 +93,7 @@ public class ServerSocketCreator {
     int port = getPort(attempt);
     int nextAttempt = attempt + 1;
 
-    return attemptToCreateServerSocket(nextAttempt, port);
+    return attemptToCreateServerSocket(nextAttempt, port, binder);
   }
 
   /**
@@ -69,11 +118,13 @@ public class ServerSocketCreator {
    *
    * @param nextAttempt The number of attempts to create the server socket
    * @param port        The port number to use
+   * @param binder      Binds the server socket to a port
    * @return The server socket, or null if it could not be created
    */
-  private static ServerSocket attemptToCreateServerSocket(int nextAttempt, int port) {
+  private static <T> T attemptToCreateServerSocket(int nextAttempt, int port,
+                                                   PortBinder<T> binder) {
     try {
-      ServerSocket serverSocket = new ServerSocket(port);
+      T serverSocket = binder.bind(port);
       Logger.info("Server listening on port " + port);
       ServerConfig.setPortNumber(port); // Update the port number
       return serverSocket;
@@ -83,7 +134,7 @@ public class ServerSocketCreator {
               + port
               + ", trying other port, error message:"
               + e.getMessage());
-      return ServerSocketCreator.createServerSocket(nextAttempt);
+      return ServerSocketCreator.createServerSocket(nextAttempt, binder);
     }
   }
 }
@@ -0,0 +1,163 @@
+package no.ntnu.intermediaryserver.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import no.ntnu.messages.subscriptions.Topic;
+
+/**
+ * The topics each client has subscribed to, indexed by topic.
+ *
+ * <p>A published message is delivered to the subscribers of its topics, found
+ * through the index without looking at other clients, and to every client that
+ * has not subscribed to anything. Clients that never subscribe therefore keep
+ * receiving all messages, as before subscriptions existed. Changes are
+ * serialized, while lookups never block.
+ *
+ * @param <T> The type of the subscribing clients
+ */
+public class SubscriptionRegistry<T> {
+
+  private final ConcurrentHashMap<Topic, Set<T>> subscribers = new ConcurrentHashMap<>();
+  // The subscriptions of each client, replaced as a whole on every change
+  private final ConcurrentHashMap<T, Set<Topic>> subscriptions = new ConcurrentHashMap<>();
+
+  /**
+   * Subscribes a client to topics.
+   *
+   * @param subscriber the subscribing client
+   * @param topics     the topics to subscribe to
+   * @return the number of topics the client is subscribed to afterwards
+   */
+  public synchronized int subscribe(T subscriber, Collection<Topic> topics) {
+    if (subscriber == null || topics == null) {
+      throw new IllegalArgumentException("Subscriber and topics cannot be null");
+    }
+    Set<Topic> current = new HashSet<>(this.getSubscriptions(subscriber));
+    for (Topic topic : topics) {
+      if (current.add(topic)) {
+        this.subscribers.computeIfAbsent(topic, t -> ConcurrentHashMap.newKeySet())
+            .add(subscriber);
+      }
+    }
+    this.setSubscriptions(subscriber, current);
+    return current.size();
+  }
+
+  /**
+   * Unsubscribes a client from topics.
+   *
+   * @param subscriber the subscribed client
+   * @param topics     the topics to unsubscribe from
+   * @return the number of topics the client is subscribed to afterwards
+   */
+  public synchronized int unsubscribe(T subscriber, Collection<Topic> topics) {
+    if (subscriber == null || topics == null) {
+      throw new IllegalArgumentException("Subscriber and topics cannot be null");
+    }
+    Set<Topic> current = new HashSet<>(this.getSubscriptions(subscriber));
+    for (Topic topic : topics) {
+      if (current.remove(topic)) {
+        this.removeSubscriber(topic, subscriber);
+      }
+    }
+    this.setSubscriptions(subscriber, current);
+    return current.size();
+  }
+
+  /**
+   * Removes all subscriptions of a client, for example when it disconnects.
+   *
+   * @param subscriber the subscribed client
+   */
+  public synchronized void unsubscribeAll(T subscriber) {
+    if (subscriber == null) {
+      return;
+    }
+    Set<Topic> removed = this.subscriptions.remove(subscriber);
+    if (removed != null) {
+      for (Topic topic : removed) {
+        this.removeSubscriber(topic, subscriber);
+      }
+    }
+  }
+
+  /**
+   * Gets the topics a client is subscribed to.
+   *
+   * @param subscriber the client
+   * @return an immutable set of the topics, empty if the client has no subscriptions
+   */
+  public Set<Topic> getSubscriptions(T subscriber) {
+    Set<Topic> topics = subscriber == null ? null : this.subscriptions.get(subscriber);
+    return topics == null ? Collections.emptySet() : topics;
+  }
+
+  /**
+   * Selects the clients a message about the given topics is delivered to: the
+   * subscribers of any of the topics, and the candidates without subscriptions.
+   *
+   * @param candidates the clients that would receive the message without
+   *                   subscriptions
+   * @param topics     the topics of the message
+   * @return the recipients, each listed once
+   */
+  public List<T> selectRecipients(List<T> candidates, Collection<Topic> topics) {
+    if (this.subscriptions.isEmpty()) {
+      return candidates;
+    }
+    List<T> recipients = new ArrayList<>();
+    Set<T> selected = new HashSet<>();
+    for (Topic topic : topics) {
+      Set<T> topicSubscribers = this.subscribers.get(topic);
+      if (topicSubscribers != null) {
+        for (T subscriber : topicSubscribers) {
+          if (selected.add(subscriber)) {
+            recipients.add(subscriber);
+          }
+        }
+      }
+    }
+    for (T candidate : candidates) {
+      if (!this.subscriptions.containsKey(candidate) && selected.add(candidate)) {
+        recipients.add(candidate);
+      }
+    }
+    return recipients;
+  }
+
+  /**
+   * Replaces the subscriptions of a client. Must be called while synchronized.
+   *
+   * @param subscriber the client
+   * @param topics     the topics the client is subscribed to
+   */
+  private void setSubscriptions(T subscriber, Set<Topic> topics) {
+    if (topics.isEmpty()) {
+      this.subscriptions.remove(subscriber);
+    } else {
+      this.subscriptions.put(subscriber, Set.copyOf(topics));
+    }
+  }
+
+  /**
+   * Removes a client from the subscribers of a topic. Must be called while
+   * synchronized.
+   *
+   * @param topic      the topic
+   * @param subscriber the client
+   */
+  private void removeSubscriber(Topic topic, T subscriber) {
+    Set<T> topicSubscribers = this.subscribers.get(topic);
+    if (topicSubscribers != null) {
+      topicSubscribers.remove(subscriber);
+      if (topicSubscribers.isEmpty()) {
+        this.subscribers.remove(topic);
+      }
+    }
+  }
+}
@@ -8,6 +8,9 @@ package no.ntnu.messages;
  */
 public class MessageBody {
 
+  // Shared by all messages, the translator holds no per-message state
+  private static final TransmissionTranslator TRANSLATOR = new TransmissionTranslator();
+
   // The transmission associated with this message body
   private Transmission transmission;
 
@@ -53,8 +56,7 @@ public class MessageBody {
    * @return The parsed {@link MessageBody} object.
    */
   public static MessageBody fromString(String protocolString) {
-    TransmissionTranslator transmissionTranslator = new TransmissionTranslator();
-    Transmission transmission = transmissionTranslator.toTransmission(protocolString);
+    Transmission transmission = TRANSLATOR.toTransmission(protocolString);
     return new MessageBody(transmission);
   }
 
@@ -0,0 +1,280 @@
+package no.ntnu.messages;
+
+import no.ntnu.constants.Endpoints;
+import no.ntnu.messages.commands.Parameters;
+import no.ntnu.messages.responses.Response;
+import no.ntnu.tools.Logger;
+
+/**
+ * A single-pass parser for protocol strings.
+ *
+ * <p>Produces the same messages as {@link Message#fromString(String)}, but walks
+ * the input with a cursor instead of splitting it with regular expressions. Only
+ * the strings that end up in the message are allocated: the header id and hash,
+ * the transmission parameters, and the response data.
+ */
+public final class MessageParser {
+
+  private static final char HEADER_BODY = Delimiters.HEADER_BODY.getValue().charAt(0);
+  private static final char HEADER_FIELD = Delimiters.HEADER_FIELD.getValue().charAt(0);
+  private static final char BODY_FIELD = Delimiters.BODY_FIELD.getValue().charAt(0);
+  private static final char BODY_FIELD_PARAMETERS =
+      Delimiters.BODY_FIELD_PARAMETERS.getValue().charAt(0);
+
+  private static final int HEADER_FIELD_COUNT = 3;
+  private static final Endpoints[] ENDPOINTS = Endpoints.values();
+
+  private MessageParser() {
+    // Empty. Prevent instantiation.
+  }
+
+  /**
+   * Parses a message from its protocol string representation.
+   *
+   * @param text The protocol string representing a message.
+   * @return The parsed message.
+   * @throws IllegalArgumentException if the protocol string is invalid.
+   */
+  public static Message parseMessage(CharSequence text) {
+    if (text == null) {
+      throw new IllegalArgumentException("Protocol string cannot be null");
+    }
+    int headerEnd = indexOf(text, HEADER_BODY, 0, text.length());
+    if (headerEnd < 0) {
+      throw new IllegalArgumentException("Invalid message format");
+    }
+
+    MessageHeader header = parseHeader(text, 0, headerEnd);
+    MessageBody body = new MessageBody(parseTransmission(text, headerEnd + 1, text.length()));
+    return new Message(header, body);
+  }
+
+  /**
+   * Parses a message header from a region of a protocol string.
+   *
+   * @param text  The protocol string.
+   * @param start The index of the first character of the header.
+   * @param end   The index following the last character of the header.
+   * @return The parsed header.
+   * @throws IllegalArgumentException If the header is invalid or malformed.
+   */
+  public static MessageHeader parseHeader(CharSequence text, int start, int end) {
+    if (isBlank(text, start, end)) {
+      throw new IllegalArgumentException("Protocol string cannot be null or empty");
+    }
+
+    int receiverEnd = indexOf(text, HEADER_FIELD, start, end);
+    int idEnd = receiverEnd < 0 ? -1 : indexOf(text, HEADER_FIELD, receiverEnd + 1, end);
+    int hashEnd = idEnd < 0 ? -1 : indexOf(text, HEADER_FIELD, idEnd + 1, end);
+    if (hashEnd < 0) {
+      hashEnd = end;
+    }
+    // Like String.split, a header may end with empty fields, but they are not counted
+    boolean hasHash = idEnd >= 0 && hashEnd > idEnd + 1;
+    if (!hasHash || !isAll(text, HEADER_FIELD, hashEnd, end)) {
+      throw new IllegalArgumentException(
+          "Invalid header format. Expected " + HEADER_FIELD_COUNT
+              + " header parts separated by '" + HEADER_FIELD + "'");
+    }
+
+    Endpoints receiver = findEndpoint(text, start, receiverEnd);
+    String id = text.subSequence(receiverEnd + 1, idEnd).toString();
+    String hashedContent = text.subSequence(idEnd + 1, hashEnd).toString();
+    return new MessageHeader(receiver, id, hashedContent);
+  }
+
+  /**
+   * Parses a transmission from a region of a protocol string.
+   *
+   * @param text  The protocol string.
+   * @param start The index of the first character of the transmission.
+   * @param end   The index following the last character of the transmission.
+   * @return The parsed transmission, or null if the transmission type is unknown.
+   */
+  public static Transmission parseTransmission(CharSequence text, int start, int end) {
+    int typeEnd = indexOfEither(text, BODY_FIELD, BODY_FIELD_PARAMETERS, start, end);
+    int parametersStart = indexOf(text, BODY_FIELD_PARAMETERS, start, end);
+    if (typeEnd < 0) {
+      typeEnd = end;
+    }
+
+    String type = text.subSequence(start, typeEnd).toString();
+    Transmission transmission = TransmissionRegistry.getDefault().create(type);
+    if (transmission == null) {
+      Logger.error("Transmission not found: " + type);
+      return null;
+    }
+    if (parametersStart < 0) {
+      return transmission;
+    }
+
+    if (transmission instanceof Parameters parameters) {
+      parameters.setParameters(splitParameters(text, parametersStart + 1, end));
+    } else if (transmission instanceof Response response) {
+      int commandEnd = indexOf(text, BODY_FIELD_PARAMETERS, parametersStart + 1, end);
+      if (commandEnd >= 0) {
+        response.setTransmission(parseTransmission(text, parametersStart + 1, commandEnd));
+        response.setResponseData(text.subSequence(commandEnd + 1, end).toString());
+      }
+    }
+    return transmission;
+  }
+
+  /**
+   * Splits a region into parameters, with the same result as
+   * {@code String.split(",")}: trailing empty parameters are removed, unless the
+   * region is empty.
+   *
+   * @param text  The protocol string.
+   * @param start The index of the first character of the parameters.
+   * @param end   The index following the last character of the parameters.
+   * @return The parameters.
+   */
+  private static String[] splitParameters(CharSequence text, int start, int end) {
+    if (start == end) {
+      return new String[] {""};
+    }
+    int lastKept = end;
+    while (lastKept > start && text.charAt(lastKept - 1) == BODY_FIELD_PARAMETERS) {
+      lastKept--;
+    }
+    if (lastKept == start) {
+      // Only delimiters, String.split returns no parameters at all
+      return new String[0];
+    }
+
+    int count = 1;
+    for (int i = start; i < lastKept; i++) {
+      if (text.charAt(i) == BODY_FIELD_PARAMETERS) {
+        count++;
+      }
+    }
+
+    String[] parameters = new String[count];
+    int parameterStart = start;
+    for (int i = 0; i < count; i++) {
+      int parameterEnd = indexOf(text, BODY_FIELD_PARAMETERS, parameterStart, lastKept);
+      if (parameterEnd < 0) {
+        parameterEnd = lastKept;
+      }
+      parameters[i] = text.subSequence(parameterStart, parameterEnd).toString();
+      parameterStart = parameterEnd + 1;
+    }
+    return parameters;
+  }
+
+  /**
+   * Finds the endpoint whose value matches a region, ignoring case.
+   *
+   * @param text  The protocol string.
+   * @param start The index of the first character of the endpoint.
+   * @param end   The index following the last character of the endpoint.
+   * @return The matching endpoint, or null if none matches.
+   */
+  private static Endpoints findEndpoint(CharSequence text, int start, int end) {
+    for (Endpoints endpoint : ENDPOINTS) {
+      if (regionEqualsIgnoreCase(text, start, end, endpoint.getValue())) {
+        return endpoint;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compares a region with a string, ignoring case.
+   *
+   * @param text  The protocol string.
+   * @param start The index of the first character of the region.
+   * @param end   The index following the last character of the region.
+   * @param value The string to compare with.
+   * @return true if the region equals the string, ignoring case.
+   */
+  private static boolean regionEqualsIgnoreCase(CharSequence text, int start, int end,
+                                                String value) {
+    if (end - start != value.length()) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char a = text.charAt(start + i);
+      char b = value.charAt(i);
+      if (a != b && Character.toUpperCase(a) != Character.toUpperCase(b)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds the first occurrence of a character in a region.
+   *
+   * @param text      The protocol string.
+   * @param character The character to find.
+   * @param start     The index to start searching from.
+   * @param end       The index to stop searching at.
+   * @return The index of the character, or -1 if not found.
+   */
+  private static int indexOf(CharSequence text, char character, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) == character) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the first occurrence of either of two characters in a region.
+   *
+   * @param text   The protocol string.
+   * @param first  The first character to find.
+   * @param second The second character to find.
+   * @param start  The index to start searching from.
+   * @param end    The index to stop searching at.
+   * @return The index of the first match, or -1 if not found.
+   */
+  private static int indexOfEither(CharSequence text, char first, char second, int start,
+                                   int end) {
+    for (int i = start; i < end; i++) {
+      char character = text.charAt(i);
+      if (character == first || character == second) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Checks whether a region only consists of the given character.
+   *
+   * @param text      The protocol string.
+   * @param character The character.
+   * @param start     The index of the first character of the region.
+   * @param end       The index following the last character of the region.
+   * @return true if every character in the region is the given character.
+   */
+  private static boolean isAll(CharSequence text, char character, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) != character) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether a region is empty or only whitespace.
+   *
+   * @param text  The protocol string.
+   * @param start The index of the first character of the region.
+   * @param end   The index following the last character of the region.
+   * @return true if the region is blank.
+   */
+  private static boolean isBlank(CharSequence text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
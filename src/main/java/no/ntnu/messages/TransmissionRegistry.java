@@ -0,0 +1,124 @@
+package no.ntnu.messages;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import no.ntnu.messages.commands.common.ClientIdentificationTransmission;
+import no.ntnu.messages.commands.common.SensorDataAckTransmission;
+import no.ntnu.messages.commands.common.StreamIntervalTransmission;
+import no.ntnu.messages.commands.common.StreamModeTransmission;
+import no.ntnu.messages.commands.common.SubscribeTransmission;
+import no.ntnu.messages.commands.common.UnsubscribeTransmission;
+import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
+import no.ntnu.messages.commands.greenhouse.GetBlobCommand;
+import no.ntnu.messages.commands.greenhouse.GetNodeCommand;
+import no.ntnu.messages.commands.greenhouse.GetNodeIdCommand;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataDeltaCommand;
+import no.ntnu.messages.commands.greenhouse.TurnOffAllActuatorInNodeCommand;
+import no.ntnu.messages.commands.greenhouse.TurnOnAllActuatorInNodeCommand;
+import no.ntnu.messages.responses.FailureResponse;
+import no.ntnu.messages.responses.SuccessResponse;
+
+/**
+ * An immutable registry of the transmissions known to the protocol.
+ *
+ * <p>Every transmission type is registered with a factory, keyed by its
+ * transmission string. Each lookup creates a new transmission, so a parsed
+ * message never shares state with another one. The registry itself is never
+ * modified after creation and can be shared by all connections.
+ */
+public final class TransmissionRegistry {
+
+  private static final TransmissionRegistry DEFAULT = createDefault();
+
+  private final Map<String, Supplier<? extends Transmission>> factories;
+
+  /**
+   * Creates a registry from factories. Each factory is keyed by the
+   * transmission string of the transmissions it creates.
+   *
+   * @param factories the factories of the transmissions to register
+   * @throws IllegalArgumentException if a factory is null, or two factories
+   *                                  create the same transmission type
+   */
+  @SafeVarargs
+  public TransmissionRegistry(Supplier<? extends Transmission>... factories) {
+    Map<String, Supplier<? extends Transmission>> registered = new HashMap<>();
+    for (Supplier<? extends Transmission> factory : factories) {
+      if (factory == null) {
+        throw new IllegalArgumentException("Transmission factory cannot be null");
+      }
+      String transmissionString = factory.get().getTransmissionString();
+      if (registered.putIfAbsent(transmissionString, factory) != null) {
+        throw new IllegalArgumentException(
+            "Transmission already registered: " + transmissionString);
+      }
+    }
+    this.factories = Map.copyOf(registered);
+  }
+
+  /**
+   * Returns the registry of all transmissions in the protocol.
+   *
+   * @return the shared default registry
+   */
+  public static TransmissionRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Creates the registry of all transmissions in the protocol.
+   *
+   * @return the default registry
+   */
+  private static TransmissionRegistry createDefault() {
+    return new TransmissionRegistry(
+        // Transmissions
+        ClientIdentificationTransmission::new,
+        SubscribeTransmission::new,
+        UnsubscribeTransmission::new,
+        StreamIntervalTransmission::new,
+        StreamModeTransmission::new,
+        SensorDataAckTransmission::new,
+
+        // Commands
+        ActuatorChangeCommand::new,
+        GetNodeIdCommand::new,
+        GetNodeCommand::new,
+        GetSensorDataCommand::new,
+        GetSensorDataDeltaCommand::new,
+        GetBlobCommand::new,
+        TurnOnAllActuatorInNodeCommand::new,
+        TurnOffAllActuatorInNodeCommand::new,
+
+        // Responses
+        FailureResponse::new,
+        SuccessResponse::new
+    );
+  }
+
+  /**
+   * Creates a new, unpopulated transmission of the given type.
+   *
+   * @param transmissionType the type of transmission, for example "GET_NODE_ID"
+   * @return a new transmission, or null if the type is not registered
+   */
+  public Transmission create(String transmissionType) {
+    if (transmissionType == null) {
+      return null;
+    }
+    Supplier<? extends Transmission> factory = this.factories.get(transmissionType);
+    return factory == null ? null : factory.get();
+  }
+
+  /**
+   * Checks whether a transmission type is registered.
+   *
+   * @param transmissionType the type of transmission
+   * @return true if the type is registered
+   */
+  public boolean contains(String transmissionType) {
+    return transmissionType != null && this.factories.containsKey(transmissionType);
+  }
+}
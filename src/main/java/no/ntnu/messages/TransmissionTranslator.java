@@ -1,17 +1,7 @@
 package no.ntnu.messages;
 
-import java.util.HashMap;
 import no.ntnu.messages.commands.Parameters;
-import no.ntnu.messages.commands.common.ClientIdentificationTransmission;
-import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
-import no.ntnu.messages.commands.greenhouse.GetNodeCommand;
-import no.ntnu.messages.commands.greenhouse.GetNodeIdCommand;
-import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
-import no.ntnu.messages.commands.greenhouse.TurnOffAllActuatorInNodeCommand;
-import no.ntnu.messages.commands.greenhouse.TurnOnAllActuatorInNodeCommand;
-import no.ntnu.messages.responses.FailureResponse;
 import no.ntnu.messages.responses.Response;
-import no.ntnu.messages.responses.SuccessResponse;
 import no.ntnu.tools.Logger;
 
 /**
@@ -19,43 +9,25 @@ import no.ntnu.tools.Logger;
  */
 public class TransmissionTranslator {
 
-  private final HashMap<String, Transmission> transmissionMap;
+  private final TransmissionRegistry registry;
 
   /**
-   * Initializes a TransmissionTranslator.
+   * Initializes a TransmissionTranslator using the default transmission registry.
    */
   public TransmissionTranslator() {
-    this.transmissionMap = new HashMap<>();
-    this.initializeTransmissions();
-  }
-
-  /**
-   * Populates the transmission map with available transmissions.
-   */
-  private void initializeTransmissions() {
-    // Transmissions
-    this.addTransmission(new ClientIdentificationTransmission());
-
-    // Commands
-    this.addTransmission(new ActuatorChangeCommand());
-    this.addTransmission(new GetNodeIdCommand());
-    this.addTransmission(new GetNodeCommand());
-    this.addTransmission(new GetSensorDataCommand());
-    this.addTransmission(new TurnOnAllActuatorInNodeCommand());
-    this.addTransmission(new TurnOffAllActuatorInNodeCommand());
-
-    // Responses
-    this.addTransmission(new FailureResponse());
-    this.addTransmission(new SuccessResponse());
+    this(TransmissionRegistry.getDefault());
   }
 
   /**
-   * Adds a transmission to the map using its transmission string as the key.
+   * Initializes a TransmissionTranslator.
    *
-   * @param transmission the transmission to add
+   * @param registry the registry to create transmissions from
    */
-  private void addTransmission(Transmission transmission) {
-    this.transmissionMap.put(transmission.getTransmissionString(), transmission);
+  public TransmissionTranslator(TransmissionRegistry registry) {
+    if (registry == null) {
+      throw new IllegalArgumentException("Transmission registry cannot be null");
+    }
+    this.registry = registry;
   }
 
   /**
@@ -91,13 +63,13 @@ public class TransmissionTranslator {
   }
 
   /**
-   * Retrieves a Transmission object from the map by type.
+   * Creates a new Transmission object of the given type.
    *
    * @param transmissionType the type of transmission
-   * @return the corresponding Transmission object, or null if not found
+   * @return a new Transmission object, or null if not found
    */
   private Transmission getTransmission(String transmissionType) {
-    return this.transmissionMap.get(transmissionType);
+    return this.registry.create(transmissionType);
   }
 
   /**
@@ -5,16 +5,33 @@ import no.ntnu.intermediaryserver.clienthandler.ClientIdentification;
 import no.ntnu.messages.Delimiters;
 import no.ntnu.messages.Transmission;
 import no.ntnu.messages.commands.Parameters;
+import no.ntnu.messages.framing.WireProtocol;
+import no.ntnu.tools.encryption.IntegrityMode;
 
 /**
  * Represents a transmission for client identification.
  * This is used to identify a client (e.g., control panel or greenhouse) by its
  * endpoint type
  * and unique identifier.
+ * The client may also offer a {@link WireProtocol} it would like to use for the
+ * rest of the connection, followed by an {@link IntegrityMode} to check the
+ * messages with. After those it may send a session key, wrapped with the
+ * server's public key, followed by {@link #ENCRYPTED} if the messages should be
+ * encrypted with it.
  */
 public class ClientIdentificationTransmission extends Transmission implements Parameters {
   protected String id;
   protected Endpoints client;
+  protected WireProtocol wireProtocol;
+  protected IntegrityMode integrityMode;
+  protected String sessionKey;
+  protected boolean encrypted;
+
+  /**
+   * Asks for the messages to be encrypted with the session key, and tells the
+   * client in the response that they will be.
+   */
+  public static final String ENCRYPTED = "ENCRYPTED";
 
   private static final String TRANSMISSION_STRING = "CLIENT_IDENTIFICATION";
 
@@ -93,18 +110,97 @@ public class ClientIdentificationTransmission extends Transmission implements Pa
     this.client = client;
   }
 
+  /**
+   * Gets the wire protocol offered by the client.
+   *
+   * @return The offered wire protocol, or null if the client did not offer one.
+   */
+  public WireProtocol getWireProtocol() {
+    return this.wireProtocol;
+  }
+
+  /**
+   * Sets the wire protocol offered by the client.
+   *
+   * @param wireProtocol The wire protocol to offer, or null to not offer one.
+   */
+  public void setWireProtocol(WireProtocol wireProtocol) {
+    this.wireProtocol = wireProtocol;
+  }
+
+  /**
+   * Gets the integrity mode offered by the client.
+   *
+   * @return The offered integrity mode, or null if the client did not offer one.
+   */
+  public IntegrityMode getIntegrityMode() {
+    return this.integrityMode;
+  }
+
+  /**
+   * Sets the integrity mode offered by the client. A wire protocol is offered
+   * along with it, the text protocol if none is set.
+   *
+   * @param integrityMode The integrity mode to offer, or null to not offer one.
+   */
+  public void setIntegrityMode(IntegrityMode integrityMode) {
+    this.integrityMode = integrityMode;
+  }
+
+  /**
+   * Gets the session key sent by the client.
+   *
+   * @return The session key, wrapped with the server's public key, or null if
+   *         the client did not send one.
+   */
+  public String getSessionKey() {
+    return this.sessionKey;
+  }
+
+  /**
+   * Sets the session key sent to the server. A wire protocol and an integrity
+   * mode are sent along with it, the text protocol and no check if none are set.
+   *
+   * @param sessionKey The session key, wrapped with the server's public key, or
+   *                   null to not send one.
+   */
+  public void setSessionKey(String sessionKey) {
+    this.sessionKey = sessionKey;
+  }
+
+  /**
+   * Returns true if the client asks for the messages to be encrypted with the
+   * session key.
+   *
+   * @return true if the messages should be encrypted.
+   */
+  public boolean isEncrypted() {
+    return this.encrypted;
+  }
+
+  /**
+   * Sets whether the messages should be encrypted with the session key. Only
+   * sent along with a session key.
+   *
+   * @param encrypted true to ask for the messages to be encrypted.
+   */
+  public void setEncrypted(boolean encrypted) {
+    this.encrypted = encrypted;
+  }
+
   /**
    * Sets the parameters of this transmission from an array of strings.
    *
-   * @param parameters An array containing exactly two parameters: client type and
-   *                   client ID.
-   * @throws IllegalArgumentException If the number of parameters is not 2, if
+   * @param parameters An array containing the client type and client ID, and
+   *                   optionally the offered wire protocol, integrity mode,
+   *                   session key and {@link #ENCRYPTED}.
+   * @throws IllegalArgumentException If the number of parameters is not 2 to 6, if
    *                                  parameters are null,
    *                                  or if the client type is invalid.
    */
   @Override
   public void setParameters(String[] parameters) {
-    if (parameters.length != 2) {
+    if (parameters.length < 2 || parameters.length > 6) {
       throw new IllegalArgumentException("Invalid number of parameters: " + parameters.length);
     }
     if (parameters[0] == null || parameters[1] == null) {
@@ -115,11 +211,33 @@ public class ClientIdentificationTransmission extends Transmission implements Pa
     }
     this.client = Endpoints.valueOf(parameters[0]);
     this.id = parameters[1];
+    this.wireProtocol = null;
+    this.integrityMode = null;
+    this.sessionKey = null;
+    this.encrypted = false;
+    if (parameters.length >= 3) {
+      this.wireProtocol = WireProtocol.fromString(parameters[2]);
+    }
+    if (parameters.length >= 4) {
+      this.integrityMode = IntegrityMode.fromString(parameters[3]);
+    }
+    if (parameters.length >= 5) {
+      this.sessionKey = parameters[4];
+    }
+    if (parameters.length == 6) {
+      if (!ENCRYPTED.equals(parameters[5])) {
+        throw new IllegalArgumentException("Invalid encryption: " + parameters[5]);
+      }
+      this.encrypted = true;
+    }
   }
 
   /**
    * Converts the transmission to its protocol string representation.
-   * The format is: `TRANSMISSION_STRING | CLIENT | ID`
+   * The format is: `TRANSMISSION_STRING | CLIENT | ID`, followed by
+   * `| WIRE_PROTOCOL` if a wire protocol is offered, `| INTEGRITY_MODE` if
+   * an integrity mode is offered, `| SESSION_KEY` if a session key is sent, and
+   * `| ENCRYPTED` if the messages should be encrypted with it.
    *
    * @return The protocol string representation of this transmission.
    */
@@ -130,6 +248,26 @@ public class ClientIdentificationTransmission extends Transmission implements Pa
     protocolString += this.client;
     protocolString += Delimiters.BODY_FIELD_PARAMETERS.getValue();
     protocolString += this.id;
+    if (this.wireProtocol != null || this.integrityMode != null || this.sessionKey != null) {
+      WireProtocol offeredProtocol =
+          this.wireProtocol == null ? WireProtocol.TEXT : this.wireProtocol;
+      protocolString += Delimiters.BODY_FIELD_PARAMETERS.getValue();
+      protocolString += offeredProtocol.getValue();
+    }
+    if (this.integrityMode != null || this.sessionKey != null) {
+      IntegrityMode offeredMode =
+          this.integrityMode == null ? IntegrityMode.NONE : this.integrityMode;
+      protocolString += Delimiters.BODY_FIELD_PARAMETERS.getValue();
+      protocolString += offeredMode.getValue();
+    }
+    if (this.sessionKey != null) {
+      protocolString += Delimiters.BODY_FIELD_PARAMETERS.getValue();
+      protocolString += this.sessionKey;
+      if (this.encrypted) {
+        protocolString += Delimiters.BODY_FIELD_PARAMETERS.getValue();
+        protocolString += ENCRYPTED;
+      }
+    }
     return protocolString;
   }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package no.ntnu.messages.commands.common;
+
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.Transmission;
+import no.ntnu.messages.commands.Parameters;
+
+/**
+ * Sent by a control panel to the server when it has applied a sensor data delta
+ * or keyframe. Later deltas from the node are computed against the acknowledged
+ * snapshot.
+ * The format is: `TRANSMISSION_STRING | NODE_ID | SEQUENCE`.
+ */
+public class SensorDataAckTransmission extends Transmission implements Parameters {
+
+  private static final String TRANSMISSION_STRING = "SENSOR_DATA_ACK";
+
+  private String nodeId;
+  private long sequence;
+
+  /**
+   * Constructs a sensor data acknowledgement.
+   *
+   * @param nodeId   The ID of the node the snapshot is from.
+   * @param sequence The sequence number of the applied snapshot.
+   */
+  public SensorDataAckTransmission(String nodeId, long sequence) {
+    super(TRANSMISSION_STRING);
+    this.nodeId = nodeId;
+    this.sequence = sequence;
+  }
+
+  /**
+   * Constructs an empty sensor data acknowledgement. The node and sequence number
+   * can be set later using the {@code setParameters} method.
+   */
+  public SensorDataAckTransmission() {
+    super(TRANSMISSION_STRING);
+  }
+
+  /**
+   * Gets the ID of the node the snapshot is from.
+   *
+   * @return The node ID.
+   */
+  public String getNodeId() {
+    return this.nodeId;
+  }
+
+  /**
+   * Gets the sequence number of the applied snapshot.
+   *
+   * @return The sequence number.
+   */
+  public long getSequence() {
+    return this.sequence;
+  }
+
+  /**
+   * Sets the node and sequence number of this transmission from an array of strings.
+   *
+   * @param parameters An array containing the node ID and the sequence number.
+   * @throws IllegalArgumentException If the parameters are invalid.
+   */
+  @Override
+  public void setParameters(String[] parameters) {
+    if (parameters.length != 2) {
+      throw new IllegalArgumentException("Invalid number of parameters: " + parameters.length);
+    }
+    try {
+      this.sequence = Long.parseLong(parameters[1]);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid sequence number: " + parameters[1]);
+    }
+    this.nodeId = parameters[0];
+  }
+
+  /**
+   * Converts the transmission to its protocol string representation.
+   *
+   * @return The protocol string representation of this transmission.
+   */
+  @Override
+  public String toString() {
+    return this.getTransmissionString() + Delimiters.BODY_FIELD_PARAMETERS.getValue()
+        + this.nodeId + Delimiters.BODY_FIELD_PARAMETERS.getValue() + this.sequence;
+  }
+}
@@ -0,0 +1,89 @@
+package no.ntnu.messages.commands.common;
+
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.Transmission;
+import no.ntnu.messages.commands.Parameters;
+
+/**
+ * Sent by a control panel to the server to limit how often it receives the
+ * sensor data each greenhouse node streams. Sensor data arriving sooner than the
+ * interval after the last delivered update from the same node is skipped.
+ * The format is: `TRANSMISSION_STRING | INTERVAL_MS`.
+ */
+public class StreamIntervalTransmission extends Transmission implements Parameters {
+
+  private static final String TRANSMISSION_STRING = "STREAM_INTERVAL";
+
+  private long intervalMs;
+
+  /**
+   * Constructs a stream interval transmission.
+   *
+   * @param intervalMs The minimum interval between updates from a node, in
+   *                   milliseconds. 0 delivers every update.
+   * @throws IllegalArgumentException If the interval is negative.
+   */
+  public StreamIntervalTransmission(long intervalMs) {
+    super(TRANSMISSION_STRING);
+    this.setIntervalMs(intervalMs);
+  }
+
+  /**
+   * Constructs a stream interval transmission delivering every update. The
+   * interval can be set later using the {@code setParameters} method.
+   */
+  public StreamIntervalTransmission() {
+    super(TRANSMISSION_STRING);
+  }
+
+  /**
+   * Gets the minimum interval between updates from a node.
+   *
+   * @return The interval in milliseconds.
+   */
+  public long getIntervalMs() {
+    return this.intervalMs;
+  }
+
+  /**
+   * Sets the minimum interval between updates from a node.
+   *
+   * @param intervalMs The interval in milliseconds.
+   * @throws IllegalArgumentException If the interval is negative.
+   */
+  public void setIntervalMs(long intervalMs) {
+    if (intervalMs < 0) {
+      throw new IllegalArgumentException("Interval cannot be negative");
+    }
+    this.intervalMs = intervalMs;
+  }
+
+  /**
+   * Sets the interval of this transmission from an array of strings.
+   *
+   * @param parameters An array containing the interval in milliseconds.
+   * @throws IllegalArgumentException If the parameters are invalid.
+   */
+  @Override
+  public void setParameters(String[] parameters) {
+    if (parameters.length != 1) {
+      throw new IllegalArgumentException("Invalid number of parameters: " + parameters.length);
+    }
+    try {
+      this.setIntervalMs(Long.parseLong(parameters[0]));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid interval: " + parameters[0]);
+    }
+  }
+
+  /**
+   * Converts the transmission to its protocol string representation.
+   *
+   * @return The protocol string representation of this transmission.
+   */
+  @Override
+  public String toString() {
+    return this.getTransmissionString() + Delimiters.BODY_FIELD_PARAMETERS.getValue()
+        + this.intervalMs;
+  }
+}
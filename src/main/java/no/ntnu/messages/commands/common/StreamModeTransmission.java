@@ -0,0 +1,88 @@
+package no.ntnu.messages.commands.common;
+
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.Transmission;
+import no.ntnu.messages.commands.Parameters;
+import no.ntnu.messages.subscriptions.StreamMode;
+
+/**
+ * Sent by a control panel to the server to choose how it receives the sensor
+ * data the greenhouse nodes stream, see {@link StreamMode}.
+ * The format is: `TRANSMISSION_STRING | MODE`.
+ */
+public class StreamModeTransmission extends Transmission implements Parameters {
+
+  private static final String TRANSMISSION_STRING = "STREAM_MODE";
+
+  private StreamMode mode = StreamMode.FULL;
+
+  /**
+   * Constructs a stream mode transmission.
+   *
+   * @param mode The stream mode.
+   * @throws IllegalArgumentException If the mode is null.
+   */
+  public StreamModeTransmission(StreamMode mode) {
+    super(TRANSMISSION_STRING);
+    this.setMode(mode);
+  }
+
+  /**
+   * Constructs a stream mode transmission for full updates. The mode can be set
+   * later using the {@code setParameters} method.
+   */
+  public StreamModeTransmission() {
+    super(TRANSMISSION_STRING);
+  }
+
+  /**
+   * Gets the stream mode.
+   *
+   * @return The stream mode.
+   */
+  public StreamMode getMode() {
+    return this.mode;
+  }
+
+  /**
+   * Sets the stream mode.
+   *
+   * @param mode The stream mode.
+   * @throws IllegalArgumentException If the mode is null.
+   */
+  public void setMode(StreamMode mode) {
+    if (mode == null) {
+      throw new IllegalArgumentException("Stream mode cannot be null");
+    }
+    this.mode = mode;
+  }
+
+  /**
+   * Sets the mode of this transmission from an array of strings.
+   *
+   * @param parameters An array containing the stream mode.
+   * @throws IllegalArgumentException If the parameters are invalid.
+   */
+  @Override
+  public void setParameters(String[] parameters) {
+    if (parameters.length != 1) {
+      throw new IllegalArgumentException("Invalid number of parameters: " + parameters.length);
+    }
+    StreamMode parsed = StreamMode.fromString(parameters[0]);
+    if (parsed == null) {
+      throw new IllegalArgumentException("Invalid stream mode: " + parameters[0]);
+    }
+    this.setMode(parsed);
+  }
+
+  /**
+   * Converts the transmission to its protocol string representation.
+   *
+   * @return The protocol string representation of this transmission.
+   */
+  @Override
+  public String toString() {
+    return this.getTransmissionString() + Delimiters.BODY_FIELD_PARAMETERS.getValue()
+        + this.mode.getValue();
+  }
+}
@@ -0,0 +1,32 @@
+package no.ntnu.messages.commands.common;
+
+import java.util.Collection;
+import java.util.List;
+import no.ntnu.messages.subscriptions.Topic;
+
+/**
+ * Sent by a control panel to the server to receive the messages published about
+ * the given topics. A control panel without any subscriptions receives every
+ * message broadcast to control panels.
+ */
+public class SubscribeTransmission extends TopicTransmission {
+
+  private static final String TRANSMISSION_STRING = "SUBSCRIBE";
+
+  /**
+   * Constructs a subscription to the given topics.
+   *
+   * @param topics The topics to subscribe to.
+   */
+  public SubscribeTransmission(Collection<Topic> topics) {
+    super(TRANSMISSION_STRING, topics);
+  }
+
+  /**
+   * Constructs a subscription without topics. The topics can be set later using
+   * the {@code setParameters} method.
+   */
+  public SubscribeTransmission() {
+    super(TRANSMISSION_STRING, List.of());
+  }
+}
@@ -0,0 +1,83 @@
+package no.ntnu.messages.commands.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.Transmission;
+import no.ntnu.messages.commands.Parameters;
+import no.ntnu.messages.subscriptions.Topic;
+
+/**
+ * A transmission sent to the server about a list of topics, for example to
+ * subscribe to them. The format is: `TRANSMISSION_STRING | TOPIC | TOPIC ...`.
+ */
+public abstract class TopicTransmission extends Transmission implements Parameters {
+
+  private List<Topic> topics = new ArrayList<>();
+
+  /**
+   * Constructs a topic transmission.
+   *
+   * @param transmissionString The transmission string, for example "SUBSCRIBE".
+   * @param topics             The topics of the transmission.
+   */
+  protected TopicTransmission(String transmissionString, Collection<Topic> topics) {
+    super(transmissionString);
+    this.setTopics(topics);
+  }
+
+  /**
+   * Gets the topics of the transmission.
+   *
+   * @return An immutable list of the topics.
+   */
+  public List<Topic> getTopics() {
+    return this.topics;
+  }
+
+  /**
+   * Sets the topics of the transmission.
+   *
+   * @param topics The topics to set.
+   * @throws IllegalArgumentException If the topics are null or contain null.
+   */
+  public void setTopics(Collection<Topic> topics) {
+    if (topics == null) {
+      throw new IllegalArgumentException("Topics cannot be null");
+    }
+    this.topics = List.copyOf(topics);
+  }
+
+  /**
+   * Sets the topics of this transmission from an array of strings.
+   *
+   * @param parameters The topics, written as {@code TYPE:value}.
+   * @throws IllegalArgumentException If a topic is malformed.
+   */
+  @Override
+  public void setParameters(String[] parameters) {
+    List<Topic> parsed = new ArrayList<>();
+    for (String parameter : parameters) {
+      if (!parameter.isEmpty()) {
+        parsed.add(Topic.fromString(parameter));
+      }
+    }
+    this.topics = List.copyOf(parsed);
+  }
+
+  /**
+   * Converts the transmission to its protocol string representation.
+   *
+   * @return The protocol string representation of this transmission.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(this.getTransmissionString());
+    for (Topic topic : this.topics) {
+      sb.append(Delimiters.BODY_FIELD_PARAMETERS.getValue());
+      sb.append(topic);
+    }
+    return sb.toString();
+  }
+}
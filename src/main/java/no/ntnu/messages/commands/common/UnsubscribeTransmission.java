@@ -0,0 +1,31 @@
+package no.ntnu.messages.commands.common;
+
+import java.util.Collection;
+import java.util.List;
+import no.ntnu.messages.subscriptions.Topic;
+
+/**
+ * Sent by a control panel to the server to stop receiving the messages published
+ * about the given topics.
+ */
+public class UnsubscribeTransmission extends TopicTransmission {
+
+  private static final String TRANSMISSION_STRING = "UNSUBSCRIBE";
+
+  /**
+   * Constructs a cancellation of the subscriptions to the given topics.
+   *
+   * @param topics The topics to unsubscribe from.
+   */
+  public UnsubscribeTransmission(Collection<Topic> topics) {
+    super(TRANSMISSION_STRING, topics);
+  }
+
+  /**
+   * Constructs a cancellation without topics. The topics can be set later using
+   * the {@code setParameters} method.
+   */
+  public UnsubscribeTransmission() {
+    super(TRANSMISSION_STRING, List.of());
+  }
+}
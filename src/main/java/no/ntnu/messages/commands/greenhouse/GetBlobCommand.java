@@ -0,0 +1,124 @@
+package no.ntnu.messages.commands.greenhouse;
+
+import no.ntnu.greenhouse.NodeLogic;
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.commands.Parameters;
+import no.ntnu.messages.responses.FailureReason;
+import no.ntnu.messages.responses.FailureResponse;
+import no.ntnu.messages.responses.Response;
+import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.tools.caching.BlobChunk;
+
+/**
+ * Command to fetch a chunk of the payload of an image or audio reading by its
+ * hash.
+ *
+ * <p>Nodes only send a reference to such payloads with their sensor data, so a
+ * control panel sends this command for the payloads it has not cached. Payloads
+ * are fetched one {@link BlobChunk} at a time, so other messages to and from the
+ * node are not held up behind a large payload. The response data is the chunk,
+ * {@code hash;index;count;data}.
+ */
+public class GetBlobCommand extends GreenhouseCommand implements Parameters {
+
+  private String hash;
+  private int chunkIndex = 0;
+
+  /**
+   * Constructs a command fetching a chunk of the payload with a hash.
+   *
+   * @param hash       the hash of the payload
+   * @param chunkIndex the index of the chunk
+   */
+  public GetBlobCommand(String hash, int chunkIndex) {
+    super("GET_BLOB");
+    this.hash = hash;
+    this.chunkIndex = chunkIndex;
+  }
+
+  /**
+   * Constructs a GetBlobCommand with no parameters set.
+   */
+  public GetBlobCommand() {
+    super("GET_BLOB");
+  }
+
+  /**
+   * Executes the command, answering with the chunk if the node still has the
+   * payload.
+   *
+   * @param nodeLogic  the logic of the node that sent the reading
+   * @param fromHeader the header of the message from which this command originated
+   * @return a message containing the chunk, or a failure if the node no longer
+   *         has the payload or it has no such chunk
+   */
+  @Override
+  public Message execute(NodeLogic nodeLogic, MessageHeader fromHeader) {
+    byte[] blob = nodeLogic.getBlob(this.hash);
+    Response response;
+    if (blob == null || this.chunkIndex < 0
+        || this.chunkIndex >= BlobChunk.getChunkCount(blob.length)) {
+      // The hash tells the panel which of its transfers failed
+      response = new FailureResponse(this, FailureReason.BLOB_NOT_FOUND, this.hash);
+    } else {
+      response = new SuccessResponse(this, BlobChunk.of(this.hash, blob, this.chunkIndex)
+          .toString());
+    }
+    return new Message(fromHeader, new MessageBody(response));
+  }
+
+  /**
+   * Gets the hash of the payload to fetch.
+   *
+   * @return the hash of the payload
+   */
+  public String getHash() {
+    return this.hash;
+  }
+
+  /**
+   * Gets the index of the chunk to fetch.
+   *
+   * @return the index of the chunk
+   */
+  public int getChunkIndex() {
+    return this.chunkIndex;
+  }
+
+  /**
+   * Sets the parameters for the GetBlobCommand.
+   *
+   * @param parameters an array containing the hash of the payload, and
+   *                   optionally the index of the chunk, which defaults to 0
+   * @throws IllegalArgumentException if the parameters are invalid
+   */
+  @Override
+  public void setParameters(String[] parameters) {
+    if (parameters.length != 1 && parameters.length != 2) {
+      throw new IllegalArgumentException("Invalid parameters for GetBlobCommand");
+    }
+    this.hash = parameters[0];
+    this.chunkIndex = 0;
+    if (parameters.length == 2) {
+      try {
+        this.chunkIndex = Integer.parseInt(parameters[1]);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid chunk index: " + parameters[1]);
+      }
+    }
+  }
+
+  /**
+   * Converts the command to a string.
+   *
+   * @return The command as a string.
+   */
+  @Override
+  public String toString() {
+    String separator = Delimiters.BODY_FIELD_PARAMETERS.getValue();
+    return this.getTransmissionString() + separator + this.hash + separator + this.chunkIndex;
+  }
+}
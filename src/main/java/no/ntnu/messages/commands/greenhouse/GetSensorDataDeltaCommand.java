@@ -0,0 +1,57 @@
+package no.ntnu.messages.commands.greenhouse;
+
+import java.util.HashMap;
+import java.util.Map;
+import no.ntnu.greenhouse.NodeLogic;
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.messages.subscriptions.SensorDataDelta;
+
+/**
+ * Command for the sensor data of a node as a {@link SensorDataDelta}.
+ *
+ * <p>The node itself keeps no history, so it always answers with a keyframe.
+ * Deltas are computed by the server from the streamed sensor data, and sent to
+ * the control panels as responses to this command.
+ */
+public class GetSensorDataDeltaCommand extends GreenhouseCommand {
+  public GetSensorDataDeltaCommand() {
+    super("GET_SENSOR_DATA_DELTA");
+  }
+
+  /**
+   * Executes the command, answering with a keyframe of the node's sensor data.
+   *
+   * @param nodeLogic  The node logic to execute the command on.
+   * @param fromHeader The header of the message that triggered this command.
+   * @return A message containing the keyframe.
+   */
+  @Override
+  public Message execute(NodeLogic nodeLogic, MessageHeader fromHeader) {
+    String sensorData = nodeLogic.getSensorData();
+    String[] parts = sensorData.split(Delimiters.BODY_FIELD.getValue(), 2);
+    Map<Integer, String> readings = new HashMap<>();
+    if (parts.length == 2 && !parts[1].isEmpty()) {
+      String[] segments = parts[1].split(Delimiters.BODY_SENSOR_SEPARATOR.getValue());
+      for (int i = 0; i < segments.length; i++) {
+        readings.put(i, segments[i]);
+      }
+    }
+    SensorDataDelta keyframe = new SensorDataDelta(parts[0], 0, true, readings.size(), readings);
+    SuccessResponse response = new SuccessResponse(this, keyframe.toString());
+    return new Message(fromHeader, new MessageBody(response));
+  }
+
+  /**
+   * Converts the command to a string.
+   *
+   * @return The command as a string.
+   */
+  @Override
+  public String toString() {
+    return this.getTransmissionString();
+  }
+}
@@ -0,0 +1,110 @@
+package no.ntnu.messages.framing;
+
+import no.ntnu.messages.Message;
+import no.ntnu.tools.encryption.IntegrityMode;
+import no.ntnu.tools.encryption.MessageIntegrity;
+
+/**
+ * A message together with its encoded frames, to be sent to many connections.
+ *
+ * <p>The message is encoded at most once per wire protocol, the first time a
+ * connection using that protocol asks for it, and the same bytes are then queued
+ * on every connection. The bytes must therefore never be modified.
+ *
+ * <p>Connections that check the integrity of messages get the message encoded
+ * with the hash of its body. A checksum needs no key, so it is also encoded at
+ * most once per wire protocol, while a keyed hash is encoded per connection.
+ */
+public final class EncodedFrame {
+
+  private final Message message;
+  // Written at most once each, a race only encodes the same bytes twice
+  private volatile byte[] textFrame;
+  private volatile byte[] binaryFrame;
+  private volatile byte[] checksummedTextFrame;
+  private volatile byte[] checksummedBinaryFrame;
+
+  private EncodedFrame(Message message) {
+    this.message = message;
+  }
+
+  /**
+   * Creates an encoded frame for a message. The message must not be modified
+   * after this.
+   *
+   * @param message The message to encode
+   * @return The encoded frame
+   */
+  public static EncodedFrame of(Message message) {
+    if (message == null) {
+      throw new IllegalArgumentException("Message cannot be null");
+    }
+    return new EncodedFrame(message);
+  }
+
+  /**
+   * Gets the message the frame is encoded from.
+   *
+   * @return The message
+   */
+  public Message getMessage() {
+    return this.message;
+  }
+
+  /**
+   * Gets the message encoded with a wire protocol, encoding it on first use.
+   *
+   * @param protocol The wire protocol
+   * @return The encoded frame, shared by all callers and not to be modified
+   */
+  public byte[] getBytes(WireProtocol protocol) {
+    byte[] bytes;
+    if (protocol == WireProtocol.BINARY) {
+      bytes = this.binaryFrame;
+      if (bytes == null) {
+        bytes = FrameCodec.encode(this.message, protocol);
+        this.binaryFrame = bytes;
+      }
+    } else {
+      bytes = this.textFrame;
+      if (bytes == null) {
+        bytes = FrameCodec.encode(this.message, WireProtocol.TEXT);
+        this.textFrame = bytes;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Gets the message encoded with a wire protocol and the hash of an integrity
+   * check, encoding it on first use unless the check needs a key.
+   *
+   * @param protocol  The wire protocol
+   * @param integrity The integrity check of the connection
+   * @return The encoded frame, possibly shared by all callers and not to be
+   *         modified
+   */
+  public byte[] getBytes(WireProtocol protocol, MessageIntegrity integrity) {
+    if (integrity.getMode() == IntegrityMode.NONE) {
+      return this.getBytes(protocol);
+    }
+    if (integrity.getMode().isKeyed()) {
+      return FrameCodec.encode(this.message, protocol, integrity);
+    }
+    byte[] bytes;
+    if (protocol == WireProtocol.BINARY) {
+      bytes = this.checksummedBinaryFrame;
+      if (bytes == null) {
+        bytes = FrameCodec.encode(this.message, protocol, integrity);
+        this.checksummedBinaryFrame = bytes;
+      }
+    } else {
+      bytes = this.checksummedTextFrame;
+      if (bytes == null) {
+        bytes = FrameCodec.encode(this.message, WireProtocol.TEXT, integrity);
+        this.checksummedTextFrame = bytes;
+      }
+    }
+    return bytes;
+  }
+}
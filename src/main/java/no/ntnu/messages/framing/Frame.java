@@ -0,0 +1,88 @@
+package no.ntnu.messages.framing;
+
+/**
+ * A single unit read from a connection, either a line of the text protocol or
+ * a binary frame.
+ */
+public class Frame {
+
+  private final String text;
+  private final FrameType type;
+  private final byte[] payload;
+
+  /**
+   * Creates a frame.
+   *
+   * @param text    The text line, or null for a binary frame
+   * @param type    The binary frame type, or null for a text line
+   * @param payload The binary frame payload, or null for a text line
+   */
+  private Frame(String text, FrameType type, byte[] payload) {
+    this.text = text;
+    this.type = type;
+    this.payload = payload;
+  }
+
+  /**
+   * Creates a frame holding a line of the text protocol.
+   *
+   * @param text The line, without the line terminator
+   * @return The text frame
+   */
+  public static Frame text(String text) {
+    if (text == null) {
+      throw new IllegalArgumentException("Text cannot be null");
+    }
+    return new Frame(text, null, null);
+  }
+
+  /**
+   * Creates a binary frame.
+   *
+   * @param type    The type of the frame
+   * @param payload The payload following the type tag
+   * @return The binary frame
+   */
+  public static Frame binary(FrameType type, byte[] payload) {
+    if (type == null || payload == null) {
+      throw new IllegalArgumentException("Frame type and payload cannot be null");
+    }
+    return new Frame(null, type, payload);
+  }
+
+  /**
+   * Returns true if the frame is a line of the text protocol.
+   *
+   * @return true for a text frame, false for a binary frame
+   */
+  public boolean isText() {
+    return this.text != null;
+  }
+
+  /**
+   * Gets the text line of a text frame.
+   *
+   * @return The text line, or null for a binary frame
+   */
+  public String getText() {
+    return this.text;
+  }
+
+  /**
+   * Gets the type of a binary frame.
+   *
+   * @return The frame type, or null for a text frame
+   */
+  public FrameType getType() {
+    return this.type;
+  }
+
+  /**
+   * Gets the payload of a binary frame, following the type tag.
+   *
+   * @return The payload, or null for a text frame
+   */
+  public byte[] getPayload() {
+    return this.payload;
+  }
+}
@@ -0,0 +1,380 @@
+package no.ntnu.messages.framing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.MessageParser;
+import no.ntnu.tools.encryption.IntegrityMode;
+import no.ntnu.tools.encryption.MessageIntegrity;
+import no.ntnu.tools.encryption.SessionEncryptor;
+
+/**
+ * Encodes messages for the wire, and decodes received frames into messages.
+ *
+ * <p>A text message is its protocol string followed by a newline. A binary
+ * frame is laid out as:
+ * <pre>
+ * MAGIC (1) | length (4) | type tag (1) | payload (length - 1)
+ * </pre>
+ * where the length counts the bytes following the length field. The magic byte
+ * never starts a line of the text protocol, so a reader can tell the two apart
+ * by the first byte, and both kinds may be mixed on one connection.
+ *
+ * <p>The payload of a {@link FrameType#MESSAGE} frame starts with a fixed-width
+ * header, followed by the variable-length header fields and the raw body bytes:
+ * <pre>
+ * receiver (1) | id length (1) | hash length (2) | id | hash | body
+ * </pre>
+ *
+ * <p>The hash in the header of either kind is computed over the UTF-8 encoded
+ * body, see {@link #encode(Message, WireProtocol, MessageIntegrity)} and
+ * {@link #verify(Frame, MessageIntegrity)}.
+ *
+ * <p>A binary frame can be wrapped in a {@link FrameType#ENCRYPTED} frame, whose
+ * payload is the inner frame's type tag and payload encrypted with a
+ * {@link SessionEncryptor}, see {@link #encrypt(byte[], SessionEncryptor)}:
+ * <pre>
+ * nonce (12) | encrypted type tag and payload | tag (16)
+ * </pre>
+ */
+public class FrameCodec {
+
+  /**
+   * The first byte of every binary frame.
+   */
+  public static final byte MAGIC = 0;
+
+  /**
+   * The number of bytes preceding the type tag: the magic byte and the length.
+   */
+  public static final int PREFIX_LENGTH = 1 + Integer.BYTES;
+
+  /**
+   * The maximum length of a frame or text line, in bytes.
+   */
+  public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+  private static final int MESSAGE_HEADER_LENGTH = 1 + 1 + Short.BYTES;
+  private static final int MAX_ID_LENGTH = 0xFF;
+  private static final int MAX_HASH_LENGTH = 0xFFFF;
+  private static final Endpoints[] ENDPOINTS = Endpoints.values();
+
+  private FrameCodec() {
+    // Empty. Prevent instantiation.
+  }
+
+  /**
+   * Encodes a message into the bytes sent on the wire.
+   *
+   * @param message  The message to encode
+   * @param protocol The wire protocol to encode the message with
+   * @return The encoded message
+   */
+  public static byte[] encode(Message message, WireProtocol protocol) {
+    if (message == null || protocol == null) {
+      throw new IllegalArgumentException("Message and protocol cannot be null");
+    }
+    byte[] encoded;
+    if (protocol == WireProtocol.BINARY) {
+      encoded = encodeBinary(message);
+    } else {
+      encoded = (message + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+    return encoded;
+  }
+
+  /**
+   * Encodes a message into the bytes sent on the wire, with the hash of its body
+   * computed by an integrity check in place of the hash in its header. The body
+   * is encoded once, and the hash computed over the encoded bytes. The message
+   * itself is not modified.
+   *
+   * @param message   The message to encode
+   * @param protocol  The wire protocol to encode the message with
+   * @param integrity The integrity check to hash the body with
+   * @return The encoded message
+   */
+  public static byte[] encode(Message message, WireProtocol protocol,
+                              MessageIntegrity integrity) {
+    if (message == null || protocol == null || integrity == null) {
+      throw new IllegalArgumentException("Message, protocol and integrity cannot be null");
+    }
+    MessageHeader header = message.getHeader();
+    byte[] body = message.getBody().toString().getBytes(StandardCharsets.UTF_8);
+    String hash = integrity.hash(body, 0, body.length);
+
+    byte[] encoded;
+    if (protocol == WireProtocol.BINARY) {
+      encoded = encodeBinary(header, hash, body);
+    } else {
+      MessageHeader hashedHeader = new MessageHeader(header.getReceiver(), header.getId(), hash);
+      byte[] prefix = (hashedHeader + Delimiters.HEADER_BODY.getValue())
+          .getBytes(StandardCharsets.UTF_8);
+      encoded = Arrays.copyOf(prefix, prefix.length + body.length + 1);
+      System.arraycopy(body, 0, encoded, prefix.length, body.length);
+      encoded[encoded.length - 1] = '\n';
+    }
+    return encoded;
+  }
+
+  /**
+   * Encodes a message into a binary {@link FrameType#MESSAGE} frame.
+   *
+   * @param message The message to encode
+   * @return The complete frame, including the magic byte and length prefix
+   */
+  private static byte[] encodeBinary(Message message) {
+    MessageHeader header = message.getHeader();
+    byte[] body = message.getBody().toString().getBytes(StandardCharsets.UTF_8);
+    return encodeBinary(header, header.getHashedContent(), body);
+  }
+
+  /**
+   * Encodes a header and an encoded body into a binary {@link FrameType#MESSAGE}
+   * frame.
+   *
+   * @param header        The header, whose receiver and id are encoded
+   * @param hashedContent The hash to encode in the header
+   * @param body          The UTF-8 encoded body
+   * @return The complete frame, including the magic byte and length prefix
+   */
+  private static byte[] encodeBinary(MessageHeader header, String hashedContent, byte[] body) {
+    byte[] id = header.getId().getBytes(StandardCharsets.UTF_8);
+    byte[] hash = toBytes(hashedContent);
+
+    if (id.length > MAX_ID_LENGTH || hash.length > MAX_HASH_LENGTH) {
+      throw new IllegalArgumentException("Header field too long for a binary frame");
+    }
+
+    int payloadLength = MESSAGE_HEADER_LENGTH + id.length + hash.length + body.length;
+    ByteBuffer frame = allocateFrame(FrameType.MESSAGE, payloadLength);
+    frame.put((byte) header.getReceiver().ordinal());
+    frame.put((byte) id.length);
+    frame.putShort((short) hash.length);
+    frame.put(id);
+    frame.put(hash);
+    frame.put(body);
+    return frame.array();
+  }
+
+  /**
+   * Allocates a frame and writes its magic byte, length and type tag.
+   *
+   * @param type          The type of the frame
+   * @param payloadLength The length of the payload following the type tag
+   * @return A buffer positioned at the start of the payload
+   */
+  static ByteBuffer allocateFrame(FrameType type, int payloadLength) {
+    int length = 1 + payloadLength;
+    if (length > MAX_FRAME_LENGTH) {
+      throw new IllegalArgumentException("Frame exceeds maximum length of "
+          + MAX_FRAME_LENGTH + " bytes");
+    }
+    ByteBuffer frame = ByteBuffer.allocate(PREFIX_LENGTH + length);
+    frame.put(MAGIC);
+    frame.putInt(length);
+    frame.put(type.getTag());
+    return frame;
+  }
+
+  /**
+   * Decodes a received frame into a message.
+   *
+   * @param frame The received frame
+   * @return The decoded message
+   * @throws IllegalArgumentException If the frame is not a valid message
+   */
+  public static Message decode(Frame frame) {
+    if (frame == null) {
+      throw new IllegalArgumentException("Frame cannot be null");
+    }
+    if (frame.isText()) {
+      return MessageParser.parseMessage(frame.getText());
+    }
+    if (frame.getType() != FrameType.MESSAGE) {
+      throw new IllegalArgumentException("Frame does not contain a message: " + frame.getType());
+    }
+    return decodeMessage(frame.getPayload());
+  }
+
+  /**
+   * Checks the hash in the header of a received message against its body. The
+   * hash is recomputed over the body bytes as they were received, before the
+   * message is parsed.
+   *
+   * @param frame     The received text line or {@link FrameType#MESSAGE} frame
+   * @param integrity The integrity check the sender hashed the body with
+   * @return true if the hash matches the body, or messages are not checked
+   * @throws IllegalArgumentException If the frame is not a message
+   */
+  public static boolean verify(Frame frame, MessageIntegrity integrity) {
+    if (frame == null || integrity == null) {
+      throw new IllegalArgumentException("Frame and integrity cannot be null");
+    }
+    if (integrity.getMode() == IntegrityMode.NONE) {
+      return true;
+    }
+    if (frame.isText()) {
+      String text = frame.getText();
+      int headerEnd = text.indexOf(Delimiters.HEADER_BODY.getValue());
+      if (headerEnd < 0) {
+        throw new IllegalArgumentException("Invalid message format");
+      }
+      String hash = MessageParser.parseHeader(text, 0, headerEnd).getHashedContent();
+      byte[] body = text.substring(headerEnd + 1).getBytes(StandardCharsets.UTF_8);
+      return integrity.verify(hash, body, 0, body.length);
+    }
+    if (frame.getType() != FrameType.MESSAGE) {
+      throw new IllegalArgumentException("Frame does not contain a message: " + frame.getType());
+    }
+    byte[] payload = frame.getPayload();
+    int bodyOffset = getBodyOffset(payload);
+    int hashLength = Short.toUnsignedInt(ByteBuffer.wrap(payload, 2, Short.BYTES).getShort());
+    String hash = new String(payload, bodyOffset - hashLength, hashLength,
+        StandardCharsets.UTF_8);
+    return integrity.verify(hash, payload, bodyOffset, payload.length - bodyOffset);
+  }
+
+  /**
+   * Gets the offset of the body in the payload of a {@link FrameType#MESSAGE}
+   * frame.
+   *
+   * @param payload The payload following the type tag
+   * @return The index of the first byte of the body
+   * @throws IllegalArgumentException If the payload is malformed
+   */
+  private static int getBodyOffset(byte[] payload) {
+    if (payload.length < MESSAGE_HEADER_LENGTH) {
+      throw new IllegalArgumentException("Message frame too short");
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(payload);
+    int receiverOrdinal = Byte.toUnsignedInt(buffer.get());
+    int idLength = Byte.toUnsignedInt(buffer.get());
+    int hashLength = Short.toUnsignedInt(buffer.getShort());
+    int bodyOffset = MESSAGE_HEADER_LENGTH + idLength + hashLength;
+    if (receiverOrdinal >= ENDPOINTS.length || bodyOffset > payload.length) {
+      throw new IllegalArgumentException("Malformed message frame header");
+    }
+    return bodyOffset;
+  }
+
+  /**
+   * Decodes the payload of a {@link FrameType#MESSAGE} frame.
+   *
+   * @param payload The payload following the type tag
+   * @return The decoded message
+   * @throws IllegalArgumentException If the payload is malformed
+   */
+  private static Message decodeMessage(byte[] payload) {
+    int bodyOffset = getBodyOffset(payload);
+    int receiverOrdinal = Byte.toUnsignedInt(payload[0]);
+    int idLength = Byte.toUnsignedInt(payload[1]);
+    int hashLength = bodyOffset - MESSAGE_HEADER_LENGTH - idLength;
+
+    String id = new String(payload, MESSAGE_HEADER_LENGTH, idLength, StandardCharsets.UTF_8);
+    String hash = new String(payload, MESSAGE_HEADER_LENGTH + idLength, hashLength,
+        StandardCharsets.UTF_8);
+    String body = new String(payload, bodyOffset, payload.length - bodyOffset,
+        StandardCharsets.UTF_8);
+
+    MessageHeader header = new MessageHeader(ENDPOINTS[receiverOrdinal], id, hash);
+    return new Message(header, new MessageBody(MessageParser.parseTransmission(body, 0,
+        body.length())));
+  }
+
+  /**
+   * Encrypts an encoded binary frame into a {@link FrameType#ENCRYPTED} frame.
+   * The inner frame is encrypted straight from its bytes into the new frame.
+   *
+   * @param frame   The complete binary frame, as returned by
+   *                {@link #encode(Message, WireProtocol)}
+   * @param session The session encryptor of the connection
+   * @return The complete encrypted frame
+   * @throws IllegalArgumentException If the frame is not a binary frame
+   * @throws IllegalStateException    If the frame could not be encrypted
+   */
+  public static byte[] encrypt(byte[] frame, SessionEncryptor session) {
+    if (frame == null || session == null) {
+      throw new IllegalArgumentException("Frame and session cannot be null");
+    }
+    if (frame.length <= PREFIX_LENGTH || frame[0] != MAGIC) {
+      throw new IllegalArgumentException("Only binary frames can be encrypted");
+    }
+    ByteBuffer inner = ByteBuffer.wrap(frame, PREFIX_LENGTH, frame.length - PREFIX_LENGTH);
+    ByteBuffer encrypted = allocateFrame(FrameType.ENCRYPTED,
+        SessionEncryptor.getEncryptedLength(inner.remaining()));
+    try {
+      session.encrypt(inner, encrypted);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Failed to encrypt frame", e);
+    }
+    return encrypted.array();
+  }
+
+  /**
+   * Decrypts a received {@link FrameType#ENCRYPTED} frame into the frame it
+   * holds.
+   *
+   * @param frame   The encrypted frame
+   * @param session The session encryptor of the connection
+   * @return The decrypted inner frame
+   * @throws IllegalArgumentException If the frame is not an encrypted frame, was
+   *                                  encrypted with another key, has been tampered
+   *                                  with, or holds an unknown frame type
+   */
+  public static Frame decrypt(Frame frame, SessionEncryptor session) {
+    if (frame == null || session == null) {
+      throw new IllegalArgumentException("Frame and session cannot be null");
+    }
+    if (frame.getType() != FrameType.ENCRYPTED) {
+      throw new IllegalArgumentException("Frame is not encrypted: " + frame.getType());
+    }
+    ByteBuffer encrypted = ByteBuffer.wrap(frame.getPayload());
+    byte[] inner = new byte[SessionEncryptor.getDecryptedLength(encrypted.remaining())];
+    try {
+      session.decrypt(encrypted, ByteBuffer.wrap(inner));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException("Failed to decrypt frame: " + e.getMessage(), e);
+    }
+    FrameType type = inner.length == 0 ? null : FrameType.fromTag(inner[0]);
+    if (type == null || type == FrameType.ENCRYPTED) {
+      throw new IllegalArgumentException("Invalid encrypted frame type");
+    }
+    return Frame.binary(type, Arrays.copyOfRange(inner, 1, inner.length));
+  }
+
+  /**
+   * Reads the length field of a binary frame.
+   *
+   * @param prefix A buffer positioned at the length field
+   * @return The length of the frame following the length field
+   * @throws IOException If the length is out of range
+   */
+  static int readLength(ByteBuffer prefix) throws IOException {
+    int length = prefix.getInt();
+    if (length < 1 || length > MAX_FRAME_LENGTH) {
+      throw new IOException("Invalid frame length: " + length);
+    }
+    return length;
+  }
+
+  /**
+   * Converts a nullable string to UTF-8 bytes.
+   *
+   * @param value The string, may be null
+   * @return The UTF-8 bytes, empty if the string is null
+   */
+  private static byte[] toBytes(String value) {
+    if (value == null) {
+      return new byte[0];
+    }
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,135 @@
+package no.ntnu.messages.framing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Splits the bytes read from a non-blocking channel into frames.
+ *
+ * <p>Reads from a non-blocking channel may end anywhere, also in the middle of a
+ * frame. Every connection therefore keeps its own decoder, which buffers the bytes
+ * of an incomplete frame until the rest of it arrives. Text lines and binary
+ * frames are told apart by their first byte, see {@link FrameCodec}.
+ */
+public class FrameDecoder {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private int length = 0;
+  // Position from where to continue looking for a line terminator
+  private int scanPosition = 0;
+
+  /**
+   * Appends the bytes read from the channel and passes every completed frame to
+   * the consumer. Text frames do not include the line terminator.
+   *
+   * @param bytes    the bytes read from the channel, ready to be read
+   * @param consumer receives every completed frame
+   * @throws IOException if a frame is malformed or longer than the maximum length
+   */
+  public void decode(ByteBuffer bytes, Consumer<Frame> consumer) throws IOException {
+    this.append(bytes);
+
+    int frameStart = 0;
+    int frameEnd = this.findFrameEnd(frameStart);
+    while (frameEnd > 0) {
+      consumer.accept(this.toFrame(frameStart, frameEnd));
+      frameStart = frameEnd;
+      this.scanPosition = frameStart;
+      frameEnd = this.findFrameEnd(frameStart);
+    }
+    this.discard(frameStart);
+  }
+
+  /**
+   * Finds the end of the frame starting at the given index.
+   *
+   * @param start the index of the first byte of the frame
+   * @return the index following the frame, or -1 if the frame is incomplete
+   * @throws IOException if the length of a binary frame is invalid
+   */
+  private int findFrameEnd(int start) throws IOException {
+    if (start >= this.length) {
+      return -1;
+    }
+    if (this.buffer[start] == FrameCodec.MAGIC) {
+      if (this.length - start < FrameCodec.PREFIX_LENGTH) {
+        return -1;
+      }
+      int frameLength = FrameCodec.readLength(ByteBuffer.wrap(this.buffer, start + 1,
+          Integer.BYTES));
+      int end = start + FrameCodec.PREFIX_LENGTH + frameLength;
+      return end <= this.length ? end : -1;
+    }
+    for (int i = Math.max(start, this.scanPosition); i < this.length; i++) {
+      if (this.buffer[i] == '\n') {
+        return i + 1;
+      }
+    }
+    this.scanPosition = this.length;
+    return -1;
+  }
+
+  /**
+   * Appends bytes to the buffer, growing it if needed.
+   *
+   * @param bytes the bytes to append
+   * @throws IOException if the buffered frame would exceed the maximum length
+   */
+  private void append(ByteBuffer bytes) throws IOException {
+    int required = this.length + bytes.remaining();
+    if (required > FrameCodec.PREFIX_LENGTH + FrameCodec.MAX_FRAME_LENGTH) {
+      throw new IOException("Frame exceeds maximum length of "
+          + FrameCodec.MAX_FRAME_LENGTH + " bytes");
+    }
+    if (required > this.buffer.length) {
+      int newCapacity = Math.max(required, this.buffer.length * 2);
+      this.buffer = Arrays.copyOf(this.buffer, newCapacity);
+    }
+    int appended = bytes.remaining();
+    bytes.get(this.buffer, this.length, appended);
+    this.length += appended;
+  }
+
+  /**
+   * Creates a frame from the buffered bytes.
+   *
+   * @param start the index of the first byte of the frame
+   * @param end   the index following the frame
+   * @return the frame
+   * @throws IOException if the type of a binary frame is unknown
+   */
+  private Frame toFrame(int start, int end) throws IOException {
+    if (this.buffer[start] == FrameCodec.MAGIC) {
+      int tagIndex = start + FrameCodec.PREFIX_LENGTH;
+      FrameType type = FrameType.fromTag(this.buffer[tagIndex]);
+      if (type == null) {
+        throw new IOException("Unknown frame type: " + this.buffer[tagIndex]);
+      }
+      return Frame.binary(type, Arrays.copyOfRange(this.buffer, tagIndex + 1, end));
+    }
+
+    int lineEnd = end - 1;
+    if (lineEnd > start && this.buffer[lineEnd - 1] == '\r') {
+      lineEnd--;
+    }
+    return Frame.text(new String(this.buffer, start, lineEnd - start, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Discards the bytes of all consumed frames, keeping an incomplete frame.
+   *
+   * @param consumed the number of consumed bytes at the start of the buffer
+   */
+  private void discard(int consumed) {
+    if (consumed > 0) {
+      System.arraycopy(this.buffer, consumed, this.buffer, 0, this.length - consumed);
+      this.length -= consumed;
+      this.scanPosition = Math.max(0, this.scanPosition - consumed);
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package no.ntnu.messages.framing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads frames from a blocking input stream.
+ * Text lines and binary frames are told apart by their first byte, see
+ * {@link FrameCodec}.
+ *
+ * <p>The reader keeps its own buffer, so text lines are scanned for their
+ * terminator in bulk and binary payloads are copied in bulk.
+ */
+public class FrameReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private final InputStream in;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position = 0;
+  private int limit = 0;
+  private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+
+  /**
+   * Creates a frame reader.
+   *
+   * @param in The stream to read from
+   */
+  public FrameReader(InputStream in) {
+    if (in == null) {
+      throw new IllegalArgumentException("Input stream cannot be null");
+    }
+    this.in = in;
+  }
+
+  /**
+   * Reads the next frame, blocking until it is complete.
+   *
+   * @return The frame, or null if the stream ended before a new frame started
+   * @throws IOException If reading fails, the stream ends inside a frame, or the
+   *                     frame is malformed
+   */
+  public Frame readFrame() throws IOException {
+    if (!this.fill()) {
+      return null;
+    }
+    Frame frame;
+    if (this.buffer[this.position] == FrameCodec.MAGIC) {
+      this.position++;
+      frame = this.readBinaryFrame();
+    } else {
+      frame = this.readTextFrame();
+    }
+    return frame;
+  }
+
+  /**
+   * Reads the rest of a binary frame, after the magic byte.
+   *
+   * @return The binary frame
+   * @throws IOException If reading fails or the frame is malformed
+   */
+  private Frame readBinaryFrame() throws IOException {
+    byte[] prefix = new byte[Integer.BYTES + 1];
+    this.readFully(prefix);
+    ByteBuffer prefixBuffer = ByteBuffer.wrap(prefix);
+    int length = FrameCodec.readLength(prefixBuffer);
+    byte tag = prefixBuffer.get();
+
+    byte[] payload = new byte[length - 1];
+    this.readFully(payload);
+
+    FrameType type = FrameType.fromTag(tag);
+    if (type == null) {
+      throw new IOException("Unknown frame type: " + tag);
+    }
+    return Frame.binary(type, payload);
+  }
+
+  /**
+   * Reads a text line.
+   *
+   * @return The text frame, without the line terminator
+   * @throws IOException If reading fails or the line is too long
+   */
+  private Frame readTextFrame() throws IOException {
+    this.lineBuffer.reset();
+    boolean terminated = false;
+    while (!terminated) {
+      if (!this.fill()) {
+        throw new EOFException("Stream ended inside a line");
+      }
+      int end = this.position;
+      while (end < this.limit && this.buffer[end] != '\n') {
+        end++;
+      }
+      terminated = end < this.limit;
+      if (this.lineBuffer.size() + (end - this.position) > FrameCodec.MAX_FRAME_LENGTH) {
+        throw new IOException("Line exceeds maximum length");
+      }
+      this.lineBuffer.write(this.buffer, this.position, end - this.position);
+      this.position = terminated ? end + 1 : end;
+    }
+
+    String line = this.lineBuffer.toString(StandardCharsets.UTF_8);
+    if (line.endsWith("\r")) {
+      line = line.substring(0, line.length() - 1);
+    }
+    return Frame.text(line);
+  }
+
+  /**
+   * Reads exactly enough bytes to fill the target array.
+   *
+   * @param target The array to fill
+   * @throws IOException If reading fails or the stream ends first
+   */
+  private void readFully(byte[] target) throws IOException {
+    int copied = Math.min(target.length, this.limit - this.position);
+    System.arraycopy(this.buffer, this.position, target, 0, copied);
+    this.position += copied;
+
+    while (copied < target.length) {
+      int read = this.in.read(target, copied, target.length - copied);
+      if (read < 0) {
+        throw new EOFException("Stream ended inside a frame");
+      }
+      copied += read;
+    }
+  }
+
+  /**
+   * Makes sure there is at least one unread byte in the buffer, blocking if needed.
+   *
+   * @return true if there are bytes to read, false if the stream has ended
+   * @throws IOException If reading fails
+   */
+  private boolean fill() throws IOException {
+    if (this.position < this.limit) {
+      return true;
+    }
+    int read = this.in.read(this.buffer, 0, this.buffer.length);
+    this.position = 0;
+    this.limit = Math.max(read, 0);
+    return read > 0;
+  }
+
+  /**
+   * Closes the underlying stream.
+   *
+   * @throws IOException If closing fails
+   */
+  @Override
+  public void close() throws IOException {
+    this.in.close();
+  }
+}
@@ -0,0 +1,53 @@
+package no.ntnu.messages.framing;
+
+/**
+ * The types of binary frames, identified on the wire by a one byte tag.
+ */
+public enum FrameType {
+
+  /**
+   * A complete message, with a binary header and the body as raw bytes.
+   */
+  MESSAGE((byte) 1),
+
+  /**
+   * Another binary frame, encrypted with the session key of the connection. The
+   * payload is the encrypted type tag and payload of the inner frame.
+   */
+  ENCRYPTED((byte) 2);
+
+  private final byte tag;
+
+  /**
+   * Constructs a frame type with the specified tag.
+   *
+   * @param tag The tag identifying the frame type on the wire.
+   */
+  FrameType(byte tag) {
+    this.tag = tag;
+  }
+
+  /**
+   * Gets the tag identifying the frame type on the wire.
+   *
+   * @return The tag of the frame type.
+   */
+  public byte getTag() {
+    return tag;
+  }
+
+  /**
+   * Retrieves a {@link FrameType} based on its tag.
+   *
+   * @param tag The tag to match.
+   * @return The matching frame type, or {@code null} if no match is found.
+   */
+  public static FrameType fromTag(byte tag) {
+    for (FrameType type : FrameType.values()) {
+      if (type.getTag() == tag) {
+        return type;
+      }
+    }
+    return null;
+  }
+}
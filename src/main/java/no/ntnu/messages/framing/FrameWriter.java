@@ -0,0 +1,421 @@
+package no.ntnu.messages.framing;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import no.ntnu.messages.Message;
+import no.ntnu.tools.threading.ThreadMode;
+
+/**
+ * Writes encoded frames to a blocking output stream from a dedicated thread.
+ *
+ * <p>Senders only queue frames, so they never block on the socket. The writer
+ * thread takes every frame that is already waiting, up to the maximum batch size,
+ * and writes them with a single flush. Under load many frames therefore share one
+ * system call and TCP segment. With a maximum latency above zero, the writer also
+ * waits up to that long for more frames before flushing a batch that is not full.
+ *
+ * <p>The queue is bounded. When a frame is queued while the queue is full, the
+ * writer's {@link OverflowPolicy} decides whether a frame is dropped or the
+ * receiver is disconnected, so a receiver that stops reading cannot make the
+ * sender run out of memory. Checking for room and queuing a frame is one step,
+ * so the bound holds however many threads queue frames at once.
+ */
+public class FrameWriter implements Closeable {
+
+  /**
+   * Notified when writing fails. The writer stops after a failure.
+   */
+  public interface FailureListener {
+
+    /**
+     * Called on the writer thread when writing to the stream fails.
+     *
+     * @param writer The writer that failed
+     * @param e      The cause of the failure
+     * @param unsent The messages that were queued but may not have been written
+     */
+    void onWriteFailed(FrameWriter writer, IOException e, List<Message> unsent);
+  }
+
+  /**
+   * The number of frames queued by default before the overflow policy applies.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long CLOSE_TIMEOUT_MS = 1000;
+  // Queued by close, the writer stops when it reaches it
+  private static final QueuedFrame CLOSE_MARKER = new QueuedFrame(null, new byte[0]);
+
+  private final OutputStream stream;
+  private final OutputStream out;
+  private final FailureListener failureListener;
+  private final BlockingQueue<QueuedFrame> queue;
+  private final int capacity;
+  private final OverflowPolicy overflowPolicy;
+  // Held while a frame is queued, only the writer thread takes frames without it
+  private final ReentrantLock enqueueLock = new ReentrantLock();
+  private final AtomicLong framesWritten = new AtomicLong();
+  private final AtomicLong batchesWritten = new AtomicLong();
+  private final AtomicLong droppedFrames = new AtomicLong();
+  private volatile int maxBatchSize;
+  private volatile long maxLatencyMs;
+  private volatile boolean closed = false;
+  // Set when the receiver was disconnected by the overflow policy
+  private volatile boolean overflowed = false;
+  private Thread thread;
+
+  /**
+   * Creates a frame writer with the default capacity, dropping the oldest frame
+   * when full. Frames are queued until the writer is started.
+   *
+   * @param out             The stream to write to
+   * @param maxBatchSize    The maximum number of frames written with one flush
+   * @param maxLatencyMs    The longest time to wait for more frames before flushing
+   * @param failureListener Notified if writing fails
+   */
+  public FrameWriter(OutputStream out, int maxBatchSize, long maxLatencyMs,
+                     FailureListener failureListener) {
+    this(out, DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST, maxBatchSize, maxLatencyMs,
+        failureListener);
+  }
+
+  /**
+   * Creates a frame writer. Frames are queued until the writer is started.
+   *
+   * @param out             The stream to write to
+   * @param capacity        The maximum number of queued frames
+   * @param overflowPolicy  What to do when a frame is queued while the queue is full
+   * @param maxBatchSize    The maximum number of frames written with one flush
+   * @param maxLatencyMs    The longest time to wait for more frames before flushing
+   * @param failureListener Notified if writing fails
+   */
+  public FrameWriter(OutputStream out, int capacity, OverflowPolicy overflowPolicy,
+                     int maxBatchSize, long maxLatencyMs, FailureListener failureListener) {
+    if (out == null || overflowPolicy == null || failureListener == null) {
+      throw new IllegalArgumentException(
+          "Output stream, overflow policy and failure listener cannot be null");
+    }
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.overflowPolicy = overflowPolicy;
+    // One extra slot, so the close marker always fits
+    this.queue = new LinkedBlockingQueue<>(capacity + 1);
+    this.stream = out;
+    this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+    this.failureListener = failureListener;
+    this.setMaxBatchSize(maxBatchSize);
+    this.setMaxLatencyMs(maxLatencyMs);
+  }
+
+  /**
+   * Starts the writer thread.
+   *
+   * @param threadMode The kind of thread to write on
+   * @param name       The name of the thread
+   */
+  public void start(ThreadMode threadMode, String name) {
+    if (this.thread != null) {
+      throw new IllegalStateException("Frame writer already started");
+    }
+    this.thread = threadMode.start(name, true, this::writeFrames);
+  }
+
+  /**
+   * Sets the maximum number of frames written with one flush.
+   *
+   * @param maxBatchSize The maximum batch size, must be positive
+   */
+  public void setMaxBatchSize(int maxBatchSize) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("Max batch size must be positive");
+    }
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Sets the longest time the first frame of a batch waits for more frames
+   * before the batch is flushed. With 0, only frames that are already queued are
+   * batched, and a lone frame is written at once.
+   *
+   * @param maxLatencyMs The maximum latency in milliseconds, must not be negative
+   */
+  public void setMaxLatencyMs(long maxLatencyMs) {
+    if (maxLatencyMs < 0) {
+      throw new IllegalArgumentException("Max latency cannot be negative");
+    }
+    this.maxLatencyMs = maxLatencyMs;
+  }
+
+  /**
+   * Queues an encoded frame for writing. If the queue is full, the overflow
+   * policy is applied first.
+   *
+   * @param message The message the frame was encoded from, returned if writing fails
+   * @param frame   The encoded frame
+   * @return true if the frame was queued or dropped by the overflow policy, false
+   *         if the writer is closed
+   */
+  public boolean enqueue(Message message, byte[] frame) {
+    if (frame == null) {
+      throw new IllegalArgumentException("Frame cannot be null");
+    }
+    this.enqueueLock.lock();
+    try {
+      return this.enqueueWithLock(new QueuedFrame(message, frame));
+    } finally {
+      this.enqueueLock.unlock();
+    }
+  }
+
+  /**
+   * Queues a frame, applying the overflow policy first if the queue is full. The
+   * enqueue lock must be held, so no other frame is queued in between.
+   *
+   * @param frame The frame to queue
+   * @return true if the frame was queued or dropped by the overflow policy, false
+   *         if the writer is closed
+   */
+  private boolean enqueueWithLock(QueuedFrame frame) {
+    if (this.closed) {
+      return false;
+    }
+
+    if (this.queue.size() >= this.capacity) {
+      if (this.overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+        this.droppedFrames.incrementAndGet();
+        return true;
+      } else if (this.overflowPolicy == OverflowPolicy.DISCONNECT) {
+        this.disconnect();
+        return false;
+      }
+      // Not closed, so the close marker is not queued and the oldest is a frame
+      if (this.queue.poll() != null) {
+        this.droppedFrames.incrementAndGet();
+      }
+    }
+
+    // Always fits, frames are only added while holding the lock
+    this.queue.add(frame);
+    return true;
+  }
+
+  /**
+   * Disconnects the receiver after the queue overflowed. Closing the stream makes
+   * the writer thread fail, which reports the queued messages as unsent.
+   */
+  private void disconnect() {
+    this.overflowed = true;
+    this.closed = true;
+    this.droppedFrames.incrementAndGet();
+    try {
+      this.stream.close();
+    } catch (IOException e) {
+      // Ignored, the stream is abandoned either way
+    }
+  }
+
+  /**
+   * Returns the number of frames waiting to be written.
+   *
+   * @return the queue depth
+   */
+  public int getQueueDepth() {
+    return this.queue.size();
+  }
+
+  /**
+   * Returns the number of frames written since the writer was created.
+   *
+   * @return the number of frames written
+   */
+  public long getFramesWritten() {
+    return this.framesWritten.get();
+  }
+
+  /**
+   * Returns the number of frames dropped by the overflow policy.
+   *
+   * @return the number of dropped frames
+   */
+  public long getDroppedFrames() {
+    return this.droppedFrames.get();
+  }
+
+  /**
+   * Returns the maximum number of queued frames.
+   *
+   * @return the capacity of the queue
+   */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Returns the number of flushes since the writer was created.
+   *
+   * @return the number of batches written
+   */
+  public long getBatchesWritten() {
+    return this.batchesWritten.get();
+  }
+
+  /**
+   * Writes batches of frames until the writer is closed or writing fails.
+   */
+  private void writeFrames() {
+    List<QueuedFrame> batch = new ArrayList<>();
+    boolean running = true;
+    try {
+      while (running) {
+        running = this.collectBatch(batch);
+        this.writeBatch(batch);
+        batch.clear();
+      }
+      this.out.flush();
+    } catch (IOException e) {
+      this.fail(e, batch);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for the next frame, and collects it with the frames following it into
+   * a batch.
+   *
+   * @param batch The list to add the frames to
+   * @return false if the writer was closed, true otherwise
+   * @throws InterruptedException If interrupted while waiting
+   */
+  private boolean collectBatch(List<QueuedFrame> batch) throws InterruptedException {
+    QueuedFrame frame = this.queue.take();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.maxLatencyMs);
+    while (frame != CLOSE_MARKER) {
+      batch.add(frame);
+      if (batch.size() >= this.maxBatchSize) {
+        return true;
+      }
+      frame = this.queue.poll();
+      if (frame == null) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return true;
+        }
+        frame = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+        if (frame == null) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes a batch of frames with a single flush.
+   *
+   * @param batch The frames to write
+   * @throws IOException If writing fails
+   */
+  private void writeBatch(List<QueuedFrame> batch) throws IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    for (QueuedFrame frame : batch) {
+      this.out.write(frame.bytes);
+    }
+    this.out.flush();
+    this.framesWritten.addAndGet(batch.size());
+    this.batchesWritten.incrementAndGet();
+  }
+
+  /**
+   * Stops the writer and hands every message that may not have been written to
+   * the failure listener.
+   *
+   * @param e     The cause of the failure
+   * @param batch The batch that was being written
+   */
+  private void fail(IOException e, List<QueuedFrame> batch) {
+    // Under the lock, so no frame is queued after the queue is drained
+    this.enqueueLock.lock();
+    try {
+      this.closed = true;
+    } finally {
+      this.enqueueLock.unlock();
+    }
+    List<QueuedFrame> remaining = new ArrayList<>(batch);
+    this.queue.drainTo(remaining);
+
+    List<Message> unsent = new ArrayList<>();
+    for (QueuedFrame frame : remaining) {
+      if (frame != CLOSE_MARKER && frame.message != null) {
+        unsent.add(frame.message);
+      }
+    }
+    IOException cause = e;
+    if (this.overflowed) {
+      cause = new IOException("Outbound queue full, receiver is not keeping up", e);
+    }
+    this.failureListener.onWriteFailed(this, cause, unsent);
+  }
+
+  /**
+   * Closes the writer. Frames queued before closing are still written, waiting a
+   * limited time for them, before the stream is closed.
+   *
+   * @throws IOException If closing the stream fails
+   */
+  @Override
+  public void close() throws IOException {
+    boolean closing = false;
+    this.enqueueLock.lock();
+    try {
+      if (!this.closed) {
+        this.closed = true;
+        // The extra slot is left for it, no frame is queued after closing
+        this.queue.add(CLOSE_MARKER);
+        closing = true;
+      }
+    } finally {
+      this.enqueueLock.unlock();
+    }
+    if (closing) {
+      if (this.thread != null && this.thread != Thread.currentThread()) {
+        try {
+          this.thread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+    // Closes the underlying stream directly, a writer stuck on a slow client still
+    // holds the buffered stream
+    this.stream.close();
+  }
+
+  /**
+   * An encoded frame waiting to be written, along with the message it was
+   * encoded from.
+   */
+  private static final class QueuedFrame {
+    private final Message message;
+    private final byte[] bytes;
+
+    private QueuedFrame(Message message, byte[] bytes) {
+      this.message = message;
+      this.bytes = bytes;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package no.ntnu.messages.framing;
+
+/**
+ * What a connection does when a message is sent while its outbound queue is full,
+ * typically because the receiver does not read fast enough.
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Drops the oldest queued message that has not started being written, making
+   * room for the new one. Suits status updates, where the newest value matters most.
+   */
+  DROP_OLDEST("drop-oldest"),
+
+  /**
+   * Drops the message being sent, keeping the queued ones.
+   */
+  DROP_NEWEST("drop-newest"),
+
+  /**
+   * Disconnects the receiver, so a stuck client does not hold on to resources.
+   */
+  DISCONNECT("disconnect");
+
+  private final String value;
+
+  /**
+   * Constructs an overflow policy with the specified string value.
+   *
+   * @param value The string representation of the overflow policy.
+   */
+  OverflowPolicy(String value) {
+    this.value = value;
+  }
+
+  /**
+   * Gets the string value of the overflow policy.
+   *
+   * @return The string value of the overflow policy.
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Retrieves an {@link OverflowPolicy} based on its string value.
+   *
+   * @param target The string value to match.
+   * @return The matching overflow policy, or {@code null} if no match is found.
+   */
+  public static OverflowPolicy fromString(String target) {
+    if (target == null) {
+      return null;
+    }
+    for (OverflowPolicy policy : OverflowPolicy.values()) {
+      if (policy.getValue().equalsIgnoreCase(target)) {
+        return policy;
+      }
+    }
+    return null;
+  }
+}
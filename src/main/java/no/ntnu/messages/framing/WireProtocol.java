@@ -0,0 +1,58 @@
+package no.ntnu.messages.framing;
+
+/**
+ * The encodings messages can be sent with over a connection.
+ * A client offers a wire protocol when it identifies itself, and the server
+ * answers with the protocol both sides use from then on.
+ */
+public enum WireProtocol {
+
+  /**
+   * Newline-terminated protocol strings. Always understood, and used until a
+   * connection has agreed on something else.
+   */
+  TEXT("TEXT"),
+
+  /**
+   * Length-prefixed binary frames, see {@link FrameCodec}.
+   */
+  BINARY("BINARY");
+
+  private final String value;
+
+  /**
+   * Constructs a wire protocol with the specified string value.
+   *
+   * @param value The string representation of the wire protocol.
+   */
+  WireProtocol(String value) {
+    this.value = value;
+  }
+
+  /**
+   * Gets the string value of the wire protocol.
+   *
+   * @return The string value of the wire protocol.
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Retrieves a {@link WireProtocol} based on its string value.
+   *
+   * @param target The string value to match.
+   * @return The matching wire protocol, or {@code null} if no match is found.
+   */
+  public static WireProtocol fromString(String target) {
+    if (target == null) {
+      return null;
+    }
+    for (WireProtocol protocol : WireProtocol.values()) {
+      if (protocol.getValue().equalsIgnoreCase(target)) {
+        return protocol;
+      }
+    }
+    return null;
+  }
+}
@@ -7,7 +7,9 @@ public enum FailureReason {
 
   SERVER_NOT_RUNNING("Server is not running"),
   FAILED_TO_IDENTIFY_CLIENT("Failed to identify client"),
-  INTEGRITY_ERROR("Integrity error");
+  INTEGRITY_ERROR("Integrity error"),
+  INVALID_SUBSCRIPTION("Invalid subscription"),
+  BLOB_NOT_FOUND("Blob not found");
 
   private final String reason;
 
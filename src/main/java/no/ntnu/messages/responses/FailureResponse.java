@@ -1,5 +1,6 @@
 package no.ntnu.messages.responses;
 
+import no.ntnu.messages.Delimiters;
 import no.ntnu.messages.Transmission;
 
 /**
@@ -21,6 +22,22 @@ public class FailureResponse extends Response {
     super("FAILURE", transmission, failureReason.toString());
   }
 
+  /**
+   * Constructs a {@code FailureResponse} with the specified transmission,
+   * failure reason and a detail telling what failed, for example the hash of a
+   * blob that was not found.
+   *
+   * @param transmission  The {@link Transmission} associated with this failure
+   *                      response.
+   * @param failureReason The data describing why failure occured
+   * @param detail        What failed
+   */
+  public FailureResponse(Transmission transmission, FailureReason failureReason,
+                         String detail) {
+    super("FAILURE", transmission,
+        failureReason.toString() + Delimiters.BODY_FIELD_PARAMETERS.getValue() + detail);
+  }
+
   /**
    * Constructs a {@code FailureResponse} without a transmission or failure
    * reason.
@@ -35,7 +52,27 @@ public class FailureResponse extends Response {
    * @return The reason for the failure.
    */
   public FailureReason getFailureReason() {
-    return FailureReason.fromString(this.getResponseData());
+    String responseData = this.getResponseData();
+    if (responseData == null) {
+      return null;
+    }
+    int detailStart = responseData.indexOf(Delimiters.BODY_FIELD_PARAMETERS.getValue());
+    return FailureReason.fromString(
+        detailStart < 0 ? responseData : responseData.substring(0, detailStart));
+  }
+
+  /**
+   * Gets the detail telling what failed.
+   *
+   * @return The detail, or null if the response has none.
+   */
+  public String getDetail() {
+    String responseData = this.getResponseData();
+    if (responseData == null) {
+      return null;
+    }
+    int detailStart = responseData.indexOf(Delimiters.BODY_FIELD_PARAMETERS.getValue());
+    return detailStart < 0 ? null : responseData.substring(detailStart + 1);
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,191 @@
+package no.ntnu.messages.subscriptions;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import no.ntnu.messages.Delimiters;
+
+/**
+ * The readings of a node that changed since an earlier snapshot of its sensor
+ * data, or all of them in a keyframe.
+ *
+ * <p>Readings are identified by their position in the node's sensor data. The
+ * protocol format is:
+ * <pre>
+ * nodeId;sequence,kind,count;index@reading¤index@reading...
+ * </pre>
+ * where kind is {@code K} for a keyframe and {@code D} for a delta, count is the
+ * number of readings the node has, and each reading is formatted as in the full
+ * sensor data. Every reading in a delta is a complete value, so applying a delta
+ * replaces the readings at its positions and keeps the others.
+ */
+public final class SensorDataDelta {
+
+  private static final String KEYFRAME = "K";
+  private static final String DELTA = "D";
+  private static final String INDEX_SEPARATOR = "@";
+
+  private final String nodeId;
+  private final long sequence;
+  private final boolean keyframe;
+  private final int readingCount;
+  private final SortedMap<Integer, String> readings;
+
+  /**
+   * Creates a delta.
+   *
+   * @param nodeId       The ID of the node the readings are from
+   * @param sequence     The sequence number of the snapshot the delta leads to
+   * @param keyframe     true if the delta contains every reading of the snapshot
+   * @param readingCount The number of readings in the snapshot
+   * @param readings     The changed readings, by position
+   * @throws IllegalArgumentException If a position is outside the snapshot, or a
+   *                                  keyframe does not contain every reading
+   */
+  public SensorDataDelta(String nodeId, long sequence, boolean keyframe, int readingCount,
+                         Map<Integer, String> readings) {
+    if (nodeId == null || readings == null || readingCount < 0) {
+      throw new IllegalArgumentException("Invalid sensor data delta");
+    }
+    SortedMap<Integer, String> sorted = new TreeMap<>(readings);
+    if (!sorted.isEmpty() && (sorted.firstKey() < 0 || sorted.lastKey() >= readingCount)) {
+      throw new IllegalArgumentException("Reading position outside of snapshot");
+    }
+    if (keyframe && sorted.size() != readingCount) {
+      throw new IllegalArgumentException("A keyframe must contain every reading");
+    }
+    this.nodeId = nodeId;
+    this.sequence = sequence;
+    this.keyframe = keyframe;
+    this.readingCount = readingCount;
+    this.readings = Collections.unmodifiableSortedMap(sorted);
+  }
+
+  /**
+   * Parses a delta from its protocol format.
+   *
+   * @param data The delta in protocol format
+   * @return The parsed delta
+   * @throws IllegalArgumentException If the data is malformed
+   */
+  public static SensorDataDelta fromString(String data) {
+    if (data == null) {
+      throw new IllegalArgumentException("Sensor data delta cannot be null");
+    }
+    String[] parts = data.split(Delimiters.BODY_FIELD.getValue(), 3);
+    if (parts.length < 2) {
+      throw new IllegalArgumentException("Invalid sensor data delta: " + data);
+    }
+    String[] fields = parts[1].split(Delimiters.BODY_FIELD_PARAMETERS.getValue());
+    if (fields.length != 3 || !(KEYFRAME.equals(fields[1]) || DELTA.equals(fields[1]))) {
+      throw new IllegalArgumentException("Invalid sensor data delta: " + parts[1]);
+    }
+
+    Map<Integer, String> readings = new TreeMap<>();
+    if (parts.length == 3 && !parts[2].isEmpty()) {
+      for (String entry : parts[2].split(Delimiters.BODY_SENSOR_SEPARATOR.getValue())) {
+        int separator = entry.indexOf(INDEX_SEPARATOR);
+        if (separator < 0) {
+          throw new IllegalArgumentException("Invalid reading in delta: " + entry);
+        }
+        readings.put((int) parseNumber(entry.substring(0, separator)),
+            entry.substring(separator + 1));
+      }
+    }
+    return new SensorDataDelta(parts[0], parseNumber(fields[0]), KEYFRAME.equals(fields[1]),
+        (int) parseNumber(fields[2]), readings);
+  }
+
+  /**
+   * Parses a number in a delta.
+   *
+   * @param number The number
+   * @return The parsed number
+   * @throws IllegalArgumentException If it is not a number
+   */
+  private static long parseNumber(String number) {
+    try {
+      return Long.parseLong(number);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid number in delta: " + number);
+    }
+  }
+
+  /**
+   * Gets the ID of the node the readings are from.
+   *
+   * @return The node ID
+   */
+  public String getNodeId() {
+    return this.nodeId;
+  }
+
+  /**
+   * Gets the sequence number of the snapshot the delta leads to.
+   *
+   * @return The sequence number
+   */
+  public long getSequence() {
+    return this.sequence;
+  }
+
+  /**
+   * Returns true if the delta contains every reading of the snapshot.
+   *
+   * @return true for a keyframe, false for a delta
+   */
+  public boolean isKeyframe() {
+    return this.keyframe;
+  }
+
+  /**
+   * Gets the number of readings in the snapshot.
+   *
+   * @return The number of readings
+   */
+  public int getReadingCount() {
+    return this.readingCount;
+  }
+
+  /**
+   * Gets the changed readings, formatted as in the full sensor data.
+   *
+   * @return An unmodifiable map from reading position to reading
+   */
+  public SortedMap<Integer, String> getReadings() {
+    return this.readings;
+  }
+
+  /**
+   * Returns true if the delta changes nothing.
+   *
+   * @return true if there are no changed readings and the count is unchanged
+   */
+  public boolean isEmpty() {
+    return !this.keyframe && this.readings.isEmpty();
+  }
+
+  /**
+   * Returns the delta in protocol format.
+   *
+   * @return The protocol format of the delta
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(this.nodeId).append(Delimiters.BODY_FIELD.getValue());
+    sb.append(this.sequence).append(Delimiters.BODY_FIELD_PARAMETERS.getValue());
+    sb.append(this.keyframe ? KEYFRAME : DELTA).append(Delimiters.BODY_FIELD_PARAMETERS.getValue());
+    sb.append(this.readingCount).append(Delimiters.BODY_FIELD.getValue());
+    boolean first = true;
+    for (Map.Entry<Integer, String> reading : this.readings.entrySet()) {
+      if (!first) {
+        sb.append(Delimiters.BODY_SENSOR_SEPARATOR.getValue());
+      }
+      sb.append(reading.getKey()).append(INDEX_SEPARATOR).append(reading.getValue());
+      first = false;
+    }
+    return sb.toString();
+  }
+}
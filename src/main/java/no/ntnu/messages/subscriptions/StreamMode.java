@@ -0,0 +1,56 @@
+package no.ntnu.messages.subscriptions;
+
+/**
+ * How a control panel receives the sensor data streamed by the greenhouse nodes.
+ */
+public enum StreamMode {
+
+  /**
+   * Every update contains all readings of the node.
+   */
+  FULL("FULL"),
+
+  /**
+   * Updates only contain the readings that changed since the last update the
+   * panel acknowledged, see {@link SensorDataDelta}.
+   */
+  DELTA("DELTA");
+
+  private final String value;
+
+  /**
+   * Constructs a stream mode with the specified string value.
+   *
+   * @param value The string representation of the stream mode.
+   */
+  StreamMode(String value) {
+    this.value = value;
+  }
+
+  /**
+   * Gets the string value of the stream mode.
+   *
+   * @return The string value of the stream mode.
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Retrieves a {@link StreamMode} based on its string value.
+   *
+   * @param target The string value to match.
+   * @return The matching stream mode, or {@code null} if no match is found.
+   */
+  public static StreamMode fromString(String target) {
+    if (target == null) {
+      return null;
+    }
+    for (StreamMode mode : StreamMode.values()) {
+      if (mode.getValue().equalsIgnoreCase(target)) {
+        return mode;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,138 @@
+package no.ntnu.messages.subscriptions;
+
+import no.ntnu.messages.Delimiters;
+
+/**
+ * A topic published messages can be about, and control panels can subscribe to.
+ * A topic is written as {@code TYPE:value}, for example {@code NODE:3} or
+ * {@code SENSOR:temperature}. The value {@value #WILDCARD} matches every value of
+ * the type.
+ */
+public final class Topic {
+
+  /**
+   * The value of a topic matching every value of its type.
+   */
+  public static final String WILDCARD = "*";
+
+  private static final String SEPARATOR = ":";
+
+  private final TopicType type;
+  private final String value;
+
+  /**
+   * Creates a topic.
+   *
+   * @param type  The type of the topic
+   * @param value The value of the topic, for example a node ID
+   * @throws IllegalArgumentException If the type or value is missing, or the value
+   *                                  contains a protocol delimiter
+   */
+  public Topic(TopicType type, String value) {
+    if (type == null || value == null || value.isBlank()) {
+      throw new IllegalArgumentException("Topic type and value cannot be empty");
+    }
+    if (value.contains(Delimiters.BODY_FIELD_PARAMETERS.getValue())
+        || value.contains(Delimiters.BODY_FIELD.getValue())) {
+      throw new IllegalArgumentException("Invalid topic value: " + value);
+    }
+    this.type = type;
+    this.value = value;
+  }
+
+  /**
+   * Creates a topic matching every value of a type.
+   *
+   * @param type The type of the topic
+   * @return The wildcard topic of the type
+   */
+  public static Topic all(TopicType type) {
+    return new Topic(type, WILDCARD);
+  }
+
+  /**
+   * Parses a topic from its protocol string.
+   *
+   * @param topic The topic, written as {@code TYPE:value}
+   * @return The parsed topic
+   * @throws IllegalArgumentException If the topic is malformed
+   */
+  public static Topic fromString(String topic) {
+    if (topic == null) {
+      throw new IllegalArgumentException("Topic cannot be null");
+    }
+    int separator = topic.indexOf(SEPARATOR);
+    if (separator < 0) {
+      throw new IllegalArgumentException("Invalid topic: " + topic);
+    }
+    TopicType type = TopicType.fromString(topic.substring(0, separator));
+    if (type == null) {
+      throw new IllegalArgumentException("Unknown topic type: " + topic);
+    }
+    return new Topic(type, topic.substring(separator + 1));
+  }
+
+  /**
+   * Gets the type of the topic.
+   *
+   * @return The topic type
+   */
+  public TopicType getType() {
+    return this.type;
+  }
+
+  /**
+   * Gets the value of the topic.
+   *
+   * @return The topic value
+   */
+  public String getValue() {
+    return this.value;
+  }
+
+  /**
+   * Returns true if this topic matches every value of its type.
+   *
+   * @return true if this is a wildcard topic, false otherwise
+   */
+  public boolean isWildcard() {
+    return WILDCARD.equals(this.value);
+  }
+
+  /**
+   * Indicates whether some other object is "equal to" this one.
+   *
+   * @param o the reference object with which to compare.
+   * @return {@code true} if the topics have the same type and value
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Topic other)) {
+      return false;
+    }
+    return this.type == other.type && this.value.equals(other.value);
+  }
+
+  /**
+   * Returns a hash code value for the topic.
+   *
+   * @return a hash code value for this topic.
+   */
+  @Override
+  public int hashCode() {
+    return 31 * this.type.hashCode() + this.value.hashCode();
+  }
+
+  /**
+   * Returns the protocol string of the topic.
+   *
+   * @return The topic, written as {@code TYPE:value}
+   */
+  @Override
+  public String toString() {
+    return this.type.getValue() + SEPARATOR + this.value;
+  }
+}
@@ -0,0 +1,87 @@
+package no.ntnu.messages.subscriptions;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.Transmission;
+import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
+import no.ntnu.messages.responses.SuccessResponse;
+
+/**
+ * Finds the topics a message published by a greenhouse node is about.
+ *
+ * <p>Every message from a node is about the node itself. Sensor data is also
+ * about each sensor type it contains a reading of, and an actuator change about
+ * the changed actuator. The wildcard topic of each topic type found is included,
+ * so subscribers of a wildcard need no special handling.
+ */
+public class TopicResolver {
+
+  private static final String SENSOR_TYPE_START = ":";
+
+  private TopicResolver() {
+    // Empty. Prevent instantiation.
+  }
+
+  /**
+   * Finds the topics of a message published by a node.
+   *
+   * @param nodeId       The ID of the node that published the message
+   * @param transmission The published transmission
+   * @return The topics of the message, never empty
+   */
+  public static Set<Topic> resolve(String nodeId, Transmission transmission) {
+    Set<Topic> topics = new LinkedHashSet<>();
+    topics.add(new Topic(TopicType.NODE, nodeId));
+    topics.add(Topic.all(TopicType.NODE));
+
+    if (transmission instanceof SuccessResponse response && response.getResponseData() != null) {
+      Transmission command = response.getTransmission();
+      if (command instanceof GetSensorDataCommand) {
+        addSensorTopics(response.getResponseData(), topics);
+      } else if (command instanceof ActuatorChangeCommand) {
+        addActuatorTopics(response.getResponseData(), topics);
+      }
+    }
+    return topics;
+  }
+
+  /**
+   * Adds a topic for each sensor type in sensor data, formatted as
+   * {@code nodeId;FORMAT:type,...¤FORMAT:type,...}.
+   *
+   * @param sensorData The sensor data
+   * @param topics     The set to add the topics to
+   */
+  private static void addSensorTopics(String sensorData, Set<Topic> topics) {
+    int readingsStart = sensorData.indexOf(Delimiters.BODY_FIELD.getValue());
+    if (readingsStart < 0) {
+      return;
+    }
+    String readings = sensorData.substring(readingsStart + 1);
+    for (String reading : readings.split(Delimiters.BODY_SENSOR_SEPARATOR.getValue())) {
+      int typeStart = reading.indexOf(SENSOR_TYPE_START);
+      int typeEnd = reading.indexOf(Delimiters.BODY_FIELD_PARAMETERS.getValue(), typeStart + 1);
+      if (typeStart >= 0 && typeEnd > typeStart + 1) {
+        topics.add(new Topic(TopicType.SENSOR, reading.substring(typeStart + 1, typeEnd)));
+        topics.add(Topic.all(TopicType.SENSOR));
+      }
+    }
+  }
+
+  /**
+   * Adds the topic of the actuator in actuator change data, formatted as
+   * {@code nodeId;actuatorId;state}.
+   *
+   * @param actuatorData The actuator change data
+   * @param topics       The set to add the topics to
+   */
+  private static void addActuatorTopics(String actuatorData, Set<Topic> topics) {
+    String[] parts = actuatorData.split(Delimiters.BODY_FIELD.getValue());
+    if (parts.length == 3 && !parts[1].isBlank()) {
+      topics.add(new Topic(TopicType.ACTUATOR, parts[1]));
+      topics.add(Topic.all(TopicType.ACTUATOR));
+    }
+  }
+}
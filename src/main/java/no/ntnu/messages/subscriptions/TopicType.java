@@ -0,0 +1,60 @@
+package no.ntnu.messages.subscriptions;
+
+/**
+ * The kinds of topics a control panel can subscribe to.
+ */
+public enum TopicType {
+
+  /**
+   * Everything published by a greenhouse node, by node ID.
+   */
+  NODE("NODE"),
+
+  /**
+   * Sensor data containing readings of a sensor type, for example "temperature".
+   */
+  SENSOR("SENSOR"),
+
+  /**
+   * Changes to the state of an actuator, by actuator ID.
+   */
+  ACTUATOR("ACTUATOR");
+
+  private final String value;
+
+  /**
+   * Constructs a topic type with the specified string value.
+   *
+   * @param value The string representation of the topic type.
+   */
+  TopicType(String value) {
+    this.value = value;
+  }
+
+  /**
+   * Gets the string value of the topic type.
+   *
+   * @return The string value of the topic type.
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Retrieves a {@link TopicType} based on its string value.
+   *
+   * @param target The string value to match.
+   * @return The matching topic type, or {@code null} if no match is found.
+   */
+  public static TopicType fromString(String target) {
+    if (target == null) {
+      return null;
+    }
+    for (TopicType type : TopicType.values()) {
+      if (type.getValue().equalsIgnoreCase(target)) {
+        return type;
+      }
+    }
+    return null;
+  }
+}
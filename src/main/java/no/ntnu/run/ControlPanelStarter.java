@@ -4,6 +4,9 @@ import no.ntnu.controlpanel.ControlPanelCommunicationChannel;
 import no.ntnu.controlpanel.ControlPanelLogic;
 import no.ntnu.gui.controlpanel.ControlPanelApplication;
 import no.ntnu.intermediaryserver.server.ServerConfig;
+import no.ntnu.messages.subscriptions.StreamMode;
+import no.ntnu.messages.subscriptions.Topic;
+import no.ntnu.messages.subscriptions.TopicType;
 import no.ntnu.tools.Logger;
 
 /**
@@ -30,8 +33,14 @@ public class ControlPanelStarter implements Runnable {
   
   /**
    * Entrypoint for the application.
+   * The first argument may choose the kind of thread messages from the server are
+   * listened for on, "platform" (default) or "virtual", and the second whether the
+   * messages are "plain" (default) or "encrypted". When encrypted, the third may
+   * give the file holding the server's public key.
    */
   public static void main(String[] args) {
+    StarterArguments.applyClientThreadMode(args);
+    StarterArguments.applySessionEncryption(args);
     ControlPanelStarter starter = new ControlPanelStarter();
     starter.start();
   }
@@ -62,7 +71,8 @@ public class ControlPanelStarter implements Runnable {
     this.channel = this.createCommunicationChannel(logic);
     logic.setCommunicationChannel(this.channel);
     this.channel.askForNodes();
-    this.channel.askForSensorDataPeriodically(4);
+    this.channel.subscribe(Topic.all(TopicType.NODE));
+    this.channel.setStreamMode(StreamMode.DELTA);
     return logic;
   }
 
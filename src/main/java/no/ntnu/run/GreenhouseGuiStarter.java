@@ -9,11 +9,15 @@ public class GreenhouseGuiStarter {
   /**
    * Entrypoint for the Greenhouse GUI application.
    *
-   * @param args Command line arguments, only the first one of them used: when it is "fake",
-   *             emulate fake events, when it is either something else or not present,
-   *             use real socket communication.
+   * @param args Command line arguments: the kind of thread the nodes listen for
+   *             messages from the server on, "platform" (default) or "virtual",
+   *             whether their messages are "plain" (default) or "encrypted", and
+   *             when encrypted, optionally the file holding the server's public
+   *             key.
    */
   public static void main(String[] args) {
+    StarterArguments.applyClientThreadMode(args);
+    StarterArguments.applySessionEncryption(args);
     GreenhouseApplication.startApp();
   }
 }
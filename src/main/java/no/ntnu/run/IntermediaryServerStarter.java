@@ -1,6 +1,8 @@
 package no.ntnu.run;
 
 import no.ntnu.intermediaryserver.server.IntermediaryServer;
+import no.ntnu.intermediaryserver.server.ServerMode;
+import no.ntnu.tools.Logger;
 
 /**
  * Starter class for the intermediary server.
@@ -8,10 +10,22 @@ import no.ntnu.intermediaryserver.server.IntermediaryServer;
 public class IntermediaryServerStarter {
   /**
    * Entrypoint for the IntermediaryServer.
+   * The first argument may choose the server mode, "blocking" (default), "virtual"
+   * or "nio".
    */
   public static void main(String[] args) {
+    ServerMode serverMode = ServerMode.BLOCKING;
+    if (args.length > 0) {
+      ServerMode requestedMode = ServerMode.fromString(args[0]);
+      if (requestedMode == null) {
+        Logger.warn("Unknown server mode " + args[0] + ", using " + serverMode.getValue());
+      } else {
+        serverMode = requestedMode;
+      }
+    }
+
     // Create an instance of the IntermediaryServer.
-    IntermediaryServer intermediaryServer = new IntermediaryServer();
+    IntermediaryServer intermediaryServer = new IntermediaryServer(serverMode);
 
     // Start the IntermediaryServer in a separate thread.
     Thread serverThread = new Thread(intermediaryServer);
@@ -0,0 +1,63 @@
+package no.ntnu.run;
+
+import java.nio.file.Path;
+import no.ntnu.intermediaryserver.server.ServerConfig;
+import no.ntnu.tools.Logger;
+import no.ntnu.tools.threading.ThreadMode;
+
+/**
+ * Applies the command line arguments shared by the node and control panel starters.
+ */
+final class StarterArguments {
+
+  private static final String ENCRYPTED = "encrypted";
+  private static final String PLAIN = "plain";
+
+  private StarterArguments() {
+    // Empty. Prevent instantiation.
+  }
+
+  /**
+   * Chooses the kind of thread the clients listen for messages on. The first
+   * argument may be "platform" (default) or "virtual".
+   *
+   * @param args The command line arguments
+   */
+  static void applyClientThreadMode(String[] args) {
+    if (args.length == 0) {
+      return;
+    }
+    ThreadMode requestedMode = ThreadMode.fromString(args[0]);
+    if (requestedMode == null) {
+      Logger.warn("Unknown thread mode " + args[0] + ", using "
+          + ServerConfig.getClientThreadMode().getValue());
+    } else {
+      ServerConfig.setClientThreadMode(requestedMode);
+    }
+  }
+
+  /**
+   * Chooses whether the clients encrypt their messages to and from the server.
+   * The second argument may be "plain" (default) or "encrypted". With
+   * "encrypted", a third argument may give the file holding the server's public
+   * key, see {@link ServerConfig#setServerPublicKeyFile(Path)}.
+   *
+   * @param args The command line arguments
+   */
+  static void applySessionEncryption(String[] args) {
+    if (args.length < 2) {
+      return;
+    }
+    if (ENCRYPTED.equalsIgnoreCase(args[1])) {
+      ServerConfig.setSessionEncryption(true);
+      if (args.length > 2) {
+        ServerConfig.setServerPublicKeyFile(Path.of(args[2]));
+      }
+    } else if (PLAIN.equalsIgnoreCase(args[1])) {
+      ServerConfig.setSessionEncryption(false);
+    } else {
+      Logger.warn("Unknown encryption " + args[1] + ", messages are "
+          + (ServerConfig.isSessionEncryption() ? ENCRYPTED : PLAIN));
+    }
+  }
+}
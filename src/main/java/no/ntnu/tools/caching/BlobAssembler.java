@@ -0,0 +1,121 @@
+package no.ntnu.tools.caching;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import no.ntnu.tools.encryption.Hasher;
+
+/**
+ * Puts a blob back together from its chunks, in order.
+ *
+ * <p>Every chunk is decoded and hashed as soon as it arrives, so only the
+ * decoded bytes received so far are held, never the Base64 encoding of the whole
+ * blob. A chunk that is not the next one expected is ignored, and the blob is
+ * only handed out once all chunks have arrived and it matches its hash.
+ */
+public class BlobAssembler {
+
+  private final String hash;
+  private final MessageDigest digest;
+  private final ByteArrayOutputStream blob = new ByteArrayOutputStream();
+  private int count = -1;
+  private int nextIndex = 0;
+
+  /**
+   * Creates an assembler for the blob with a hash.
+   *
+   * @param hash The hash of the blob, see {@link BlobReferences#hashOf(String)}
+   * @throws IllegalArgumentException If the hash is null
+   */
+  public BlobAssembler(String hash) {
+    if (hash == null) {
+      throw new IllegalArgumentException("Hash cannot be null");
+    }
+    this.hash = hash;
+    try {
+      this.digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+  }
+
+  /**
+   * Adds the next chunk of the blob.
+   *
+   * @param chunk The chunk
+   * @return true if the chunk was added, false if it belongs to another blob or
+   *         is not the next chunk expected
+   * @throws IllegalArgumentException If the chunk is not valid Base64
+   */
+  public boolean append(BlobChunk chunk) {
+    if (chunk == null || !this.hash.equals(chunk.getHash()) || this.isComplete()
+        || chunk.getIndex() != this.nextIndex
+        || (this.count != -1 && chunk.getCount() != this.count)) {
+      return false;
+    }
+    byte[] decoded = Base64.getDecoder().decode(chunk.getData());
+    this.digest.update(chunk.getData().getBytes(StandardCharsets.US_ASCII));
+    this.blob.writeBytes(decoded);
+    this.count = chunk.getCount();
+    this.nextIndex++;
+    return true;
+  }
+
+  /**
+   * Gets the hash of the blob.
+   *
+   * @return The hash of the blob
+   */
+  public String getHash() {
+    return this.hash;
+  }
+
+  /**
+   * Gets the number of chunks in the blob.
+   *
+   * @return The number of chunks, or -1 if no chunk has arrived yet
+   */
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Gets the index of the next chunk expected.
+   *
+   * @return The index of the next chunk
+   */
+  public int getNextIndex() {
+    return this.nextIndex;
+  }
+
+  /**
+   * Returns true if all chunks have arrived.
+   *
+   * @return true if the blob is complete
+   */
+  public boolean isComplete() {
+    return this.nextIndex == this.count;
+  }
+
+  /**
+   * Gets the assembled blob. Can only be called once, when all chunks have
+   * arrived.
+   *
+   * @return The decoded blob
+   * @throws IllegalStateException    If chunks are missing
+   * @throws IllegalArgumentException If the blob does not match its hash
+   */
+  public byte[] getBlob() {
+    if (!this.isComplete()) {
+      throw new IllegalStateException("Blob is incomplete: " + this.nextIndex + " of "
+          + this.count + " chunks");
+    }
+    String actualHash = Hasher.toHex(this.digest.digest());
+    if (!actualHash.equals(this.hash)) {
+      throw new IllegalArgumentException("Blob does not match its hash: " + this.hash);
+    }
+    return this.blob.toByteArray();
+  }
+}
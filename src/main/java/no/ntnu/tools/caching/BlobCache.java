@@ -0,0 +1,111 @@
+package no.ntnu.tools.caching;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of blobs, keyed by the hash of their content.
+ *
+ * <p>Blobs are the decoded payloads of image and audio readings. The cache is
+ * bounded by the total length of the cached blobs rather than their number, so
+ * a few large images cannot push the memory use past the limit. When a blob is
+ * added to a full cache, the least recently used blobs are evicted until it fits.
+ * A blob larger than the whole cache is not cached.
+ */
+public class BlobCache {
+
+  private final long maxSize;
+  // Access ordered, the least recently used blob first
+  private final LinkedHashMap<String, byte[]> blobs = new LinkedHashMap<>(16, 0.75f, true);
+  private long size = 0;
+
+  /**
+   * Creates an empty blob cache.
+   *
+   * @param maxSize The maximum total length of the cached blobs, in bytes
+   * @throws IllegalArgumentException If the maximum size is not positive
+   */
+  public BlobCache(long maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Max size must be positive");
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Adds a blob to the cache, evicting the least recently used blobs if needed.
+   *
+   * @param hash The hash of the blob, see {@link BlobReferences#hashOf(String)}
+   * @param blob The blob, which must not be modified after this
+   * @return true if the blob was cached, false if it is larger than the cache
+   */
+  public synchronized boolean put(String hash, byte[] blob) {
+    if (hash == null || blob == null) {
+      throw new IllegalArgumentException("Hash and blob cannot be null");
+    }
+    byte[] previous = this.blobs.remove(hash);
+    if (previous != null) {
+      this.size -= previous.length;
+    }
+    if (blob.length > this.maxSize) {
+      return false;
+    }
+
+    Iterator<Map.Entry<String, byte[]>> eldest = this.blobs.entrySet().iterator();
+    while (this.size + blob.length > this.maxSize && eldest.hasNext()) {
+      this.size -= eldest.next().getValue().length;
+      eldest.remove();
+    }
+    this.blobs.put(hash, blob);
+    this.size += blob.length;
+    return true;
+  }
+
+  /**
+   * Gets a cached blob, marking it as recently used.
+   *
+   * @param hash The hash of the blob
+   * @return The blob, shared and not to be modified, or null if it is not cached
+   */
+  public synchronized byte[] get(String hash) {
+    return this.blobs.get(hash);
+  }
+
+  /**
+   * Returns true if a blob is cached, without marking it as recently used.
+   *
+   * @param hash The hash of the blob
+   * @return true if the blob is cached, false otherwise
+   */
+  public synchronized boolean contains(String hash) {
+    return this.blobs.containsKey(hash);
+  }
+
+  /**
+   * Gets the number of cached blobs.
+   *
+   * @return The number of blobs
+   */
+  public synchronized int count() {
+    return this.blobs.size();
+  }
+
+  /**
+   * Gets the total length of the cached blobs.
+   *
+   * @return The size of the cache, in bytes
+   */
+  public synchronized long size() {
+    return this.size;
+  }
+
+  /**
+   * Gets the maximum total length of the cached blobs.
+   *
+   * @return The maximum size of the cache, in bytes
+   */
+  public long getMaxSize() {
+    return this.maxSize;
+  }
+}
@@ -0,0 +1,159 @@
+package no.ntnu.tools.caching;
+
+import java.util.Arrays;
+import java.util.Base64;
+import no.ntnu.messages.Delimiters;
+
+/**
+ * A part of a blob, sent on its own so a large blob does not hold up the
+ * messages queued behind it.
+ *
+ * <p>A blob is split into chunks of {@link #CHUNK_SIZE} bytes, each encoded as
+ * Base64 on its own. The chunk size is a multiple of three, so the encoded
+ * chunks joined in order are exactly the Base64 encoding of the whole blob, and
+ * the hash of the blob can be computed from the chunks as they arrive. As a
+ * string, a chunk is {@code hash;index;count;data}.
+ */
+public class BlobChunk {
+
+  // A multiple of three, so only the last chunk has Base64 padding
+  public static final int CHUNK_SIZE = 48 * 1024;
+
+  private final String hash;
+  private final int index;
+  private final int count;
+  private final String data;
+
+  /**
+   * Creates a chunk.
+   *
+   * @param hash  The hash of the blob
+   * @param index The index of the chunk, starting at 0
+   * @param count The number of chunks in the blob
+   * @param data  The Base64 encoded chunk
+   * @throws IllegalArgumentException If the index is not within the count, or a
+   *                                  field is missing
+   */
+  public BlobChunk(String hash, int index, int count, String data) {
+    if (hash == null || hash.isEmpty() || data == null) {
+      throw new IllegalArgumentException("Hash and data cannot be empty");
+    }
+    if (count < 1 || index < 0 || index >= count) {
+      throw new IllegalArgumentException("Invalid chunk " + index + " of " + count);
+    }
+    this.hash = hash;
+    this.index = index;
+    this.count = count;
+    this.data = data;
+  }
+
+  /**
+   * Gets the number of chunks a blob is split into. An empty blob is one empty
+   * chunk.
+   *
+   * @param blobLength The length of the blob, in bytes
+   * @return The number of chunks
+   */
+  public static int getChunkCount(int blobLength) {
+    return Math.max(1, (blobLength + CHUNK_SIZE - 1) / CHUNK_SIZE);
+  }
+
+  /**
+   * Cuts a chunk out of a blob.
+   *
+   * @param hash  The hash of the blob
+   * @param blob  The blob
+   * @param index The index of the chunk
+   * @return The chunk
+   * @throws IllegalArgumentException If the blob has no chunk with the index
+   */
+  public static BlobChunk of(String hash, byte[] blob, int index) {
+    int count = getChunkCount(blob.length);
+    if (index < 0 || index >= count) {
+      throw new IllegalArgumentException("Invalid chunk " + index + " of " + count);
+    }
+    int from = index * CHUNK_SIZE;
+    int to = Math.min(blob.length, from + CHUNK_SIZE);
+    String data = Base64.getEncoder().encodeToString(Arrays.copyOfRange(blob, from, to));
+    return new BlobChunk(hash, index, count, data);
+  }
+
+  /**
+   * Parses a chunk from its string form, {@code hash;index;count;data}.
+   *
+   * @param chunk The chunk as a string
+   * @return The chunk
+   * @throws IllegalArgumentException If the string is not a valid chunk
+   */
+  public static BlobChunk fromString(String chunk) {
+    if (chunk == null) {
+      throw new IllegalArgumentException("Chunk cannot be null");
+    }
+    String[] parts = chunk.split(Delimiters.BODY_FIELD.getValue(), 4);
+    if (parts.length != 4) {
+      throw new IllegalArgumentException("Invalid blob chunk: " + parts[0]);
+    }
+    try {
+      return new BlobChunk(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+          parts[3]);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid blob chunk index: " + parts[0], e);
+    }
+  }
+
+  /**
+   * Gets the hash of the blob.
+   *
+   * @return The hash of the blob
+   */
+  public String getHash() {
+    return this.hash;
+  }
+
+  /**
+   * Gets the index of the chunk.
+   *
+   * @return The index, starting at 0
+   */
+  public int getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Gets the number of chunks in the blob.
+   *
+   * @return The number of chunks
+   */
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Gets the Base64 encoded chunk.
+   *
+   * @return The encoded chunk
+   */
+  public String getData() {
+    return this.data;
+  }
+
+  /**
+   * Returns true if this is the last chunk of the blob.
+   *
+   * @return true if the chunk is the last one
+   */
+  public boolean isLast() {
+    return this.index == this.count - 1;
+  }
+
+  /**
+   * Converts the chunk to a string, {@code hash;index;count;data}.
+   *
+   * @return The chunk as a string
+   */
+  @Override
+  public String toString() {
+    String separator = Delimiters.BODY_FIELD.getValue();
+    return this.hash + separator + this.index + separator + this.count + separator + this.data;
+  }
+}
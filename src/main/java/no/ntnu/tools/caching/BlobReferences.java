@@ -0,0 +1,103 @@
+package no.ntnu.tools.caching;
+
+import no.ntnu.tools.encryption.Hasher;
+
+/**
+ * Creates and recognizes references to blobs.
+ *
+ * <p>An image or audio reading refers to its payload as {@code #hash} instead of
+ * embedding the Base64 encoded payload itself. The hash is the SHA-256 hash of
+ * the Base64 encoded payload, so equal payloads always have the same reference,
+ * and a receiver can check a fetched payload against it. The {@code #} never occurs in Base64,
+ * so a reference cannot be mistaken for an embedded payload.
+ */
+public class BlobReferences {
+
+  private static final String PREFIX = "#";
+  private static final String PREVIEW_SEPARATOR = "/";
+
+  private BlobReferences() {
+    // Empty. Prevent instantiation.
+  }
+
+  /**
+   * Hashes a blob.
+   *
+   * @param blob The Base64 encoded blob
+   * @return The hash identifying the blob
+   */
+  public static String hashOf(String blob) {
+    return Hasher.encryptString(blob);
+  }
+
+  /**
+   * Creates a reference to a blob.
+   *
+   * @param hash The hash of the blob
+   * @return The reference
+   */
+  public static String toReference(String hash) {
+    return PREFIX + hash;
+  }
+
+  /**
+   * Creates a reference to a blob with a smaller preview.
+   *
+   * @param previewHash The hash of the preview
+   * @param hash        The hash of the full blob
+   * @return The reference
+   */
+  public static String toReference(String previewHash, String hash) {
+    return PREFIX + previewHash + PREVIEW_SEPARATOR + hash;
+  }
+
+  /**
+   * Returns true if a reading field is a reference to a blob.
+   *
+   * @param field The field of a reading
+   * @return true if the field is a blob reference, false otherwise
+   */
+  public static boolean isReference(String field) {
+    return field != null && field.startsWith(PREFIX);
+  }
+
+  /**
+   * Gets the hash of the blob to fetch first for a reference, which is the
+   * preview if the reference has one.
+   *
+   * @param reference The reference
+   * @return The hash of the preview, or of the blob if there is no preview
+   * @throws IllegalArgumentException If the field is not a reference
+   */
+  public static String getHash(String reference) {
+    String hashes = getHashes(reference);
+    int separator = hashes.indexOf(PREVIEW_SEPARATOR);
+    return separator < 0 ? hashes : hashes.substring(0, separator);
+  }
+
+  /**
+   * Gets the hash of the full blob a reference refers to.
+   *
+   * @param reference The reference
+   * @return The hash of the full blob
+   * @throws IllegalArgumentException If the field is not a reference
+   */
+  public static String getFullHash(String reference) {
+    String hashes = getHashes(reference);
+    return hashes.substring(hashes.indexOf(PREVIEW_SEPARATOR) + 1);
+  }
+
+  /**
+   * Gets the hashes of a reference, without the prefix.
+   *
+   * @param reference The reference
+   * @return The hashes
+   * @throws IllegalArgumentException If the field is not a reference
+   */
+  private static String getHashes(String reference) {
+    if (!isReference(reference)) {
+      throw new IllegalArgumentException("Not a blob reference: " + reference);
+    }
+    return reference.substring(PREFIX.length());
+  }
+}
@@ -0,0 +1,28 @@
+package no.ntnu.tools.caching;
+
+/**
+ * Thrown when a reading refers to a blob the receiver does not have.
+ */
+public class MissingBlobException extends IllegalArgumentException {
+
+  private final String hash;
+
+  /**
+   * Creates the exception.
+   *
+   * @param hash The hash of the missing blob
+   */
+  public MissingBlobException(String hash) {
+    super("Missing blob: " + hash);
+    this.hash = hash;
+  }
+
+  /**
+   * Gets the hash of the missing blob.
+   *
+   * @return The hash of the blob
+   */
+  public String getHash() {
+    return this.hash;
+  }
+}
@@ -0,0 +1,160 @@
+package no.ntnu.tools.caching;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import no.ntnu.tools.Logger;
+
+/**
+ * A least recently used cache of files in a directory, for payloads that are
+ * kept in memory but sometimes needed as a file.
+ *
+ * <p>A payload is written once per key, and the same file is returned until it
+ * is evicted. Like {@link BlobCache}, the cache is bounded by the total size of
+ * its files, and evicted files are deleted. A payload larger than the whole
+ * cache is not written. Files are not registered for deletion on exit one by
+ * one; {@link #clear()} deletes the live ones.
+ */
+public class SpillCache {
+
+  private final Path directory;
+  private final String suffix;
+  private final long maxSize;
+  // Access ordered, the least recently used file first
+  private final LinkedHashMap<String, SpilledFile> files = new LinkedHashMap<>(16, 0.75f, true);
+  private long size = 0;
+
+  /**
+   * Creates an empty spill cache.
+   *
+   * @param directory The existing directory to write the files to
+   * @param suffix    The suffix of the file names, such as ".wav"
+   * @param maxSize   The maximum total size of the files, in bytes
+   * @throws IllegalArgumentException If the directory is null or the maximum size
+   *                                  is not positive
+   */
+  public SpillCache(Path directory, String suffix, long maxSize) {
+    if (directory == null || suffix == null) {
+      throw new IllegalArgumentException("Directory and suffix cannot be null");
+    }
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Max size must be positive");
+    }
+    this.directory = directory;
+    this.suffix = suffix;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Creates an empty spill cache in a new temporary directory, which is deleted
+   * when the program exits.
+   *
+   * @param suffix  The suffix of the file names, such as ".wav"
+   * @param maxSize The maximum total size of the files, in bytes
+   * @return The spill cache
+   * @throws IOException If the directory could not be created
+   */
+  public static SpillCache inTemporaryDirectory(String suffix, long maxSize) throws IOException {
+    Path directory = Files.createTempDirectory("spill");
+    SpillCache cache = new SpillCache(directory, suffix, maxSize);
+    // One hook over the live files, instead of registering every file written
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      cache.clear();
+      if (!directory.toFile().delete()) {
+        Logger.warn("Failed to delete spill directory: " + directory);
+      }
+    }, "spill-cleanup"));
+    return cache;
+  }
+
+  /**
+   * Gets the file with a payload, writing it if it is not cached.
+   *
+   * @param key     The key of the payload, used in the file name, such as its
+   *                hash
+   * @param payload The payload
+   * @return The file, or null if the payload is larger than the cache
+   * @throws IOException If the file could not be written
+   */
+  public synchronized File getFile(String key, byte[] payload) throws IOException {
+    if (key == null || payload == null) {
+      throw new IllegalArgumentException("Key and payload cannot be null");
+    }
+    SpilledFile spilled = this.files.get(key);
+    if (spilled != null && spilled.file.exists()) {
+      return spilled.file;
+    }
+    if (spilled != null) {
+      // Deleted by someone else, written again below
+      this.files.remove(key);
+      this.size -= spilled.length;
+    }
+    if (payload.length > this.maxSize) {
+      return null;
+    }
+
+    Iterator<Map.Entry<String, SpilledFile>> eldest = this.files.entrySet().iterator();
+    while (this.size + payload.length > this.maxSize && eldest.hasNext()) {
+      SpilledFile evicted = eldest.next().getValue();
+      this.size -= evicted.length;
+      eldest.remove();
+      if (!evicted.file.delete() && evicted.file.exists()) {
+        Logger.warn("Failed to delete spilled file: " + evicted.file);
+      }
+    }
+
+    File file = this.directory.resolve(key + this.suffix).toFile();
+    Files.write(file.toPath(), payload);
+    this.files.put(key, new SpilledFile(file, payload.length));
+    this.size += payload.length;
+    return file;
+  }
+
+  /**
+   * Deletes all cached files and empties the cache.
+   */
+  public synchronized void clear() {
+    for (SpilledFile spilled : this.files.values()) {
+      if (!spilled.file.delete() && spilled.file.exists()) {
+        Logger.warn("Failed to delete spilled file: " + spilled.file);
+      }
+    }
+    this.files.clear();
+    this.size = 0;
+  }
+
+  /**
+   * Gets the number of cached files.
+   *
+   * @return The number of files
+   */
+  public synchronized int count() {
+    return this.files.size();
+  }
+
+  /**
+   * Gets the total size of the cached files.
+   *
+   * @return The size of the cache, in bytes
+   */
+  public synchronized long size() {
+    return this.size;
+  }
+
+  /**
+   * A written file and the size it was written with.
+   */
+  private static final class SpilledFile {
+    private final File file;
+    private final long length;
+
+    private SpilledFile(File file, long length) {
+      this.file = file;
+      this.length = length;
+    }
+  }
+}
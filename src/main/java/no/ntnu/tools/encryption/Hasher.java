@@ -1,5 +1,6 @@
 package no.ntnu.tools.encryption;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -9,9 +10,21 @@ import java.security.NoSuchAlgorithmException;
  * <p>This class is designed to hash input strings for validation purposes,
  * as hashing is a one-way process. The resulting hash cannot be reversed
  * to obtain the original input.</p>
+ *
+ * <p>Every thread reuses its own {@link MessageDigest}, so hashing neither
+ * looks up the algorithm nor contends on a shared digest. Strings are hashed as
+ * UTF-8, and bytes that are already encoded can be hashed directly.</p>
  */
 public class Hasher {
 
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final ThreadLocal<MessageDigest> DIGEST =
+      ThreadLocal.withInitial(Hasher::createDigest);
+
+  private Hasher() {
+    // Empty. Prevent instantiation.
+  }
+
   /**
    * Hashes the given input string using the SHA-256 algorithm and returns
    * the hashed value as a hexadecimal string.
@@ -24,26 +37,54 @@ public class Hasher {
    * @throws RuntimeException if the SHA-256 hashing algorithm is not available
    */
   public static String encryptString(String message) {
+    byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+    return hash(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Hashes a range of already encoded bytes using the SHA-256 algorithm.
+   *
+   * @param bytes  the bytes to hash
+   * @param offset the index of the first byte to hash
+   * @param length the number of bytes to hash
+   * @return the hashed value as a hexadecimal string
+   * @throws RuntimeException if the SHA-256 hashing algorithm is not available
+   */
+  public static String hash(byte[] bytes, int offset, int length) {
+    MessageDigest digest = DIGEST.get();
+    // Left reset by digest(), even if a previous call failed half way
+    digest.reset();
+    digest.update(bytes, offset, length);
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Converts bytes to a lowercase hexadecimal string, two digits per byte.
+   *
+   * @param bytes the bytes to convert
+   * @return the hexadecimal string
+   */
+  public static String toHex(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(hex);
+  }
+
+  /**
+   * Creates a SHA-256 digest, for the thread that first hashes something.
+   *
+   * @return the digest
+   * @throws RuntimeException if the SHA-256 hashing algorithm is not available
+   */
+  private static MessageDigest createDigest() {
     try {
-      // Create an instance of SHA-256 MessageDigest
-      MessageDigest digest = MessageDigest.getInstance("SHA-256");
-
-      // Compute the hash and obtain the result as a byte array
-      byte[] hashBytes = digest.digest(message.getBytes());
-
-      // Convert the byte array into a hexadecimal string
-      StringBuilder hexString = new StringBuilder();
-      for (byte b : hashBytes) {
-        String hex = Integer.toHexString(0xff & b);
-        if (hex.length() == 1) {
-          hexString.append('0'); // Append leading zero for single-digit hex values
-        }
-        hexString.append(hex);
-      }
-      return hexString.toString();
+      return MessageDigest.getInstance("SHA-256");
     } catch (NoSuchAlgorithmException e) {
       // Wrap the exception in a runtime exception with an informative message
       throw new RuntimeException("Error: SHA-256 algorithm not found.", e);
     }
   }
-}
\ No newline at end of file
+}
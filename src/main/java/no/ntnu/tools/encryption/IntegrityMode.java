@@ -0,0 +1,73 @@
+package no.ntnu.tools.encryption;
+
+/**
+ * The ways the body of a message can be checked for integrity, see
+ * {@link MessageIntegrity}. A client offers a mode when it identifies itself,
+ * and the server answers with the mode both sides use from then on.
+ */
+public enum IntegrityMode {
+
+  /**
+   * The body is not checked. Messages carry a blank hash.
+   */
+  NONE("NONE"),
+
+  /**
+   * The body is checked with a CRC32C checksum, which catches accidental
+   * corruption. Needs no key.
+   */
+  CRC32C("CRC32C"),
+
+  /**
+   * The body is checked with an HMAC-SHA256 truncated to 128 bits, which also
+   * catches deliberate changes. Needs a session key shared by both sides.
+   */
+  HMAC_SHA256("HMAC_SHA256");
+
+  private final String value;
+
+  /**
+   * Constructs an integrity mode with the specified string value.
+   *
+   * @param value The string representation of the integrity mode.
+   */
+  IntegrityMode(String value) {
+    this.value = value;
+  }
+
+  /**
+   * Gets the string value of the integrity mode.
+   *
+   * @return The string value of the integrity mode.
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Returns true if the mode needs a key shared by both sides.
+   *
+   * @return true if the mode needs a key.
+   */
+  public boolean isKeyed() {
+    return this == HMAC_SHA256;
+  }
+
+  /**
+   * Retrieves an {@link IntegrityMode} based on its string value.
+   *
+   * @param target The string value to match.
+   * @return The matching integrity mode, or {@code null} if no match is found.
+   */
+  public static IntegrityMode fromString(String target) {
+    if (target == null) {
+      return null;
+    }
+    for (IntegrityMode mode : IntegrityMode.values()) {
+      if (mode.getValue().equalsIgnoreCase(target)) {
+        return mode;
+      }
+    }
+    return null;
+  }
+}
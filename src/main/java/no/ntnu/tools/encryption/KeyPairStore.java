@@ -0,0 +1,298 @@
+package no.ntnu.tools.encryption;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.Arrays;
+import javax.crypto.SecretKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import no.ntnu.tools.Logger;
+import no.ntnu.tools.encryption.asymmetric.HybridRSAEncryptor;
+import no.ntnu.tools.threading.ThreadMode;
+
+/**
+ * Keeps an RSA key pair on disk, so it is generated once instead of every time a
+ * program starts.
+ *
+ * <p>The private key is stored as PKCS#8 in {@code name.key}, and the public key
+ * as X.509 in {@code name.pub}, both DER encoded. {@link #preload()} reads them
+ * on a background thread, or generates and stores a new pair there if they do
+ * not exist or cannot be read, so a program can start the work early and only
+ * wait for the keys once it needs them. How long that took is kept, see
+ * {@link #getLoadTimeMs()}.
+ *
+ * <p>Programs starting at the same time take turns through a lock on
+ * {@code name.lock}, so only one of them generates a pair and the others read
+ * it. Each file is written to a temporary file and moved into place, so it is
+ * never read half written, and keys read back that are not a pair are replaced.
+ */
+public class KeyPairStore {
+
+  private static final String ALGORITHM = "RSA";
+  private static final String PRIVATE_KEY_SUFFIX = ".key";
+  private static final String PUBLIC_KEY_SUFFIX = ".pub";
+  private static final String LOCK_SUFFIX = ".lock";
+  // A file lock is held by the whole program, so threads take turns here first
+  private static final Object PROCESS_LOCK = new Object();
+
+  private final Path privateKeyFile;
+  private final Path publicKeyFile;
+  private final Path lockFile;
+  private CompletableFuture<KeyPair> keyPair;
+  private volatile long loadTimeMs = -1;
+  private volatile boolean loadedFromDisk;
+
+  /**
+   * Creates a store for a key pair in a directory. Nothing is read until the
+   * keys are preloaded or asked for.
+   *
+   * @param directory The directory of the key files, created when the keys are
+   *                  first stored
+   * @param name      The name of the key files, without suffix
+   * @throws IllegalArgumentException If the directory or name is null or empty
+   */
+  public KeyPairStore(Path directory, String name) {
+    if (directory == null || name == null || name.isEmpty()) {
+      throw new IllegalArgumentException("Directory and name cannot be empty");
+    }
+    this.privateKeyFile = directory.resolve(name + PRIVATE_KEY_SUFFIX);
+    this.publicKeyFile = directory.resolve(name + PUBLIC_KEY_SUFFIX);
+    this.lockFile = directory.resolve(name + LOCK_SUFFIX);
+  }
+
+  /**
+   * Starts loading the key pair on a background thread, unless it has already
+   * been started.
+   *
+   * @return The key pair, once loaded or generated
+   */
+  public synchronized CompletableFuture<KeyPair> preload() {
+    if (this.keyPair == null) {
+      CompletableFuture<KeyPair> future = new CompletableFuture<>();
+      this.keyPair = future;
+      ThreadMode.PLATFORM.start("key-loader", true, () -> {
+        try {
+          future.complete(this.loadOrGenerate());
+        } catch (RuntimeException e) {
+          future.completeExceptionally(e);
+        }
+      });
+    }
+    return this.keyPair;
+  }
+
+  /**
+   * Gets the key pair, waiting for it to be loaded or generated. Starts loading
+   * it if it has not been preloaded.
+   *
+   * @return The key pair
+   * @throws IllegalStateException If no key pair could be loaded or generated
+   */
+  public KeyPair getKeyPair() {
+    try {
+      return this.preload().join();
+    } catch (CompletionException e) {
+      throw new IllegalStateException("Key pair generation failed.", e.getCause());
+    }
+  }
+
+  /**
+   * Gets the file the public key is stored in, to be handed to the programs
+   * that wrap session keys with it.
+   *
+   * @return The public key file
+   */
+  public Path getPublicKeyFile() {
+    return this.publicKeyFile;
+  }
+
+  /**
+   * Reads a public key stored by a key pair store, such as another program's,
+   * without generating one if it is missing.
+   *
+   * @param file The public key file
+   * @return The public key
+   * @throws IOException              If the file cannot be read
+   * @throws GeneralSecurityException If the file does not hold an RSA public key
+   */
+  public static PublicKey readPublicKey(Path file) throws IOException, GeneralSecurityException {
+    return KeyFactory.getInstance(ALGORITHM)
+        .generatePublic(new X509EncodedKeySpec(Files.readAllBytes(file)));
+  }
+
+  /**
+   * Gets how long loading or generating the key pair took, from when it was
+   * started.
+   *
+   * @return The time in milliseconds, or -1 if the key pair is not ready yet
+   */
+  public long getLoadTimeMs() {
+    return this.loadTimeMs;
+  }
+
+  /**
+   * Returns true if the key pair was read from disk rather than generated.
+   *
+   * @return true if the key pair was loaded from disk
+   */
+  public boolean isLoadedFromDisk() {
+    return this.loadedFromDisk;
+  }
+
+  /**
+   * Reads the key pair from disk, or generates and stores a new one, holding
+   * the lock on the key files. Goes on without the lock if it cannot be taken.
+   *
+   * @return The key pair
+   * @throws IllegalStateException If no key pair could be generated
+   */
+  private KeyPair loadOrGenerate() {
+    synchronized (PROCESS_LOCK) {
+      try {
+        Files.createDirectories(this.lockFile.getParent());
+        try (FileChannel channel = FileChannel.open(this.lockFile,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+          return this.loadOrGenerateLocked();
+        }
+      } catch (IOException e) {
+        Logger.warn("Could not lock key pair, going on without the lock: "
+            + e.getMessage());
+        return this.loadOrGenerateLocked();
+      }
+    }
+  }
+
+  /**
+   * Reads the key pair from disk, or generates and stores a new one.
+   *
+   * @return The key pair
+   * @throws IllegalStateException If no key pair could be generated
+   */
+  private KeyPair loadOrGenerateLocked() {
+    long start = System.nanoTime();
+    KeyPair pair = this.load();
+    this.loadedFromDisk = pair != null;
+    if (pair == null) {
+      pair = KeyGenerator.generateRSAKeyPair();
+      if (pair == null) {
+        throw new IllegalStateException("Key pair generation failed.");
+      }
+      this.store(pair);
+    }
+    this.loadTimeMs = (System.nanoTime() - start) / 1_000_000;
+    Logger.info("RSA key pair " + (this.loadedFromDisk ? "loaded from " : "generated for ")
+        + this.privateKeyFile + " in " + this.loadTimeMs + " ms");
+    return pair;
+  }
+
+  /**
+   * Reads the key pair from disk.
+   *
+   * @return The key pair, or null if the files do not exist, cannot be read or
+   *         are not a pair
+   */
+  private KeyPair load() {
+    if (!Files.isRegularFile(this.privateKeyFile) || !Files.isRegularFile(this.publicKeyFile)) {
+      return null;
+    }
+    KeyPair pair;
+    try {
+      KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
+      pair = new KeyPair(readPublicKey(this.publicKeyFile),
+          keyFactory.generatePrivate(
+              new PKCS8EncodedKeySpec(Files.readAllBytes(this.privateKeyFile))));
+    } catch (IOException | GeneralSecurityException e) {
+      Logger.warn("Could not read key pair, generating a new one: " + e.getMessage());
+      return null;
+    }
+    if (!isPair(pair)) {
+      Logger.warn("Stored keys are not a pair, generating a new one: " + this.privateKeyFile);
+      return null;
+    }
+    return pair;
+  }
+
+  /**
+   * Checks that a private key belongs to a public key, by wrapping a key with
+   * the public key and unwrapping it with the private key.
+   *
+   * @param pair The keys
+   * @return true if the private key unwraps what the public key wraps
+   */
+  private static boolean isPair(KeyPair pair) {
+    try {
+      SecretKey key = HybridRSAEncryptor.generateAESKey();
+      String wrapped = HybridRSAEncryptor.encryptAESKeyWithRSA(key, pair.getPublic());
+      SecretKey unwrapped = HybridRSAEncryptor.decryptAESKeyWithRSA(wrapped, pair.getPrivate());
+      return Arrays.equals(key.getEncoded(), unwrapped.getEncoded());
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  /**
+   * Writes the key pair to disk. The private key is only readable by its owner
+   * where the file system supports it. A key pair that cannot be written is
+   * still used, and generated again next time.
+   *
+   * @param pair The key pair
+   */
+  private void store(KeyPair pair) {
+    try {
+      Files.createDirectories(this.privateKeyFile.getParent());
+      writeAtomically(this.privateKeyFile, pair.getPrivate().getEncoded(), true);
+      // Written last, so a key pair is only read once both files are complete
+      writeAtomically(this.publicKeyFile, pair.getPublic().getEncoded(), false);
+    } catch (IOException e) {
+      Logger.error("Could not store key pair: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes a file through a temporary file in the same directory, moved into
+   * place once complete.
+   *
+   * @param file      The file
+   * @param bytes     The content
+   * @param ownerOnly true if only the owner may read the file
+   * @throws IOException If the file could not be written
+   */
+  private static void writeAtomically(Path file, byte[] bytes, boolean ownerOnly)
+      throws IOException {
+    Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(),
+        ".tmp");
+    try {
+      if (ownerOnly) {
+        try {
+          Files.setPosixFilePermissions(temporary,
+              PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+          // Not a POSIX file system, the file keeps its default permissions
+        }
+      }
+      Files.write(temporary, bytes);
+      try {
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+}
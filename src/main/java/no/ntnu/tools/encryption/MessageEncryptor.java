@@ -1,5 +1,6 @@
 package no.ntnu.tools.encryption;
 
+import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.Base64;
@@ -11,6 +12,10 @@ import no.ntnu.tools.encryption.asymmetric.HybridRSAEncryptor;
 
 /**
  * Provides methods for encrypting and decrypting messages.
+ *
+ * <p>Messages can either be encrypted on their own, with a new AES key wrapped
+ * with RSA for each message, or with the session key of a connection, see
+ * {@link SessionEncryptor}, which keeps RSA off the path of every message.
  */
 public class MessageEncryptor {
 
@@ -85,4 +90,41 @@ public class MessageEncryptor {
 
     return decryptedMessage;
   }
-}
\ No newline at end of file
+
+  /**
+   * Encrypts a given message with the session key of a connection.
+   *
+   * @param message the message to be encrypted
+   * @param session the session encryptor of the connection
+   * @return the encrypted message, or null if encryption failed
+   */
+  public static String encryptMessage(Message message, SessionEncryptor session) {
+    String encryptedMessage = null;
+    try {
+      encryptedMessage = session.encrypt(message.toString());
+    } catch (GeneralSecurityException e) {
+      Logger.error("Error occurred during encryption: " + e.getMessage());
+    }
+    return encryptedMessage;
+  }
+
+  /**
+   * Decrypts a message encrypted with the session key of a connection.
+   *
+   * @param encryptedMessageString the message to be decrypted
+   * @param session                the session encryptor of the connection
+   * @return the decrypted message
+   * @throws GeneralSecurityException if the message was not encrypted with the
+   *                                  session key, or has been tampered with
+   */
+  public static String decryptStringMessage(String encryptedMessageString,
+                                            SessionEncryptor session)
+          throws GeneralSecurityException {
+    try {
+      return session.decrypt(encryptedMessageString);
+    } catch (GeneralSecurityException | IllegalArgumentException e) {
+      Logger.error("Decryption failed: " + e.getMessage());
+      throw e;
+    }
+  }
+}
@@ -1,10 +1,15 @@
 package no.ntnu.tools.encryption;
 
+import java.nio.charset.StandardCharsets;
 import no.ntnu.messages.Message;
 
 /**
  * Provides functionality to hash message content and store the hash
  * in the message header for validation purposes.
+ *
+ * <p>The hash is computed over the UTF-8 encoded body, the same bytes a binary
+ * frame carries, so a caller that has already encoded the body can hash it
+ * without serializing the body again.
  */
 public class MessageHasher {
 
@@ -16,19 +21,33 @@ public class MessageHasher {
    * @return the updated message with the hashed content added to its header
    */
   public static Message addHashedContentToMessage(Message message) {
-    // Make a copy of the input message
-    Message hashedMessage = message;
-
-    // Retrieve the transmission content from the message body
-    String transmissionString = message.getBody().getTransmission().toString();
-
-    // Hash the transmission content
-    String hashedTransmissionString = Hasher.encryptString(transmissionString);
+    byte[] body = message.getBody().toString().getBytes(StandardCharsets.UTF_8);
+    return addHashedContentToMessage(message, body);
+  }
 
-    // Store the hashed content in the message header
-    hashedMessage.getHeader().setHashedContent(hashedTransmissionString);
+  /**
+   * Takes a message and its already encoded body, and returns the same message
+   * with the hash of the body stored in the header.
+   *
+   * @param message     the message to which the hashed content will be added
+   * @param encodedBody the UTF-8 encoded body of the message
+   * @return the updated message with the hashed content added to its header
+   */
+  public static Message addHashedContentToMessage(Message message, byte[] encodedBody) {
+    message.getHeader().setHashedContent(hashBody(encodedBody, 0, encodedBody.length));
+    return message;
+  }
 
-    // Return the updated message
-    return hashedMessage;
+  /**
+   * Hashes an encoded message body, for example the body bytes of a received
+   * binary frame.
+   *
+   * @param body   the bytes holding the UTF-8 encoded body
+   * @param offset the index of the first byte of the body
+   * @param length the length of the body, in bytes
+   * @return the hash of the body
+   */
+  public static String hashBody(byte[] body, int offset, int length) {
+    return Hasher.hash(body, offset, length);
   }
-}
\ No newline at end of file
+}
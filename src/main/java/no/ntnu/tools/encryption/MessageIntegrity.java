@@ -0,0 +1,144 @@
+package no.ntnu.tools.encryption;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+/**
+ * Computes and checks the hash carried in the header of a message, over the
+ * UTF-8 encoded body of the message, with one {@link IntegrityMode}.
+ *
+ * <p>A CRC32C checksum is 8 hexadecimal digits and an HMAC-SHA256 truncated to
+ * 128 bits is 32, instead of the 64 of a full SHA-256 hash. Without a mode the
+ * hash is blank and never checked. An HMAC is computed with a {@link Mac} that
+ * is created once and reused, so a keyed instance belongs to one connection.
+ */
+public class MessageIntegrity {
+
+  /**
+   * The hash of a message whose body is not checked.
+   */
+  public static final String NO_HASH = " ";
+
+  /**
+   * Does not check messages.
+   */
+  public static final MessageIntegrity NONE = new MessageIntegrity(IntegrityMode.NONE, null);
+
+  /**
+   * Checks messages with a CRC32C checksum.
+   */
+  public static final MessageIntegrity CRC32C = new MessageIntegrity(IntegrityMode.CRC32C, null);
+
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final int HMAC_LENGTH = 16;
+
+  private final IntegrityMode mode;
+  private final Mac mac;
+
+  /**
+   * Creates a check with a mode.
+   *
+   * @param mode The integrity mode
+   * @param mac  The initialized MAC, or null if the mode needs no key
+   */
+  private MessageIntegrity(IntegrityMode mode, Mac mac) {
+    this.mode = mode;
+    this.mac = mac;
+  }
+
+  /**
+   * Gets the check for a mode that needs no key.
+   *
+   * @param mode The integrity mode
+   * @return The check
+   * @throws IllegalArgumentException If the mode is null or needs a key
+   */
+  public static MessageIntegrity of(IntegrityMode mode) {
+    if (mode == null || mode.isKeyed()) {
+      throw new IllegalArgumentException("Integrity mode must not need a key: " + mode);
+    }
+    return mode == IntegrityMode.CRC32C ? CRC32C : NONE;
+  }
+
+  /**
+   * Creates a check with a truncated HMAC-SHA256, for one connection.
+   *
+   * @param key The key shared by both sides of the connection
+   * @return The check
+   * @throws GeneralSecurityException If the key cannot be used for HMAC-SHA256
+   * @throws IllegalArgumentException If the key is null
+   */
+  public static MessageIntegrity hmac(SecretKey key) throws GeneralSecurityException {
+    if (key == null) {
+      throw new IllegalArgumentException("HMAC key cannot be null");
+    }
+    Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+    mac.init(key);
+    return new MessageIntegrity(IntegrityMode.HMAC_SHA256, mac);
+  }
+
+  /**
+   * Gets the integrity mode.
+   *
+   * @return The integrity mode
+   */
+  public IntegrityMode getMode() {
+    return this.mode;
+  }
+
+  /**
+   * Computes the hash of an encoded message body.
+   *
+   * @param body   The bytes holding the UTF-8 encoded body
+   * @param offset The index of the first byte of the body
+   * @param length The length of the body, in bytes
+   * @return The hash, or {@link #NO_HASH} if messages are not checked
+   */
+  public String hash(byte[] body, int offset, int length) {
+    String hash;
+    if (this.mode == IntegrityMode.CRC32C) {
+      CRC32C checksum = new CRC32C();
+      checksum.update(body, offset, length);
+      hash = Hasher.toHex(ByteBuffer.allocate(Integer.BYTES)
+          .putInt((int) checksum.getValue())
+          .array());
+    } else if (this.mode == IntegrityMode.HMAC_SHA256) {
+      byte[] digest;
+      synchronized (this.mac) {
+        this.mac.update(body, offset, length);
+        digest = this.mac.doFinal();
+      }
+      hash = Hasher.toHex(Arrays.copyOf(digest, HMAC_LENGTH));
+    } else {
+      hash = NO_HASH;
+    }
+    return hash;
+  }
+
+  /**
+   * Checks the hash received with an encoded message body.
+   *
+   * @param receivedHash The hash from the header of the message
+   * @param body         The bytes holding the UTF-8 encoded body
+   * @param offset       The index of the first byte of the body
+   * @param length       The length of the body, in bytes
+   * @return true if the hash matches the body, or messages are not checked
+   */
+  public boolean verify(String receivedHash, byte[] body, int offset, int length) {
+    if (this.mode == IntegrityMode.NONE) {
+      return true;
+    }
+    if (receivedHash == null) {
+      return false;
+    }
+    byte[] expected = this.hash(body, offset, length).getBytes(StandardCharsets.US_ASCII);
+    // Compared in constant time, so an HMAC cannot be guessed a digit at a time
+    return MessageDigest.isEqual(expected, receivedHash.getBytes(StandardCharsets.US_ASCII));
+  }
+}
@@ -1,54 +1,60 @@
 package no.ntnu.tools.encryption;
 
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
+import java.nio.file.Path;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 
 /**
- * A utility class that generates and holds a single
- * static RSA key pair for shared use.
- * This class ensures that the keys are generated
- * only once and remain accessible throughout the application.
+ * A utility class that holds a single static RSA key pair for shared use.
+ * The key pair is kept in {@code config/keys}, so it is generated only once,
+ * and loaded on a background thread rather than when the class is loaded.
+ * Call {@link #preload()} early at startup so the keys are ready when needed.
  */
 public class PublicKeyHolder {
 
-  private static final KeyPair keyPair;
-
-  // Static block to generate the RSA key pair once
-  static {
-    KeyPair tempKeyPair = null;
-    try {
-      KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-      keyGen.initialize(2048);
-      tempKeyPair = keyGen.generateKeyPair();
-    } catch (Exception e) {
-      System.err.println("Error generating RSA key pair: " + e.getMessage());
-    }
-    keyPair = tempKeyPair;
+  private static final KeyPairStore store =
+      new KeyPairStore(Path.of("config", "keys"), "node");
+
+  private PublicKeyHolder() {
+    // Empty. Prevent instantiation.
+  }
+
+  /**
+   * Starts loading the key pair in the background, if it has not been started.
+   */
+  public static void preload() {
+    store.preload();
+  }
+
+  /**
+   * Gets the store holding the key pair, for example to read how long it took
+   * to load.
+   *
+   * @return The key pair store
+   */
+  public static KeyPairStore getStore() {
+    return store;
   }
 
   /**
-   * Retrieves the public key from the static key pair.
+   * Retrieves the public key from the static key pair, waiting for it to be
+   * loaded if needed.
    *
    * @return The public key for encryption.
+   * @throws IllegalStateException If the key pair could not be loaded or generated
    */
   public static PublicKey getPublicKey() {
-    if (keyPair == null) {
-      throw new IllegalStateException("Key pair generation failed.");
-    }
-    return keyPair.getPublic();
+    return store.getKeyPair().getPublic();
   }
 
   /**
-   * Retrieves the private key from the static key pair.
+   * Retrieves the private key from the static key pair, waiting for it to be
+   * loaded if needed.
    *
    * @return The private key for decryption.
+   * @throws IllegalStateException If the key pair could not be loaded or generated
    */
   public static PrivateKey getPrivateKey() {
-    if (keyPair == null) {
-      throw new IllegalStateException("Key pair generation failed.");
-    }
-    return keyPair.getPrivate();
+    return store.getKeyPair().getPrivate();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,272 @@
+package no.ntnu.tools.encryption;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Base64;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import no.ntnu.tools.encryption.asymmetric.HybridRSAEncryptor;
+
+/**
+ * Encrypts and decrypts the messages of one connection with a session key.
+ *
+ * <p>Unlike {@link MessageEncryptor#encryptMessage}, which creates a new AES key
+ * and wraps it with RSA for every message, the session key is wrapped with RSA
+ * once, when the connection is set up, see {@link #wrapKey(PublicKey)} and
+ * {@link #fromWrappedKey(String, PrivateKey)}. Messages are then encrypted with
+ * AES-GCM, which also detects tampering, using one encrypting and one decrypting
+ * {@link Cipher} that are created once and reused.
+ *
+ * <p>The two ends of a connection share the session key, but each direction
+ * is encrypted with its own key derived from it, so the client and the server
+ * can never use the same key and nonce. Every message gets its own 12 byte
+ * nonce, four zero bytes followed by a counter, sent in front of the
+ * ciphertext. A received message must have a higher counter than the one
+ * before it, so a captured message cannot be replayed. Strings are encrypted to
+ * the Base64 encoding
+ * of both, while the {@link ByteBuffer} methods write the raw bytes, so large
+ * payloads such as binary frames never pass through a string.
+ */
+public class SessionEncryptor {
+
+  private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+  private static final int NONCE_LENGTH = 12;
+  // In bytes, the longest tag GCM supports
+  private static final int TAG_LENGTH = 16;
+  // Large payloads are passed to the cipher a slice at a time
+  private static final int UPDATE_SIZE = 64 * 1024;
+  // The labels the key of each direction is derived with
+  private static final String CLIENT_TO_SERVER = "client-to-server";
+  private static final String SERVER_TO_CLIENT = "server-to-client";
+
+  private final SecretKey key;
+  private final SecretKey encryptKey;
+  private final SecretKey decryptKey;
+  private final Cipher encryptCipher;
+  private final Cipher decryptCipher;
+  private long nonceCounter = 0;
+  // The counter of the last message decrypted, -1 before the first
+  private long lastReceivedCounter = -1;
+
+  /**
+   * Creates the encryptor of one end of a connection for a session key.
+   *
+   * @param key    The AES session key
+   * @param client true at the client end, which encrypts with the client to
+   *               server key, false at the server end
+   * @throws GeneralSecurityException If AES-GCM is not supported
+   * @throws IllegalArgumentException If the key is null
+   */
+  public SessionEncryptor(SecretKey key, boolean client) throws GeneralSecurityException {
+    if (key == null) {
+      throw new IllegalArgumentException("Session key cannot be null");
+    }
+    this.key = key;
+    SecretKey clientToServer = derive(key, CLIENT_TO_SERVER, "AES");
+    SecretKey serverToClient = derive(key, SERVER_TO_CLIENT, "AES");
+    this.encryptKey = client ? clientToServer : serverToClient;
+    this.decryptKey = client ? serverToClient : clientToServer;
+    this.encryptCipher = Cipher.getInstance(TRANSFORMATION);
+    this.decryptCipher = Cipher.getInstance(TRANSFORMATION);
+  }
+
+  /**
+   * Creates the client end's encryptor for a new random session key.
+   *
+   * @return The encryptor
+   * @throws Exception If the key could not be generated
+   */
+  public static SessionEncryptor generate() throws Exception {
+    return new SessionEncryptor(HybridRSAEncryptor.generateAESKey(), true);
+  }
+
+  /**
+   * Creates the server end's encryptor for a session key received from the
+   * client.
+   *
+   * @param wrappedKey The session key, wrapped with this end's public key
+   * @param privateKey This end's private key
+   * @return The encryptor
+   * @throws Exception If the key could not be unwrapped
+   */
+  public static SessionEncryptor fromWrappedKey(String wrappedKey, PrivateKey privateKey)
+      throws Exception {
+    return new SessionEncryptor(HybridRSAEncryptor.decryptAESKeyWithRSA(wrappedKey, privateKey),
+        false);
+  }
+
+  /**
+   * Wraps the session key with the public key of the other end of the
+   * connection, to be sent to it once.
+   *
+   * @param publicKey The other end's public key
+   * @return The wrapped session key, as Base64
+   * @throws Exception If the key could not be wrapped
+   */
+  public String wrapKey(PublicKey publicKey) throws Exception {
+    return HybridRSAEncryptor.encryptAESKeyWithRSA(this.key, publicKey);
+  }
+
+  /**
+   * Derives a key for another purpose from the session key, so both ends of the
+   * connection get the same key without exchanging it. The session key itself is
+   * never used directly, messages are encrypted with keys derived from it too.
+   *
+   * @param purpose   A label naming what the key is for, such as "integrity"
+   * @param algorithm The algorithm the key is for, such as "HmacSHA256"
+   * @return The derived 256-bit key
+   * @throws GeneralSecurityException If HMAC-SHA256 is not supported
+   */
+  public SecretKey deriveKey(String purpose, String algorithm) throws GeneralSecurityException {
+    return derive(this.key, purpose, algorithm);
+  }
+
+  /**
+   * Derives a key from a session key, see {@link #deriveKey(String, String)}.
+   */
+  private static SecretKey derive(SecretKey key, String purpose, String algorithm)
+      throws GeneralSecurityException {
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(key.getEncoded(), "HmacSHA256"));
+    return new SecretKeySpec(mac.doFinal(purpose.getBytes(StandardCharsets.UTF_8)), algorithm);
+  }
+
+  /**
+   * Gets the length of a message once encrypted, including the nonce and the
+   * authentication tag.
+   *
+   * @param length The length of the message, in bytes
+   * @return The length of the encrypted message, in bytes
+   */
+  public static int getEncryptedLength(int length) {
+    return NONCE_LENGTH + length + TAG_LENGTH;
+  }
+
+  /**
+   * Gets the length of an encrypted message once decrypted.
+   *
+   * @param encryptedLength The length of the encrypted message, in bytes
+   * @return The length of the message, in bytes
+   * @throws IllegalArgumentException If the encrypted message is too short to
+   *                                  hold the nonce and the tag
+   */
+  public static int getDecryptedLength(int encryptedLength) {
+    if (encryptedLength < NONCE_LENGTH + TAG_LENGTH) {
+      throw new IllegalArgumentException("Encrypted message is too short");
+    }
+    return encryptedLength - NONCE_LENGTH - TAG_LENGTH;
+  }
+
+  /**
+   * Encrypts a message.
+   *
+   * @param message The message to encrypt
+   * @return The nonce and the encrypted message, as Base64
+   * @throws GeneralSecurityException If the message could not be encrypted
+   */
+  public String encrypt(String message) throws GeneralSecurityException {
+    ByteBuffer plaintext = ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+    ByteBuffer encrypted = ByteBuffer.allocate(getEncryptedLength(plaintext.remaining()));
+    this.encrypt(plaintext, encrypted);
+    return Base64.getEncoder().encodeToString(encrypted.array());
+  }
+
+  /**
+   * Decrypts a message encrypted by the other end of the connection.
+   *
+   * @param encryptedMessage The nonce and the encrypted message, as Base64
+   * @return The decrypted message
+   * @throws GeneralSecurityException If the message was encrypted with another
+   *                                  key, has been tampered with, or has been
+   *                                  replayed
+   * @throws IllegalArgumentException If the message is not valid Base64 or too
+   *                                  short
+   */
+  public String decrypt(String encryptedMessage) throws GeneralSecurityException {
+    ByteBuffer encrypted = ByteBuffer.wrap(Base64.getDecoder().decode(encryptedMessage));
+    ByteBuffer plaintext = ByteBuffer.allocate(getDecryptedLength(encrypted.remaining()));
+    this.decrypt(encrypted, plaintext);
+    return new String(plaintext.array(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Encrypts the remaining bytes of a buffer into another buffer, a slice at a
+   * time. The nonce is written first, followed by the encrypted message and the
+   * tag. Either buffer may be direct.
+   *
+   * @param plaintext The message to encrypt, read up to its limit
+   * @param encrypted The buffer to write to, with room for
+   *                  {@link #getEncryptedLength(int)} bytes
+   * @return The number of bytes written
+   * @throws GeneralSecurityException If the message could not be encrypted
+   * @throws IllegalArgumentException If the buffer to write to is too small
+   */
+  public int encrypt(ByteBuffer plaintext, ByteBuffer encrypted) throws GeneralSecurityException {
+    int length = getEncryptedLength(plaintext.remaining());
+    if (encrypted.remaining() < length) {
+      throw new IllegalArgumentException("Buffer too small for the encrypted message");
+    }
+    synchronized (this.encryptCipher) {
+      byte[] nonce = ByteBuffer.allocate(NONCE_LENGTH)
+          .putInt(0)
+          .putLong(this.nonceCounter++)
+          .array();
+      this.encryptCipher.init(Cipher.ENCRYPT_MODE, this.encryptKey,
+          new GCMParameterSpec(TAG_LENGTH * Byte.SIZE, nonce));
+      encrypted.put(nonce);
+      int end = plaintext.limit();
+      while (plaintext.remaining() > UPDATE_SIZE) {
+        plaintext.limit(plaintext.position() + UPDATE_SIZE);
+        this.encryptCipher.update(plaintext, encrypted);
+        plaintext.limit(end);
+      }
+      this.encryptCipher.doFinal(plaintext, encrypted);
+    }
+    return length;
+  }
+
+  /**
+   * Decrypts the remaining bytes of a buffer, encrypted by the other end of the
+   * connection, into another buffer. The message is only written once its tag
+   * has been checked. Either buffer may be direct.
+   *
+   * @param encrypted The nonce, the encrypted message and the tag, read up to
+   *                  the limit
+   * @param plaintext The buffer to write to, with room for
+   *                  {@link #getDecryptedLength(int)} bytes
+   * @return The number of bytes written
+   * @throws GeneralSecurityException If the message was encrypted with another
+   *                                  key, has been tampered with, or does not
+   *                                  have a higher counter than the last one
+   * @throws IllegalArgumentException If the encrypted message is too short, or
+   *                                  the buffer to write to too small
+   */
+  public int decrypt(ByteBuffer encrypted, ByteBuffer plaintext) throws GeneralSecurityException {
+    int length = getDecryptedLength(encrypted.remaining());
+    if (plaintext.remaining() < length) {
+      throw new IllegalArgumentException("Buffer too small for the decrypted message");
+    }
+    byte[] nonce = new byte[NONCE_LENGTH];
+    encrypted.get(nonce);
+    long counter = ByteBuffer.wrap(nonce).getLong(Integer.BYTES);
+    synchronized (this.decryptCipher) {
+      if (counter <= this.lastReceivedCounter) {
+        throw new GeneralSecurityException("Replayed message, counter " + counter
+            + " is not after " + this.lastReceivedCounter);
+      }
+      this.decryptCipher.init(Cipher.DECRYPT_MODE, this.decryptKey,
+          new GCMParameterSpec(TAG_LENGTH * Byte.SIZE, nonce));
+      // GCM holds back the decrypted bytes until the tag has been checked
+      this.decryptCipher.doFinal(encrypted, plaintext);
+      // Only moved on once the message is known to be genuine
+      this.lastReceivedCounter = counter;
+    }
+    return length;
+  }
+}
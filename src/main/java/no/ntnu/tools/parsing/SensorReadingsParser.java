@@ -2,11 +2,9 @@ package no.ntnu.tools.parsing;
 
 import static no.ntnu.tools.parsing.Parser.parseDoubleOrError;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import no.ntnu.greenhouse.sensor.AudioSensorReading;
 import no.ntnu.greenhouse.sensor.ImageSensorReading;
 import no.ntnu.greenhouse.sensor.NoSensorReading;
@@ -15,8 +13,9 @@ import no.ntnu.greenhouse.sensor.SensorReading;
 import no.ntnu.greenhouse.sensor.SensorType;
 import no.ntnu.messages.Delimiters;
 import no.ntnu.tools.Logger;
-import no.ntnu.tools.stringification.Base64AudioEncoder;
-import no.ntnu.tools.stringification.Base64ImageEncoder;
+import no.ntnu.tools.caching.BlobCache;
+import no.ntnu.tools.caching.BlobReferences;
+import no.ntnu.tools.caching.MissingBlobException;
 
 /**
  * The SensorReadingsParser class provides methods to parse sensor information
@@ -41,6 +40,10 @@ import no.ntnu.tools.stringification.Base64ImageEncoder;
  * information and returns a list of SensorReading objects.</li>
  * <li>{@link #parseReading(String)}: Parses a sensor reading from a string and
  * returns the corresponding SensorReading object.</li>
+ * <li>{@link #parseSensors(String, BlobCache, Set)} and
+ * {@link #parseReading(String, BlobCache)}: The same, resolving image and audio
+ * payloads referred to by hash ("type,#hash,fileExtension") from a blob
+ * cache.</li>
  * <li>{@link #parseImageReading(String, String, String)}: Parses an image
  * reading from a base64 encoded string.</li>
  * <li>{@link #parseAudioReading(String, String)}: Parses an audio reading from
@@ -82,6 +85,89 @@ public class SensorReadingsParser {
     return readings;
   }
 
+  /**
+   * Parses a string containing sensor information, resolving image and audio
+   * payloads that are referred to by hash from a blob cache. Readings whose
+   * payload is not cached are left out, and the hash of the payload is added to
+   * the missing blobs.
+   *
+   * @param sensorInfo   the string containing sensor information.
+   * @param blobs        the cached payloads.
+   * @param missingBlobs the set the hashes of payloads that are not cached are
+   *                     added to.
+   * @return a list of SensorReading objects parsed from the input string.
+   * @throws IllegalArgumentException if the sensorInfo is null or empty.
+   */
+  public static List<SensorReading> parseSensors(String sensorInfo, BlobCache blobs,
+                                                 Set<String> missingBlobs) {
+    if (sensorInfo == null || sensorInfo.isEmpty()) {
+      throw new IllegalArgumentException("Sensor info can't be empty");
+    }
+    List<SensorReading> readings = new LinkedList<>();
+
+    String[] readingInfo = sensorInfo.split(Delimiters.BODY_SENSOR_SEPARATOR.getValue());
+    for (String reading : readingInfo) {
+      try {
+        readings.add(parseReading(reading, blobs));
+      } catch (MissingBlobException e) {
+        missingBlobs.add(e.getHash());
+      } catch (IllegalArgumentException e) {
+        Logger.error("Failed to parse sensor reading: " + e.getMessage());
+      }
+    }
+    return readings;
+  }
+
+  /**
+   * Parses a sensor reading, resolving an image or audio payload that is referred
+   * to by hash from a blob cache. An image referred to with a preview is resolved
+   * to the full image if it is cached, and otherwise to the preview.
+   *
+   * @param reading the sensor reading string to parse
+   * @param blobs   the cached payloads
+   * @return the parsed SensorReading object
+   * @throws MissingBlobException     if the reading refers to a payload that is
+   *                                  not cached
+   * @throws IllegalArgumentException if the reading is null, empty, or has an
+   *                                  invalid format
+   */
+  public static SensorReading parseReading(String reading, BlobCache blobs) {
+    if (reading == null) {
+      throw new IllegalArgumentException("Sensor reading can't be empty");
+    }
+    String[] fields = reading.split(Delimiters.BODY_FIELD_PARAMETERS.getValue());
+    if (fields.length != 3 || !BlobReferences.isReference(fields[1])) {
+      return parseReading(reading);
+    }
+    // The full payload is used once it has been fetched, otherwise its preview
+    String fullHash = BlobReferences.getFullHash(fields[1]);
+    String hash = fullHash;
+    byte[] blob = blobs.get(fullHash);
+    if (blob == null) {
+      hash = BlobReferences.getHash(fields[1]);
+      blob = blobs.get(hash);
+    }
+    if (blob == null) {
+      throw new MissingBlobException(hash);
+    }
+
+    String[] formatParts = fields[0].split(":");
+    if (formatParts.length != 2) {
+      throw new IllegalArgumentException("Invalid sensor format/data: " + reading);
+    }
+    if (formatParts[0].equals("IMG")) {
+      ImageSensorReading imageReading = parseImageReading(formatParts[1], blob, fields[2], hash);
+      if (!hash.equals(fullHash)) {
+        imageReading.setFullImageHash(fullHash);
+      }
+      return imageReading;
+    } else if (formatParts[0].equals("AUD")) {
+      return parseAudioReading(formatParts[1], blob, hash);
+    } else {
+      throw new IllegalArgumentException("Unknown sensor format: " + formatParts[0]);
+    }
+  }
+
   /**
    * Parses a sensor reading from a string and returns the corresponding
    * SensorReading object.
@@ -94,12 +180,16 @@ public class SensorReadingsParser {
    * - For "AUD" (audio) readings, DATA should be in the format
    * "type,base64String,fileExtension".
    *
+   * Image and audio payloads referred to by hash cannot be resolved, see
+   * {@link #parseReading(String, BlobCache)}.
+   *
    * @param reading the sensor reading string to parse
    * @return the parsed SensorReading object
+   * @throws MissingBlobException     if the reading refers to a payload by hash
    * @throws IllegalArgumentException if the reading is null, empty, or has an
    *                                  invalid format
    */
-  private static SensorReading parseReading(String reading) {
+  public static SensorReading parseReading(String reading) {
 
     SensorReading sensorReadingToReturn = null;
     // Logger.info("Reading: " + reading);
@@ -121,6 +211,9 @@ public class SensorReadingsParser {
       String type = assignmentParts[0];
       String base64String = assignmentParts[1];
       String fileExtension = assignmentParts[2];
+      if (BlobReferences.isReference(base64String)) {
+        throw new MissingBlobException(BlobReferences.getHash(base64String));
+      }
 
       sensorReadingToReturn = parseImageReading(type, base64String, fileExtension);
 
@@ -141,6 +234,9 @@ public class SensorReadingsParser {
       }
       String type = assignmentParts[0];
       String base64String = assignmentParts[1];
+      if (BlobReferences.isReference(base64String)) {
+        throw new MissingBlobException(BlobReferences.getHash(base64String));
+      }
 
       return parseAudioReading(type, base64String);
     } else {
@@ -149,47 +245,68 @@ public class SensorReadingsParser {
   }
 
   /**
-   * Parses an image reading from a base64 encoded string.
+   * Parses an image reading from a base64 encoded string. The image is kept
+   * compressed, and only decoded when it is first shown.
    *
    * @param type          the type of the sensor reading
    * @param base64String  the base64 encoded string representing the image
    * @param fileExtension the file extension of the image
-   * @return an ImageSensorReading object containing the parsed image and its
-   *         metadata
-   * @throws IllegalArgumentException if the base64 string cannot be decoded into
-   *                                  an image
+   * @return an ImageSensorReading object containing the image and its metadata
    */
   private static ImageSensorReading parseImageReading(String type,
                                                       String base64String, String fileExtension) {
-    BufferedImage image;
-    try {
-      image = Base64ImageEncoder.stringToImage(base64String);
-    } catch (IOException e) {
-      throw new IllegalArgumentException("Failed to decode image: " + e.getMessage(), e);
-    }
-    ImageSensorReading imageReading = new ImageSensorReading(SensorType.fromString(type), image);
+    ImageSensorReading imageReading =
+        ImageSensorReading.fromBase64(SensorType.fromString(type), base64String);
+    imageReading.setFileExtension(fileExtension);
+
+    return imageReading;
+  }
+
+  /**
+   * Parses an image reading from a compressed image, which is kept compressed
+   * and only decoded when it is first shown.
+   *
+   * @param type          the type of the sensor reading
+   * @param imageBytes    the compressed image
+   * @param fileExtension the file extension of the image
+   * @param hash          the hash of the Base64 encoded image
+   * @return an ImageSensorReading object containing the image and its metadata
+   */
+  private static ImageSensorReading parseImageReading(String type, byte[] imageBytes,
+                                                      String fileExtension, String hash) {
+    ImageSensorReading imageReading =
+        new ImageSensorReading(SensorType.fromString(type), imageBytes, hash);
     imageReading.setFileExtension(fileExtension);
 
     return imageReading;
   }
 
   /**
-   * Parses an audio reading from a base64 encoded string.
+   * Parses an audio reading from a base64 encoded string. The audio is kept in
+   * memory, and only decoded when it is first used.
    *
    * @param type         the type of the sensor as a string
    * @param base64String the base64 encoded string representing the audio data
    * @return an AudioSensorReading object containing the sensor type and the
-   *         decoded audio file
-   * @throws IllegalArgumentException if the audio data cannot be decoded
+   *         audio
    */
   private static AudioSensorReading parseAudioReading(String type, String base64String) {
-    File audioFile;
-    try {
-      audioFile = Base64AudioEncoder.stringToAudio(base64String);
-    } catch (IOException e) {
-      throw new IllegalArgumentException("Failed to decode audio: " + e.getMessage(), e);
-    }
-    return new AudioSensorReading(SensorType.fromString(type), audioFile);
+    return AudioSensorReading.fromBase64(SensorType.fromString(type), base64String);
+  }
+
+  /**
+   * Parses an audio reading from the contents of an audio file, which is kept in
+   * memory.
+   *
+   * @param type       the type of the sensor as a string
+   * @param audioBytes the contents of the audio file
+   * @param hash       the hash of the Base64 encoded audio
+   * @return an AudioSensorReading object containing the sensor type and the
+   *         audio
+   */
+  private static AudioSensorReading parseAudioReading(String type, byte[] audioBytes,
+                                                      String hash) {
+    return new AudioSensorReading(SensorType.fromString(type), audioBytes, hash);
   }
 
 }
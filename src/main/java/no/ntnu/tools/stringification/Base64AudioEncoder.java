@@ -1,7 +1,5 @@
 package no.ntnu.tools.stringification;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -53,13 +51,20 @@ public class Base64AudioEncoder {
    * @throws IOException if the Base64 string cannot be decoded or the file cannot be written.
    */
   public static File stringToAudio(String base64String) throws IOException {
-    File outputFile = File.createTempFile("audio", ".wav");
-    byte[] decodedBytes = Base64.getDecoder().decode(base64String);
-    try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(decodedBytes);
-         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
+    return bytesToAudio(Base64.getDecoder().decode(base64String));
+  }
 
-      byteArrayOutputStream.write(decodedBytes);
-      byteArrayOutputStream.writeTo(new FileOutputStream(outputFile));
+  /**
+   * Writes the contents of an audio file to a new temporary file.
+   *
+   * @param audioBytes The contents of the audio file.
+   * @return The file with the audio data.
+   * @throws IOException if the file cannot be written.
+   */
+  public static File bytesToAudio(byte[] audioBytes) throws IOException {
+    File outputFile = File.createTempFile("audio", ".wav");
+    try (FileOutputStream fileOutputStream = new FileOutputStream(outputFile)) {
+      fileOutputStream.write(audioBytes);
     }
     return outputFile;
   }
@@ -33,26 +33,30 @@ public class Base64ImageEncoder {
    */
   public static String imageToString(BufferedImage bufferedImage,
                                      String fileExtension) throws IOException {
-    
+    // Encode the byte array to Base64 and return as a string
+    return Base64.getEncoder().encodeToString(imageToBytes(bufferedImage));
+  }
+
+  /**
+   * Encodes an image as PNG.
+   *
+   * @param bufferedImage image to be encoded.
+   * @return the PNG encoded image.
+   * @throws IOException if the image could not be encoded.
+   */
+  public static byte[] imageToBytes(BufferedImage bufferedImage) throws IOException {
     if (bufferedImage.getType() != BufferedImage.TYPE_INT_RGB) {
       BufferedImage newBufferedImage = new BufferedImage(bufferedImage.getWidth(),
               bufferedImage.getHeight(), BufferedImage.TYPE_INT_RGB);
       newBufferedImage.createGraphics().drawImage(bufferedImage, 0, 0, null);
       bufferedImage = newBufferedImage;
     }
-    
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-    // Write the image to the output stream in the specified format (JPG/PNG)
-
 
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
     if (ImageIO.write(bufferedImage, "png", byteArrayOutputStream) == false) {
       throw new IOException("ImageIO.write() failed");
     }
-
-    // Encode the byte array to Base64 and return as a string
-    String testString = Base64.getEncoder().encodeToString(byteArrayOutputStream.toByteArray());
-
-    return testString;
+    return byteArrayOutputStream.toByteArray();
   }
 
 
@@ -64,8 +68,18 @@ public class Base64ImageEncoder {
    * @throws IOException if the Base64 string cannot be decoded.
    */
   public static BufferedImage stringToImage(String base64String) throws IOException {
-    byte[] decodedBytes = Base64.getDecoder().decode(base64String);
-    ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(decodedBytes);
+    return bytesToImage(Base64.getDecoder().decode(base64String));
+  }
+
+  /**
+   * Converts encoded image bytes, such as a PNG file, into an image.
+   *
+   * @param imageBytes The encoded image.
+   * @return A BufferedImage decoded from the bytes.
+   * @throws IOException if the bytes cannot be decoded.
+   */
+  public static BufferedImage bytesToImage(byte[] imageBytes) throws IOException {
+    ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(imageBytes);
 
     // Read and return the image from the input stream
     return ImageIO.read(byteArrayInputStream);
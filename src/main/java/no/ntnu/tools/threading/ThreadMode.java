@@ -0,0 +1,80 @@
+package no.ntnu.tools.threading;
+
+/**
+ * The kinds of threads blocking connection readers can run on.
+ */
+public enum ThreadMode {
+
+  /**
+   * One operating system thread per task.
+   */
+  PLATFORM("platform"),
+
+  /**
+   * Lightweight threads scheduled by the JVM onto a small pool of carrier threads.
+   * A virtual thread blocked on socket I/O does not occupy its carrier, so many
+   * thousands of blocking readers can run in one JVM.
+   */
+  VIRTUAL("virtual");
+
+  private final String value;
+
+  /**
+   * Constructs a thread mode with the specified string value.
+   *
+   * @param value The string representation of the thread mode.
+   */
+  ThreadMode(String value) {
+    this.value = value;
+  }
+
+  /**
+   * Gets the string value of the thread mode.
+   *
+   * @return The string value of the thread mode.
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Starts a new thread of this kind running the given task.
+   * Virtual threads are always daemon threads, so the daemon flag only
+   * applies to platform threads.
+   *
+   * @param name   The name of the thread
+   * @param daemon Whether a platform thread should be a daemon thread
+   * @param task   The task to run
+   * @return The started thread
+   */
+  public Thread start(String name, boolean daemon, Runnable task) {
+    if (task == null) {
+      throw new IllegalArgumentException("Task cannot be null");
+    }
+    if (this == VIRTUAL) {
+      return Thread.ofVirtual().name(name).start(task);
+    }
+    Thread thread = new Thread(task, name);
+    thread.setDaemon(daemon);
+    thread.start();
+    return thread;
+  }
+
+  /**
+   * Retrieves a {@link ThreadMode} based on its string value.
+   *
+   * @param target The string value to match.
+   * @return The matching thread mode, or {@code null} if no match is found.
+   */
+  public static ThreadMode fromString(String target) {
+    if (target == null) {
+      return null;
+    }
+    for (ThreadMode mode : ThreadMode.values()) {
+      if (mode.getValue().equalsIgnoreCase(target)) {
+        return mode;
+      }
+    }
+    return null;
+  }
+}
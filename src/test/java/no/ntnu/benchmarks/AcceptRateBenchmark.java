@@ -0,0 +1,106 @@
+package no.ntnu.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import no.ntnu.intermediaryserver.server.IntermediaryServer;
+import no.ntnu.intermediaryserver.server.ServerConfig;
+import no.ntnu.intermediaryserver.server.ServerMode;
+import no.ntnu.mockclients.MockGreenhouseNode;
+
+/**
+ * Measures how fast the intermediary server accepts and identifies a burst of
+ * simultaneous greenhouse node connections, like the reconnect storm after a
+ * server restart.
+ *
+ * <p>Run with {@code <connections> [blocking|virtual|nio]}, defaults are 1000 and
+ * blocking. Reports the time from the first connection attempt until every node
+ * has received its identification response.
+ */
+public class AcceptRateBenchmark {
+
+  private static final String IDENTIFICATION = "SERVER;0; -CLIENT_IDENTIFICATION,GREENHOUSE,";
+  private static final long SERVER_START_WAIT_MS = 500;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the number of connections, and the server mode
+   * @throws Exception if the benchmark could not be run
+   */
+  public static void main(String[] args) throws Exception {
+    int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    ServerMode mode = args.length > 1 ? ServerMode.fromString(args[1]) : ServerMode.BLOCKING;
+    if (mode == null) {
+      throw new IllegalArgumentException("Unknown server mode: " + args[1]);
+    }
+
+    IntermediaryServer server = new IntermediaryServer(mode);
+    new Thread(server).start();
+    Thread.sleep(SERVER_START_WAIT_MS);
+    int port = ServerConfig.getPortNumber();
+
+    List<MockGreenhouseNode> nodes = new ArrayList<>();
+    CountDownLatch start = new CountDownLatch(1);
+    try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+      List<Future<MockGreenhouseNode>> identified = new ArrayList<>();
+      for (int i = 0; i < connections; i++) {
+        String nodeId = String.valueOf(i);
+        identified.add(clients.submit(() -> connectAndIdentify(start, port, nodeId)));
+      }
+
+      long startTime = System.nanoTime();
+      start.countDown();
+      int failed = 0;
+      for (Future<MockGreenhouseNode> node : identified) {
+        try {
+          nodes.add(node.get(60, TimeUnit.SECONDS));
+        } catch (Exception e) {
+          failed++;
+        }
+      }
+      long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+      System.out.println("Mode: " + mode.getValue() + ", connections: " + connections
+          + ", failed: " + failed);
+      System.out.println("Time to all identified: " + elapsedMs + " ms ("
+          + (connections * 1000L / Math.max(1, elapsedMs)) + " connections/s)");
+    } finally {
+      for (MockGreenhouseNode node : nodes) {
+        node.close();
+      }
+      server.stopServer();
+    }
+    System.exit(0);
+  }
+
+  /**
+   * Connects a mock node as soon as the start signal is given, identifies it, and
+   * waits for the identification response.
+   *
+   * @param start  the start signal
+   * @param port   the server port
+   * @param nodeId the id of the node
+   * @return the identified node
+   * @throws IOException          if the node could not connect or was not identified
+   * @throws InterruptedException if interrupted while waiting for the start signal
+   */
+  private static MockGreenhouseNode connectAndIdentify(CountDownLatch start, int port,
+                                                       String nodeId)
+      throws IOException, InterruptedException {
+    start.await();
+    MockGreenhouseNode node = new MockGreenhouseNode(ServerConfig.getHost(), port);
+    node.sendCommand(IDENTIFICATION + nodeId);
+    String response = node.receiveResponse();
+    if (response == null || !response.contains("SUCCESS")) {
+      node.close();
+      throw new IOException("Node " + nodeId + " was not identified: " + response);
+    }
+    return node;
+  }
+}
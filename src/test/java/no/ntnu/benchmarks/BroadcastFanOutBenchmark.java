@@ -0,0 +1,120 @@
+package no.ntnu.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import no.ntnu.intermediaryserver.server.BroadcastStatistics;
+import no.ntnu.intermediaryserver.server.IntermediaryServer;
+import no.ntnu.intermediaryserver.server.ServerConfig;
+import no.ntnu.intermediaryserver.server.ServerMode;
+import no.ntnu.mockclients.MockControlPanel;
+import no.ntnu.mockclients.MockGreenhouseNode;
+import no.ntnu.tools.threading.ThreadMode;
+
+/**
+ * Measures how fast the intermediary server fans broadcasts from a greenhouse
+ * node out to many control panels.
+ *
+ * <p>Run with {@code <panels> <broadcasts> [blocking|virtual|nio]}, defaults are
+ * 200 panels, 500 broadcasts and blocking. Reports the time until every panel has
+ * received every broadcast, and the server's fan-out latency per broadcast.
+ */
+public class BroadcastFanOutBenchmark {
+
+  private static final String PANEL_IDENTIFICATION =
+      "SERVER;0; -CLIENT_IDENTIFICATION,CONTROL_PANEL,";
+  private static final String NODE_IDENTIFICATION = "SERVER;0; -CLIENT_IDENTIFICATION,GREENHOUSE,1";
+  private static final String BROADCAST = "CONTROL_PANEL;BROADCAST; -SUCCESS,GET_SENSOR_DATA,"
+      + "1;NUMERIC:temperature,21.5,°C¤NUMERIC:humidity,40.0,%¤NUMERIC:light,540.0,lux";
+  private static final long SERVER_START_WAIT_MS = 500;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the number of panels, the number of broadcasts, and the server mode
+   * @throws Exception if the benchmark could not be run
+   */
+  public static void main(String[] args) throws Exception {
+    int panelCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int broadcasts = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+    ServerMode mode = args.length > 2 ? ServerMode.fromString(args[2]) : ServerMode.BLOCKING;
+    if (mode == null) {
+      throw new IllegalArgumentException("Unknown server mode: " + args[2]);
+    }
+
+    IntermediaryServer server = new IntermediaryServer(mode);
+    new Thread(server).start();
+    Thread.sleep(SERVER_START_WAIT_MS);
+    int port = ServerConfig.getPortNumber();
+
+    List<MockControlPanel> panels = new ArrayList<>();
+    MockGreenhouseNode node = null;
+    CountDownLatch delivered = new CountDownLatch(panelCount * broadcasts);
+    try {
+      for (int i = 0; i < panelCount; i++) {
+        panels.add(connectPanel(port, "panel" + i, broadcasts, delivered));
+      }
+      node = new MockGreenhouseNode(ServerConfig.getHost(), port);
+      node.sendCommand(NODE_IDENTIFICATION);
+      node.receiveResponse();
+
+      long startTime = System.nanoTime();
+      for (int i = 0; i < broadcasts; i++) {
+        node.sendCommand(BROADCAST);
+      }
+      boolean complete = delivered.await(60, TimeUnit.SECONDS);
+      long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+      BroadcastStatistics statistics = server.getBroadcastStatistics();
+      System.out.println("Mode: " + mode.getValue() + ", panels: " + panelCount
+          + ", broadcasts: " + broadcasts + ", complete: " + complete);
+      System.out.println("Time to all delivered: " + elapsedMs + " ms ("
+          + ((long) panelCount * broadcasts * 1000L / Math.max(1, elapsedMs)) + " messages/s)");
+      System.out.println("Fan-out latency: average "
+          + TimeUnit.NANOSECONDS.toMicros(statistics.getAverageFanOutNanos()) + " us, max "
+          + TimeUnit.NANOSECONDS.toMicros(statistics.getMaxFanOutNanos()) + " us");
+    } finally {
+      if (node != null) {
+        node.close();
+      }
+      for (MockControlPanel panel : panels) {
+        panel.close();
+      }
+      server.stopServer();
+    }
+    System.exit(0);
+  }
+
+  /**
+   * Connects and identifies a mock control panel, and starts counting the
+   * broadcasts it receives.
+   *
+   * @param port       the server port
+   * @param panelId    the id of the panel
+   * @param broadcasts the number of broadcasts to count
+   * @param delivered  counted down for every received broadcast
+   * @return the connected panel
+   * @throws IOException if the panel could not connect or was not identified
+   */
+  private static MockControlPanel connectPanel(int port, String panelId, int broadcasts,
+                                               CountDownLatch delivered) throws IOException {
+    MockControlPanel panel = new MockControlPanel(ServerConfig.getHost(), port);
+    panel.sendCommand(PANEL_IDENTIFICATION + panelId);
+    String response = panel.receiveResponse();
+    if (response == null || !response.contains("SUCCESS")) {
+      throw new IOException("Panel " + panelId + " was not identified: " + response);
+    }
+    ThreadMode.VIRTUAL.start("panel-reader", true, () -> {
+      try {
+        for (int i = 0; i < broadcasts && panel.receiveResponse() != null; i++) {
+          delivered.countDown();
+        }
+      } catch (IOException e) {
+        // The panel was closed
+      }
+    });
+    return panel;
+  }
+}
@@ -0,0 +1,128 @@
+package no.ntnu.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.intermediaryserver.server.ClientRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares looking up clients in the {@link ClientRegistry} with the string-keyed
+ * map the server used before, with 10 000 registered clients: 9 000 greenhouse
+ * nodes and 1 000 control panels.
+ *
+ * <p>Run with {@code main}, or through the JMH runner with
+ * {@code ClientRegistryBenchmark} as the include pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientRegistryBenchmark {
+
+  private static final int NODES = 9000;
+  private static final int PANELS = 1000;
+
+  private final ConcurrentHashMap<String, Object> legacy = new ConcurrentHashMap<>();
+  private final ClientRegistry<Object> registry = new ClientRegistry<>();
+
+  /**
+   * Registers the clients in both structures.
+   */
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < NODES; i++) {
+      this.register(Endpoints.GREENHOUSE, Integer.toString(i));
+    }
+    for (int i = 0; i < PANELS; i++) {
+      this.register(Endpoints.CONTROL_PANEL, Integer.toString(i));
+    }
+  }
+
+  private void register(Endpoints clientType, String clientId) {
+    Object client = new Object();
+    this.legacy.put(clientType + clientId, client);
+    this.registry.put(clientType, clientId, client);
+  }
+
+  /**
+   * Finds the control panels by scanning every key for the type prefix.
+   *
+   * @param blackhole consumes the clients
+   */
+  @Benchmark
+  public void legacyBroadcastScan(Blackhole blackhole) {
+    List<Object> clients = new ArrayList<>();
+    this.legacy.forEach((key, value) -> {
+      if (key.startsWith(Endpoints.CONTROL_PANEL.getValue())) {
+        clients.add(value);
+      }
+    });
+    for (Object client : clients) {
+      blackhole.consume(client);
+    }
+  }
+
+  /**
+   * Iterates the control panel snapshot of the registry.
+   *
+   * @param blackhole consumes the clients
+   */
+  @Benchmark
+  public void registryBroadcastSnapshot(Blackhole blackhole) {
+    for (Object client : this.registry.getAll(Endpoints.CONTROL_PANEL)) {
+      blackhole.consume(client);
+    }
+  }
+
+  /**
+   * Looks up a single node by its concatenated key.
+   *
+   * @return the node
+   */
+  @Benchmark
+  public Object legacyLookup() {
+    return this.legacy.get(Endpoints.GREENHOUSE + "4500");
+  }
+
+  /**
+   * Looks up a single node by type and ID.
+   *
+   * @return the node
+   */
+  @Benchmark
+  public Object registryLookup() {
+    return this.registry.get(Endpoints.GREENHOUSE, "4500");
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args not used
+   * @throws RunnerException if the benchmark could not be run
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(ClientRegistryBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,132 @@
+package no.ntnu.benchmarks;
+
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageParser;
+import no.ntnu.messages.framing.FrameCodec;
+import no.ntnu.messages.framing.WireProtocol;
+import no.ntnu.tools.encryption.KeyGenerator;
+import no.ntnu.tools.encryption.MessageEncryptor;
+import no.ntnu.tools.encryption.SessionEncryptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how many GET_SENSOR_DATA responses per second can be encrypted and
+ * decrypted, with a new RSA wrapped AES key per message and with the session key
+ * of a connection. Also compares encrypting a message with an image sized
+ * payload as a string with encrypting its binary frame.
+ *
+ * <p>Run with {@code main}, or through the JMH runner with
+ * {@code EncryptionBenchmark} as the include pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptionBenchmark {
+
+  private Message message;
+  private KeyPair keyPair;
+  private SessionEncryptor sender;
+  private SessionEncryptor receiver;
+  private Message imageMessage;
+  private byte[] imageFrame;
+
+  /**
+   * Creates the message, the RSA keys, and a session shared by two ends.
+   *
+   * @throws Exception if the keys could not be generated
+   */
+  @Setup
+  public void setUp() throws Exception {
+    this.message = MessageParser.parseMessage("CONTROL_PANEL;/127.0.0.1:50123; -SUCCESS,"
+        + "GET_SENSOR_DATA,1;NUMERIC:temperature,21.5,°C¤NUMERIC:humidity,40.0,%¤"
+        + "NUMERIC:temperature,22.1,°C¤NUMERIC:humidity,38.5,%¤NUMERIC:light,540.0,lux");
+    this.keyPair = KeyGenerator.generateRSAKeyPair();
+    this.sender = SessionEncryptor.generate();
+    this.receiver = SessionEncryptor.fromWrappedKey(this.sender.wrapKey(this.keyPair.getPublic()),
+        this.keyPair.getPrivate());
+
+    byte[] image = new byte[96 * 1024];
+    new Random(1).nextBytes(image);
+    this.imageMessage = MessageParser.parseMessage("CONTROL_PANEL;/127.0.0.1:50123; -SUCCESS,"
+        + "GET_SENSOR_DATA,1;IMG:camera," + Base64.getEncoder().encodeToString(image) + ",jpg");
+    this.imageFrame = FrameCodec.encode(this.imageMessage, WireProtocol.BINARY);
+  }
+
+  /**
+   * Encrypts and decrypts the message with a new AES key, wrapped with RSA.
+   *
+   * @return the decrypted message
+   * @throws Exception if the message could not be decrypted
+   */
+  @Benchmark
+  public String perMessageKey() throws Exception {
+    String encrypted = MessageEncryptor.encryptMessage(this.message, this.keyPair.getPublic());
+    return MessageEncryptor.decryptStringMessage(encrypted, this.keyPair.getPrivate());
+  }
+
+  /**
+   * Encrypts and decrypts the message with the session key.
+   *
+   * @return the decrypted message
+   * @throws Exception if the message could not be decrypted
+   */
+  @Benchmark
+  public String sessionKey() throws Exception {
+    String encrypted = MessageEncryptor.encryptMessage(this.message, this.sender);
+    return MessageEncryptor.decryptStringMessage(encrypted, this.receiver);
+  }
+
+  /**
+   * Encrypts the image message as a string, with the session key.
+   *
+   * @return the encrypted message
+   * @throws Exception if the message could not be encrypted
+   */
+  @Benchmark
+  public String imageAsString() throws Exception {
+    return this.sender.encrypt(this.imageMessage.toString());
+  }
+
+  /**
+   * Encrypts the binary frame of the image message, with the session key.
+   *
+   * @return the encrypted frame
+   */
+  @Benchmark
+  public byte[] imageAsFrame() {
+    return FrameCodec.encrypt(this.imageFrame, this.sender);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args not used
+   * @throws RunnerException if the benchmark could not be run
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(EncryptionBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
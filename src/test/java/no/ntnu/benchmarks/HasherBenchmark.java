@@ -0,0 +1,141 @@
+package no.ntnu.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import no.ntnu.tools.encryption.Hasher;
+import no.ntnu.tools.encryption.MessageHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares hashing with a new {@link MessageDigest} and a per-byte hex string
+ * builder, as {@link Hasher} used to, with the thread-local digest and lookup
+ * table of {@link Hasher}, on a message body and on a Base64 encoded image.
+ *
+ * <p>Run with {@code main}, or through the JMH runner with
+ * {@code HasherBenchmark} as the include pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HasherBenchmark {
+
+  private final String body = "ACTUATOR_CHANGE,1,2,ON";
+  private final byte[] encodedBody = this.body.getBytes(StandardCharsets.UTF_8);
+  private String image;
+
+  /**
+   * Creates the Base64 encoded image.
+   */
+  @Setup
+  public void setUp() {
+    byte[] bytes = new byte[48 * 1024];
+    new Random(1).nextBytes(bytes);
+    this.image = Base64.getEncoder().encodeToString(bytes);
+  }
+
+  /**
+   * Hashes the body the way {@link Hasher} used to.
+   *
+   * @return the hash
+   * @throws NoSuchAlgorithmException if SHA-256 is not supported
+   */
+  @Benchmark
+  public String bodyLegacy() throws NoSuchAlgorithmException {
+    return legacyHash(this.body);
+  }
+
+  /**
+   * Hashes the body with {@link Hasher#encryptString(String)}.
+   *
+   * @return the hash
+   */
+  @Benchmark
+  public String bodyHasher() {
+    return Hasher.encryptString(this.body);
+  }
+
+  /**
+   * Hashes the already encoded body with {@link MessageHasher}.
+   *
+   * @return the hash
+   */
+  @Benchmark
+  public String bodyEncoded() {
+    return MessageHasher.hashBody(this.encodedBody, 0, this.encodedBody.length);
+  }
+
+  /**
+   * Hashes the image the way {@link Hasher} used to.
+   *
+   * @return the hash
+   * @throws NoSuchAlgorithmException if SHA-256 is not supported
+   */
+  @Benchmark
+  public String imageLegacy() throws NoSuchAlgorithmException {
+    return legacyHash(this.image);
+  }
+
+  /**
+   * Hashes the image with {@link Hasher#encryptString(String)}.
+   *
+   * @return the hash
+   */
+  @Benchmark
+  public String imageHasher() {
+    return Hasher.encryptString(this.image);
+  }
+
+  /**
+   * Hashes a string with a new digest and a per-byte hex string builder.
+   *
+   * @param message the string to hash
+   * @return the hash
+   * @throws NoSuchAlgorithmException if SHA-256 is not supported
+   */
+  private static String legacyHash(String message) throws NoSuchAlgorithmException {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    byte[] hashBytes = digest.digest(message.getBytes());
+    StringBuilder hexString = new StringBuilder();
+    for (byte b : hashBytes) {
+      String hex = Integer.toHexString(0xff & b);
+      if (hex.length() == 1) {
+        hexString.append('0');
+      }
+      hexString.append(hex);
+    }
+    return hexString.toString();
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args not used
+   * @throws RunnerException if the benchmark could not be run
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(HasherBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,149 @@
+package no.ntnu.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.greenhouse.DeviceBuilder;
+import no.ntnu.greenhouse.NodeLogic;
+import no.ntnu.greenhouse.SensorActuatorNode;
+import no.ntnu.greenhouse.sensor.ImageSensorReading;
+import no.ntnu.greenhouse.sensor.Sensor;
+import no.ntnu.greenhouse.sensor.SensorReading;
+import no.ntnu.messages.Delimiters;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
+import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.tools.stringification.Base64ImageEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures answering GET_SENSOR_DATA for a node like node 3 of the simulator,
+ * with two image sensors, while the images do not change. Compares re-encoding
+ * every image on each request, as before, with reusing the cached encoding,
+ * both with the images inline and with the blob references nodes now send.
+ *
+ * <p>The images are loaded from the resources folder, so run from the project
+ * root, with {@code main} or through the JMH runner with
+ * {@code ImageSensorDataBenchmark} as the include pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageSensorDataBenchmark {
+
+  private final MessageHeader header =
+      new MessageHeader(Endpoints.CONTROL_PANEL, Endpoints.BROADCAST.getValue());
+  private final GetSensorDataCommand command = new GetSensorDataCommand();
+  private SensorActuatorNode node;
+  private NodeLogic nodeLogic;
+
+  /**
+   * Builds the node.
+   */
+  @Setup
+  public void setUp() {
+    this.node = new DeviceBuilder().addTemperatureSensor(2)
+        .addLightSensor(2)
+        .addLightActuator(1)
+        .addImageSensor(2)
+        .addLightSensor(1)
+        .build();
+    this.nodeLogic = new NodeLogic(this.node);
+    for (Sensor sensor : this.node.getSensors()) {
+      if (sensor.getReading() instanceof ImageSensorReading image && image.getImage() == null) {
+        throw new IllegalStateException("No images found, run from the project root");
+      }
+    }
+  }
+
+  /**
+   * Formats the sensor data with every image encoded again, as before the
+   * encoding was cached.
+   *
+   * @return the response
+   * @throws IOException if an image could not be encoded
+   */
+  @Benchmark
+  public Message legacyInline() throws IOException {
+    StringBuilder sensorData = new StringBuilder();
+    sensorData.append(this.node.getId()).append(Delimiters.BODY_FIELD.getValue());
+    for (Sensor sensor : this.node.getSensors()) {
+      SensorReading reading = sensor.getReading();
+      String formatted;
+      if (reading instanceof ImageSensorReading image) {
+        formatted = image.getType().getType() + Delimiters.BODY_FIELD_PARAMETERS.getValue()
+            + Base64ImageEncoder.imageToString(image.getImage(), image.getFileExtension())
+            + Delimiters.BODY_FIELD_PARAMETERS.getValue() + image.getFileExtension();
+      } else {
+        formatted = reading.getFormatted();
+      }
+      sensorData.append(sensor.getDataFormat()).append(':').append(formatted)
+          .append(Delimiters.BODY_SENSOR_SEPARATOR.getValue());
+    }
+    sensorData.setLength(sensorData.length() - 1);
+    return this.respond(sensorData.toString());
+  }
+
+  /**
+   * Formats the sensor data with the images inline, reusing the cached encoding.
+   *
+   * @return the response
+   */
+  @Benchmark
+  public Message cachedInline() {
+    StringBuilder sensorData = new StringBuilder();
+    sensorData.append(this.node.getId()).append(Delimiters.BODY_FIELD.getValue());
+    for (Sensor sensor : this.node.getSensors()) {
+      sensorData.append(sensor.getDataFormat()).append(':')
+          .append(sensor.getReading().getFormatted())
+          .append(Delimiters.BODY_SENSOR_SEPARATOR.getValue());
+    }
+    sensorData.setLength(sensorData.length() - 1);
+    return this.respond(sensorData.toString());
+  }
+
+  /**
+   * Executes the command as the node does, with the images sent by reference.
+   *
+   * @return the response
+   */
+  @Benchmark
+  public Message cachedReferences() {
+    return this.command.execute(this.nodeLogic, this.header);
+  }
+
+  private Message respond(String sensorData) {
+    return new Message(this.header, new MessageBody(new SuccessResponse(this.command, sensorData)));
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args not used
+   * @throws RunnerException if the benchmark could not be run
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(ImageSensorDataBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
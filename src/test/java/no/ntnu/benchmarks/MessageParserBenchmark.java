@@ -0,0 +1,72 @@
+package no.ntnu.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the regex-based {@link Message#fromString(String)} with the
+ * single-pass {@link MessageParser} on a GET_SENSOR_DATA response, the most
+ * frequent message a control panel receives.
+ *
+ * <p>Run with {@code main}, or through the JMH runner with
+ * {@code MessageParserBenchmark} as the include pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageParserBenchmark {
+
+  private final String sensorDataResponse = "CONTROL_PANEL;/127.0.0.1:50123; -SUCCESS,"
+      + "GET_SENSOR_DATA,1;NUMERIC:temperature,21.5,°C¤NUMERIC:humidity,40.0,%¤"
+      + "NUMERIC:temperature,22.1,°C¤NUMERIC:humidity,38.5,%¤NUMERIC:light,540.0,lux";
+
+  /**
+   * Parses the response with the legacy split-based parser.
+   *
+   * @return the parsed message
+   */
+  @Benchmark
+  public Message fromString() {
+    return Message.fromString(this.sensorDataResponse);
+  }
+
+  /**
+   * Parses the response with the single-pass parser.
+   *
+   * @return the parsed message
+   */
+  @Benchmark
+  public Message messageParser() {
+    return MessageParser.parseMessage(this.sensorDataResponse);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args not used
+   * @throws RunnerException if the benchmark could not be run
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(MessageParserBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
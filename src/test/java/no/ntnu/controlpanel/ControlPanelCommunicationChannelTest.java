@@ -0,0 +1,79 @@
+package no.ntnu.controlpanel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.Transmission;
+import no.ntnu.messages.commands.common.ClientIdentificationTransmission;
+import no.ntnu.messages.commands.common.SubscribeTransmission;
+import no.ntnu.messages.framing.FrameCodec;
+import no.ntnu.messages.framing.FrameReader;
+import no.ntnu.messages.framing.WireProtocol;
+import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.messages.subscriptions.Topic;
+import no.ntnu.messages.subscriptions.TopicType;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ControlPanelCommunicationChannel}, against a server socket
+ * standing in for the intermediary server.
+ */
+public class ControlPanelCommunicationChannelTest {
+
+  private static Transmission readTransmission(FrameReader reader) throws IOException {
+    return FrameCodec.decode(reader.readFrame()).getBody().getTransmission();
+  }
+
+  /**
+   * Reads the identification and answers it like the server, agreeing on
+   * binary frames and checksums.
+   */
+  private static void answerIdentification(Socket socket, FrameReader reader)
+      throws IOException {
+    Transmission identification = readTransmission(reader);
+    assertInstanceOf(ClientIdentificationTransmission.class, identification);
+    Message response = new Message(
+        new MessageHeader(Endpoints.SERVER, Endpoints.NONE.getValue()),
+        new MessageBody(new SuccessResponse(identification, "BINARY,CRC32C")));
+    socket.getOutputStream().write(FrameCodec.encode(response, WireProtocol.BINARY));
+  }
+
+  @Test
+  public void testIdentifiesAndResubscribesAfterReconnecting() throws IOException {
+    try (ServerSocket server = new ServerSocket(0)) {
+      server.setSoTimeout(10000);
+      ControlPanelCommunicationChannel channel = new ControlPanelCommunicationChannel(
+          new ControlPanelLogic(), "localhost", server.getLocalPort());
+      try {
+        try (Socket first = server.accept()) {
+          first.setSoTimeout(10000);
+          FrameReader reader = new FrameReader(first.getInputStream());
+          answerIdentification(first, reader);
+          channel.subscribe(Topic.all(TopicType.NODE));
+          assertInstanceOf(SubscribeTransmission.class, readTransmission(reader));
+        }
+
+        // The server dropped the connection, so the channel connects again
+        try (Socket second = server.accept()) {
+          second.setSoTimeout(10000);
+          FrameReader reader = new FrameReader(second.getInputStream());
+          answerIdentification(second, reader);
+          Transmission resubscription = readTransmission(reader);
+          assertInstanceOf(SubscribeTransmission.class, resubscription);
+          assertEquals(List.of(Topic.all(TopicType.NODE)),
+              ((SubscribeTransmission) resubscription).getTopics());
+        }
+      } finally {
+        channel.setAutoReconnect(false);
+        channel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package no.ntnu.controlpanel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.ServerSocket;
+import java.util.Base64;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.commands.greenhouse.GetBlobCommand;
+import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.tools.caching.BlobChunk;
+import no.ntnu.tools.caching.BlobReferences;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ControlPanelResponseHandler}.
+ */
+public class ControlPanelResponseHandlerTest {
+
+  private static void receiveChunk(ControlPanelResponseHandler handler, String hash,
+                                   byte[] blob, int index) {
+    BlobChunk chunk = BlobChunk.of(hash, blob, index);
+    handler.handleResponse(Endpoints.GREENHOUSE, new MessageBody(
+        new SuccessResponse(new GetBlobCommand(hash, index), chunk.toString())));
+  }
+
+  @Test
+  public void testRequestsLostChunkAgain() throws Exception {
+    try (ServerSocket server = new ServerSocket(0)) {
+      TestChannel channel = new TestChannel(server.getLocalPort());
+      try {
+        ControlPanelResponseHandler handler =
+            new ControlPanelResponseHandler(channel, new ControlPanelLogic());
+        byte[] blob = new byte[2 * BlobChunk.CHUNK_SIZE + 10];
+        blob[blob.length - 1] = 1;
+        String hash = BlobReferences.hashOf(Base64.getEncoder().encodeToString(blob));
+
+        CompletableFuture<byte[]> future = handler.fetchBlob("1", hash);
+        assertEquals(0, channel.requested.poll(10, TimeUnit.SECONDS));
+        receiveChunk(handler, hash, blob, 0);
+        assertEquals(1, channel.requested.poll(10, TimeUnit.SECONDS));
+        assertEquals(2, channel.requested.poll(10, TimeUnit.SECONDS));
+
+        // Chunk 1 was lost, so chunk 2 arrives first
+        receiveChunk(handler, hash, blob, 2);
+        assertEquals(1, channel.requested.poll(10, TimeUnit.SECONDS));
+        assertEquals(2, channel.requested.poll(10, TimeUnit.SECONDS));
+        receiveChunk(handler, hash, blob, 1);
+        receiveChunk(handler, hash, blob, 2);
+        assertArrayEquals(blob, future.get(10, TimeUnit.SECONDS));
+        assertTrue(channel.requested.isEmpty());
+      } finally {
+        channel.setAutoReconnect(false);
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * A control panel channel keeping the chunks it is asked to request.
+   */
+  private static class TestChannel extends ControlPanelCommunicationChannel {
+    private final BlockingQueue<Integer> requested = new LinkedBlockingQueue<>();
+
+    TestChannel(int port) {
+      super(new ControlPanelLogic(), "localhost", port);
+    }
+
+    @Override
+    public void askForBlob(String nodeId, String hash, int chunkIndex) {
+      this.requested.add(chunkIndex);
+    }
+  }
+}
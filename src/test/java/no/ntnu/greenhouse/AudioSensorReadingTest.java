@@ -0,0 +1,52 @@
+package no.ntnu.greenhouse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import no.ntnu.greenhouse.sensor.AudioSensorReading;
+import no.ntnu.greenhouse.sensor.SensorType;
+import no.ntnu.tools.caching.BlobReferences;
+import no.ntnu.tools.caching.SpillCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AudioSensorReadingTest {
+
+  private static final byte[] AUDIO = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+  @TempDir
+  Path directory;
+
+  @AfterEach
+  public void tearDown() {
+    AudioSensorReading.setSpillCache(null);
+  }
+
+  @Test
+  public void testKeepsBase64AudioInMemory() {
+    String base64 = Base64.getEncoder().encodeToString(AUDIO);
+    AudioSensorReading reading = AudioSensorReading.fromBase64(SensorType.AUDIO, base64);
+
+    assertTrue(reading.hasAudio());
+    assertNull(reading.getAudioFile());
+    assertArrayEquals(AUDIO, reading.getAudioBytes());
+    assertEquals(base64, reading.getPayload());
+    assertEquals(BlobReferences.hashOf(base64), reading.getPayloadHash());
+  }
+
+  @Test
+  public void testSpillsAudioToFileWhenAskedFor() throws IOException {
+    AudioSensorReading.setSpillCache(new SpillCache(this.directory, ".wav", 100));
+    AudioSensorReading reading = new AudioSensorReading(SensorType.AUDIO, AUDIO, "hash");
+
+    File file = reading.getAudioFile();
+    assertNotNull(file);
+    assertEquals(this.directory, file.toPath().getParent());
+    assertArrayEquals(AUDIO, Files.readAllBytes(file.toPath()));
+  }
+}
@@ -0,0 +1,63 @@
+package no.ntnu.greenhouse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Base64;
+import no.ntnu.greenhouse.sensor.ImageSensorReading;
+import no.ntnu.greenhouse.sensor.SensorType;
+import no.ntnu.tools.caching.BlobReferences;
+import no.ntnu.tools.stringification.Base64ImageEncoder;
+import org.junit.jupiter.api.Test;
+
+public class ImageSensorReadingTest {
+
+  private static byte[] createPng(int width) throws IOException {
+    return Base64ImageEncoder.imageToBytes(new BufferedImage(width, 3, BufferedImage.TYPE_INT_RGB));
+  }
+
+  @Test
+  public void testDecodesCompressedImageOnFirstUse() throws IOException {
+    byte[] png = createPng(5);
+    String hash = BlobReferences.hashOf(Base64.getEncoder().encodeToString(png));
+    ImageSensorReading reading = new ImageSensorReading(SensorType.IMAGE, png, hash);
+
+    assertTrue(reading.hasImage());
+    assertNull(reading.getDecodedImage());
+    BufferedImage image = reading.getImage();
+    assertEquals(5, image.getWidth());
+
+    // Another reading of the same payload shares the decoded image
+    ImageSensorReading repeated = new ImageSensorReading(SensorType.IMAGE, png, hash);
+    assertSame(image, repeated.getDecodedImage());
+    assertArrayEquals(png, repeated.getPayloadBytes());
+  }
+
+  @Test
+  public void testKeepsBase64ImageUntilUsed() throws IOException {
+    byte[] png = createPng(7);
+    String base64 = Base64.getEncoder().encodeToString(png);
+    ImageSensorReading reading = ImageSensorReading.fromBase64(SensorType.IMAGE, base64);
+
+    assertEquals(base64, reading.getPayload());
+    assertEquals(BlobReferences.hashOf(base64), reading.getPayloadHash());
+    assertEquals(7, reading.getImage().getWidth());
+  }
+
+  @Test
+  public void testWideImagesHaveThumbnail() throws IOException {
+    ImageSensorReading wide = new ImageSensorReading(SensorType.IMAGE,
+        new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB));
+    BufferedImage thumbnail = Base64ImageEncoder.bytesToImage(wide.getPreviewBytes());
+    assertEquals(ImageSensorReading.PREVIEW_WIDTH, thumbnail.getWidth());
+    assertEquals(50, thumbnail.getHeight());
+    assertEquals(BlobReferences.hashOf(Base64.getEncoder().encodeToString(wide.getPreviewBytes())),
+        wide.getPreviewHash());
+
+    ImageSensorReading narrow = new ImageSensorReading(SensorType.IMAGE,
+        new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB));
+    assertNull(narrow.getPreviewBytes());
+    assertNull(narrow.getPreviewHash());
+  }
+}
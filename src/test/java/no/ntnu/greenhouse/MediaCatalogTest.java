@@ -0,0 +1,57 @@
+package no.ntnu.greenhouse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import no.ntnu.greenhouse.sensor.MediaCatalog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MediaCatalogTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testCatalogIsSharedAndFiltersExtensions() throws IOException {
+    Files.writeString(this.directory.resolve("a.wav"), "a");
+    Files.writeString(this.directory.resolve("notes.txt"), "b");
+
+    MediaCatalog catalog = MediaCatalog.forDirectory(this.directory.toString(), ".wav");
+    assertSame(catalog, MediaCatalog.forDirectory(this.directory.toString(), ".wav"));
+    List<MediaCatalog.MediaFile> files = catalog.getFiles();
+    assertEquals(1, files.size());
+    assertEquals("a.wav", files.get(0).getName());
+  }
+
+  @Test
+  public void testListsAgainOnlyWhenDirectoryChanges() throws IOException {
+    Files.writeString(this.directory.resolve("a.wav"), "a");
+    MediaCatalog catalog = MediaCatalog.forDirectory(this.directory.toString(), ".wav");
+    List<MediaCatalog.MediaFile> first = catalog.getFiles();
+    assertSame(first, catalog.getFiles());
+
+    Files.writeString(this.directory.resolve("b.wav"), "b");
+    File dir = this.directory.toFile();
+    dir.setLastModified(dir.lastModified() + 2000);
+    List<MediaCatalog.MediaFile> second = catalog.getFiles();
+    assertEquals(2, second.size());
+    // The unchanged file keeps what was loaded for it
+    assertTrue(second.contains(first.get(0)));
+  }
+
+  @Test
+  public void testEncodesFileOnce() throws IOException {
+    Files.writeString(this.directory.resolve("a.wav"), "audio");
+    MediaCatalog.MediaFile file =
+        MediaCatalog.forDirectory(this.directory.toString(), ".wav").pickRandom();
+    String encoded = file.getBase64();
+    assertEquals(Base64.getEncoder().encodeToString("audio".getBytes()), encoded);
+    assertSame(encoded, file.getBase64());
+  }
+}
@@ -0,0 +1,27 @@
+package no.ntnu.intermediaryserver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import no.ntnu.intermediaryserver.server.AcceptBackoff;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link AcceptBackoff}.
+ */
+public class AcceptBackoffTest {
+
+  @Test
+  public void testDoublesUntilReset() {
+    AcceptBackoff backoff = new AcceptBackoff();
+    assertEquals(10, backoff.getDelayMs());
+
+    long start = System.nanoTime();
+    backoff.pause();
+    backoff.pause();
+    assertTrue(System.nanoTime() - start >= 30_000_000L);
+    assertEquals(40, backoff.getDelayMs());
+
+    backoff.reset();
+    assertEquals(10, backoff.getDelayMs());
+  }
+}
@@ -0,0 +1,51 @@
+package no.ntnu.intermediaryserver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.intermediaryserver.server.ClientRegistry;
+import org.junit.jupiter.api.Test;
+
+public class ClientRegistryTest {
+
+  @Test
+  public void testLookupByTypeAndId() {
+    ClientRegistry<String> registry = new ClientRegistry<>();
+    registry.put(Endpoints.GREENHOUSE, "1", "node 1");
+    registry.put(Endpoints.CONTROL_PANEL, "1", "panel 1");
+
+    assertEquals("node 1", registry.get(Endpoints.GREENHOUSE, "1"));
+    assertEquals("panel 1", registry.get(Endpoints.CONTROL_PANEL, "1"));
+    assertNull(registry.get(Endpoints.GREENHOUSE, "2"));
+    assertEquals(List.of("node 1"), registry.getAll(Endpoints.GREENHOUSE));
+    assertTrue(registry.getAll(Endpoints.SERVER).isEmpty());
+  }
+
+  @Test
+  public void testSnapshotIsImmutableAndReused() {
+    ClientRegistry<String> registry = new ClientRegistry<>();
+    registry.put(Endpoints.CONTROL_PANEL, "1", "panel 1");
+
+    List<String> first = registry.getAll(Endpoints.CONTROL_PANEL);
+    assertSame(first, registry.getAll(Endpoints.CONTROL_PANEL));
+    assertThrows(UnsupportedOperationException.class, () -> first.add("panel 2"));
+
+    registry.put(Endpoints.CONTROL_PANEL, "2", "panel 2");
+    assertEquals(1, first.size());
+    assertEquals(2, registry.getAll(Endpoints.CONTROL_PANEL).size());
+  }
+
+  @Test
+  public void testConditionalRemove() {
+    ClientRegistry<String> registry = new ClientRegistry<>();
+    registry.put(Endpoints.GREENHOUSE, "1", "old");
+    registry.put(Endpoints.GREENHOUSE, "1", "new");
+
+    assertFalse(registry.remove(Endpoints.GREENHOUSE, "1", "old"));
+    assertEquals(List.of("new"), registry.getAll(Endpoints.GREENHOUSE));
+    assertTrue(registry.remove(Endpoints.GREENHOUSE, "1", "new"));
+    assertEquals(0, registry.size(Endpoints.GREENHOUSE));
+    assertTrue(registry.getAll(Endpoints.GREENHOUSE).isEmpty());
+  }
+}
@@ -0,0 +1,80 @@
+package no.ntnu.intermediaryserver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import no.ntnu.intermediaryserver.server.SensorSnapshotHistory;
+import no.ntnu.messages.subscriptions.SensorDataDelta;
+import org.junit.jupiter.api.Test;
+
+public class SensorSnapshotHistoryTest {
+
+  private static final String TEMPERATURE_20 = "NUM:temperature,20.0,°C";
+  private static final String TEMPERATURE_21 = "NUM:temperature,21.0,°C";
+  private static final String HUMIDITY_50 = "NUM:humidity,50.0,%";
+  private static final String HUMIDITY_55 = "NUM:humidity,55.0,%";
+
+  private static String sensorData(String... readings) {
+    return "1;" + String.join("¤", readings);
+  }
+
+  @Test
+  public void testDeltaOnlyContainsChangedReadings() {
+    SensorSnapshotHistory history = new SensorSnapshotHistory("1");
+    SensorSnapshotHistory.Snapshot first = history.record(sensorData(TEMPERATURE_20, HUMIDITY_50));
+    SensorSnapshotHistory.Snapshot second = history.record(sensorData(TEMPERATURE_21, HUMIDITY_50));
+
+    SensorDataDelta keyframe = history.createDelta(first, 0);
+    assertTrue(keyframe.isKeyframe());
+    assertEquals(Map.of(0, TEMPERATURE_20, 1, HUMIDITY_50), keyframe.getReadings());
+
+    SensorDataDelta delta = history.createDelta(second, first.getSequence());
+    assertFalse(delta.isKeyframe());
+    assertEquals(Map.of(0, TEMPERATURE_21), delta.getReadings());
+    assertEquals(2, delta.getReadingCount());
+
+    SensorSnapshotHistory.Snapshot third = history.record(sensorData(TEMPERATURE_21, HUMIDITY_50));
+    assertTrue(history.createDelta(third, second.getSequence()).isEmpty());
+  }
+
+  @Test
+  public void testDeltaIncludesReadingsChangedBackSinceBase() {
+    SensorSnapshotHistory history = new SensorSnapshotHistory("1");
+    SensorSnapshotHistory.Snapshot base = history.record(sensorData(TEMPERATURE_20, HUMIDITY_50));
+    history.record(sensorData(TEMPERATURE_20, HUMIDITY_55));
+    SensorSnapshotHistory.Snapshot latest = history.record(sensorData(TEMPERATURE_20, HUMIDITY_50));
+
+    // A panel may already have applied the middle snapshot
+    SensorDataDelta delta = history.createDelta(latest, base.getSequence());
+    assertEquals(Map.of(1, HUMIDITY_50), delta.getReadings());
+  }
+
+  @Test
+  public void testKeyframeWhenBaseIsUnknownOrDue() {
+    SensorSnapshotHistory history = new SensorSnapshotHistory("1");
+    SensorSnapshotHistory.Snapshot snapshot = null;
+    for (int i = 0; i < SensorSnapshotHistory.KEYFRAME_INTERVAL; i++) {
+      snapshot = history.record(sensorData(TEMPERATURE_20));
+    }
+    assertTrue(history.createDelta(snapshot, snapshot.getSequence() - 1).isKeyframe());
+
+    for (int i = 0; i < SensorSnapshotHistory.HISTORY_SIZE; i++) {
+      snapshot = history.record(sensorData(TEMPERATURE_20));
+    }
+    assertFalse(history.createDelta(snapshot, snapshot.getSequence() - 1).isKeyframe());
+    assertTrue(history.createDelta(snapshot, 1).isKeyframe());
+  }
+
+  @Test
+  public void testDeltaRoundTrip() {
+    SensorDataDelta delta = new SensorDataDelta("1", 7, false, 3, Map.of(2, HUMIDITY_55));
+    SensorDataDelta parsed = SensorDataDelta.fromString(delta.toString());
+    assertEquals("1", parsed.getNodeId());
+    assertEquals(7, parsed.getSequence());
+    assertFalse(parsed.isKeyframe());
+    assertEquals(3, parsed.getReadingCount());
+    assertEquals(Map.of(2, HUMIDITY_55), parsed.getReadings());
+    assertThrows(IllegalArgumentException.class,
+        () -> new SensorDataDelta("1", 1, false, 1, Map.of(1, HUMIDITY_55)));
+  }
+}
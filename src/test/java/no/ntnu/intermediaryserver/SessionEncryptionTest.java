@@ -0,0 +1,351 @@
+package no.ntnu.intermediaryserver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import no.ntnu.SocketCommunicationChannel;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.intermediaryserver.clienthandler.ClientHandler;
+import no.ntnu.intermediaryserver.clienthandler.ClientIdentification;
+import no.ntnu.intermediaryserver.server.IntermediaryServer;
+import no.ntnu.intermediaryserver.server.ServerConfig;
+import no.ntnu.intermediaryserver.server.ServerMode;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.Transmission;
+import no.ntnu.messages.commands.common.ClientIdentificationTransmission;
+import no.ntnu.messages.commands.common.SubscribeTransmission;
+import no.ntnu.messages.commands.greenhouse.GetNodeIdCommand;
+import no.ntnu.messages.framing.Frame;
+import no.ntnu.messages.framing.FrameCodec;
+import no.ntnu.messages.framing.FrameReader;
+import no.ntnu.messages.framing.FrameType;
+import no.ntnu.messages.framing.WireProtocol;
+import no.ntnu.messages.responses.Response;
+import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.messages.subscriptions.Topic;
+import no.ntnu.messages.subscriptions.TopicType;
+import no.ntnu.tools.encryption.IntegrityMode;
+import no.ntnu.tools.encryption.MessageIntegrity;
+import no.ntnu.tools.encryption.PublicKeyHolder;
+import no.ntnu.tools.encryption.SessionEncryptor;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the session key exchanged while a client identifies itself, and the
+ * messages encrypted with it, over real sockets.
+ */
+public class SessionEncryptionTest {
+
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private static Message createMessage() {
+    return new Message(new MessageHeader(Endpoints.GREENHOUSE, "1"),
+        new MessageBody(new GetNodeIdCommand()));
+  }
+
+  private static Message toServer(Transmission transmission) {
+    return new Message(new MessageHeader(Endpoints.SERVER, Endpoints.NONE.getValue()),
+        new MessageBody(transmission));
+  }
+
+  /**
+   * Connects to a server that has just been started, once it is listening.
+   */
+  private static Socket connectToServer() throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    while (true) {
+      try {
+        return new Socket(ServerConfig.getHost(), ServerConfig.getPortNumber());
+      } catch (IOException e) {
+        if (System.nanoTime() > deadline) {
+          throw e;
+        }
+        Thread.sleep(50);
+      }
+    }
+  }
+
+  /**
+   * Waits for a get node ID command, skipping other messages such as the
+   * response to the identification.
+   */
+  private static Message awaitCommand(BlockingQueue<Message> messages)
+      throws InterruptedException {
+    Message message;
+    do {
+      message = messages.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } while (message != null
+        && !(message.getBody().getTransmission() instanceof GetNodeIdCommand));
+    return message;
+  }
+
+  @Test
+  public void testExchangesSessionKeyWhenIdentifying() throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      serverSocket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      TestChannel channel = new TestChannel(serverSocket.getLocalPort());
+      TestHandler handler = null;
+      try {
+        handler = new TestHandler(serverSocket.accept());
+        new Thread(handler).start();
+
+        channel.setSessionEncryption(true);
+        channel.setServerPublicKey(PublicKeyHolder.getPublicKey());
+        channel.establishConnectionWithServer(
+            new ClientIdentification(Endpoints.GREENHOUSE, "1"));
+        // Held until the server has answered, then encrypted with the offered key
+        channel.sendMessage(createMessage());
+        assertNotNull(awaitCommand(handler.messages));
+        assertNotNull(handler.getSessionEncryptor());
+
+        handler.sendMessage(createMessage());
+        assertNotNull(awaitCommand(channel.messages));
+        assertNotNull(channel.getSessionEncryptor());
+        assertEquals(0, handler.getIntegrityErrorCount());
+        assertEquals(0, channel.getIntegrityErrorCount());
+      } finally {
+        channel.setAutoReconnect(false);
+        channel.close();
+        if (handler != null) {
+          handler.close();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testAgreesOnHmacWithExchangedKey() throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      serverSocket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      TestChannel channel = new TestChannel(serverSocket.getLocalPort());
+      TestHandler handler = null;
+      try {
+        handler = new TestHandler(serverSocket.accept());
+        new Thread(handler).start();
+
+        channel.setPreferredIntegrityMode(IntegrityMode.HMAC_SHA256);
+        channel.setServerPublicKey(PublicKeyHolder.getPublicKey());
+        channel.establishConnectionWithServer(
+            new ClientIdentification(Endpoints.GREENHOUSE, "1"));
+        channel.sendMessage(createMessage());
+        assertNotNull(awaitCommand(handler.messages));
+        assertEquals(IntegrityMode.HMAC_SHA256, handler.getIntegrityMode());
+
+        handler.sendMessage(createMessage());
+        assertNotNull(awaitCommand(channel.messages));
+        assertEquals(IntegrityMode.HMAC_SHA256, channel.getIntegrityMode());
+        // The key only checks the messages, they are not encrypted
+        assertNull(channel.getSessionEncryptor());
+        assertNull(handler.getSessionEncryptor());
+        assertEquals(0, handler.getIntegrityErrorCount());
+      } finally {
+        channel.setAutoReconnect(false);
+        channel.close();
+        if (handler != null) {
+          handler.close();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testHoldsMessagesUntilServerAnswers() throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      serverSocket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      TestChannel channel = new TestChannel(serverSocket.getLocalPort());
+      try (Socket socket = serverSocket.accept()) {
+        socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        FrameReader reader = new FrameReader(socket.getInputStream());
+
+        channel.setPreferredIntegrityMode(IntegrityMode.HMAC_SHA256);
+        channel.setServerPublicKey(PublicKeyHolder.getPublicKey());
+        channel.establishConnectionWithServer(
+            new ClientIdentification(Endpoints.GREENHOUSE, "1"));
+        channel.sendMessage(createMessage());
+        ClientIdentificationTransmission identification = (ClientIdentificationTransmission)
+            FrameCodec.decode(reader.readFrame()).getBody().getTransmission();
+        assertEquals(IntegrityMode.HMAC_SHA256, identification.getIntegrityMode());
+        Thread.sleep(200);
+        assertEquals(0, socket.getInputStream().available());
+
+        // Falls back to a checksum, which the held message is then sent with
+        socket.getOutputStream().write(FrameCodec.encode(
+            toServer(new SuccessResponse(identification, "BINARY,CRC32C")),
+            WireProtocol.BINARY));
+        Frame frame = reader.readFrame();
+        assertTrue(FrameCodec.verify(frame, MessageIntegrity.CRC32C));
+        assertInstanceOf(GetNodeIdCommand.class,
+            FrameCodec.decode(frame).getBody().getTransmission());
+        assertEquals(IntegrityMode.CRC32C, channel.getIntegrityMode());
+      } finally {
+        channel.setAutoReconnect(false);
+        channel.close();
+      }
+    }
+  }
+
+  @Test
+  public void testFailsWhenServerDoesNotAgreeToEncrypt() throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      serverSocket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      TestChannel channel = new TestChannel(serverSocket.getLocalPort());
+      try (Socket socket = serverSocket.accept()) {
+        socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        FrameReader reader = new FrameReader(socket.getInputStream());
+
+        channel.setSessionEncryption(true);
+        channel.setServerPublicKey(PublicKeyHolder.getPublicKey());
+        channel.establishConnectionWithServer(
+            new ClientIdentification(Endpoints.GREENHOUSE, "1"));
+        ClientIdentificationTransmission identification = (ClientIdentificationTransmission)
+            FrameCodec.decode(reader.readFrame()).getBody().getTransmission();
+        assertTrue(identification.isEncrypted());
+
+        // Agrees on everything but the encryption
+        socket.getOutputStream().write(FrameCodec.encode(
+            toServer(new SuccessResponse(identification, "BINARY,CRC32C")),
+            WireProtocol.BINARY));
+        assertNull(reader.readFrame());
+        assertFalse(channel.isConnected());
+      } finally {
+        channel.setAutoReconnect(false);
+        channel.close();
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsTamperedBodyWithHmac() throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      serverSocket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      TestHandler handler = null;
+      try (Socket socket = new Socket("localhost", serverSocket.getLocalPort())) {
+        handler = new TestHandler(serverSocket.accept());
+        new Thread(handler).start();
+        socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        FrameReader reader = new FrameReader(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+
+        SessionEncryptor session = SessionEncryptor.generate();
+        ClientIdentificationTransmission identification =
+            new ClientIdentificationTransmission(Endpoints.GREENHOUSE, "1");
+        identification.setWireProtocol(WireProtocol.BINARY);
+        identification.setIntegrityMode(IntegrityMode.HMAC_SHA256);
+        identification.setSessionKey(session.wrapKey(PublicKeyHolder.getPublicKey()));
+        out.write(FrameCodec.encode(toServer(identification), WireProtocol.BINARY));
+        Response identified =
+            (Response) FrameCodec.decode(reader.readFrame()).getBody().getTransmission();
+        assertEquals("BINARY,HMAC_SHA256", identified.getResponseData());
+
+        MessageIntegrity integrity =
+            MessageIntegrity.hmac(session.deriveKey("integrity", "HmacSHA256"));
+        byte[] tampered = FrameCodec.encode(createMessage(), WireProtocol.BINARY, integrity);
+        // The body comes last in a binary frame
+        tampered[tampered.length - 1] ^= 1;
+        out.write(tampered);
+        out.write(FrameCodec.encode(createMessage(), WireProtocol.BINARY, integrity));
+
+        // Frames are handled in order, so the tampered one has been dropped by now
+        assertNotNull(awaitCommand(handler.messages));
+        assertEquals(1, handler.getIntegrityErrorCount());
+        assertTrue(handler.messages.isEmpty());
+      } finally {
+        if (handler != null) {
+          handler.close();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBlockingServerSendsEncryptedFrames() throws Exception {
+    this.assertServerSendsEncryptedFrames(ServerMode.BLOCKING);
+  }
+
+  @Test
+  public void testNioServerSendsEncryptedFrames() throws Exception {
+    this.assertServerSendsEncryptedFrames(ServerMode.NIO);
+  }
+
+  /**
+   * Identifies as a control panel asking for encryption, and checks that the
+   * server reads an encrypted subscription and answers it with an encrypted
+   * frame on the wire.
+   */
+  private void assertServerSendsEncryptedFrames(ServerMode serverMode) throws Exception {
+    IntermediaryServer server = new IntermediaryServer(serverMode);
+    new Thread(server).start();
+    try (Socket socket = connectToServer()) {
+      socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      FrameReader reader = new FrameReader(socket.getInputStream());
+      OutputStream out = socket.getOutputStream();
+
+      SessionEncryptor session = SessionEncryptor.generate();
+      ClientIdentificationTransmission identification =
+          new ClientIdentificationTransmission(Endpoints.CONTROL_PANEL, "encrypted");
+      identification.setWireProtocol(WireProtocol.BINARY);
+      identification.setIntegrityMode(IntegrityMode.CRC32C);
+      identification.setSessionKey(session.wrapKey(PublicKeyHolder.getPublicKey()));
+      identification.setEncrypted(true);
+      out.write(FrameCodec.encode(toServer(identification), WireProtocol.BINARY));
+      Response identified =
+          (Response) FrameCodec.decode(reader.readFrame()).getBody().getTransmission();
+      assertEquals("BINARY,CRC32C,ENCRYPTED", identified.getResponseData());
+
+      out.write(FrameCodec.encrypt(FrameCodec.encode(
+          toServer(new SubscribeTransmission(List.of(Topic.all(TopicType.NODE)))),
+          WireProtocol.BINARY, MessageIntegrity.CRC32C), session));
+      Frame frame = reader.readFrame();
+      assertEquals(FrameType.ENCRYPTED, frame.getType());
+      Frame decrypted = FrameCodec.decrypt(frame, session);
+      assertTrue(FrameCodec.verify(decrypted, MessageIntegrity.CRC32C));
+      Response subscribed =
+          (Response) FrameCodec.decode(decrypted).getBody().getTransmission();
+      assertInstanceOf(SuccessResponse.class, subscribed);
+      assertInstanceOf(SubscribeTransmission.class, subscribed.getTransmission());
+    } finally {
+      server.stopServer();
+    }
+  }
+
+  /**
+   * A client channel keeping the messages it receives.
+   */
+  private static class TestChannel extends SocketCommunicationChannel {
+    private final BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+
+    TestChannel(int port) {
+      super("localhost", port);
+    }
+
+    @Override
+    protected void handleSpecificMessage(Message message) {
+      this.messages.add(message);
+    }
+  }
+
+  /**
+   * A client handler keeping the messages it receives instead of routing them.
+   */
+  private static class TestHandler extends ClientHandler {
+    private final BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+
+    TestHandler(Socket socket) {
+      super(socket, new IntermediaryServer());
+    }
+
+    @Override
+    protected void handleSpecificMessage(Message message) {
+      this.messages.add(message);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package no.ntnu.intermediaryserver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import no.ntnu.intermediaryserver.clienthandler.StreamRateLimiter;
+import org.junit.jupiter.api.Test;
+
+public class StreamRateLimiterTest {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testDeliversEverythingByDefault() {
+    StreamRateLimiter limiter = new StreamRateLimiter();
+
+    assertTrue(limiter.tryAcquire("1", 0));
+    assertTrue(limiter.tryAcquire("1", 1));
+  }
+
+  @Test
+  public void testSkipsUpdatesWithinInterval() {
+    StreamRateLimiter limiter = new StreamRateLimiter();
+    limiter.setMinIntervalMs(1000);
+
+    assertTrue(limiter.tryAcquire("1", 0));
+    assertFalse(limiter.tryAcquire("1", 500 * MS));
+    assertTrue(limiter.tryAcquire("2", 500 * MS));
+    assertTrue(limiter.tryAcquire("1", 1000 * MS));
+    assertFalse(limiter.tryAcquire("1", 1999 * MS));
+  }
+
+  @Test
+  public void testRejectsNegativeInterval() {
+    StreamRateLimiter limiter = new StreamRateLimiter();
+
+    assertThrows(IllegalArgumentException.class, () -> limiter.setMinIntervalMs(-1));
+  }
+}
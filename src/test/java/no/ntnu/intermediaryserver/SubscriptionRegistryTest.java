@@ -0,0 +1,53 @@
+package no.ntnu.intermediaryserver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import no.ntnu.intermediaryserver.server.SubscriptionRegistry;
+import no.ntnu.messages.subscriptions.Topic;
+import no.ntnu.messages.subscriptions.TopicType;
+import org.junit.jupiter.api.Test;
+
+public class SubscriptionRegistryTest {
+
+  private final Topic node1 = new Topic(TopicType.NODE, "1");
+  private final Topic node2 = new Topic(TopicType.NODE, "2");
+  private final Topic temperature = new Topic(TopicType.SENSOR, "temperature");
+
+  @Test
+  public void testEveryoneReceivesWithoutSubscriptions() {
+    SubscriptionRegistry<String> registry = new SubscriptionRegistry<>();
+    List<String> panels = List.of("a", "b");
+
+    assertSame(panels, registry.selectRecipients(panels, Set.of(node1)));
+  }
+
+  @Test
+  public void testOnlySubscribersAndUnsubscribedPanelsReceive() {
+    SubscriptionRegistry<String> registry = new SubscriptionRegistry<>();
+    List<String> panels = List.of("a", "b", "legacy");
+    registry.subscribe("a", List.of(node1, temperature));
+    registry.subscribe("b", List.of(node2));
+
+    List<String> recipients = registry.selectRecipients(panels, Set.of(node1, temperature));
+
+    assertEquals(2, recipients.size());
+    assertTrue(recipients.containsAll(List.of("a", "legacy")));
+  }
+
+  @Test
+  public void testUnsubscribe() {
+    SubscriptionRegistry<String> registry = new SubscriptionRegistry<>();
+    List<String> panels = List.of("a", "b");
+    registry.subscribe("a", List.of(node1, node2));
+    registry.subscribe("b", List.of(node2));
+
+    assertEquals(1, registry.unsubscribe("a", List.of(node1)));
+    assertEquals(List.of(), registry.selectRecipients(panels, Set.of(node1)));
+
+    registry.unsubscribeAll("b");
+    assertEquals(Set.of(), registry.getSubscriptions("b"));
+    assertEquals(List.of("b"), registry.selectRecipients(panels, Set.of(node1)));
+  }
+}
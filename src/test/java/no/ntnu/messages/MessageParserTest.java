@@ -0,0 +1,89 @@
+package no.ntnu.messages;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import no.ntnu.constants.Endpoints;
+import no.ntnu.messages.commands.common.ClientIdentificationTransmission;
+import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
+import no.ntnu.messages.commands.greenhouse.GetBlobCommand;
+import no.ntnu.messages.responses.FailureReason;
+import no.ntnu.messages.responses.FailureResponse;
+import no.ntnu.messages.responses.SuccessResponse;
+import org.junit.jupiter.api.Test;
+
+public class MessageParserTest {
+
+  private static final String[] VALID_MESSAGES = {
+      "GREENHOUSE;1; -GET_NODE_ID",
+      "CONTROL_PANEL;/127.0.0.1:50123; -SUCCESS,GET_SENSOR_DATA,1;TEMPERATURE=21.5°C¤HUMIDITY=40%",
+      "GREENHOUSE;BROADCAST; -ACTUATOR_CHANGE,2,1",
+      "SERVER;NONE; -CLIENT_IDENTIFICATION,CONTROL_PANEL,?",
+      "SERVER;NONE; -CLIENT_IDENTIFICATION,GREENHOUSE,3,BINARY",
+      "SERVER;NONE; -SUCCESS,CLIENT_IDENTIFICATION,Identification successful",
+      "CONTROL_PANEL;2;abc-FAILURE,GET_NODE,FAILED_TO_IDENTIFY_CLIENT",
+      "greenhouse;1; ;;-GET_NODE",
+  };
+
+  @Test
+  public void testParsesLikeFromString() {
+    for (String text : VALID_MESSAGES) {
+      Message expected = Message.fromString(text);
+      Message parsed = MessageParser.parseMessage(text);
+
+      assertEquals(expected.toString(), parsed.toString(), text);
+      assertEquals(expected.getHeader().getReceiver(), parsed.getHeader().getReceiver());
+      assertEquals(expected.getHeader().getHashedContent(),
+          parsed.getHeader().getHashedContent());
+      assertEquals(expected.getBody().getTransmission().getClass(),
+          parsed.getBody().getTransmission().getClass());
+    }
+  }
+
+  @Test
+  public void testParsesParametersAndResponses() {
+    Message actuatorChange = MessageParser.parseMessage("GREENHOUSE;1; -ACTUATOR_CHANGE,2,1");
+    ActuatorChangeCommand command =
+        (ActuatorChangeCommand) actuatorChange.getBody().getTransmission();
+    assertEquals(Endpoints.GREENHOUSE, actuatorChange.getHeader().getReceiver());
+    assertEquals("ACTUATOR_CHANGE,2,1", command.toString());
+
+    Message response = MessageParser.parseMessage(
+        "CONTROL_PANEL;5; -SUCCESS,CLIENT_IDENTIFICATION,Identification, successful");
+    SuccessResponse success = (SuccessResponse) response.getBody().getTransmission();
+    assertInstanceOf(ClientIdentificationTransmission.class, success.getTransmission());
+    assertEquals("Identification, successful", success.getResponseData());
+  }
+
+  @Test
+  public void testParsesFailureDetail() {
+    Message message = MessageParser.parseMessage(
+        "CONTROL_PANEL;2; -FAILURE,GET_BLOB,Blob not found,abc123");
+    FailureResponse failure = (FailureResponse) message.getBody().getTransmission();
+    assertInstanceOf(GetBlobCommand.class, failure.getTransmission());
+    assertEquals(FailureReason.BLOB_NOT_FOUND, failure.getFailureReason());
+    assertEquals("abc123", failure.getDetail());
+
+    Message withoutDetail = MessageParser.parseMessage(
+        "CONTROL_PANEL;2; -FAILURE,GET_BLOB,Blob not found");
+    failure = (FailureResponse) withoutDetail.getBody().getTransmission();
+    assertEquals(FailureReason.BLOB_NOT_FOUND, failure.getFailureReason());
+    assertNull(failure.getDetail());
+  }
+
+  @Test
+  public void testRejectsInvalidMessages() {
+    String[] invalidMessages = {
+        "GREENHOUSE;1; GET_NODE_ID",
+        "GREENHOUSE;1 -GET_NODE_ID",
+        "GREENHOUSE;1;; -GET_NODE_ID",
+        "GREENHOUSE;1;a;b -GET_NODE_ID",
+        "UNKNOWN;1; -GET_NODE_ID",
+        "GREENHOUSE;1; -NOT_A_COMMAND",
+        " -GET_NODE_ID",
+    };
+    for (String text : invalidMessages) {
+      assertThrows(IllegalArgumentException.class, () -> Message.fromString(text), text);
+      assertThrows(IllegalArgumentException.class, () -> MessageParser.parseMessage(text), text);
+    }
+  }
+}
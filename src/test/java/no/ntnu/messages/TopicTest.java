@@ -0,0 +1,62 @@
+package no.ntnu.messages;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import no.ntnu.messages.commands.common.SubscribeTransmission;
+import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
+import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.messages.subscriptions.Topic;
+import no.ntnu.messages.subscriptions.TopicResolver;
+import no.ntnu.messages.subscriptions.TopicType;
+import org.junit.jupiter.api.Test;
+
+public class TopicTest {
+
+  @Test
+  public void testParseTopic() {
+    Topic topic = Topic.fromString("sensor:temperature");
+
+    assertEquals(TopicType.SENSOR, topic.getType());
+    assertEquals("temperature", topic.getValue());
+    assertEquals("SENSOR:temperature", topic.toString());
+    assertTrue(Topic.fromString("NODE:*").isWildcard());
+    assertThrows(IllegalArgumentException.class, () -> Topic.fromString("NODE"));
+    assertThrows(IllegalArgumentException.class, () -> Topic.fromString("ROOM:1"));
+  }
+
+  @Test
+  public void testSubscribeRoundTrip() {
+    SubscribeTransmission subscribe = new SubscribeTransmission(
+        List.of(new Topic(TopicType.NODE, "1"), Topic.all(TopicType.SENSOR)));
+    Message message = MessageParser.parseMessage("SERVER;NONE;hash-" + subscribe);
+
+    SubscribeTransmission parsed = (SubscribeTransmission) message.getBody().getTransmission();
+    assertEquals(subscribe.getTopics(), parsed.getTopics());
+  }
+
+  @Test
+  public void testResolveSensorDataTopics() {
+    SuccessResponse response = new SuccessResponse(new GetSensorDataCommand(),
+        "3;NUM:temperature,21.5,°C¤NUM:humidity,40.0,%");
+
+    Set<Topic> topics = TopicResolver.resolve("3", response);
+
+    assertEquals(Set.of(new Topic(TopicType.NODE, "3"), Topic.all(TopicType.NODE),
+        new Topic(TopicType.SENSOR, "temperature"), new Topic(TopicType.SENSOR, "humidity"),
+        Topic.all(TopicType.SENSOR)), topics);
+  }
+
+  @Test
+  public void testResolveActuatorTopics() {
+    SuccessResponse response = new SuccessResponse(new ActuatorChangeCommand(), "3;7;1");
+
+    Set<Topic> topics = TopicResolver.resolve("3", response);
+
+    assertTrue(topics.contains(new Topic(TopicType.ACTUATOR, "7")));
+    assertTrue(topics.contains(Topic.all(TopicType.ACTUATOR)));
+    assertTrue(topics.contains(new Topic(TopicType.NODE, "3")));
+  }
+}
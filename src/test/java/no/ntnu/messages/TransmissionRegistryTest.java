@@ -0,0 +1,50 @@
+package no.ntnu.messages;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
+import no.ntnu.messages.commands.greenhouse.GetNodeIdCommand;
+import no.ntnu.messages.responses.SuccessResponse;
+import org.junit.jupiter.api.Test;
+
+public class TransmissionRegistryTest {
+
+  @Test
+  public void testCreatesNewTransmissionEachTime() {
+    TransmissionRegistry registry = TransmissionRegistry.getDefault();
+
+    Transmission first = registry.create("ACTUATOR_CHANGE");
+    Transmission second = registry.create("ACTUATOR_CHANGE");
+
+    assertInstanceOf(ActuatorChangeCommand.class, first);
+    assertNotSame(first, second);
+    assertInstanceOf(SuccessResponse.class, registry.create("SUCCESS"));
+  }
+
+  @Test
+  public void testUnknownTransmission() {
+    TransmissionRegistry registry = TransmissionRegistry.getDefault();
+
+    assertNull(registry.create("NOT_A_COMMAND"));
+    assertNull(registry.create(null));
+    assertFalse(registry.contains("NOT_A_COMMAND"));
+    assertTrue(registry.contains("GET_NODE_ID"));
+  }
+
+  @Test
+  public void testParsedMessagesDoNotShareTransmissions() {
+    Message first = MessageParser.parseMessage("GREENHOUSE;1; -ACTUATOR_CHANGE,2,1");
+    Message second = MessageParser.parseMessage("GREENHOUSE;1; -ACTUATOR_CHANGE,3,0");
+
+    assertEquals("ACTUATOR_CHANGE,2,1", first.getBody().toString());
+    assertEquals("ACTUATOR_CHANGE,3,0", second.getBody().toString());
+  }
+
+  @Test
+  public void testRejectsDuplicateRegistration() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new TransmissionRegistry(GetNodeIdCommand::new, GetNodeIdCommand::new));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TransmissionRegistry(GetNodeIdCommand::new, null));
+  }
+}
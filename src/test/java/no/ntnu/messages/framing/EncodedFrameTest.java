@@ -0,0 +1,36 @@
+package no.ntnu.messages.framing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import no.ntnu.constants.Endpoints;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.commands.greenhouse.ActuatorChangeCommand;
+import org.junit.jupiter.api.Test;
+
+public class EncodedFrameTest {
+
+  private static Message actuatorChange() {
+    return new Message(new MessageHeader(Endpoints.CONTROL_PANEL, "3"),
+        new MessageBody(new ActuatorChangeCommand(2, true)));
+  }
+
+  @Test
+  public void testEncodesOncePerProtocol() {
+    EncodedFrame frame = EncodedFrame.of(actuatorChange());
+
+    byte[] text = frame.getBytes(WireProtocol.TEXT);
+    byte[] binary = frame.getBytes(WireProtocol.BINARY);
+
+    assertSame(text, frame.getBytes(WireProtocol.TEXT));
+    assertSame(binary, frame.getBytes(WireProtocol.BINARY));
+    assertArrayEquals(FrameCodec.encode(frame.getMessage(), WireProtocol.TEXT), text);
+    assertArrayEquals(FrameCodec.encode(frame.getMessage(), WireProtocol.BINARY), binary);
+  }
+
+  @Test
+  public void testNullMessage() {
+    assertThrows(IllegalArgumentException.class, () -> EncodedFrame.of(null));
+  }
+}
@@ -0,0 +1,132 @@
+package no.ntnu.messages.framing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.crypto.SecretKey;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.commands.common.ClientIdentificationTransmission;
+import no.ntnu.messages.commands.greenhouse.GetSensorDataCommand;
+import no.ntnu.messages.responses.SuccessResponse;
+import no.ntnu.tools.encryption.IntegrityMode;
+import no.ntnu.tools.encryption.MessageIntegrity;
+import no.ntnu.tools.encryption.SessionEncryptor;
+import no.ntnu.tools.encryption.asymmetric.HybridRSAEncryptor;
+import org.junit.jupiter.api.Test;
+
+public class FrameCodecTest {
+
+  private static Message sensorDataResponse() {
+    SuccessResponse response = new SuccessResponse(new GetSensorDataCommand(),
+        "1;TEMPERATURE=21.5°C¤HUMIDITY=40.0%");
+    return new Message(new MessageHeader(Endpoints.CONTROL_PANEL, "/127.0.0.1:50123"),
+        new MessageBody(response));
+  }
+
+  @Test
+  public void testBinaryRoundTrip() {
+    Message message = sensorDataResponse();
+
+    byte[] encoded = FrameCodec.encode(message, WireProtocol.BINARY);
+
+    assertEquals(FrameCodec.MAGIC, encoded[0]);
+    assertEquals(FrameType.MESSAGE.getTag(), encoded[FrameCodec.PREFIX_LENGTH]);
+    Message decoded = readSingleFrame(encoded);
+    assertEquals(message.toString(), decoded.toString());
+    assertEquals(Endpoints.CONTROL_PANEL, decoded.getHeader().getReceiver());
+    assertEquals("/127.0.0.1:50123", decoded.getHeader().getId());
+  }
+
+  @Test
+  public void testTextRoundTrip() {
+    Message message = sensorDataResponse();
+
+    byte[] encoded = FrameCodec.encode(message, WireProtocol.TEXT);
+
+    assertEquals('\n', encoded[encoded.length - 1]);
+    assertEquals(message.toString(), readSingleFrame(encoded).toString());
+  }
+
+  @Test
+  public void testFrameReaderReadsMixedFrames() throws IOException {
+    Message message = sensorDataResponse();
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    stream.write(FrameCodec.encode(message, WireProtocol.TEXT));
+    stream.write(FrameCodec.encode(message, WireProtocol.BINARY));
+
+    FrameReader reader = new FrameReader(new ByteArrayInputStream(stream.toByteArray()));
+
+    assertTrue(reader.readFrame().isText());
+    assertEquals(FrameType.MESSAGE, reader.readFrame().getType());
+    assertNull(reader.readFrame());
+  }
+
+  @Test
+  public void testEncryptedRoundTrip() throws Exception {
+    Message message = sensorDataResponse();
+    SecretKey key = HybridRSAEncryptor.generateAESKey();
+    SessionEncryptor sender = new SessionEncryptor(key, true);
+
+    byte[] encrypted = FrameCodec.encrypt(FrameCodec.encode(message, WireProtocol.BINARY), sender);
+    FrameReader reader = new FrameReader(new ByteArrayInputStream(encrypted));
+    Frame frame = reader.readFrame();
+
+    assertEquals(FrameType.ENCRYPTED, frame.getType());
+    assertThrows(IllegalArgumentException.class,
+        () -> FrameCodec.decrypt(frame, SessionEncryptor.generate()));
+    Frame decrypted = FrameCodec.decrypt(frame, new SessionEncryptor(key, false));
+    assertEquals(FrameType.MESSAGE, decrypted.getType());
+    assertEquals(message.toString(), FrameCodec.decode(decrypted).toString());
+  }
+
+  @Test
+  public void testIdentificationOffersWireProtocol() {
+    ClientIdentificationTransmission identification =
+        new ClientIdentificationTransmission(Endpoints.GREENHOUSE, "1");
+    assertEquals("CLIENT_IDENTIFICATION,GREENHOUSE,1", identification.toString());
+
+    identification.setWireProtocol(WireProtocol.BINARY);
+    assertEquals("CLIENT_IDENTIFICATION,GREENHOUSE,1,BINARY", identification.toString());
+
+    ClientIdentificationTransmission parsed = new ClientIdentificationTransmission();
+    parsed.setParameters(new String[] {"GREENHOUSE", "1", "BINARY"});
+    assertEquals(WireProtocol.BINARY, parsed.getWireProtocol());
+
+    identification.setIntegrityMode(IntegrityMode.CRC32C);
+    assertEquals("CLIENT_IDENTIFICATION,GREENHOUSE,1,BINARY,CRC32C", identification.toString());
+    parsed.setParameters(new String[] {"GREENHOUSE", "1", "BINARY", "CRC32C"});
+    assertEquals(IntegrityMode.CRC32C, parsed.getIntegrityMode());
+  }
+
+  @Test
+  public void testVerifyChecksummedFrames() throws IOException {
+    Message message = sensorDataResponse();
+
+    for (WireProtocol protocol : WireProtocol.values()) {
+      byte[] encoded = FrameCodec.encode(message, protocol, MessageIntegrity.CRC32C);
+      Frame frame = new FrameReader(new ByteArrayInputStream(encoded)).readFrame();
+      assertTrue(FrameCodec.verify(frame, MessageIntegrity.CRC32C));
+      assertEquals(message.getBody().toString(), FrameCodec.decode(frame).getBody().toString());
+
+      // Flip a bit in the last byte of the body, before the newline of a text line
+      encoded[encoded.length - (protocol == WireProtocol.TEXT ? 2 : 1)] ^= 1;
+      Frame tampered = new FrameReader(new ByteArrayInputStream(encoded)).readFrame();
+      assertFalse(FrameCodec.verify(tampered, MessageIntegrity.CRC32C));
+      assertTrue(FrameCodec.verify(tampered, MessageIntegrity.NONE));
+    }
+  }
+
+  private static Message readSingleFrame(byte[] encoded) {
+    try {
+      FrameReader reader = new FrameReader(new ByteArrayInputStream(encoded));
+      return FrameCodec.decode(reader.readFrame());
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
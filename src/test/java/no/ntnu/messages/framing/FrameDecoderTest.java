@@ -0,0 +1,113 @@
+package no.ntnu.messages.framing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.commands.greenhouse.GetNodeIdCommand;
+import org.junit.jupiter.api.Test;
+
+public class FrameDecoderTest {
+
+  private static ByteBuffer bytes(String text) {
+    return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static List<String> texts(List<Frame> frames) {
+    List<String> texts = new ArrayList<>();
+    frames.forEach(frame -> texts.add(frame.getText()));
+    return texts;
+  }
+
+  @Test
+  public void testDecodeCompleteLines() throws IOException {
+    FrameDecoder decoder = new FrameDecoder();
+    List<Frame> frames = new ArrayList<>();
+
+    decoder.decode(bytes("first\nsecond\r\n"), frames::add);
+
+    assertEquals(List.of("first", "second"), texts(frames));
+  }
+
+  @Test
+  public void testDecodeLineSplitAcrossReads() throws IOException {
+    FrameDecoder decoder = new FrameDecoder();
+    List<Frame> frames = new ArrayList<>();
+
+    decoder.decode(bytes("SERVER;0; -CLIENT_"), frames::add);
+    assertTrue(frames.isEmpty());
+
+    decoder.decode(bytes("IDENTIFICATION,GREENHOUSE,1\nnext"), frames::add);
+    assertEquals(List.of("SERVER;0; -CLIENT_IDENTIFICATION,GREENHOUSE,1"), texts(frames));
+
+    decoder.decode(bytes("\n"), frames::add);
+    assertEquals("next", frames.get(1).getText());
+  }
+
+  @Test
+  public void testDecodeMultiByteCharacterSplitAcrossReads() throws IOException {
+    FrameDecoder decoder = new FrameDecoder();
+    List<Frame> frames = new ArrayList<>();
+    byte[] encoded = "a¤b\n".getBytes(StandardCharsets.UTF_8);
+
+    decoder.decode(ByteBuffer.wrap(encoded, 0, 2), frames::add);
+    decoder.decode(ByteBuffer.wrap(encoded, 2, encoded.length - 2), frames::add);
+
+    assertEquals(List.of("a¤b"), texts(frames));
+  }
+
+  @Test
+  public void testDecodeLineLongerThanInitialCapacity() throws IOException {
+    FrameDecoder decoder = new FrameDecoder();
+    List<Frame> frames = new ArrayList<>();
+    String longLine = "x".repeat(5000);
+
+    decoder.decode(bytes(longLine.substring(0, 3000)), frames::add);
+    decoder.decode(bytes(longLine.substring(3000) + "\n"), frames::add);
+
+    assertEquals(List.of(longLine), texts(frames));
+  }
+
+  @Test
+  public void testDecodeBinaryFrameSplitAcrossReads() throws IOException {
+    FrameDecoder decoder = new FrameDecoder();
+    List<Frame> frames = new ArrayList<>();
+    Message message = new Message(new MessageHeader(Endpoints.GREENHOUSE, "1"),
+        new MessageBody(new GetNodeIdCommand()));
+    byte[] encoded = FrameCodec.encode(message, WireProtocol.BINARY);
+
+    decoder.decode(ByteBuffer.wrap(encoded, 0, 3), frames::add);
+    assertTrue(frames.isEmpty());
+    decoder.decode(ByteBuffer.wrap(encoded, 3, encoded.length - 3), frames::add);
+
+    assertEquals(1, frames.size());
+    assertEquals(FrameType.MESSAGE, frames.get(0).getType());
+    assertEquals(message.toString(), FrameCodec.decode(frames.get(0)).toString());
+  }
+
+  @Test
+  public void testDecodeMixedTextAndBinaryFrames() throws IOException {
+    FrameDecoder decoder = new FrameDecoder();
+    List<Frame> frames = new ArrayList<>();
+    Message message = new Message(new MessageHeader(Endpoints.CONTROL_PANEL, "2"),
+        new MessageBody(new GetNodeIdCommand()));
+    byte[] text = FrameCodec.encode(message, WireProtocol.TEXT);
+    byte[] binary = FrameCodec.encode(message, WireProtocol.BINARY);
+    ByteBuffer both = ByteBuffer.allocate(text.length + binary.length + text.length);
+    both.put(text).put(binary).put(text).flip();
+
+    decoder.decode(both, frames::add);
+
+    assertEquals(3, frames.size());
+    assertTrue(frames.get(0).isText());
+    assertFalse(frames.get(1).isText());
+    assertTrue(frames.get(2).isText());
+  }
+}
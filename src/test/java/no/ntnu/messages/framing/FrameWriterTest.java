@@ -0,0 +1,197 @@
+package no.ntnu.messages.framing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import no.ntnu.constants.Endpoints;
+import no.ntnu.messages.Message;
+import no.ntnu.messages.MessageBody;
+import no.ntnu.messages.MessageHeader;
+import no.ntnu.messages.commands.greenhouse.GetNodeIdCommand;
+import no.ntnu.tools.threading.ThreadMode;
+import org.junit.jupiter.api.Test;
+
+public class FrameWriterTest {
+
+  private static final FrameWriter.FailureListener NO_FAILURE =
+      (writer, e, unsent) -> fail("Unexpected write failure: " + e.getMessage());
+
+  private static byte[] line(int number) {
+    return ("line " + number + "\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String lines(int count) {
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      lines.append("line ").append(i).append('\n');
+    }
+    return lines.toString();
+  }
+
+  @Test
+  public void testQueuedFramesAreWrittenWithOneFlush() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FrameWriter writer = new FrameWriter(out, 64, 0, NO_FAILURE);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(writer.enqueue(null, line(i)));
+    }
+    assertEquals(10, writer.getQueueDepth());
+
+    writer.start(ThreadMode.PLATFORM, "frame-writer-test");
+    writer.close();
+
+    assertEquals(lines(10), out.toString(StandardCharsets.UTF_8));
+    assertEquals(10, writer.getFramesWritten());
+    assertEquals(1, writer.getBatchesWritten());
+    assertEquals(0, writer.getQueueDepth());
+  }
+
+  @Test
+  public void testBatchesAreLimitedByMaxBatchSize() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FrameWriter writer = new FrameWriter(out, 4, 0, NO_FAILURE);
+    for (int i = 0; i < 10; i++) {
+      writer.enqueue(null, line(i));
+    }
+
+    writer.start(ThreadMode.PLATFORM, "frame-writer-test");
+    writer.close();
+
+    assertEquals(lines(10), out.toString(StandardCharsets.UTF_8));
+    assertEquals(3, writer.getBatchesWritten());
+  }
+
+  @Test
+  public void testMaxLatencyWaitsForMoreFrames() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FrameWriter writer = new FrameWriter(out, 64, 2000, NO_FAILURE);
+    writer.start(ThreadMode.PLATFORM, "frame-writer-test");
+
+    writer.enqueue(null, line(0));
+    Thread.sleep(50);
+    writer.enqueue(null, line(1));
+    writer.close();
+
+    assertEquals(lines(2), out.toString(StandardCharsets.UTF_8));
+    assertEquals(1, writer.getBatchesWritten());
+  }
+
+  @Test
+  public void testFailureReturnsUnsentMessages() throws Exception {
+    OutputStream failing = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("Broken pipe");
+      }
+    };
+    List<Message> unsent = new ArrayList<>();
+    FrameWriter writer = new FrameWriter(failing, 64, 0, (failed, e, messages) -> {
+      synchronized (unsent) {
+        unsent.addAll(messages);
+        unsent.notifyAll();
+      }
+    });
+    Message message = new Message(new MessageHeader(Endpoints.GREENHOUSE, "1"),
+        new MessageBody(new GetNodeIdCommand()));
+    writer.enqueue(message, FrameCodec.encode(message, WireProtocol.TEXT));
+    writer.enqueue(message, FrameCodec.encode(message, WireProtocol.TEXT));
+
+    writer.start(ThreadMode.PLATFORM, "frame-writer-test");
+    synchronized (unsent) {
+      long deadline = System.currentTimeMillis() + 2000;
+      while (unsent.isEmpty() && System.currentTimeMillis() < deadline) {
+        unsent.wait(100);
+      }
+    }
+
+    assertEquals(2, unsent.size());
+    assertFalse(writer.enqueue(message, new byte[1]));
+  }
+
+  @Test
+  public void testDropOldestWhenFull() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FrameWriter writer = new FrameWriter(out, 2, OverflowPolicy.DROP_OLDEST, 64, 0, NO_FAILURE);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(writer.enqueue(null, line(i)));
+    }
+    assertEquals(1, writer.getDroppedFrames());
+
+    writer.start(ThreadMode.PLATFORM, "frame-writer-test");
+    writer.close();
+
+    assertEquals("line 1\nline 2\n", out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testDropNewestWhenFull() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FrameWriter writer = new FrameWriter(out, 2, OverflowPolicy.DROP_NEWEST, 64, 0, NO_FAILURE);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(writer.enqueue(null, line(i)));
+    }
+    assertEquals(1, writer.getDroppedFrames());
+
+    writer.start(ThreadMode.PLATFORM, "frame-writer-test");
+    writer.close();
+
+    assertEquals(lines(2), out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testCapacityHoldsWithConcurrentSenders() throws InterruptedException {
+    FrameWriter writer = new FrameWriter(new ByteArrayOutputStream(), 16,
+        OverflowPolicy.DROP_OLDEST, 64, 0, NO_FAILURE);
+    List<Thread> senders = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      senders.add(ThreadMode.PLATFORM.start("sender-" + i, true, () -> {
+        for (int j = 0; j < 1000; j++) {
+          writer.enqueue(null, line(j));
+        }
+      }));
+    }
+    for (Thread sender : senders) {
+      sender.join();
+    }
+
+    assertEquals(16, writer.getQueueDepth());
+    assertEquals(8 * 1000 - 16, writer.getDroppedFrames());
+  }
+
+  @Test
+  public void testDisconnectWhenFull() {
+    boolean[] streamClosed = {false};
+    OutputStream out = new ByteArrayOutputStream() {
+      @Override
+      public void close() {
+        streamClosed[0] = true;
+      }
+    };
+    FrameWriter writer = new FrameWriter(out, 2, OverflowPolicy.DISCONNECT, 64, 0,
+        (failed, e, unsent) -> { });
+    assertTrue(writer.enqueue(null, line(0)));
+    assertTrue(writer.enqueue(null, line(1)));
+
+    assertFalse(writer.enqueue(null, line(2)));
+    assertTrue(streamClosed[0]);
+    assertEquals(1, writer.getDroppedFrames());
+    assertFalse(writer.enqueue(null, line(3)));
+  }
+
+  @Test
+  public void testInvalidSettings() {
+    OutputStream out = new ByteArrayOutputStream();
+    assertThrows(IllegalArgumentException.class, () -> new FrameWriter(out, 0, 0, NO_FAILURE));
+    assertThrows(IllegalArgumentException.class, () -> new FrameWriter(out, 1, -1, NO_FAILURE));
+    assertThrows(IllegalArgumentException.class, () -> new FrameWriter(null, 1, 0, NO_FAILURE));
+    assertThrows(IllegalArgumentException.class,
+        () -> new FrameWriter(out, 0, OverflowPolicy.DROP_OLDEST, 1, 0, NO_FAILURE));
+    assertThrows(IllegalArgumentException.class,
+        () -> new FrameWriter(out, 1, null, 1, 0, NO_FAILURE));
+  }
+}
@@ -0,0 +1,86 @@
+package no.ntnu.tools.caching;
+
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import no.ntnu.greenhouse.sensor.ImageSensorReading;
+import no.ntnu.tools.parsing.SensorReadingsParser;
+import no.ntnu.tools.stringification.Base64ImageEncoder;
+import org.junit.jupiter.api.Test;
+
+public class BlobCacheTest {
+
+  @Test
+  public void testEvictsLeastRecentlyUsedBySize() {
+    BlobCache cache = new BlobCache(10);
+    assertTrue(cache.put("a", blob(4)));
+    assertTrue(cache.put("b", blob(4)));
+    // Using a makes b the least recently used
+    assertEquals(4, cache.get("a").length);
+
+    assertTrue(cache.put("c", blob(4)));
+    assertTrue(cache.contains("a"));
+    assertFalse(cache.contains("b"));
+    assertTrue(cache.contains("c"));
+    assertEquals(8, cache.size());
+  }
+
+  @Test
+  public void testDoesNotCacheBlobLargerThanCache() {
+    BlobCache cache = new BlobCache(4);
+    assertTrue(cache.put("a", blob(4)));
+    assertFalse(cache.put("b", blob(5)));
+    assertTrue(cache.contains("a"));
+    assertEquals(1, cache.count());
+  }
+
+  @Test
+  public void testReplacingBlobUpdatesSize() {
+    BlobCache cache = new BlobCache(10);
+    cache.put("a", blob(4));
+    cache.put("a", blob(2));
+    assertEquals(2, cache.size());
+    assertEquals(2, cache.get("a").length);
+  }
+
+  private static byte[] blob(int length) {
+    return new byte[length];
+  }
+
+  @Test
+  public void testParserReportsMissingBlob() {
+    String hash = BlobReferences.hashOf("payload");
+    String reading = "IMG:image," + BlobReferences.toReference(hash) + ",.png";
+    MissingBlobException e = assertThrows(MissingBlobException.class,
+        () -> SensorReadingsParser.parseReading(reading, new BlobCache(100)));
+    assertEquals(hash, e.getHash());
+    assertThrows(MissingBlobException.class, () -> SensorReadingsParser.parseReading(reading));
+  }
+
+  @Test
+  public void testParserResolvesPreviewUntilFullBlobIsCached() throws IOException {
+    byte[] thumbnail = Base64ImageEncoder.imageToBytes(new BufferedImage(2, 2, TYPE_INT_RGB));
+    byte[] full = Base64ImageEncoder.imageToBytes(new BufferedImage(4, 4, TYPE_INT_RGB));
+    String reference = BlobReferences.toReference("thumb", "full");
+    assertEquals("thumb", BlobReferences.getHash(reference));
+    assertEquals("full", BlobReferences.getFullHash(reference));
+
+    BlobCache cache = new BlobCache(10000);
+    String reading = "IMG:image," + reference + ",.png";
+    MissingBlobException e = assertThrows(MissingBlobException.class,
+        () -> SensorReadingsParser.parseReading(reading, cache));
+    assertEquals("thumb", e.getHash());
+
+    cache.put("thumb", thumbnail);
+    ImageSensorReading preview = (ImageSensorReading) SensorReadingsParser.parseReading(reading, cache);
+    assertEquals("full", preview.getFullImageHash());
+    assertEquals(2, preview.getImage().getWidth());
+
+    cache.put("full", full);
+    ImageSensorReading image = (ImageSensorReading) SensorReadingsParser.parseReading(reading, cache);
+    assertNull(image.getFullImageHash());
+    assertEquals(4, image.getImage().getWidth());
+  }
+}
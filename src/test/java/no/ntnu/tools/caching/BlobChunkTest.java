@@ -0,0 +1,60 @@
+package no.ntnu.tools.caching;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Base64;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class BlobChunkTest {
+
+  private static byte[] randomBlob(int length) {
+    byte[] blob = new byte[length];
+    new Random(42).nextBytes(blob);
+    return blob;
+  }
+
+  @Test
+  public void testChunksReassembleToBlob() {
+    byte[] blob = randomBlob(BlobChunk.CHUNK_SIZE * 2 + 1000);
+    String hash = BlobReferences.hashOf(Base64.getEncoder().encodeToString(blob));
+    int count = BlobChunk.getChunkCount(blob.length);
+    assertEquals(3, count);
+
+    BlobAssembler assembler = new BlobAssembler(hash);
+    for (int index = 0; index < count; index++) {
+      BlobChunk chunk = BlobChunk.fromString(BlobChunk.of(hash, blob, index).toString());
+      assertTrue(assembler.append(chunk));
+    }
+    assertTrue(assembler.isComplete());
+    assertArrayEquals(blob, assembler.getBlob());
+  }
+
+  @Test
+  public void testIgnoresChunksOutOfOrder() {
+    byte[] blob = randomBlob(BlobChunk.CHUNK_SIZE + 1);
+    String hash = BlobReferences.hashOf(Base64.getEncoder().encodeToString(blob));
+    BlobAssembler assembler = new BlobAssembler(hash);
+
+    assertFalse(assembler.append(BlobChunk.of(hash, blob, 1)));
+    assertTrue(assembler.append(BlobChunk.of(hash, blob, 0)));
+    assertFalse(assembler.append(BlobChunk.of(hash, blob, 0)));
+    assertFalse(assembler.isComplete());
+    assertThrows(IllegalStateException.class, assembler::getBlob);
+  }
+
+  @Test
+  public void testRejectsBlobNotMatchingHash() {
+    byte[] blob = randomBlob(10);
+    BlobAssembler assembler = new BlobAssembler("not the hash");
+    assertTrue(assembler.append(BlobChunk.of("not the hash", blob, 0)));
+    assertThrows(IllegalArgumentException.class, assembler::getBlob);
+  }
+
+  @Test
+  public void testEmptyBlobIsOneChunk() {
+    assertEquals(1, BlobChunk.getChunkCount(0));
+    assertThrows(IllegalArgumentException.class, () -> BlobChunk.of("hash", new byte[0], 1));
+    assertThrows(IllegalArgumentException.class, () -> BlobChunk.fromString("hash;0;1"));
+  }
+}
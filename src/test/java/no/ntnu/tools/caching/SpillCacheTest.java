@@ -0,0 +1,51 @@
+package no.ntnu.tools.caching;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SpillCacheTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testWritesPayloadOnce() throws IOException {
+    SpillCache cache = new SpillCache(this.directory, ".wav", 100);
+    File file = cache.getFile("a", new byte[] {1, 2, 3});
+    assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(file.toPath()));
+    assertTrue(file.getName().endsWith(".wav"));
+    assertSame(file, cache.getFile("a", new byte[] {1, 2, 3}));
+    assertEquals(1, cache.count());
+  }
+
+  @Test
+  public void testEvictsAndDeletesLeastRecentlyUsed() throws IOException {
+    SpillCache cache = new SpillCache(this.directory, ".wav", 10);
+    File first = cache.getFile("a", new byte[6]);
+    File second = cache.getFile("b", new byte[6]);
+
+    assertFalse(first.exists());
+    assertTrue(second.exists());
+    assertEquals(6, cache.size());
+    assertNull(cache.getFile("c", new byte[11]));
+  }
+
+  @Test
+  public void testClearDeletesLiveFiles() throws IOException {
+    SpillCache cache = new SpillCache(this.directory, ".wav", 100);
+    File first = cache.getFile("a", new byte[6]);
+    File second = cache.getFile("b", new byte[6]);
+
+    cache.clear();
+    assertFalse(first.exists());
+    assertFalse(second.exists());
+    assertEquals(0, cache.count());
+    assertEquals(0, cache.size());
+  }
+}
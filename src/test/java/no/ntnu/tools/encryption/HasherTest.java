@@ -1,4 +1,5 @@
 package no.ntnu.tools.encryption;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 public class HasherTest {
@@ -68,4 +69,15 @@ public class HasherTest {
             Hasher.encryptString(null);
         }, "Hashing null input should throw a NullPointerException");
     }
+
+    @Test
+    public void testKnownHashAndEncodedBytes() {
+        // SHA-256 of "abc", from FIPS 180-2
+        String expected = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        byte[] bytes = "xabcx".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(expected, Hasher.encryptString("abc"));
+        assertEquals(expected, Hasher.hash(bytes, 1, 3));
+        assertEquals("00ff0a", Hasher.toHex(new byte[] {0, (byte) 0xff, 10}));
+    }
 }
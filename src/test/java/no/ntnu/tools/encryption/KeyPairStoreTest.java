@@ -0,0 +1,77 @@
+package no.ntnu.tools.encryption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link KeyPairStore}.
+ */
+public class KeyPairStoreTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testGeneratedKeysAreLoadedNextTime() {
+    KeyPairStore first = new KeyPairStore(this.directory, "node");
+    assertEquals(-1, first.getLoadTimeMs());
+    KeyPair generated = first.getKeyPair();
+
+    assertFalse(first.isLoadedFromDisk());
+    assertTrue(first.getLoadTimeMs() >= 0);
+    assertTrue(Files.exists(this.directory.resolve("node.key")));
+    assertTrue(Files.exists(this.directory.resolve("node.pub")));
+
+    KeyPairStore second = new KeyPairStore(this.directory, "node");
+    KeyPair loaded = second.preload().join();
+
+    assertTrue(second.isLoadedFromDisk());
+    assertEquals(generated.getPublic(), loaded.getPublic());
+    assertEquals(generated.getPrivate(), loaded.getPrivate());
+  }
+
+  @Test
+  public void testUnreadableKeysAreReplaced() throws Exception {
+    Files.write(this.directory.resolve("node.key"), new byte[] {1, 2, 3});
+    Files.write(this.directory.resolve("node.pub"), new byte[] {4, 5, 6});
+
+    KeyPairStore store = new KeyPairStore(this.directory, "node");
+    KeyPair keyPair = store.getKeyPair();
+
+    assertFalse(store.isLoadedFromDisk());
+    assertArrayEquals(keyPair.getPublic().getEncoded(),
+        Files.readAllBytes(this.directory.resolve("node.pub")));
+  }
+
+  @Test
+  public void testMismatchedKeysAreReplaced() throws Exception {
+    KeyPair first = KeyGenerator.generateRSAKeyPair();
+    KeyPair second = KeyGenerator.generateRSAKeyPair();
+    Files.write(this.directory.resolve("node.key"), first.getPrivate().getEncoded());
+    Files.write(this.directory.resolve("node.pub"), second.getPublic().getEncoded());
+
+    KeyPairStore store = new KeyPairStore(this.directory, "node");
+    KeyPair keyPair = store.getKeyPair();
+
+    assertFalse(store.isLoadedFromDisk());
+    assertArrayEquals(keyPair.getPrivate().getEncoded(),
+        Files.readAllBytes(this.directory.resolve("node.key")));
+    assertArrayEquals(keyPair.getPublic().getEncoded(),
+        Files.readAllBytes(this.directory.resolve("node.pub")));
+  }
+
+  @Test
+  public void testConcurrentFirstRunsShareOnePair() {
+    CompletableFuture<KeyPair> first = new KeyPairStore(this.directory, "node").preload();
+    CompletableFuture<KeyPair> second = new KeyPairStore(this.directory, "node").preload();
+
+    assertEquals(first.join().getPublic(), second.join().getPublic());
+    assertEquals(first.join().getPrivate(), second.join().getPrivate());
+  }
+}
@@ -0,0 +1,52 @@
+package no.ntnu.tools.encryption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link MessageIntegrity}.
+ */
+public class MessageIntegrityTest {
+
+  private static final byte[] BODY =
+      "ACTUATOR_CHANGE,1,2,ON".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  public void testChecksumDetectsChangedBody() {
+    String hash = MessageIntegrity.CRC32C.hash(BODY, 0, BODY.length);
+    byte[] changed = BODY.clone();
+    changed[changed.length - 1] = 'F';
+
+    assertEquals(8, hash.length());
+    assertTrue(MessageIntegrity.CRC32C.verify(hash, BODY, 0, BODY.length));
+    assertFalse(MessageIntegrity.CRC32C.verify(hash, changed, 0, changed.length));
+    assertFalse(MessageIntegrity.CRC32C.verify(MessageIntegrity.NO_HASH, BODY, 0, BODY.length));
+  }
+
+  @Test
+  public void testHmacNeedsTheSameSessionKey() throws Exception {
+    SessionEncryptor session = SessionEncryptor.generate();
+    MessageIntegrity sender =
+        MessageIntegrity.hmac(session.deriveKey("integrity", "HmacSHA256"));
+    MessageIntegrity receiver =
+        MessageIntegrity.hmac(session.deriveKey("integrity", "HmacSHA256"));
+    MessageIntegrity other = MessageIntegrity.hmac(
+        SessionEncryptor.generate().deriveKey("integrity", "HmacSHA256"));
+
+    String hash = sender.hash(BODY, 0, BODY.length);
+
+    assertEquals(32, hash.length());
+    assertTrue(receiver.verify(hash, BODY, 0, BODY.length));
+    assertFalse(other.verify(hash, BODY, 0, BODY.length));
+  }
+
+  @Test
+  public void testNoneAcceptsAnything() {
+    assertEquals(MessageIntegrity.NO_HASH, MessageIntegrity.NONE.hash(BODY, 0, BODY.length));
+    assertTrue(MessageIntegrity.NONE.verify("wrong", BODY, 0, BODY.length));
+    assertThrows(IllegalArgumentException.class,
+        () -> MessageIntegrity.of(IntegrityMode.HMAC_SHA256));
+  }
+}
@@ -0,0 +1,111 @@
+package no.ntnu.tools.encryption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.Base64;
+import javax.crypto.SecretKey;
+import no.ntnu.tools.encryption.asymmetric.HybridRSAEncryptor;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SessionEncryptor}.
+ */
+public class SessionEncryptorTest {
+
+  private static final String MESSAGE = "CONTROL_PANEL;1;hash-GET_SENSOR_DATA,1";
+
+  @Test
+  public void testRoundTripWithWrappedKey() throws Exception {
+    KeyPair serverKeys = KeyGenerator.generateRSAKeyPair();
+    SessionEncryptor client = SessionEncryptor.generate();
+    SessionEncryptor server =
+        SessionEncryptor.fromWrappedKey(client.wrapKey(serverKeys.getPublic()),
+            serverKeys.getPrivate());
+
+    assertEquals(MESSAGE, server.decrypt(client.encrypt(MESSAGE)));
+    assertEquals(MESSAGE, client.decrypt(server.encrypt(MESSAGE)));
+  }
+
+  @Test
+  public void testEveryMessageGetsItsOwnNonce() throws Exception {
+    SecretKey key = HybridRSAEncryptor.generateAESKey();
+    SessionEncryptor client = new SessionEncryptor(key, true);
+    SessionEncryptor server = new SessionEncryptor(key, false);
+
+    String first = client.encrypt(MESSAGE);
+    String second = client.encrypt(MESSAGE);
+
+    assertNotEquals(first, second);
+    assertEquals(MESSAGE, server.decrypt(first));
+    assertEquals(MESSAGE, server.decrypt(second));
+  }
+
+  @Test
+  public void testDirectionsUseTheirOwnKeys() throws Exception {
+    SecretKey key = HybridRSAEncryptor.generateAESKey();
+    SessionEncryptor client = new SessionEncryptor(key, true);
+    SessionEncryptor server = new SessionEncryptor(key, false);
+
+    // Both start at counter 0, so only the key tells them apart
+    assertNotEquals(client.encrypt(MESSAGE), server.encrypt(MESSAGE));
+    assertThrows(GeneralSecurityException.class,
+        () -> client.decrypt(new SessionEncryptor(key, true).encrypt(MESSAGE)));
+  }
+
+  @Test
+  public void testReplayedMessageIsRejected() throws Exception {
+    SecretKey key = HybridRSAEncryptor.generateAESKey();
+    SessionEncryptor client = new SessionEncryptor(key, true);
+    SessionEncryptor server = new SessionEncryptor(key, false);
+
+    String first = client.encrypt(MESSAGE);
+    String second = client.encrypt(MESSAGE);
+    assertEquals(MESSAGE, server.decrypt(second));
+    assertThrows(GeneralSecurityException.class, () -> server.decrypt(second));
+    assertThrows(GeneralSecurityException.class, () -> server.decrypt(first));
+    assertEquals(MESSAGE, server.decrypt(client.encrypt(MESSAGE)));
+  }
+
+  @Test
+  public void testTamperedMessageIsRejected() throws Exception {
+    SecretKey key = HybridRSAEncryptor.generateAESKey();
+    SessionEncryptor client = new SessionEncryptor(key, true);
+    SessionEncryptor server = new SessionEncryptor(key, false);
+    byte[] encrypted = Base64.getDecoder().decode(client.encrypt(MESSAGE));
+    encrypted[encrypted.length - 1] ^= 1;
+
+    String tampered = Base64.getEncoder().encodeToString(encrypted);
+    assertThrows(GeneralSecurityException.class, () -> server.decrypt(tampered));
+    assertThrows(GeneralSecurityException.class,
+        () -> SessionEncryptor.generate().decrypt(server.encrypt(MESSAGE)));
+    // A rejected message does not move the counter on
+    assertEquals(MESSAGE, server.decrypt(client.encrypt(MESSAGE)));
+  }
+
+  @Test
+  public void testDirectBufferRoundTrip() throws Exception {
+    SecretKey key = HybridRSAEncryptor.generateAESKey();
+    SessionEncryptor client = new SessionEncryptor(key, true);
+    SessionEncryptor server = new SessionEncryptor(key, false);
+    byte[] payload = new byte[200 * 1024];
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte) i;
+    }
+    ByteBuffer plaintext = ByteBuffer.allocateDirect(payload.length);
+    plaintext.put(payload).flip();
+
+    ByteBuffer encrypted =
+        ByteBuffer.allocateDirect(SessionEncryptor.getEncryptedLength(payload.length));
+    assertEquals(encrypted.capacity(), client.encrypt(plaintext, encrypted));
+    encrypted.flip();
+    ByteBuffer decrypted = ByteBuffer.allocateDirect(payload.length);
+    assertEquals(payload.length, server.decrypt(encrypted, decrypted));
+
+    byte[] result = new byte[payload.length];
+    decrypted.flip().get(result);
+    assertArrayEquals(payload, result);
+  }
+}
@@ -0,0 +1,39 @@
+package no.ntnu.tools.threading;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+public class ThreadModeTest {
+
+  @Test
+  public void testStartVirtualThread() throws InterruptedException {
+    AtomicBoolean ran = new AtomicBoolean(false);
+
+    Thread thread = ThreadMode.VIRTUAL.start("test", false, () -> ran.set(true));
+    thread.join();
+
+    assertTrue(thread.isVirtual());
+    assertTrue(ran.get());
+  }
+
+  @Test
+  public void testStartPlatformThread() throws InterruptedException {
+    AtomicBoolean ran = new AtomicBoolean(false);
+
+    Thread thread = ThreadMode.PLATFORM.start("test", true, () -> ran.set(true));
+    thread.join();
+
+    assertFalse(thread.isVirtual());
+    assertTrue(thread.isDaemon());
+    assertTrue(ran.get());
+  }
+
+  @Test
+  public void testFromString() {
+    assertEquals(ThreadMode.VIRTUAL, ThreadMode.fromString("VIRTUAL"));
+    assertEquals(ThreadMode.PLATFORM, ThreadMode.fromString("platform"));
+    assertNull(ThreadMode.fromString("invalid"));
+  }
+}